@@ -59,6 +59,12 @@ public interface Entry {
      */
     long getEntryId();
 
+    /**
+     * @return the summary extracted from the entry when it was added, or null if it is not available (the entry was
+     *         not read from the cache or no {@link EntrySummary.Generator} is configured)
+     */
+    EntrySummary getSummary();
+
     /**
      * Release the resources (data) allocated for this entry and recycle if all the resources are deallocated (ref-count
      * of data reached to 0).
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger;
+
+import com.google.common.annotations.Beta;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A compact summary of the content of an entry, extracted once when the entry is added to the managed ledger and
+ * kept with the entry in the cache, so that the readers of the cached entry do not need to parse it again.
+ *
+ * <p>The managed ledger does not interpret the summary, it is produced by the {@link Generator} set in the
+ * {@link ManagedLedgerConfig}.
+ */
+@Beta
+public final class EntrySummary {
+
+    private final int keyHash;
+    private final int numMessages;
+    private final long publishTime;
+    private final long deliverAtTime;
+
+    /**
+     * @param keyHash
+     *            the hash of the key of the messages in the entry
+     * @param numMessages
+     *            the number of messages in the entry
+     * @param publishTime
+     *            the time at which the entry was published
+     * @param deliverAtTime
+     *            the time at which the entry should be delivered, or -1 if it can be delivered right away
+     */
+    public EntrySummary(int keyHash, int numMessages, long publishTime, long deliverAtTime) {
+        this.keyHash = keyHash;
+        this.numMessages = numMessages;
+        this.publishTime = publishTime;
+        this.deliverAtTime = deliverAtTime;
+    }
+
+    public int getKeyHash() {
+        return keyHash;
+    }
+
+    public int getNumMessages() {
+        return numMessages;
+    }
+
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    public boolean hasDeliverAtTime() {
+        return deliverAtTime >= 0;
+    }
+
+    public long getDeliverAtTime() {
+        return deliverAtTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EntrySummary(keyHash=%d, numMessages=%d, publishTime=%d, deliverAtTime=%d)", keyHash,
+                numMessages, publishTime, deliverAtTime);
+    }
+
+    /**
+     * Extracts the summary of the entries added to a managed ledger.
+     */
+    @FunctionalInterface
+    public interface Generator {
+        /**
+         * Called from the thread adding the entry, before the entry is written.
+         *
+         * @param data
+         *            the entry data, whose reader and writer indexes must be left unchanged
+         * @return the summary of the entry, or null if the readers need to look at the entry data
+         */
+        EntrySummary generate(ByteBuf data);
+    }
+}
@@ -112,5 +112,11 @@ public interface LedgerOffloader {
      */
     CompletableFuture<Void> deleteOffloaded(long ledgerId, UUID uid,
                                             Map<String, String> offloadDriverMetadata);
+
+    /**
+     * Release the resources held by the offloader, once no more ledgers are being offloaded or read through it.
+     */
+    default void close() {
+    }
 }
 
@@ -20,6 +20,7 @@ package org.apache.bookkeeper.mledger;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -246,6 +247,19 @@ public interface ManagedCursor {
      */
     void asyncMarkDelete(Position position, Map<String, Long> properties, MarkDeleteCallback callback, Object ctx);
 
+    /**
+     * Persist the current mark-delete position of the cursor along with its properties, including a mark-delete
+     * that was only applied in memory because of the mark-delete rate limiting.
+     *
+     * @param callback
+     *            callback object
+     * @param ctx
+     *            opaque context
+     */
+    default void asyncFlush(MarkDeleteCallback callback, Object ctx) {
+        asyncMarkDelete(getMarkDeletedPosition(), getProperties(), callback, ctx);
+    }
+
     /**
      * Delete a single message.
      *
@@ -315,6 +329,43 @@ public interface ManagedCursor {
      */
     void asyncDelete(Iterable<Position> position, DeleteCallback callback, Object ctx);
 
+    /**
+     * Delete some of the messages of a batch entry.
+     *
+     * <p/>The entry itself is not deleted, it has to be deleted with {@link #asyncDelete(Position, DeleteCallback,
+     * Object)} once all its messages are deleted. Until then, the indexes of the deleted messages are persisted with the
+     * cursor, and can be retrieved with {@link #getDeletedBatchIndexesAsLongArray(Position)} when the entry is read
+     * again. Deleting the messages of an entry that was already deleted has no effect.
+     *
+     * <p/>Cursors that don't track the messages of batch entries fail the callback.
+     *
+     * @param position
+     *            the position of the batch entry
+     * @param deletedIndexes
+     *            the indexes of the deleted messages within the batch
+     * @param callback
+     *            callback object
+     * @param ctx
+     *            opaque context
+     */
+    default void asyncDeleteBatchIndexes(Position position, BitSet deletedIndexes, DeleteCallback callback,
+            Object ctx) {
+        callback.deleteFailed(new ManagedLedgerException("Deleting the messages of a batch entry is not supported"),
+                ctx);
+    }
+
+    /**
+     * Get the indexes of the messages that have been deleted within a batch entry.
+     *
+     * @param position
+     *            the position of the batch entry
+     * @return the bitset of the deleted indexes, as returned by {@link BitSet#toLongArray()}, or null if none of the
+     *         messages of the batch has been deleted individually
+     */
+    default long[] getDeletedBatchIndexesAsLongArray(Position position) {
+        return null;
+    }
+
     /**
      * Get the read position. This points to the next message to be read from the cursor.
      *
@@ -541,6 +592,13 @@ public interface ManagedCursor {
      */
     void setAlwaysInactive();
 
+    /**
+     * Release the entries prefetched by the cursor read-ahead, e.g. when the cursor has no reader for a while.
+     * Cursors without read-ahead have nothing to release.
+     */
+    default void releaseReadAheadEntries() {
+    }
+
     /**
      * Checks if cursor is active or not.
      *
@@ -61,13 +61,19 @@ public class ManagedLedgerConfig {
     private long metadataOperationsTimeoutSeconds = 60;
     private long readEntryTimeoutSeconds = 120;
     private long addEntryTimeoutSeconds = 120;
+    private int readAheadEntries = 0;
+    private long readAheadMaxSizePerCursor = 4 * 1024 * 1024;
     private DigestType digestType = DigestType.CRC32C;
     private byte[] password = "".getBytes(Charsets.UTF_8);
     private boolean unackedRangesOpenCacheSetEnabled = true;
+    private boolean unackedRangesCompactEncodingEnabled = false;
+    private int cursorDeltasPerSnapshot = 0;
+    private boolean deletionAtBatchIndexLevelEnabled = false;
     private Class<? extends EnsemblePlacementPolicy>  bookKeeperEnsemblePlacementPolicyClassName;
     private Map<String, Object> bookKeeperEnsemblePlacementPolicyProperties;
     private LedgerOffloader ledgerOffloader = NullLedgerOffloader.INSTANCE;
     private Clock clock = Clock.systemUTC();
+    private EntrySummary.Generator entrySummaryGenerator = null;
 
     public boolean isCreateIfMissing() {
         return createIfMissing;
@@ -253,6 +259,60 @@ public class ManagedLedgerConfig {
         return this;
     }
 
+    public boolean isUnackedRangesCompactEncodingEnabled() {
+        return unackedRangesCompactEncodingEnabled;
+    }
+
+    /**
+     * Persist the individually deleted messages of the cursors as per-ledger run-lengths or bitmaps, instead of one
+     * protobuf object per range. The persisted messages are then bounded by the size of
+     * {@link #getMaxUnackedRangesToPersist()} ranges, rather than by their number. Brokers that don't support this
+     * encoding would lose the individually deleted messages when recovering the cursors.
+     *
+     * @param unackedRangesCompactEncodingEnabled
+     */
+    public ManagedLedgerConfig setUnackedRangesCompactEncodingEnabled(boolean unackedRangesCompactEncodingEnabled) {
+        this.unackedRangesCompactEncodingEnabled = unackedRangesCompactEncodingEnabled;
+        return this;
+    }
+
+    /**
+     * @return the number of incremental cursor positions written to the cursor ledger between full snapshots
+     */
+    public int getCursorDeltasPerSnapshot() {
+        return cursorDeltasPerSnapshot;
+    }
+
+    /**
+     * Append to the cursor ledger only the individually deleted messages that have changed since the previous
+     * mark-delete, and write the full set of individually deleted messages once every
+     * <code>cursorDeltasPerSnapshot</code> entries. Brokers that don't support incremental entries would only
+     * recover the messages deleted since the previous entry.
+     *
+     * @param cursorDeltasPerSnapshot
+     *            the number of incremental entries between full snapshots (0 to always write full snapshots)
+     */
+    public ManagedLedgerConfig setCursorDeltasPerSnapshot(int cursorDeltasPerSnapshot) {
+        checkArgument(cursorDeltasPerSnapshot >= 0);
+        this.cursorDeltasPerSnapshot = cursorDeltasPerSnapshot;
+        return this;
+    }
+
+    public boolean isDeletionAtBatchIndexLevelEnabled() {
+        return deletionAtBatchIndexLevelEnabled;
+    }
+
+    /**
+     * Let the cursors track and persist the messages deleted within batch entries, so that the messages of a
+     * partially acknowledged batch are not delivered again after a redelivery or a broker restart.
+     *
+     * @param deletionAtBatchIndexLevelEnabled
+     */
+    public ManagedLedgerConfig setDeletionAtBatchIndexLevelEnabled(boolean deletionAtBatchIndexLevelEnabled) {
+        this.deletionAtBatchIndexLevelEnabled = deletionAtBatchIndexLevelEnabled;
+        return this;
+    }
+
     /**
      * @return the metadataEnsemblesize
      */
@@ -513,6 +573,25 @@ public class ManagedLedgerConfig {
         return this;
     }
 
+    /**
+     * Get the generator of the summaries kept with the entries added to the cache.
+     *
+     * @return the entry summary generator, or null if the entries are not summarized
+     */
+    public EntrySummary.Generator getEntrySummaryGenerator() {
+        return entrySummaryGenerator;
+    }
+
+    /**
+     * Set the generator of the summaries kept with the entries added to the cache, see {@link Entry#getSummary()}.
+     *
+     * @param entrySummaryGenerator the entry summary generator, or null to not summarize the entries
+     */
+    public ManagedLedgerConfig setEntrySummaryGenerator(EntrySummary.Generator entrySummaryGenerator) {
+        this.entrySummaryGenerator = entrySummaryGenerator;
+        return this;
+    }
+
     /**
      * Get clock to use to time operations
      *
@@ -587,6 +666,43 @@ public class ManagedLedgerConfig {
         return this;
     }
 
+    /**
+     * @return the number of entries to prefetch for cursors that are sequentially reading a backlog
+     */
+    public int getReadAheadEntries() {
+        return readAheadEntries;
+    }
+
+    /**
+     * Number of entries to prefetch, ahead of the next read, for cursors that are sequentially reading a backlog
+     * (disable read-ahead by setting readAheadEntries <= 0).
+     *
+     * @param readAheadEntries
+     *            the number of entries to prefetch
+     */
+    public ManagedLedgerConfig setReadAheadEntries(int readAheadEntries) {
+        this.readAheadEntries = readAheadEntries;
+        return this;
+    }
+
+    /**
+     * @return the maximum size in bytes of the entries prefetched for a single cursor
+     */
+    public long getReadAheadMaxSizePerCursor() {
+        return readAheadMaxSizePerCursor;
+    }
+
+    /**
+     * Maximum size in bytes of the entries that can be kept in the read-ahead buffer of a single cursor.
+     *
+     * @param readAheadMaxSizePerCursor
+     *            the maximum size in bytes
+     */
+    public ManagedLedgerConfig setReadAheadMaxSizePerCursor(long readAheadMaxSizePerCursor) {
+        this.readAheadMaxSizePerCursor = readAheadMaxSizePerCursor;
+        return this;
+    }
+
     /**
      * Managed-ledger can setup different custom EnsemblePlacementPolicy (eg: affinity to write ledgers to only setup of
      * group of bookies).
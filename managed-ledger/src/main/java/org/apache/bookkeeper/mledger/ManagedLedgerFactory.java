@@ -19,6 +19,9 @@
 package org.apache.bookkeeper.mledger;
 
 import com.google.common.annotations.Beta;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ManagedLedgerInfoCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenLedgerCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenReadOnlyCursorCallback;
@@ -82,6 +85,23 @@ public interface ManagedLedgerFactory {
      */
     void asyncOpen(String name, ManagedLedgerConfig config, OpenLedgerCallback callback, Object ctx);
 
+    /**
+     * Asynchronously open a group of managed ledgers, eg: all the topics of a bundle.
+     * <p>
+     * The managed ledgers are opened in parallel, up to
+     * {@link ManagedLedgerFactoryConfig#getMaxConcurrentBulkOpens()} at a time, so that their metadata reads are
+     * pipelined on the metadata store session instead of being issued one topic after the other. The callback is
+     * invoked for each managed ledger as soon as it's opened or failed, with its name as context.
+     *
+     * @param configs
+     *            the configuration of each managed ledger, by the unique name that identifies it
+     * @param callback
+     *            callback object
+     */
+    default void asyncOpen(Map<String, ManagedLedgerConfig> configs, OpenLedgerCallback callback) {
+        configs.forEach((name, config) -> asyncOpen(name, config, callback, name));
+    }
+
     /**
      * Open a {@link ReadOnlyCursor} positioned to the earliest entry for the specified managed ledger
      *
@@ -127,6 +147,17 @@ public interface ManagedLedgerFactory {
      */
     void asyncGetManagedLedgerInfo(String name, ManagedLedgerInfoCallback callback, Object ctx);
 
+    /**
+     * List the managed ledgers whose name starts with the given prefix, if the metadata store can query them.
+     *
+     * @param prefix
+     *            the prefix of the names of the managed ledgers
+     * @return the names of the managed ledgers, or empty if the metadata store doesn't support listing them
+     */
+    default Optional<List<String>> listManagedLedgers(String prefix) throws ManagedLedgerException {
+        return Optional.empty();
+    }
+
     /**
      * Releases all the resources maintained by the ManagedLedgerFactory.
      *
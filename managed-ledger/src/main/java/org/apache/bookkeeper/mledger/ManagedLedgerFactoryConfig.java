@@ -37,6 +37,12 @@ public class ManagedLedgerFactoryConfig {
     private int numManagedLedgerWorkerThreads = Runtime.getRuntime().availableProcessors();
     private int numManagedLedgerSchedulerThreads = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * Number of threads running the add entry callbacks, in the order of the entries of each managed ledger. When 0,
+     * the callbacks run on the worker thread of the managed ledger, which meanwhile can't handle the next entries.
+     */
+    private int numManagedLedgerCallbackThreads = 0;
+
     /**
      * Frequency of cache eviction triggering. Default is 100 times per second.
      */
@@ -56,4 +62,62 @@ public class ManagedLedgerFactoryConfig {
      * Whether we should make a copy of the entry payloads when inserting in cache
      */
     private boolean copyEntriesInCache = false;
+
+    /**
+     * Data structure used to hold the cached entries of each managed ledger
+     */
+    private EntryCacheType entryCacheType = EntryCacheType.SkipList;
+
+    /**
+     * Number of entries of a ledger held by each segment, when using the {@link EntryCacheType#Segmented} cache
+     */
+    private int entryCacheSegmentSize = 1024;
+
+    /**
+     * Class name of the {@code EntryCacheEvictionPolicy} that chooses which caches to evict entries from
+     */
+    private String cacheEvictionPolicyClassName = "org.apache.bookkeeper.mledger.impl.EntryCacheDefaultEvictionPolicy";
+
+    /**
+     * Whether the updates of the managed ledgers and cursors metadata are grouped in ZooKeeper multi operations
+     */
+    private boolean metadataBatchingEnabled = false;
+
+    /**
+     * Maximum time an update of the metadata waits for other updates to be grouped with
+     */
+    private long metadataBatchingMaxDelayMicros = 1000;
+
+    /**
+     * Maximum number of updates of the metadata grouped in a single ZooKeeper multi operation
+     */
+    private int metadataBatchingMaxSize = 100;
+
+    /**
+     * Directory of a local RocksDB database holding the managed ledgers and cursors metadata, instead of ZooKeeper.
+     * Only suited to deployments where a single broker owns all the topics
+     */
+    private String metadataStoreDirectory = null;
+
+    /**
+     * Maximum number of managed ledgers being opened at the same time by a bulk open
+     */
+    private int maxConcurrentBulkOpens = 64;
+
+    /**
+     * Maximum size of the entries prefetched by the read-ahead of all the cursors
+     */
+    private long maxReadAheadSize = 128 * MB;
+
+    public enum EntryCacheType {
+        /**
+         * Entries are kept in a concurrent skip-list sorted by position.
+         */
+        SkipList,
+
+        /**
+         * Entries are kept in fixed-size array segments indexed by entry id, one sorted map node per segment.
+         */
+        Segmented
+    }
 }
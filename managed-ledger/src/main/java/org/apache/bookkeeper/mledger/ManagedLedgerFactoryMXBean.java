@@ -61,4 +61,31 @@ public interface ManagedLedgerFactoryMXBean {
      * Get the number of cache evictions during the last minute.
      */
     long getNumberOfCacheEvictions();
+
+    /**
+     * Get the name of the eviction policy used by the cache.
+     */
+    String getCacheEvictionPolicy();
+
+    /**
+     * Get the fraction of the entries read during the last stats period that were found in the cache.
+     */
+    double getCacheHitsRatio();
+
+    /**
+     * Get the fraction of the entries read during the last stats period that were read from bookkeeper.
+     */
+    double getCacheMissesRatio();
+
+    /**
+     * Get the distribution of the number of metadata updates sent together to the metadata store, during the last
+     * stats period. Only populated when the metadata updates are batched.
+     */
+    long[] getMetadataBatchSizeBuckets();
+
+    /**
+     * Get the distribution of the latency of the batched metadata updates in microseconds, from their submission to
+     * their completion, during the last stats period.
+     */
+    long[] getMetadataUpdateLatencyBuckets();
 }
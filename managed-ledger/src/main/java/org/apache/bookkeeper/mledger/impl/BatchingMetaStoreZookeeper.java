@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.apache.bookkeeper.mledger.util.SafeRun.safeRun;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.BadVersionException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.impl.MetaStoreImplZookeeper.ZKStat;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.OpResult.SetDataResult;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator of {@link MetaStoreImplZookeeper} that groups the updates of the managed ledgers and cursors metadata.
+ *
+ * <p>The updates submitted within a short window are sent to ZooKeeper in a single {@code multi()} operation,
+ * instead of one {@code setData()} each. Each update keeps its own version check: when the multi fails, because
+ * one of the versions didn't match, its updates are sent again one by one so that each of them gets its own
+ * result. The callbacks run on the ordered executor of the managed ledger, in the order of submission.
+ *
+ * <p>A batch is sent as soon as it reaches either the max number of updates or the max size in bytes, so that the
+ * {@code multi()} request stays well below the {@code jute.maxbuffer} limit of ZooKeeper. An update larger than the
+ * max size is sent on its own.
+ *
+ * <p>The other operations, including the creation of the cursors nodes, go directly to the decorated store.
+ */
+public class BatchingMetaStoreZookeeper implements MetaStore {
+
+    public static final long[] BATCH_SIZE_BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000 };
+
+    // Half of the max size of a ZooKeeper packet, leaving room for the framing of the multi request
+    public static final int DEFAULT_MAX_BATCH_BYTES = Integer.getInteger("jute.maxbuffer", 0xfffff) / 2;
+
+    private static final class PendingUpdate {
+        final String ledgerName;
+        final String path;
+        final byte[] data;
+        final int version;
+        final MetaStoreCallback<Void> callback;
+        final long submitTimeNanos;
+
+        PendingUpdate(String ledgerName, String path, byte[] data, int version, MetaStoreCallback<Void> callback) {
+            this.ledgerName = ledgerName;
+            this.path = path;
+            this.data = data;
+            this.version = version;
+            this.callback = callback;
+            this.submitTimeNanos = System.nanoTime();
+        }
+
+        int size() {
+            return path.length() + data.length;
+        }
+    }
+
+    private final MetaStoreImplZookeeper delegate;
+    private final ZooKeeper zk;
+    private final OrderedExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final ManagedLedgerFactoryMBeanImpl mbean;
+    private final int maxBatchSize;
+    private final int maxBatchBytes;
+    private final long maxDelayMicros;
+
+    // Updates waiting for the next batch, and their total size, guarded by this
+    private List<PendingUpdate> pendingUpdates = new ArrayList<>();
+    private int pendingBytes = 0;
+    private ScheduledFuture<?> flushTask = null;
+
+    public BatchingMetaStoreZookeeper(MetaStoreImplZookeeper delegate, ZooKeeper zk, OrderedExecutor executor,
+            ScheduledExecutorService scheduler, ManagedLedgerFactoryMBeanImpl mbean, int maxBatchSize,
+            long maxDelayMicros) {
+        this(delegate, zk, executor, scheduler, mbean, maxBatchSize, DEFAULT_MAX_BATCH_BYTES, maxDelayMicros);
+    }
+
+    public BatchingMetaStoreZookeeper(MetaStoreImplZookeeper delegate, ZooKeeper zk, OrderedExecutor executor,
+            ScheduledExecutorService scheduler, ManagedLedgerFactoryMBeanImpl mbean, int maxBatchSize,
+            int maxBatchBytes, long maxDelayMicros) {
+        this.delegate = delegate;
+        this.zk = zk;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.mbean = mbean;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxDelayMicros = maxDelayMicros;
+    }
+
+    @Override
+    public void getManagedLedgerInfo(String ledgerName, boolean createIfMissing,
+            MetaStoreCallback<ManagedLedgerInfo> callback) {
+        delegate.getManagedLedgerInfo(ledgerName, createIfMissing, callback);
+    }
+
+    @Override
+    public void asyncUpdateLedgerIds(String ledgerName, ManagedLedgerInfo mlInfo, Stat stat,
+            MetaStoreCallback<Void> callback) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Updating metadata version={} with content={}", ledgerName, stat.getVersion(), mlInfo);
+        }
+        submit(new PendingUpdate(ledgerName, MetaStoreImplZookeeper.prefix + ledgerName, mlInfo.toByteArray(),
+                stat.getVersion(), callback));
+    }
+
+    @Override
+    public void getCursors(String ledgerName, MetaStoreCallback<List<String>> callback) {
+        delegate.getCursors(ledgerName, callback);
+    }
+
+    @Override
+    public void asyncGetCursorInfo(String ledgerName, String cursorName,
+            MetaStoreCallback<ManagedCursorInfo> callback) {
+        delegate.asyncGetCursorInfo(ledgerName, cursorName, callback);
+    }
+
+    @Override
+    public void asyncUpdateCursorInfo(String ledgerName, String cursorName, ManagedCursorInfo info, Stat stat,
+            MetaStoreCallback<Void> callback) {
+        if (stat == null) {
+            // The cursor node doesn't exist yet
+            delegate.asyncUpdateCursorInfo(ledgerName, cursorName, info, stat, callback);
+            return;
+        }
+
+        log.info("[{}] [{}] Updating cursor info ledgerId={} mark-delete={}:{}", ledgerName, cursorName,
+                info.getCursorsLedgerId(), info.getMarkDeleteLedgerId(), info.getMarkDeleteEntryId());
+        submit(new PendingUpdate(ledgerName, MetaStoreImplZookeeper.prefix + ledgerName + "/" + cursorName,
+                info.toByteArray(), stat.getVersion(), callback));
+    }
+
+    @Override
+    public void asyncRemoveCursor(String ledgerName, String cursorName, MetaStoreCallback<Void> callback) {
+        delegate.asyncRemoveCursor(ledgerName, cursorName, callback);
+    }
+
+    @Override
+    public void removeManagedLedger(String ledgerName, MetaStoreCallback<Void> callback) {
+        delegate.removeManagedLedger(ledgerName, callback);
+    }
+
+    @Override
+    public Iterable<String> getManagedLedgers() throws MetaStoreException {
+        return delegate.getManagedLedgers();
+    }
+
+    private synchronized void submit(PendingUpdate update) {
+        if (!pendingUpdates.isEmpty() && pendingBytes + update.size() > maxBatchBytes) {
+            // Send the pending updates first, so that the batch doesn't go over the max size
+            flush();
+        }
+        pendingUpdates.add(update);
+        pendingBytes += update.size();
+        if (pendingUpdates.size() >= maxBatchSize || pendingBytes >= maxBatchBytes) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = scheduler.schedule(safeRun(this::flush), maxDelayMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Send the pending updates. They are sent while holding the lock, so that the batches reach ZooKeeper in the
+     * order of submission.
+     */
+    private synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+
+        List<PendingUpdate> batch = pendingUpdates;
+        pendingUpdates = new ArrayList<>();
+        pendingBytes = 0;
+        mbean.addMetadataBatchSizeSample(batch.size());
+
+        if (batch.size() == 1) {
+            setData(batch.get(0));
+            return;
+        }
+
+        List<Op> ops = new ArrayList<>(batch.size());
+        for (PendingUpdate update : batch) {
+            ops.add(Op.setData(update.path, update.data, update.version));
+        }
+        zk.multi(ops, (rc, path, ctx, results) -> {
+            if (rc == Code.OK.intValue()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    complete(batch.get(i), rc, ((SetDataResult) results.get(i)).getStat());
+                }
+            } else if (results != null) {
+                // One of the updates failed, and none was applied. Send them one by one to give each update its
+                // own result
+                if (log.isDebugEnabled()) {
+                    log.debug("Batch of {} metadata updates failed with {}, sending them individually", batch.size(),
+                            Code.get(rc));
+                }
+                synchronized (BatchingMetaStoreZookeeper.this) {
+                    batch.forEach(this::setData);
+                }
+            } else {
+                batch.forEach(update -> complete(update, rc, null));
+            }
+        }, null);
+    }
+
+    private void setData(PendingUpdate update) {
+        zk.setData(update.path, update.data, update.version,
+                (rc, path, ctx, stat) -> complete(update, rc, stat), null);
+    }
+
+    private void complete(PendingUpdate update, int rc, org.apache.zookeeper.data.Stat stat) {
+        executor.executeOrdered(update.ledgerName, safeRun(() -> {
+            mbean.addMetadataUpdateLatencySample(System.nanoTime() - update.submitTimeNanos, TimeUnit.NANOSECONDS);
+            if (rc == Code.BADVERSION.intValue()) {
+                // Content has been modified on ZK since our last read
+                update.callback.operationFailed(new BadVersionException(KeeperException.create(Code.get(rc))));
+            } else if (rc != Code.OK.intValue()) {
+                update.callback.operationFailed(new MetaStoreException(KeeperException.create(Code.get(rc))));
+            } else {
+                update.callback.operationComplete(null, new ZKStat(stat));
+            }
+        }));
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingMetaStoreZookeeper.class);
+}
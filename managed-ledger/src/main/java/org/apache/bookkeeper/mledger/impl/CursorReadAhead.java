@@ -0,0 +1,358 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import com.google.common.collect.Lists;
+import java.util.ArrayDeque;
+import java.util.List;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-ahead buffer of a single cursor.
+ *
+ * <p/>Once a cursor has been reading the same ledger sequentially for a few reads, the entries following each read are
+ * prefetched in a staging area, so that the next read of the cursor can be served without waiting for a full bookie
+ * round trip. The staging area is bounded both in number of entries and in bytes, and the staging areas of all the
+ * cursors of the factory are bounded together in bytes.
+ *
+ * <p/>Prefetching is skipped for cursors whose read position is shared with other cursors, meaning that another
+ * cursor is reading within the same read-ahead window, since their reads are already served once for all of them by
+ * the entry cache.
+ */
+class CursorReadAhead {
+
+    // Number of consecutive reads of adjacent entries after which the prefetching is started
+    static final int SEQUENTIAL_READS_THRESHOLD = 2;
+
+    private final ManagedCursorImpl cursor;
+    private final int maxEntries;
+    private final long maxSize;
+
+    // Prefetched entries, with contiguous entry ids
+    private final ArrayDeque<EntryImpl> staged = new ArrayDeque<>();
+    private long stagedSize = 0;
+
+    // Ledger of the staged entries and entry following the last staged (or being prefetched) one
+    private long ledgerId = -1;
+    private long nextEntryId = -1;
+
+    private boolean prefetchInProgress = false;
+    private long prefetchFirstEntryId = -1;
+    // Incremented every time the staging area is discarded, to drop the results of stale prefetch reads
+    private long generation = 0;
+
+    // Cursor read that is waiting for the prefetch read to complete
+    private OpReadEntry waitingRead = null;
+    private ReadHandle waitingReadLedger = null;
+    private long waitingReadFirstEntry = -1;
+    private long waitingReadLastEntry = -1;
+
+    private long lastReadLedgerId = -1;
+    private long lastReadEntryId = -1;
+    private int sequentialReads = 0;
+
+    // Whether another cursor was reading within the read-ahead window of the read position it was last checked for
+    private long sharedCheckLedgerId = -1;
+    private long sharedCheckEntryId = -1;
+    private boolean readPositionShared = false;
+
+    CursorReadAhead(ManagedCursorImpl cursor, int maxEntries, long maxSize) {
+        this.cursor = cursor;
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Serve a cursor read from the prefetched entries, and schedule the prefetch of the following entries if the
+     * cursor is reading sequentially.
+     *
+     * @return true if the read was served from the staging area, or will be served when the prefetch read that is
+     *         already in progress completes. If false, the caller should read the entries itself
+     */
+    boolean readEntries(ReadHandle ledger, long firstEntry, long lastEntry, long lastEntryInLedger,
+            OpReadEntry opReadEntry) {
+        List<Entry> entries = null;
+        boolean served = false;
+        long prefetchFrom = -1;
+        long prefetchTo = -1;
+        long prefetchGeneration = -1;
+
+        synchronized (this) {
+            boolean sequential = ledger.getId() == lastReadLedgerId && firstEntry > lastReadEntryId
+                    && firstEntry <= lastReadEntryId + 1 + maxEntries;
+            sequentialReads = sequential ? sequentialReads + 1 : 1;
+
+            if (ledger.getId() == ledgerId && firstEntry >= stagedFirstEntryId() && firstEntry < nextEntryId) {
+                // Skip the entries the cursor is not interested in anymore (eg: they were already acknowledged)
+                while (!staged.isEmpty() && staged.peekFirst().getEntryId() < firstEntry) {
+                    releaseFirst();
+                }
+
+                if (!staged.isEmpty()) {
+                    entries = Lists.newArrayListWithExpectedSize((int) (lastEntry - firstEntry + 1));
+                    while (!staged.isEmpty() && staged.peekFirst().getEntryId() <= lastEntry) {
+                        entries.add(pollFirst());
+                    }
+                    lastEntry = ((EntryImpl) entries.get(entries.size() - 1)).getEntryId();
+                } else {
+                    // The next entries are being prefetched already, wait for them
+                    waitingRead = opReadEntry;
+                    waitingReadLedger = ledger;
+                    waitingReadFirstEntry = firstEntry;
+                    waitingReadLastEntry = lastEntry;
+                }
+                served = true;
+            } else if (ledgerId != -1) {
+                discard();
+            }
+
+            lastReadLedgerId = ledger.getId();
+            lastReadEntryId = lastEntry;
+
+            if (sequentialReads >= SEQUENTIAL_READS_THRESHOLD && !prefetchInProgress && stagedSize < maxSize
+                    && cursor.ledger.factory.getReadAheadSize() < maxTotalSize() && !cursor.isClosed()) {
+                prefetchFrom = ledgerId == ledger.getId() ? nextEntryId : lastEntry + 1;
+                prefetchTo = Math.min(prefetchFrom + maxEntries - staged.size() - 1, lastEntryInLedger);
+
+                if (prefetchTo >= prefetchFrom && !isReadPositionShared(opReadEntry.readPosition)) {
+                    ledgerId = ledger.getId();
+                    nextEntryId = prefetchTo + 1;
+                    prefetchInProgress = true;
+                    prefetchFirstEntryId = prefetchFrom;
+                    prefetchGeneration = generation;
+                } else {
+                    prefetchFrom = -1;
+                }
+            }
+        }
+
+        if (entries != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] [{}] Read {} entries from read-ahead buffer: {}:{}-{}", cursor.ledger.getName(),
+                        cursor.getName(), entries.size(), ledger.getId(), firstEntry, lastEntry);
+            }
+            opReadEntry.readEntriesComplete(entries, opReadEntry.ctx);
+        }
+
+        if (prefetchFrom != -1) {
+            prefetch(ledger, prefetchFrom, prefetchTo, prefetchGeneration);
+        }
+
+        return served;
+    }
+
+    private void prefetch(ReadHandle ledger, long firstEntry, long lastEntry, long expectedGeneration) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] [{}] Prefetching entries {}:{}-{}", cursor.ledger.getName(), cursor.getName(),
+                    ledger.getId(), firstEntry, lastEntry);
+        }
+
+        cursor.ledger.entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, false, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                prefetchCompleted(expectedGeneration, entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] [{}] Failed to prefetch entries {}:{}-{}", cursor.ledger.getName(),
+                            cursor.getName(), ledger.getId(), firstEntry, lastEntry, exception);
+                }
+                prefetchCompleted(expectedGeneration, null);
+            }
+        }, null);
+    }
+
+    private void prefetchCompleted(long expectedGeneration, List<Entry> entries) {
+        OpReadEntry opReadEntry = null;
+        List<Entry> entriesToServe = null;
+
+        synchronized (this) {
+            if (expectedGeneration != generation || cursor.isClosed()) {
+                // The staging area was discarded while reading
+                if (entries != null) {
+                    entries.forEach(Entry::release);
+                }
+                return;
+            }
+
+            prefetchInProgress = false;
+
+            if (entries != null) {
+                boolean full = false;
+                for (Entry e : entries) {
+                    EntryImpl entry = (EntryImpl) e;
+                    full = full || (!staged.isEmpty() && stagedSize + entry.getLength() > maxSize)
+                            || cursor.ledger.factory.getReadAheadSize() + entry.getLength() > maxTotalSize();
+                    if (full) {
+                        // Keep the staging area within its size limits, the remaining entries will be read again
+                        nextEntryId = Math.min(nextEntryId, entry.getEntryId());
+                        entry.release();
+                    } else {
+                        staged.addLast(entry);
+                        stagedSize += entry.getLength();
+                        cursor.ledger.factory.updateReadAheadSize(entry.getLength());
+                    }
+                }
+            } else {
+                nextEntryId = prefetchFirstEntryId;
+            }
+
+            if (waitingRead != null) {
+                opReadEntry = waitingRead;
+                // Skip the entries the cursor moved past while waiting (eg: they were acknowledged or skipped)
+                while (!staged.isEmpty() && staged.peekFirst().getEntryId() < waitingReadFirstEntry) {
+                    releaseFirst();
+                }
+
+                if (!staged.isEmpty() && staged.peekFirst().getEntryId() <= waitingReadLastEntry) {
+                    entriesToServe = Lists.newArrayList();
+                    while (!staged.isEmpty() && staged.peekFirst().getEntryId() <= waitingReadLastEntry) {
+                        entriesToServe.add(pollFirst());
+                    }
+                    waitingRead = null;
+                    waitingReadLedger = null;
+                }
+            }
+        }
+
+        if (entriesToServe != null) {
+            opReadEntry.readEntriesComplete(entriesToServe, opReadEntry.ctx);
+        } else if (opReadEntry != null) {
+            readWaitingEntries();
+        }
+    }
+
+    /**
+     * Release all the prefetched entries. A cursor read that was waiting for a prefetch to complete gets served by
+     * reading the entries directly.
+     */
+    void clear() {
+        synchronized (this) {
+            if (ledgerId != -1) {
+                discard();
+            }
+            sequentialReads = 0;
+            lastReadLedgerId = -1;
+            lastReadEntryId = -1;
+        }
+
+        readWaitingEntries();
+    }
+
+    private void readWaitingEntries() {
+        OpReadEntry opReadEntry;
+        ReadHandle ledger;
+        long firstEntry;
+        long lastEntry;
+        synchronized (this) {
+            if (waitingRead == null) {
+                return;
+            }
+            opReadEntry = waitingRead;
+            ledger = waitingReadLedger;
+            firstEntry = waitingReadFirstEntry;
+            lastEntry = waitingReadLastEntry;
+            waitingRead = null;
+            waitingReadLedger = null;
+        }
+
+        cursor.ledger.asyncReadEntry(ledger, firstEntry, lastEntry, false, opReadEntry, opReadEntry.ctx);
+    }
+
+    synchronized int getNumberOfStagedEntries() {
+        return staged.size();
+    }
+
+    synchronized long getStagedSize() {
+        return stagedSize;
+    }
+
+    private long stagedFirstEntryId() {
+        if (!staged.isEmpty()) {
+            return staged.peekFirst().getEntryId();
+        } else if (prefetchInProgress) {
+            return prefetchFirstEntryId;
+        } else {
+            return nextEntryId;
+        }
+    }
+
+    private long maxTotalSize() {
+        return cursor.ledger.factory.getConfig().getMaxReadAheadSize();
+    }
+
+    private EntryImpl pollFirst() {
+        EntryImpl entry = staged.pollFirst();
+        stagedSize -= entry.getLength();
+        cursor.ledger.factory.updateReadAheadSize(-entry.getLength());
+        return entry;
+    }
+
+    private void releaseFirst() {
+        pollFirst().release();
+    }
+
+    private void discard() {
+        while (!staged.isEmpty()) {
+            releaseFirst();
+        }
+        ledgerId = -1;
+        nextEntryId = -1;
+        prefetchInProgress = false;
+        ++generation;
+    }
+
+    /**
+     * Check whether another cursor is reading within the read-ahead window. The other cursors are only checked again
+     * once the read position moved by a read-ahead window since the last check, rather than on every read.
+     */
+    private boolean isReadPositionShared(PositionImpl readPosition) {
+        if (readPosition.getLedgerId() == sharedCheckLedgerId
+                && Math.abs(readPosition.getEntryId() - sharedCheckEntryId) < maxEntries) {
+            return readPositionShared;
+        }
+
+        sharedCheckLedgerId = readPosition.getLedgerId();
+        sharedCheckEntryId = readPosition.getEntryId();
+        readPositionShared = false;
+        for (ManagedCursor other : cursor.ledger.getCursors()) {
+            if (other == cursor) {
+                continue;
+            }
+
+            PositionImpl otherReadPosition = (PositionImpl) other.getReadPosition();
+            if (otherReadPosition.getLedgerId() == readPosition.getLedgerId()
+                    && Math.abs(otherReadPosition.getEntryId() - readPosition.getEntryId()) <= maxEntries) {
+                readPositionShared = true;
+                break;
+            }
+        }
+        return readPositionShared;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CursorReadAhead.class);
+}
@@ -93,5 +93,10 @@ public class EntryCacheDefaultEvictionPolicy implements EntryCacheEvictionPolicy
                 cachesToEvict.size(), evictedSize / EntryCacheManager.MB);
     }
 
+    @Override
+    public String getName() {
+        return "Default";
+    }
+
     private static final Logger log = LoggerFactory.getLogger(EntryCacheDefaultEvictionPolicy.class);
 }
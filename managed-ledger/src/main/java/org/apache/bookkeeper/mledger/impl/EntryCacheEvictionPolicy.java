@@ -34,4 +34,32 @@ public interface EntryCacheEvictionPolicy {
      *            the minimum size in bytes to be freed
      */
     void doEviction(List<EntryCache> caches, long sizeToFree);
+
+    /**
+     * Notify the policy that a read was served through the supplied cache, either from memory or from bookkeeper.
+     *
+     * @param cache
+     *            the cache that was accessed
+     */
+    default void recordAccess(EntryCache cache) {
+    }
+
+    /**
+     * Decide whether a new entry should be inserted in the supplied cache. This is only consulted when the total
+     * cache usage is above the eviction watermark.
+     *
+     * @param cache
+     *            the cache that is going to hold the new entry
+     * @return true if the entry should be admitted in the cache
+     */
+    default boolean shouldAdmit(EntryCache cache) {
+        return true;
+    }
+
+    /**
+     * @return the name used to identify the policy in the stats
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
 }
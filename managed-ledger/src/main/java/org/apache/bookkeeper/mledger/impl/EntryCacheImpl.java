@@ -23,6 +23,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.createManagedLedgerException;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
 
 import io.netty.buffer.ByteBuf;
@@ -31,14 +32,22 @@ import io.netty.buffer.PooledByteBufAllocator;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.bookkeeper.client.api.BKException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerEntry;
 import org.apache.bookkeeper.client.api.ReadHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig.EntryCacheType;
+import org.apache.bookkeeper.mledger.util.KeyRangeCache;
 import org.apache.bookkeeper.mledger.util.RangeCache;
+import org.apache.bookkeeper.mledger.util.SegmentedRangeCache;
+import org.apache.bookkeeper.mledger.util.SegmentedRangeCache.KeySegmenter;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,15 +59,29 @@ public class EntryCacheImpl implements EntryCache {
 
     private final EntryCacheManager manager;
     private final ManagedLedgerImpl ml;
-    private final RangeCache<PositionImpl, EntryImpl> entries;
+    private final KeyRangeCache<PositionImpl, EntryImpl> entries;
     private final boolean copyEntries;
 
+    // Reads from bookkeeper that are in progress, grouped by ledger id. Cache misses on overlapping ranges are
+    // attached to them instead of issuing new reads for the same entries
+    private final Map<Long, List<PendingRead>> pendingReads = Maps.newHashMap();
+
     private static final double MB = 1024 * 1024;
 
     public EntryCacheImpl(EntryCacheManager manager, ManagedLedgerImpl ml, boolean copyEntries) {
+        this(manager, ml, copyEntries, EntryCacheType.SkipList, 0);
+    }
+
+    public EntryCacheImpl(EntryCacheManager manager, ManagedLedgerImpl ml, boolean copyEntries,
+            EntryCacheType cacheType, int segmentSize) {
         this.manager = manager;
         this.ml = ml;
-        this.entries = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        if (cacheType == EntryCacheType.Segmented) {
+            this.entries = new SegmentedRangeCache<>(segmentSize, new PositionSegmenter(segmentSize),
+                    EntryImpl::getLength, EntryImpl::getTimestamp);
+        } else {
+            this.entries = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        }
         this.copyEntries = copyEntries;
 
         if (log.isDebugEnabled()) {
@@ -92,6 +115,14 @@ public class EntryCacheImpl implements EntryCache {
             return false;
         }
 
+        if (!manager.shouldAdmit(this)) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Entry not admitted in cache by eviction policy: {} - size: {}", ml.getName(),
+                        entry.getPosition(), entry.getLength());
+            }
+            return false;
+        }
+
         if (log.isDebugEnabled()) {
             log.debug("[{}] Adding entry to cache: {} - size: {}", ml.getName(), entry.getPosition(),
                     entry.getLength());
@@ -110,6 +141,7 @@ public class EntryCacheImpl implements EntryCache {
 
         PositionImpl position = entry.getPosition();
         EntryImpl cacheEntry = EntryImpl.create(position, cachedData);
+        cacheEntry.setSummary(entry.getSummary());
         cachedData.release();
         if (entries.put(position, cacheEntry)) {
             manager.entryAdded(entry.getLength());
@@ -195,6 +227,7 @@ public class EntryCacheImpl implements EntryCache {
         if (log.isDebugEnabled()) {
             log.debug("[{}] Reading entry ledger {}: {}", ml.getName(), lh.getId(), position.getEntryId());
         }
+        manager.recordCacheAccess(this);
         EntryImpl entry = entries.get(position);
         if (entry != null) {
             EntryImpl cachedEntry = EntryImpl.create(entry);
@@ -258,6 +291,7 @@ public class EntryCacheImpl implements EntryCache {
             log.debug("[{}] Reading entries range ledger {}: {} to {}", ml.getName(), ledgerId, firstEntry, lastEntry);
         }
 
+        manager.recordCacheAccess(this);
         Collection<EntryImpl> cachedEntries = entries.getRange(firstPosition, lastPosition);
 
         if (cachedEntries.size() == entriesToRead) {
@@ -284,10 +318,13 @@ public class EntryCacheImpl implements EntryCache {
                 cachedEntries.forEach(entry -> entry.release());
             }
 
-            // Read all the entries from bookkeeper
-            lh.readAsync(firstEntry, lastEntry).whenCompleteAsync(
-                    (ledgerEntries, exception) -> {
+            // Read all the entries from bookkeeper, sharing the reads already in progress for the same entries
+            readFromStorage(lh, firstEntry, lastEntry).whenCompleteAsync(
+                    (entriesToReturn, exception) -> {
                         if (exception != null) {
+                            if (exception instanceof CompletionException) {
+                                exception = exception.getCause();
+                            }
                             if (exception instanceof BKException
                                 && ((BKException)exception).getCode() == BKException.Code.TooManyRequestsException) {
                                 callback.readEntriesFailed(createManagedLedgerException(exception), ctx);
@@ -302,25 +339,15 @@ public class EntryCacheImpl implements EntryCache {
                         checkNotNull(ml.getName());
                         checkNotNull(ml.getExecutor());
 
-                        try {
-                            // We got the entries, we need to transform them to a List<> type
-                            long totalSize = 0;
-                            final List<EntryImpl> entriesToReturn
-                                = Lists.newArrayListWithExpectedSize(entriesToRead);
-                            for (LedgerEntry e : ledgerEntries) {
-                                EntryImpl entry = EntryImpl.create(e);
-
-                                entriesToReturn.add(entry);
-                                totalSize += entry.getLength();
-                            }
+                        long totalSize = 0;
+                        for (EntryImpl entry : entriesToReturn) {
+                            totalSize += entry.getLength();
+                        }
 
-                            manager.mlFactoryMBean.recordCacheMiss(entriesToReturn.size(), totalSize);
-                            ml.getMBean().addReadEntriesSample(entriesToReturn.size(), totalSize);
+                        manager.mlFactoryMBean.recordCacheMiss(entriesToReturn.size(), totalSize);
+                        ml.getMBean().addReadEntriesSample(entriesToReturn.size(), totalSize);
 
-                            callback.readEntriesComplete((List) entriesToReturn, ctx);
-                        } finally {
-                            ledgerEntries.close();
-                        }
+                        callback.readEntriesComplete((List) entriesToReturn, ctx);
                     }, ml.getExecutor().chooseThread(ml.getName()));
         }
     }
@@ -363,5 +390,169 @@ public class EntryCacheImpl implements EntryCache {
         manager.entriesRemoved(evictedSize);
     }
 
+    /**
+     * Read a range of entries from bookkeeper.
+     *
+     * <p/>The parts of the range that are already being read for other callers are served from those pending reads,
+     * and a new bookie read is only issued for the remaining parts. When many cursors replay the same backlog, this
+     * avoids reading the same entries from the bookies once per cursor.
+     *
+     * @return a future with the entries in the range, owned by the caller
+     */
+    CompletableFuture<List<EntryImpl>> readFromStorage(ReadHandle lh, long firstEntry, long lastEntry) {
+        final List<CompletableFuture<List<EntryImpl>>> parts = Lists.newArrayList();
+        final List<PendingRead> newReads = Lists.newArrayList();
+
+        synchronized (pendingReads) {
+            List<PendingRead> ledgerReads = pendingReads.computeIfAbsent(lh.getId(), ledgerId -> Lists.newArrayList());
+
+            long first = firstEntry;
+            while (first <= lastEntry) {
+                PendingRead read = null;
+                long nextReadFirstEntry = Long.MAX_VALUE;
+                for (PendingRead pendingRead : ledgerReads) {
+                    if (pendingRead.firstEntry <= first && first <= pendingRead.lastEntry) {
+                        read = pendingRead;
+                        break;
+                    } else if (pendingRead.firstEntry > first) {
+                        nextReadFirstEntry = Math.min(nextReadFirstEntry, pendingRead.firstEntry);
+                    }
+                }
+
+                long last;
+                if (read != null) {
+                    last = Math.min(lastEntry, read.lastEntry);
+                } else {
+                    // Read up to the next pending read, if any
+                    last = Math.min(lastEntry, nextReadFirstEntry - 1);
+                    read = new PendingRead(first, last);
+                    ledgerReads.add(read);
+                    newReads.add(read);
+                }
+
+                // The slice needs to be attached before the read can complete
+                parts.add(read.slice(first, last));
+                first = last + 1;
+            }
+        }
+
+        if (log.isDebugEnabled() && newReads.size() != parts.size()) {
+            log.debug("[{}] Ledger {} -- Sharing pending reads for entries: {}-{}", ml.getName(), lh.getId(),
+                    firstEntry, lastEntry);
+        }
+
+        for (PendingRead read : newReads) {
+            lh.readAsync(read.firstEntry, read.lastEntry).whenCompleteAsync((ledgerEntries, exception) -> {
+                synchronized (pendingReads) {
+                    List<PendingRead> ledgerReads = pendingReads.get(lh.getId());
+                    ledgerReads.remove(read);
+                    if (ledgerReads.isEmpty()) {
+                        pendingReads.remove(lh.getId());
+                    }
+                }
+
+                read.complete(ledgerEntries, exception);
+            }, ml.getExecutor().chooseThread(ml.getName()));
+        }
+
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+
+        CompletableFuture<List<EntryImpl>> result = new CompletableFuture<>();
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture[parts.size()])).whenCompleteAsync((ignore, ex) -> {
+            if (ex != null) {
+                // Release the entries of the parts that were successfully read
+                parts.stream().filter(part -> !part.isCompletedExceptionally())
+                        .forEach(part -> part.join().forEach(EntryImpl::release));
+                result.completeExceptionally(ex);
+            } else {
+                List<EntryImpl> entries = Lists.newArrayListWithExpectedSize((int) (lastEntry - firstEntry + 1));
+                parts.forEach(part -> entries.addAll(part.join()));
+                result.complete(entries);
+            }
+        }, ml.getExecutor().chooseThread(ml.getName()));
+        return result;
+    }
+
+    int getNumberOfPendingReads() {
+        synchronized (pendingReads) {
+            return pendingReads.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    /**
+     * A read of a range of entries from bookkeeper, whose entries are shared by all the callers that attached a
+     * slice to it before it completed.
+     */
+    private static class PendingRead {
+        final long firstEntry;
+        final long lastEntry;
+        final CompletableFuture<List<EntryImpl>> entries = new CompletableFuture<>();
+
+        PendingRead(long firstEntry, long lastEntry) {
+            this.firstEntry = firstEntry;
+            this.lastEntry = lastEntry;
+        }
+
+        CompletableFuture<List<EntryImpl>> slice(long first, long last) {
+            return entries.thenApply(readEntries -> {
+                // The read entries are consecutive, starting from firstEntry
+                int fromIndex = (int) (first - firstEntry);
+                int toIndex = (int) Math.min(last - firstEntry + 1, readEntries.size());
+                List<EntryImpl> slice = Lists.newArrayListWithExpectedSize(Math.max(toIndex - fromIndex, 0));
+                for (int i = fromIndex; i < toIndex; i++) {
+                    slice.add(EntryImpl.create(readEntries.get(i)));
+                }
+                return slice;
+            });
+        }
+
+        void complete(LedgerEntries ledgerEntries, Throwable exception) {
+            if (exception != null) {
+                entries.completeExceptionally(exception);
+                return;
+            }
+
+            List<EntryImpl> readEntries = Lists.newArrayListWithExpectedSize((int) (lastEntry - firstEntry + 1));
+            try {
+                for (LedgerEntry e : ledgerEntries) {
+                    readEntries.add(EntryImpl.create(e));
+                }
+            } finally {
+                ledgerEntries.close();
+            }
+
+            try {
+                // All the slices get their own copy of the entries while completing the future
+                entries.complete(readEntries);
+            } finally {
+                readEntries.forEach(EntryImpl::release);
+            }
+        }
+    }
+
+    /**
+     * Group the entries of each ledger in segments of consecutive entry ids.
+     */
+    static class PositionSegmenter implements KeySegmenter<PositionImpl> {
+        private final int segmentSize;
+
+        PositionSegmenter(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        @Override
+        public PositionImpl getSegmentKey(PositionImpl position) {
+            long entryId = position.getEntryId();
+            return PositionImpl.get(position.getLedgerId(), entryId - Math.floorMod(entryId, segmentSize));
+        }
+
+        @Override
+        public int getSlot(PositionImpl position) {
+            return (int) Math.floorMod(position.getEntryId(), (long) segmentSize);
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(EntryCacheImpl.class);
 }
@@ -38,6 +38,7 @@ import org.apache.bookkeeper.client.api.ReadHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,11 +69,20 @@ public class EntryCacheManager {
         this.maxSize = factory.getConfig().getMaxCacheSize();
         this.evictionTriggerThreshold = (long) (maxSize * evictionTriggerThresholdPercent);
         this.cacheEvictionWatermak = factory.getConfig().getCacheEvictionWatermark();
-        this.evictionPolicy = new EntryCacheDefaultEvictionPolicy();
+        this.evictionPolicy = createEvictionPolicy(factory.getConfig().getCacheEvictionPolicyClassName());
         this.mlFactory = factory;
         this.mlFactoryMBean = factory.mbean;
 
-        log.info("Initialized managed-ledger entry cache of {} Mb", maxSize / MB);
+        log.info("Initialized managed-ledger entry cache of {} Mb with {} eviction policy", maxSize / MB,
+                evictionPolicy.getName());
+    }
+
+    private static EntryCacheEvictionPolicy createEvictionPolicy(String className) {
+        try {
+            return (EntryCacheEvictionPolicy) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid cache eviction policy: " + className, e);
+        }
     }
 
     public EntryCache getEntryCache(ManagedLedgerImpl ml) {
@@ -81,7 +91,9 @@ public class EntryCacheManager {
             return new EntryCacheDisabled(ml);
         }
 
-        EntryCache newEntryCache = new EntryCacheImpl(this, ml, mlFactory.getConfig().isCopyEntriesInCache());
+        ManagedLedgerFactoryConfig config = mlFactory.getConfig();
+        EntryCache newEntryCache = new EntryCacheImpl(this, ml, config.isCopyEntriesInCache(),
+                config.getEntryCacheType(), config.getEntryCacheSegmentSize());
         EntryCache currentEntryCache = caches.putIfAbsent(ml.getName(), newEntryCache);
         if (currentEntryCache != null) {
             return currentEntryCache;
@@ -135,6 +147,22 @@ public class EntryCacheManager {
         return currentSize < maxSize;
     }
 
+    /**
+     * Check whether a new entry can be inserted in the given cache. Once the cache usage is above the eviction
+     * watermark, the eviction policy gets to decide which caches are worth the space.
+     */
+    boolean shouldAdmit(EntryCache cache) {
+        return currentSize.get() < maxSize * cacheEvictionWatermak || evictionPolicy.shouldAdmit(cache);
+    }
+
+    void recordCacheAccess(EntryCache cache) {
+        evictionPolicy.recordAccess(cache);
+    }
+
+    String getEvictionPolicyName() {
+        return evictionPolicy.getName();
+    }
+
     void entryAdded(long size) {
         currentSize.addAndGet(size);
     }
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Eviction policy that ranks the caches of all the managed ledgers by access frequency and recency.
+ *
+ * <p/>Reads going through each cache are counted in a small count-min sketch, whose counters are halved every time
+ * a fixed number of accesses has been sampled, so that the frequency reflects a sliding window (TinyLFU). When an
+ * eviction is needed, the caches with the lowest frequency are evicted first, using the time of the last access to
+ * break ties.
+ *
+ * <p/>When the cache usage is above the eviction watermark, new entries are only admitted in caches that are at least
+ * as frequently accessed as the coldest cache that was retained by the last eviction. This prevents a topic that is
+ * written to but not read from pushing out the entries of tailing readers.
+ */
+public class EntryCacheTinyLfuEvictionPolicy implements EntryCacheEvictionPolicy {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1024;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int DEFAULT_SAMPLE_SIZE = 10 * SKETCH_WIDTH;
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L };
+
+    private final AtomicIntegerArray sketch = new AtomicIntegerArray(SKETCH_DEPTH * SKETCH_WIDTH);
+    private final AtomicLong samples = new AtomicLong();
+    private final int sampleSize;
+    private final ConcurrentMap<String, Long> lastAccessTimestamps = Maps.newConcurrentMap();
+
+    // Frequency of the coldest cache that was still holding entries after the last eviction
+    private volatile int victimFrequency = 0;
+
+    public EntryCacheTinyLfuEvictionPolicy() {
+        this(DEFAULT_SAMPLE_SIZE);
+    }
+
+    EntryCacheTinyLfuEvictionPolicy(int sampleSize) {
+        checkArgument(sampleSize > 0);
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public void recordAccess(EntryCache cache) {
+        String name = cache.getName();
+        int hash = spread(name.hashCode());
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            increment(indexOf(hash, i));
+        }
+
+        lastAccessTimestamps.put(name, System.nanoTime());
+
+        if (samples.incrementAndGet() % sampleSize == 0) {
+            age();
+        }
+    }
+
+    @Override
+    public boolean shouldAdmit(EntryCache cache) {
+        return frequency(cache.getName()) >= victimFrequency;
+    }
+
+    @Override
+    public void doEviction(List<EntryCache> caches, long sizeToFree) {
+        checkArgument(sizeToFree > 0);
+        checkArgument(!caches.isEmpty());
+
+        Set<String> names = Sets.newHashSetWithExpectedSize(caches.size());
+        List<RankedCache> ranking = Lists.newArrayListWithExpectedSize(caches.size());
+        for (EntryCache cache : caches) {
+            names.add(cache.getName());
+
+            long size = cache.getSize();
+            if (size > 0) {
+                ranking.add(new RankedCache(cache, frequency(cache.getName()),
+                        lastAccessTimestamps.getOrDefault(cache.getName(), Long.MIN_VALUE), size));
+            }
+        }
+
+        // Forget about the caches that were removed since the last eviction
+        lastAccessTimestamps.keySet().retainAll(names);
+
+        // Least valuable caches first: least frequently accessed, then least recently accessed, then biggest
+        ranking.sort(Comparator.<RankedCache> comparingInt(r -> r.frequency)
+                .thenComparingLong(r -> r.lastAccess)
+                .thenComparing(Comparator.<RankedCache> comparingLong(r -> r.size).reversed()));
+
+        int evictedEntries = 0;
+        long evictedSize = 0;
+        int evictedCaches = 0;
+        int retainedFrequency = -1;
+
+        for (RankedCache ranked : ranking) {
+            if (evictedSize >= sizeToFree) {
+                if (retainedFrequency < 0) {
+                    retainedFrequency = ranked.frequency;
+                }
+                break;
+            }
+
+            long singleCacheSizeToFree = Math.min(sizeToFree - evictedSize, ranked.cache.getSize());
+            if (singleCacheSizeToFree <= 0) {
+                // The entries of this cache have been removed since we've computed the ranking
+                continue;
+            }
+
+            log.debug("Evicting {} from cache {} with frequency {}", singleCacheSizeToFree, ranked.cache.getName(),
+                    ranked.frequency);
+
+            Pair<Integer, Long> evicted = ranked.cache.evictEntries(singleCacheSizeToFree);
+            evictedEntries += evicted.getLeft();
+            evictedSize += evicted.getRight();
+            evictedCaches++;
+            if (evicted.getRight() < ranked.size && retainedFrequency < 0) {
+                retainedFrequency = ranked.frequency;
+            }
+        }
+
+        // When all the caches were emptied, there is no retained cache to compare with
+        victimFrequency = Math.max(retainedFrequency, 0);
+
+        log.info("Completed cache eviction. Removed {} entries from {} caches. ({} Mb)", evictedEntries,
+                evictedCaches, evictedSize / EntryCacheManager.MB);
+    }
+
+    @Override
+    public String getName() {
+        return "TinyLfu";
+    }
+
+    int frequency(String name) {
+        int hash = spread(name.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            frequency = Math.min(frequency, sketch.get(indexOf(hash, i)));
+        }
+        return frequency;
+    }
+
+    private void increment(int index) {
+        int value;
+        do {
+            value = sketch.get(index);
+            if (value >= MAX_FREQUENCY) {
+                return;
+            }
+        } while (!sketch.compareAndSet(index, value, value + 1));
+    }
+
+    /**
+     * Halve all the counters, so that the accesses that happened in the previous windows weigh less and less.
+     */
+    private void age() {
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.getAndUpdate(i, value -> value >>> 1);
+        }
+        victimFrequency >>>= 1;
+    }
+
+    private static int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return row * SKETCH_WIDTH + ((int) h & (SKETCH_WIDTH - 1));
+    }
+
+    private static int spread(int hash) {
+        int h = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+
+    private static class RankedCache {
+        final EntryCache cache;
+        final int frequency;
+        final long lastAccess;
+        final long size;
+
+        RankedCache(EntryCache cache, int frequency, long lastAccess, long size) {
+            this.cache = cache;
+            this.frequency = frequency;
+            this.lastAccess = lastAccess;
+            this.size = size;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EntryCacheTinyLfuEvictionPolicy.class);
+}
@@ -28,6 +28,7 @@ import io.netty.util.ReferenceCounted;
 
 import org.apache.bookkeeper.client.api.LedgerEntry;
 import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.EntrySummary;
 import org.apache.bookkeeper.mledger.util.AbstractCASReferenceCounted;
 
 public final class EntryImpl extends AbstractCASReferenceCounted implements Entry, Comparable<EntryImpl>, ReferenceCounted {
@@ -44,6 +45,7 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
     private long ledgerId;
     private long entryId;
     ByteBuf data;
+    private EntrySummary summary;
 
     public static EntryImpl create(LedgerEntry ledgerEntry) {
         EntryImpl entry = RECYCLER.get();
@@ -95,6 +97,7 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         entry.ledgerId = other.ledgerId;
         entry.entryId = other.entryId;
         entry.data = other.data.retainedDuplicate();
+        entry.summary = other.summary;
         entry.setRefCnt(1);
         return entry;
     }
@@ -147,6 +150,15 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         return entryId;
     }
 
+    @Override
+    public EntrySummary getSummary() {
+        return summary;
+    }
+
+    public void setSummary(EntrySummary summary) {
+        this.summary = summary;
+    }
+
     @Override
     public int compareTo(EntryImpl other) {
         return ComparisonChain.start().compare(ledgerId, other.ledgerId).compare(entryId, other.entryId).result();
@@ -162,6 +174,7 @@ public final class EntryImpl extends AbstractCASReferenceCounted implements Entr
         // This method is called whenever the ref-count of the EntryImpl reaches 0, so that now we can recycle it
         data.release();
         data = null;
+        summary = null;
         timestamp = -1;
         ledgerId = -1;
         entryId = -1;
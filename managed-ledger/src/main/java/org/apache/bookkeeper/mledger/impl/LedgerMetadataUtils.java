@@ -38,12 +38,15 @@ public final class LedgerMetadataUtils {
             = "compacted-ledger".getBytes(StandardCharsets.UTF_8);
     private static final byte[] METADATA_PROPERTY_COMPONENT_SCHEMA
             = "schema".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] METADATA_PROPERTY_COMPONENT_DELAYED_DELIVERY_BUCKET
+            = "delayed-delivery-bucket".getBytes(StandardCharsets.UTF_8);
 
     private static final String METADATA_PROPERTY_MANAGED_LEDGER_NAME = "pulsar/managed-ledger";
     private static final String METADATA_PROPERTY_CURSOR_NAME = "pulsar/cursor";
     private static final String METADATA_PROPERTY_COMPACTEDTOPIC = "pulsar/compactedTopic";
     private static final String METADATA_PROPERTY_COMPACTEDTO = "pulsar/compactedTo";
     private static final String METADATA_PROPERTY_SCHEMAID = "pulsar/schemaId";
+    private static final String METADATA_PROPERTY_TOPIC = "pulsar/topic";
 
     /**
      * Build base metadata for every ManagedLedger.
@@ -99,6 +102,22 @@ public final class LedgerMetadataUtils {
         );
     }
 
+    /**
+     * Build additional metadata for the snapshot of a delayed delivery bucket
+     *
+     * @param topicName name of the topic
+     * @param cursorName name of the subscription cursor
+     * @return an immutable map which describes the bucket snapshot
+     */
+    public static Map<String, byte[]> buildMetadataForDelayedDeliveryBucket(String topicName, String cursorName) {
+        return ImmutableMap.of(
+                METADATA_PROPERTY_APPLICATION, METADATA_PROPERTY_APPLICATION_PULSAR,
+                METADATA_PROPERTY_COMPONENT, METADATA_PROPERTY_COMPONENT_DELAYED_DELIVERY_BUCKET,
+                METADATA_PROPERTY_TOPIC, topicName.getBytes(StandardCharsets.UTF_8),
+                METADATA_PROPERTY_CURSOR_NAME, cursorName.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
     private LedgerMetadataUtils() {}
 
 }
@@ -42,10 +42,14 @@ import io.netty.util.concurrent.FastThreadLocal;
 
 import java.time.Clock;
 import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -81,6 +85,8 @@ import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.PositionBound;
 import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
 import org.apache.bookkeeper.mledger.impl.MetaStore.Stat;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.BatchedEntryDeletionIndexInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerDeletedEntries;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.LongProperty;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.MessageRange;
@@ -140,10 +146,30 @@ public class ManagedCursorImpl implements ManagedCursor {
         return position;
     };
     private final LongPairRangeSet<PositionImpl> individualDeletedMessages;
+    // Messages deleted since the last position appended to the cursor ledger, null when every position is written
+    // as a full snapshot. Guarded by the same lock as the individualDeletedMessages
+    private final LongPairRangeSet<PositionImpl> individualDeletedMessagesDelta;
+    // Number of incremental positions appended since the last full snapshot, -1 to force a full snapshot
+    private int deltasSinceSnapshot = -1;
+    private long snapshotLedgerId = -1;
+    // Positions with deltas waiting to be appended to the cursor ledger. They're queued while holding the lock, in
+    // the order their deltas were taken, and appended in that order by one thread at a time
+    private final Queue<PendingPositionAppend> pendingPositionAppends = new ConcurrentLinkedQueue<>();
+    private static final AtomicIntegerFieldUpdater<ManagedCursorImpl> POSITION_APPENDER_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(ManagedCursorImpl.class, "positionAppender");
+    @SuppressWarnings("unused")
+    private volatile int positionAppender = FALSE;
+    // Indexes of the messages deleted within batch entries that are not deleted yet, null when deletion at batch
+    // index level is disabled. The bitsets are replaced on each update and never modified in place. Updates are
+    // guarded by the same lock as the individualDeletedMessages
+    private final ConcurrentSkipListMap<PositionImpl, BitSet> batchDeletedIndexes;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     private RateLimiter markDeleteLimiter;
 
+    // Prefetched entries for sequential reads, null when read-ahead is disabled
+    private final CursorReadAhead readAhead;
+
     private boolean alwaysInactive = false;
     
     /** used temporary variables to {@link #getNumIndividualDeletedEntriesToSkip(long)} **/
@@ -211,6 +237,10 @@ public class ManagedCursorImpl implements ManagedCursor {
         this.individualDeletedMessages = config.isUnackedRangesOpenCacheSetEnabled()
                 ? new ConcurrentOpenLongPairRangeSet<PositionImpl>(4096, positionRangeConverter)
                 : new LongPairRangeSet.DefaultRangeSet<>(positionRangeConverter);
+        this.individualDeletedMessagesDelta = config.getCursorDeltasPerSnapshot() > 0
+                ? new LongPairRangeSet.DefaultRangeSet<>(positionRangeConverter)
+                : null;
+        this.batchDeletedIndexes = config.isDeletionAtBatchIndexLevelEnabled() ? new ConcurrentSkipListMap<>() : null;
         this.digestType = BookKeeper.DigestType.fromApiDigestType(config.getDigestType());
         STATE_UPDATER.set(this, State.Uninitialized);
         PENDING_MARK_DELETED_SUBMITTED_COUNT_UPDATER.set(this, 0);
@@ -227,6 +257,10 @@ public class ManagedCursorImpl implements ManagedCursor {
             // Disable mark-delete rate limiter
             markDeleteLimiter = null;
         }
+
+        this.readAhead = config.getReadAheadEntries() > 0
+                ? new CursorReadAhead(this, config.getReadAheadEntries(), config.getReadAheadMaxSizePerCursor())
+                : null;
     }
 
     @Override
@@ -253,9 +287,12 @@ public class ManagedCursorImpl implements ManagedCursor {
                     // closed and the last mark-delete position is stored in the ManagedCursorInfo itself.s
                     PositionImpl recoveredPosition = new PositionImpl(info.getMarkDeleteLedgerId(),
                             info.getMarkDeleteEntryId());
-                    if (info.getIndividualDeletedMessagesCount() > 0) {
-                        recoverIndividualDeletedMessages(info.getIndividualDeletedMessagesList());
+                    if (info.getIndividualDeletedMessagesCount() > 0
+                            || info.getIndividualDeletedMessagesPerLedgerCount() > 0) {
+                        recoverIndividualDeletedMessages(info.getIndividualDeletedMessagesList(),
+                                info.getIndividualDeletedMessagesPerLedgerList());
                     }
+                    recoverBatchDeletedIndexes(info.getBatchedEntryDeletionIndexInfoList());
 
                     Map<String, Long> recoveredProperties = Collections.emptyMap();
                     if (info.getPropertiesCount() > 0) {
@@ -344,34 +381,149 @@ public class ManagedCursorImpl implements ManagedCursor {
                     return;
                 }
 
-                Map<String, Long> recoveredProperties = Collections.emptyMap();
-                if (positionInfo.getPropertiesCount() > 0) {
-                    // Recover properties map
-                    recoveredProperties = Maps.newHashMap();
-                    for (int i = 0; i < positionInfo.getPropertiesCount(); i++) {
-                        LongProperty property = positionInfo.getProperties(i);
-                        recoveredProperties.put(property.getName(), property.getValue());
-                    }
+                ArrayDeque<PositionInfo> positionInfos = new ArrayDeque<>();
+                positionInfos.add(positionInfo);
+                if (positionInfo.getIncremental()) {
+                    // Rebuild the individually deleted messages from the last full snapshot
+                    recoverFromSnapshotAndDeltas(info, lh, lastEntryInLedger - 1, positionInfos, callback);
+                } else {
+                    recoveredFromLedger(lh, positionInfos, callback);
                 }
+            }, null);
+        }, null);
+    }
 
-                PositionImpl position = new PositionImpl(positionInfo);
-                if (positionInfo.getIndividualDeletedMessagesCount() > 0) {
-                    recoverIndividualDeletedMessages(positionInfo.getIndividualDeletedMessagesList());
+    /**
+     * Read backward the entries preceding an incremental position, until a full snapshot is found.
+     *
+     * @param positionInfos
+     *            the positions already read from the cursor ledger, in the order they were appended
+     */
+    private void recoverFromSnapshotAndDeltas(final ManagedCursorInfo info, final LedgerHandle lh,
+            final long lastEntryToRead, final ArrayDeque<PositionInfo> positionInfos, final VoidCallback callback) {
+        if (lastEntryToRead < 0) {
+            log.warn("[{}] No full snapshot found in metadata ledger {} for consumer {}, recovering from {} deltas",
+                    ledger.getName(), lh.getId(), name, positionInfos.size());
+            recoveredFromLedger(lh, positionInfos, callback);
+            return;
+        }
+
+        long firstEntryToRead = Math.max(0, lastEntryToRead - config.getCursorDeltasPerSnapshot());
+        lh.asyncReadEntries(firstEntryToRead, lastEntryToRead, (rc, lh1, seq, ctx) -> {
+            if (isBkErrorNotRecoverable(rc)) {
+                log.error("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
+                        lh.getId(), name, BKException.getMessage(rc));
+                // Rewind to oldest entry available
+                initialize(getRollbackPosition(info), Collections.emptyMap(), callback);
+                return;
+            } else if (rc != BKException.Code.OK) {
+                log.warn("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
+                        lh.getId(), name, BKException.getMessage(rc));
+                callback.operationFailed(createManagedLedgerException(rc));
+                return;
+            }
+
+            List<PositionInfo> readPositionInfos = Lists.newArrayList();
+            try {
+                while (seq.hasMoreElements()) {
+                    readPositionInfos.add(PositionInfo.parseFrom(seq.nextElement().getEntry()));
                 }
-                recoveredCursor(position, recoveredProperties, lh);
-                callback.operationComplete();
-            }, null);
+            } catch (InvalidProtocolBufferException e) {
+                callback.operationFailed(new ManagedLedgerException(e));
+                return;
+            }
+
+            for (int i = readPositionInfos.size() - 1; i >= 0; i--) {
+                PositionInfo positionInfo = readPositionInfos.get(i);
+                positionInfos.addFirst(positionInfo);
+                if (!positionInfo.getIncremental()) {
+                    recoveredFromLedger(lh, positionInfos, callback);
+                    return;
+                }
+            }
+
+            recoverFromSnapshotAndDeltas(info, lh, firstEntryToRead - 1, positionInfos, callback);
         }, null);
     }
 
-    private void recoverIndividualDeletedMessages(List<MLDataFormats.MessageRange> individualDeletedMessagesList) {
+    /**
+     * Recover the cursor from the last full snapshot appended to the cursor ledger, followed by the incremental
+     * positions appended after it.
+     */
+    private void recoveredFromLedger(LedgerHandle lh, ArrayDeque<PositionInfo> positionInfos,
+            VoidCallback callback) {
+        PositionInfo positionInfo = positionInfos.getLast();
+        Map<String, Long> recoveredProperties = Collections.emptyMap();
+        if (positionInfo.getPropertiesCount() > 0) {
+            // Recover properties map
+            recoveredProperties = Maps.newHashMap();
+            for (int i = 0; i < positionInfo.getPropertiesCount(); i++) {
+                LongProperty property = positionInfo.getProperties(i);
+                recoveredProperties.put(property.getName(), property.getValue());
+            }
+        }
+
+        PositionImpl position = new PositionImpl(positionInfo);
+        if (positionInfos.size() > 1) {
+            lock.writeLock().lock();
+            try {
+                individualDeletedMessages.clear();
+                positionInfos.forEach(pi -> addIndividualDeletedMessages(pi.getIndividualDeletedMessagesList(),
+                        pi.getIndividualDeletedMessagesPerLedgerList()));
+                // Deltas may still include messages deleted before the last mark-delete position
+                individualDeletedMessages.removeAtMost(position.getLedgerId(), position.getEntryId());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else if (positionInfo.getIndividualDeletedMessagesCount() > 0
+                || positionInfo.getIndividualDeletedMessagesPerLedgerCount() > 0) {
+            recoverIndividualDeletedMessages(positionInfo.getIndividualDeletedMessagesList(),
+                    positionInfo.getIndividualDeletedMessagesPerLedgerList());
+        }
+        recoverBatchDeletedIndexes(positionInfo.getBatchedEntryDeletionIndexInfoList());
+        recoveredCursor(position, recoveredProperties, lh);
+        callback.operationComplete();
+    }
+
+    private void recoverIndividualDeletedMessages(List<MLDataFormats.MessageRange> individualDeletedMessagesList,
+            List<LedgerDeletedEntries> individualDeletedMessagesPerLedger) {
         lock.writeLock().lock();
         try {
             individualDeletedMessages.clear();
-            individualDeletedMessagesList.forEach(messageRange -> individualDeletedMessages
-                    .addOpenClosed(messageRange.getLowerEndpoint().getLedgerId(),
-                            messageRange.getLowerEndpoint().getEntryId(), messageRange.getUpperEndpoint().getLedgerId(),
-                            messageRange.getUpperEndpoint().getEntryId()));
+            addIndividualDeletedMessages(individualDeletedMessagesList, individualDeletedMessagesPerLedger);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addIndividualDeletedMessages(List<MLDataFormats.MessageRange> individualDeletedMessagesList,
+            List<LedgerDeletedEntries> individualDeletedMessagesPerLedger) {
+        individualDeletedMessagesList.forEach(messageRange -> individualDeletedMessages
+                .addOpenClosed(messageRange.getLowerEndpoint().getLedgerId(),
+                        messageRange.getLowerEndpoint().getEntryId(), messageRange.getUpperEndpoint().getLedgerId(),
+                        messageRange.getUpperEndpoint().getEntryId()));
+        individualDeletedMessagesPerLedger.forEach(
+                deletedEntries -> UnackedRangesCodec.decode(deletedEntries, individualDeletedMessages));
+    }
+
+    private void recoverBatchDeletedIndexes(List<BatchedEntryDeletionIndexInfo> batchDeletedIndexInfoList) {
+        if (batchDeletedIndexes == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            batchDeletedIndexes.clear();
+            batchDeletedIndexInfoList.forEach(batchDeletedIndexInfo -> {
+                if (batchDeletedIndexInfo.getDeleteSetCount() > 0) {
+                    long[] array = new long[batchDeletedIndexInfo.getDeleteSetCount()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = batchDeletedIndexInfo.getDeleteSet(i);
+                    }
+                    batchDeletedIndexes.put(new PositionImpl(batchDeletedIndexInfo.getPosition().getLedgerId(),
+                            batchDeletedIndexInfo.getPosition().getEntryId()), BitSet.valueOf(array));
+                }
+            });
         } finally {
             lock.writeLock().unlock();
         }
@@ -655,7 +807,7 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
-    private boolean isClosed() {
+    boolean isClosed() {
         return state == State.Closed || state == State.Closing;
     }
 
@@ -879,6 +1031,13 @@ public class ManagedCursorImpl implements ManagedCursor {
                     lastMarkDeleteEntry = new MarkDeleteEntry(newMarkDeletePosition, Collections.emptyMap(),
                             null, null);
                     individualDeletedMessages.clear();
+                    if (individualDeletedMessagesDelta != null) {
+                        individualDeletedMessagesDelta.clear();
+                        deltasSinceSnapshot = -1;
+                    }
+                    if (batchDeletedIndexes != null) {
+                        batchDeletedIndexes.clear();
+                    }
 
                     PositionImpl oldReadPosition = readPosition;
                     if (oldReadPosition.compareTo(newPosition) >= 0) {
@@ -1022,7 +1181,8 @@ public class ManagedCursorImpl implements ManagedCursor {
     /**
      * Async replays given positions: a. before reading it filters out already-acked messages b. reads remaining entries
      * async and gives it to given ReadEntriesCallback c. returns all already-acked messages which are not replayed so,
-     * those messages can be removed by caller(Dispatcher)'s replay-list and it won't try to replay it again
+     * those messages can be removed by caller(Dispatcher)'s replay-list and it won't try to replay it again. Positions
+     * of contiguous entries of the same ledger are read with a single range read.
      *
      */
     @Override
@@ -1052,22 +1212,41 @@ public class ManagedCursorImpl implements ManagedCursor {
             lock.readLock().unlock();
         }
 
-        final int totalValidPositions = positions.size() - alreadyAcknowledgedPositions.size();
+        // Positions of contiguous entries of the same ledger are read with a single range read
+        PositionImpl[] validPositions = positions.stream()
+                .filter(position -> !alreadyAcknowledgedPositions.contains(position))
+                .map(position -> (PositionImpl) position).sorted().toArray(PositionImpl[]::new);
+        List<PositionImpl[]> runs = Lists.newArrayList();
+        int runStart = 0;
+        for (int i = 1; i <= validPositions.length; i++) {
+            if (i == validPositions.length
+                    || validPositions[i].getLedgerId() != validPositions[i - 1].getLedgerId()
+                    || validPositions[i].getEntryId() != validPositions[i - 1].getEntryId() + 1) {
+                runs.add(new PositionImpl[] { validPositions[runStart], validPositions[i - 1] });
+                runStart = i;
+            }
+        }
+
         final AtomicReference<ManagedLedgerException> exception = new AtomicReference<>();
-        ReadEntryCallback cb = new ReadEntryCallback() {
-            int pendingCallbacks = totalValidPositions;
+        class ReplayCallback implements ReadEntryCallback, ReadEntriesCallback {
+            int pendingCallbacks = runs.size();
 
             @Override
-            public synchronized void readEntryComplete(Entry entry, Object ctx) {
+            public void readEntryComplete(Entry entry, Object ctx) {
+                readEntriesComplete(Collections.singletonList(entry), ctx);
+            }
+
+            @Override
+            public synchronized void readEntriesComplete(List<Entry> readEntries, Object ctx) {
                 if (exception.get() != null) {
-                    // if there is already a failure for a different position, we should release the entry straight away
-                    // and not add it to the list
-                    entry.release();
+                    // if there is already a failure for a different position, we should release the entries straight
+                    // away and not add them to the list
+                    readEntries.forEach(Entry::release);
                     if (--pendingCallbacks == 0) {
                         callback.readEntriesFailed(exception.get(), ctx);
                     }
                 } else {
-                    entries.add(entry);
+                    entries.addAll(readEntries);
                     if (--pendingCallbacks == 0) {
                         if (sortEntries) {
                             entries.sort((e1, e2) -> ComparisonChain.start()
@@ -1080,7 +1259,12 @@ public class ManagedCursorImpl implements ManagedCursor {
             }
 
             @Override
-            public synchronized void readEntryFailed(ManagedLedgerException mle, Object ctx) {
+            public void readEntryFailed(ManagedLedgerException mle, Object ctx) {
+                readEntriesFailed(mle, ctx);
+            }
+
+            @Override
+            public synchronized void readEntriesFailed(ManagedLedgerException mle, Object ctx) {
                 log.warn("[{}][{}] Error while replaying entries", ledger.getName(), name, mle);
                 if (exception.compareAndSet(null, mle)) {
                     // release the entries just once, any further read success will release the entry straight away
@@ -1090,10 +1274,16 @@ public class ManagedCursorImpl implements ManagedCursor {
                     callback.readEntriesFailed(exception.get(), ctx);
                 }
             }
-        };
+        }
+        ReplayCallback cb = new ReplayCallback();
 
-        positions.stream().filter(position -> !alreadyAcknowledgedPositions.contains(position))
-                .forEach(p -> ledger.asyncReadEntry((PositionImpl) p, cb, ctx));
+        for (PositionImpl[] run : runs) {
+            if (run[0].getEntryId() == run[1].getEntryId()) {
+                ledger.asyncReadEntry(run[0], cb, ctx);
+            } else {
+                ledger.asyncReadEntries(run[0].getLedgerId(), run[0].getEntryId(), run[1].getEntryId(), cb, ctx);
+            }
+        }
 
         return alreadyAcknowledgedPositions;
     }
@@ -1404,6 +1594,9 @@ public class ManagedCursorImpl implements ManagedCursor {
         // markDelete-position and clear out deletedMsgSet
         markDeletePosition = PositionImpl.get(newMarkDeletePosition);
         individualDeletedMessages.removeAtMost(markDeletePosition.getLedgerId(), markDeletePosition.getEntryId());
+        if (batchDeletedIndexes != null) {
+            batchDeletedIndexes.headMap(markDeletePosition, true).clear();
+        }
 
         if (readPosition.compareTo(newMarkDeletePosition) <= 0) {
             // If the position that is mark-deleted is past the read position, it
@@ -1482,6 +1675,18 @@ public class ManagedCursorImpl implements ManagedCursor {
         internalAsyncMarkDelete(newPosition, properties, callback, ctx);
     }
 
+    @Override
+    public void asyncFlush(MarkDeleteCallback callback, Object ctx) {
+        if (isClosed()) {
+            callback.markDeleteFailed(new ManagedLedgerException("Cursor was already closed"), ctx);
+            return;
+        }
+
+        // Not subject to the mark-delete rate limiting
+        MarkDeleteEntry lastEntry = lastMarkDeleteEntry;
+        internalAsyncMarkDelete(lastEntry.newPosition, lastEntry.properties, callback, ctx);
+    }
+
     protected void internalAsyncMarkDelete(final PositionImpl newPosition, Map<String, Long> properties,
             final MarkDeleteCallback callback, final Object ctx) {
         ledger.mbean.addMarkDeleteOp();
@@ -1544,6 +1749,9 @@ public class ManagedCursorImpl implements ManagedCursor {
                 try {
                     individualDeletedMessages.removeAtMost(mdEntry.newPosition.getLedgerId(),
                             mdEntry.newPosition.getEntryId());
+                    if (batchDeletedIndexes != null) {
+                        batchDeletedIndexes.headMap(mdEntry.newPosition, true).clear();
+                    }
                 } finally {
                     lock.writeLock().unlock();
                 }
@@ -1690,6 +1898,13 @@ public class ManagedCursorImpl implements ManagedCursor {
                 PositionImpl previousPosition = ledger.getPreviousPosition(position);
                 individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(), previousPosition.getEntryId(),
                         position.getLedgerId(), position.getEntryId());
+                if (individualDeletedMessagesDelta != null) {
+                    individualDeletedMessagesDelta.addOpenClosed(previousPosition.getLedgerId(),
+                            previousPosition.getEntryId(), position.getLedgerId(), position.getEntryId());
+                }
+                if (batchDeletedIndexes != null) {
+                    batchDeletedIndexes.remove(position);
+                }
                 ++messagesConsumedCounter;
 
                 if (log.isDebugEnabled()) {
@@ -1769,6 +1984,93 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    @Override
+    public void asyncDeleteBatchIndexes(Position pos, BitSet deletedIndexes, AsyncCallbacks.DeleteCallback callback,
+            Object ctx) {
+        if (isClosed()) {
+            callback.deleteFailed(new ManagedLedgerException("Cursor was already closed"), ctx);
+            return;
+        }
+
+        if (batchDeletedIndexes == null) {
+            // The entry will only be deleted once all its messages are deleted
+            callback.deleteComplete(ctx);
+            return;
+        }
+
+        PositionImpl position = (PositionImpl) checkNotNull(pos);
+        PositionImpl currentMarkDeletePosition;
+
+        lock.writeLock().lock();
+        try {
+            if (((PositionImpl) ledger.getLastConfirmedEntry()).compareTo(position) < 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Failed to delete batch indexes at {}, ahead of last-confirmed-entry {} [{}]",
+                            ledger.getName(), position, ledger.getLastConfirmedEntry(), name);
+                }
+                callback.deleteFailed(new ManagedLedgerException("Invalid mark deleted position"), ctx);
+                return;
+            }
+
+            if (position.compareTo(markDeletePosition) <= 0
+                    || individualDeletedMessages.contains(position.getLedgerId(), position.getEntryId())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] [{}] Position was already deleted {}", ledger.getName(), name, position);
+                }
+                callback.deleteComplete(ctx);
+                return;
+            }
+
+            BitSet previousIndexes = batchDeletedIndexes.get(position);
+            BitSet newIndexes = (BitSet) deletedIndexes.clone();
+            if (previousIndexes != null) {
+                newIndexes.or(previousIndexes);
+                if (newIndexes.equals(previousIndexes)) {
+                    // No new deleted messages in the batch
+                    callback.deleteComplete(ctx);
+                    return;
+                }
+            }
+            batchDeletedIndexes.put(position, newIndexes);
+            currentMarkDeletePosition = markDeletePosition;
+
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] [{}] Deleted batch indexes {} at {}", ledger.getName(), name, newIndexes, position);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Apply rate limiting to mark-delete operations, the deleted indexes will be persisted with the next one
+        if (markDeleteLimiter != null && !markDeleteLimiter.tryAcquire()) {
+            callback.deleteComplete(ctx);
+            return;
+        }
+
+        Map<String, Long> properties = lastMarkDeleteEntry != null ? lastMarkDeleteEntry.properties
+                : Collections.emptyMap();
+        internalAsyncMarkDelete(currentMarkDeletePosition, properties, new MarkDeleteCallback() {
+            @Override
+            public void markDeleteComplete(Object ctx) {
+                callback.deleteComplete(ctx);
+            }
+
+            @Override
+            public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                callback.deleteFailed(exception, ctx);
+            }
+        }, ctx);
+    }
+
+    @Override
+    public long[] getDeletedBatchIndexesAsLongArray(Position position) {
+        if (batchDeletedIndexes == null) {
+            return null;
+        }
+        BitSet deletedIndexes = batchDeletedIndexes.get(position);
+        return deletedIndexes != null ? deletedIndexes.toLongArray() : null;
+    }
+
     /**
      * Given a list of entries, filter out the entries that have already been individually deleted.
      *
@@ -1968,6 +2270,32 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    private List<BatchedEntryDeletionIndexInfo> buildBatchEntryDeletionIndexInfoList() {
+        if (batchDeletedIndexes == null || batchDeletedIndexes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        MLDataFormats.NestedPositionInfo.Builder nestedPositionBuilder = MLDataFormats.NestedPositionInfo
+                .newBuilder();
+        BatchedEntryDeletionIndexInfo.Builder batchDeletedIndexInfoBuilder = BatchedEntryDeletionIndexInfo
+                .newBuilder();
+        List<BatchedEntryDeletionIndexInfo> result = Lists.newArrayList();
+        for (Map.Entry<PositionImpl, BitSet> entry : batchDeletedIndexes.entrySet()) {
+            if (result.size() >= config.getMaxUnackedRangesToPersist()) {
+                break;
+            }
+            nestedPositionBuilder.setLedgerId(entry.getKey().getLedgerId());
+            nestedPositionBuilder.setEntryId(entry.getKey().getEntryId());
+            batchDeletedIndexInfoBuilder.setPosition(nestedPositionBuilder.build());
+            batchDeletedIndexInfoBuilder.clearDeleteSet();
+            for (long word : entry.getValue().toLongArray()) {
+                batchDeletedIndexInfoBuilder.addDeleteSet(word);
+            }
+            result.add(batchDeletedIndexInfoBuilder.build());
+        }
+        return result;
+    }
+
     private boolean shouldPersistUnackRangesToLedger() {
         return cursorLedger != null && config.getMaxUnackedRangesToPersist() > 0
                 && individualDeletedMessages.size() > config.getMaxUnackedRangesToPersistInZk();
@@ -1993,7 +2321,16 @@ public class ManagedCursorImpl implements ManagedCursor {
 
         info.addAllProperties(buildPropertiesMap(properties));
         if (persistIndividualDeletedMessageRanges) {
-            info.addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges());
+            if (config.isUnackedRangesCompactEncodingEnabled()) {
+                List<LedgerDeletedEntries> deletedEntriesPerLedger = Lists.newArrayList();
+                List<MessageRange> crossLedgerRanges = Lists.newArrayList();
+                buildCompactIndividualDeletedMessages(deletedEntriesPerLedger, crossLedgerRanges);
+                info.addAllIndividualDeletedMessagesPerLedger(deletedEntriesPerLedger);
+                info.addAllIndividualDeletedMessages(crossLedgerRanges);
+            } else {
+                info.addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges());
+            }
+            info.addAllBatchedEntryDeletionIndexInfo(buildBatchEntryDeletionIndexInfoList());
         }
 
         if (log.isDebugEnabled()) {
@@ -2025,6 +2362,20 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
         persistPosition(-1, lastMarkDeleteEntry.newPosition, lastMarkDeleteEntry.properties, callback, ctx);
         STATE_UPDATER.set(this, State.Closed);
+        if (readAhead != null) {
+            readAhead.clear();
+        }
+    }
+
+    @Override
+    public void releaseReadAheadEntries() {
+        if (readAhead != null) {
+            readAhead.clear();
+        }
+    }
+
+    CursorReadAhead getReadAhead() {
+        return readAhead;
     }
 
     /**
@@ -2186,9 +2537,14 @@ public class ManagedCursorImpl implements ManagedCursor {
     }
 
     private List<MLDataFormats.MessageRange> buildIndividualDeletedMessageRanges() {
+        return buildIndividualDeletedMessageRanges(individualDeletedMessages);
+    }
+
+    private List<MLDataFormats.MessageRange> buildIndividualDeletedMessageRanges(
+            LongPairRangeSet<PositionImpl> deletedMessages) {
         lock.readLock().lock();
         try {
-            if (individualDeletedMessages.isEmpty()) {
+            if (deletedMessages.isEmpty()) {
                 return Collections.emptyList();
             }
 
@@ -2196,7 +2552,7 @@ public class ManagedCursorImpl implements ManagedCursor {
                     .newBuilder();
             MLDataFormats.MessageRange.Builder messageRangeBuilder = MLDataFormats.MessageRange.newBuilder();
             List<MessageRange> rangeList = Lists.newArrayList();
-            individualDeletedMessages.forEach((positionRange) -> {
+            deletedMessages.forEach((positionRange) -> {
                 PositionImpl p = positionRange.lowerEndpoint();
                 nestedPositionBuilder.setLedgerId(p.getLedgerId());
                 nestedPositionBuilder.setEntryId(p.getEntryId());
@@ -2214,13 +2570,66 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    /**
+     * Encode the individually deleted messages with {@link UnackedRangesCodec}.
+     */
+    private void buildCompactIndividualDeletedMessages(List<LedgerDeletedEntries> deletedEntriesPerLedger,
+            List<MessageRange> crossLedgerRanges) {
+        buildCompactIndividualDeletedMessages(individualDeletedMessages, deletedEntriesPerLedger, crossLedgerRanges);
+    }
+
+    private void buildCompactIndividualDeletedMessages(LongPairRangeSet<PositionImpl> deletedMessages,
+            List<LedgerDeletedEntries> deletedEntriesPerLedger, List<MessageRange> crossLedgerRanges) {
+        lock.readLock().lock();
+        try {
+            UnackedRangesCodec.encode(deletedMessages,
+                    UnackedRangesCodec.maxEncodedSize(config.getMaxUnackedRangesToPersist()),
+                    deletedEntriesPerLedger, crossLedgerRanges);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addIndividualDeletedMessages(PositionInfo.Builder piBuilder,
+            LongPairRangeSet<PositionImpl> deletedMessages) {
+        if (config.isUnackedRangesCompactEncodingEnabled()) {
+            List<LedgerDeletedEntries> deletedEntriesPerLedger = Lists.newArrayList();
+            List<MessageRange> crossLedgerRanges = Lists.newArrayList();
+            buildCompactIndividualDeletedMessages(deletedMessages, deletedEntriesPerLedger, crossLedgerRanges);
+            piBuilder.addAllIndividualDeletedMessagesPerLedger(deletedEntriesPerLedger);
+            piBuilder.addAllIndividualDeletedMessages(crossLedgerRanges);
+        } else {
+            piBuilder.addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges(deletedMessages));
+        }
+    }
+
+    /**
+     * Add to the position either the messages deleted since the previous position appended to the cursor ledger, or
+     * all the individually deleted messages when a full snapshot is due. The first position appended to a cursor
+     * ledger is always a full snapshot.
+     *
+     * <p/>Must be called while holding the write lock.
+     */
+    private void addIndividualDeletedMessagesDelta(LedgerHandle lh, PositionInfo.Builder piBuilder) {
+        if (lh.getId() == snapshotLedgerId && deltasSinceSnapshot >= 0
+                && deltasSinceSnapshot < config.getCursorDeltasPerSnapshot()) {
+            deltasSinceSnapshot++;
+            piBuilder.setIncremental(true);
+            addIndividualDeletedMessages(piBuilder, individualDeletedMessagesDelta);
+        } else {
+            deltasSinceSnapshot = 0;
+            snapshotLedgerId = lh.getId();
+            addIndividualDeletedMessages(piBuilder, individualDeletedMessages);
+        }
+        individualDeletedMessagesDelta.clear();
+    }
+
     void persistPositionToLedger(final LedgerHandle lh, MarkDeleteEntry mdEntry, final VoidCallback callback) {
         PositionImpl position = mdEntry.newPosition;
-        PositionInfo pi = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
+        PositionInfo.Builder piBuilder = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
                 .setEntryId(position.getEntryId())
-                .addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges())
-                .addAllProperties(buildPropertiesMap(mdEntry.properties)).build();
-
+                .addAllProperties(buildPropertiesMap(mdEntry.properties))
+                .addAllBatchedEntryDeletionIndexInfo(buildBatchEntryDeletionIndexInfoList());
 
         if (log.isDebugEnabled()) {
             log.debug("[{}] Cursor {} Appending to ledger={} position={}", ledger.getName(), name, lh.getId(),
@@ -2228,6 +2637,56 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
 
         checkNotNull(lh);
+        if (individualDeletedMessagesDelta != null) {
+            // Deltas are only meaningful if they are appended in the same order they have been taken. The lock is
+            // only held to take the delta and queue the position, not while it's appended.
+            lock.writeLock().lock();
+            try {
+                addIndividualDeletedMessagesDelta(lh, piBuilder);
+                pendingPositionAppends.add(new PendingPositionAppend(lh, mdEntry, piBuilder, callback));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            appendPendingPositions();
+        } else {
+            addIndividualDeletedMessages(piBuilder, individualDeletedMessages);
+            appendPositionToLedger(lh, mdEntry, piBuilder.build(), callback);
+        }
+    }
+
+    private static class PendingPositionAppend {
+        final LedgerHandle lh;
+        final MarkDeleteEntry mdEntry;
+        final PositionInfo.Builder piBuilder;
+        final VoidCallback callback;
+
+        PendingPositionAppend(LedgerHandle lh, MarkDeleteEntry mdEntry, PositionInfo.Builder piBuilder,
+                VoidCallback callback) {
+            this.lh = lh;
+            this.mdEntry = mdEntry;
+            this.piBuilder = piBuilder;
+            this.callback = callback;
+        }
+    }
+
+    private void appendPendingPositions() {
+        // A thread that finds another one appending leaves its position to it. The queue is checked again after
+        // releasing the appender, in case a position was queued in the meantime.
+        while (!pendingPositionAppends.isEmpty() && POSITION_APPENDER_UPDATER.compareAndSet(this, FALSE, TRUE)) {
+            try {
+                PendingPositionAppend append;
+                while ((append = pendingPositionAppends.poll()) != null) {
+                    appendPositionToLedger(append.lh, append.mdEntry, append.piBuilder.build(), append.callback);
+                }
+            } finally {
+                POSITION_APPENDER_UPDATER.set(this, FALSE);
+            }
+        }
+    }
+
+    private void appendPositionToLedger(final LedgerHandle lh, MarkDeleteEntry mdEntry, PositionInfo pi,
+            final VoidCallback callback) {
+        PositionImpl position = mdEntry.newPosition;
         lh.asyncAddEntry(pi.toByteArray(), (rc, lh1, entryId, ctx) -> {
             if (rc == BKException.Code.OK) {
                 if (log.isDebugEnabled()) {
@@ -2249,6 +2708,14 @@ public class ManagedCursorImpl implements ManagedCursor {
                 // If we've had a write error, the ledger will be automatically closed, we need to create a new one,
                 // in the meantime the mark-delete will be queued.
                 STATE_UPDATER.compareAndSet(ManagedCursorImpl.this, State.Open, State.NoLedger);
+                if (individualDeletedMessagesDelta != null) {
+                    lock.writeLock().lock();
+                    try {
+                        deltasSinceSnapshot = -1;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
 
                 // Before giving up, try to persist the position in the metadata store
                 persistPositionMetaStore(-1, position, mdEntry.properties, new MetaStoreCallback<Void>() {
@@ -2424,6 +2891,9 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     private void asyncDeleteCursorLedger(int retry) {
         STATE_UPDATER.set(this, State.Closed);
+        if (readAhead != null) {
+            readAhead.clear();
+        }
 
         if (cursorLedger == null || retry <= 0) {
             if (cursorLedger != null) {
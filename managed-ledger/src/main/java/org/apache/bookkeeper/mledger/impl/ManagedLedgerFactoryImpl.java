@@ -30,15 +30,19 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
@@ -87,6 +91,7 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
     private final ManagedLedgerFactoryConfig config;
     protected final OrderedScheduler scheduledExecutor;
     private final OrderedExecutor orderedExecutor;
+    private final OrderedExecutor callbackExecutor;
 
     private final ExecutorService cacheEvictionExecutor;
 
@@ -95,6 +100,9 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
     protected final ConcurrentHashMap<String, CompletableFuture<ManagedLedgerImpl>> ledgers = new ConcurrentHashMap<>();
     private final EntryCacheManager entryCacheManager;
 
+    // Size of the entries prefetched by the read-ahead of all the cursors
+    private final AtomicLong readAheadSize = new AtomicLong();
+
     private long lastStatTimestamp = System.nanoTime();
     private final ScheduledFuture<?> statsTask;
 
@@ -151,15 +159,31 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
                 .numThreads(config.getNumManagedLedgerWorkerThreads())
                 .name("bookkeeper-ml-workers")
                 .build();
+        if (config.getNumManagedLedgerCallbackThreads() > 0) {
+            callbackExecutor = OrderedExecutor.newBuilder()
+                    .numThreads(config.getNumManagedLedgerCallbackThreads())
+                    .name("bookkeeper-ml-callbacks")
+                    .build();
+        } else {
+            callbackExecutor = null;
+        }
         cacheEvictionExecutor = Executors
                 .newSingleThreadExecutor(new DefaultThreadFactory("bookkeeper-ml-cache-eviction"));
 
         this.bookkeeperFactory = bookKeeperGroupFactory;
         this.isBookkeeperManaged = isBookkeeperManaged;
         this.zookeeper = isBookkeeperManaged ? zooKeeper : null;
-        this.store = new MetaStoreImplZookeeper(zooKeeper, orderedExecutor);
         this.config = config;
         this.mbean = new ManagedLedgerFactoryMBeanImpl(this);
+        if (config.getMetadataStoreDirectory() != null) {
+            this.store = new MetaStoreImplRocksDB(config.getMetadataStoreDirectory(), orderedExecutor);
+        } else {
+            MetaStoreImplZookeeper zkStore = new MetaStoreImplZookeeper(zooKeeper, orderedExecutor);
+            this.store = config.isMetadataBatchingEnabled()
+                    ? new BatchingMetaStoreZookeeper(zkStore, zooKeeper, orderedExecutor, scheduledExecutor, mbean,
+                            config.getMetadataBatchingMaxSize(), config.getMetadataBatchingMaxDelayMicros())
+                    : zkStore;
+        }
         this.entryCacheManager = new EntryCacheManager(this);
         this.statsTask = scheduledExecutor.scheduleAtFixedRate(() -> refreshStats(), 0, StatsPeriodSeconds, TimeUnit.SECONDS);
 
@@ -323,7 +347,59 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         });
     }
 
+    @Override
+    public void asyncOpen(Map<String, ManagedLedgerConfig> configs, OpenLedgerCallback callback) {
+        if (configs.isEmpty()) {
+            return;
+        }
+
+        BulkOpen bulkOpen = new BulkOpen(configs, callback);
+        int concurrency = Math.min(Math.max(this.config.getMaxConcurrentBulkOpens(), 1), configs.size());
+        for (int i = 0; i < concurrency; i++) {
+            bulkOpen.openNext();
+        }
+    }
+
+    /**
+     * Opens a group of managed ledgers, keeping a bounded number of opens in flight: each completed open starts the
+     * next one in the queue.
+     */
+    private class BulkOpen implements OpenLedgerCallback {
+        private final Queue<Map.Entry<String, ManagedLedgerConfig>> queue;
+        private final OpenLedgerCallback callback;
+
+        BulkOpen(Map<String, ManagedLedgerConfig> configs, OpenLedgerCallback callback) {
+            this.queue = new ConcurrentLinkedQueue<>(configs.entrySet());
+            this.callback = callback;
+        }
+
+        void openNext() {
+            Map.Entry<String, ManagedLedgerConfig> entry = queue.poll();
+            if (entry != null) {
+                asyncOpen(entry.getKey(), entry.getValue(), this, entry.getKey());
+            }
+        }
 
+        @Override
+        public void openLedgerComplete(ManagedLedger ledger, Object name) {
+            openCompleted();
+            callback.openLedgerComplete(ledger, name);
+        }
+
+        @Override
+        public void openLedgerFailed(ManagedLedgerException exception, Object name) {
+            log.warn("[{}] Failed to open managed ledger in bulk open", name, exception);
+            openCompleted();
+            callback.openLedgerFailed(exception, name);
+        }
+
+        private void openCompleted() {
+            if (!queue.isEmpty()) {
+                // Already opened ledgers complete in the caller thread, hop to an executor to not grow the stack
+                orderedExecutor.execute(this::openNext);
+            }
+        }
+    }
 
     @Override
     public ReadOnlyCursor openReadOnlyCursor(String managedLedgerName, Position startPosition, ManagedLedgerConfig config)
@@ -422,6 +498,10 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         latch.await();
         log.info("{} ledgers closed", numLedgers);
 
+        if (store instanceof MetaStoreImplRocksDB) {
+            ((MetaStoreImplRocksDB) store).close();
+        }
+
         if (zookeeper != null) {
             zookeeper.close();
         }
@@ -439,6 +519,9 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
 
         scheduledExecutor.shutdown();
         orderedExecutor.shutdown();
+        if (callbackExecutor != null) {
+            callbackExecutor.shutdown();
+        }
         cacheEvictionExecutor.shutdownNow();
 
         entryCacheManager.clear();
@@ -585,6 +668,11 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         });
     }
 
+    @Override
+    public Optional<List<String>> listManagedLedgers(String prefix) throws ManagedLedgerException {
+        return store.getManagedLedgers(prefix);
+    }
+
     public MetaStore getMetaStore() {
         return store;
     }
@@ -597,6 +685,21 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         return entryCacheManager;
     }
 
+    long getReadAheadSize() {
+        return readAheadSize.get();
+    }
+
+    void updateReadAheadSize(long delta) {
+        readAheadSize.addAndGet(delta);
+    }
+
+    /**
+     * @return the executor running the add entry callbacks, or null if they run on the managed ledger worker threads
+     */
+    OrderedExecutor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
     public ManagedLedgerFactoryMXBean getCacheStats() {
         return this.mbean;
     }
@@ -21,6 +21,7 @@ package org.apache.bookkeeper.mledger.impl;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryMXBean;
 import org.apache.bookkeeper.mledger.util.Rate;
+import org.apache.bookkeeper.mledger.util.StatsBuckets;
 
 @SuppressWarnings("checkstyle:javadoctype")
 public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean {
@@ -31,6 +32,11 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
     final Rate cacheMisses = new Rate();
     final Rate cacheEvictions = new Rate();
 
+    private final StatsBuckets metadataBatchSizeStats =
+            new StatsBuckets(BatchingMetaStoreZookeeper.BATCH_SIZE_BUCKETS);
+    private final StatsBuckets metadataUpdateLatencyStatsUsec =
+            new StatsBuckets(ManagedLedgerMBeanImpl.ENTRY_LATENCY_BUCKETS_USEC);
+
     public ManagedLedgerFactoryMBeanImpl(ManagedLedgerFactoryImpl factory) throws Exception {
         this.factory = factory;
     }
@@ -46,6 +52,8 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         cacheHits.calculateRate(seconds);
         cacheMisses.calculateRate(seconds);
         cacheEvictions.calculateRate(seconds);
+        metadataBatchSizeStats.refresh();
+        metadataUpdateLatencyStatsUsec.refresh();
     }
 
     public void recordCacheHit(long size) {
@@ -64,6 +72,14 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         cacheEvictions.recordEvent();
     }
 
+    public void addMetadataBatchSizeSample(int size) {
+        metadataBatchSizeStats.addValue(size);
+    }
+
+    public void addMetadataUpdateLatencySample(long latency, TimeUnit unit) {
+        metadataUpdateLatencyStatsUsec.addValue(unit.toMicros(latency));
+    }
+
     // //
 
     @Override
@@ -106,4 +122,31 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         return cacheEvictions.getCount();
     }
 
+    @Override
+    public String getCacheEvictionPolicy() {
+        return factory.getEntryCacheManager().getEvictionPolicyName();
+    }
+
+    @Override
+    public double getCacheHitsRatio() {
+        long total = cacheHits.getCount() + cacheMisses.getCount();
+        return total != 0 ? cacheHits.getCount() / (double) total : 0.0;
+    }
+
+    @Override
+    public double getCacheMissesRatio() {
+        long total = cacheHits.getCount() + cacheMisses.getCount();
+        return total != 0 ? cacheMisses.getCount() / (double) total : 0.0;
+    }
+
+    @Override
+    public long[] getMetadataBatchSizeBuckets() {
+        return metadataBatchSizeStats.getBuckets();
+    }
+
+    @Override
+    public long[] getMetadataUpdateLatencyBuckets() {
+        return metadataUpdateLatencyStatsUsec.getBuckets();
+    }
+
 }
@@ -220,6 +220,8 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     private final OrderedScheduler scheduledExecutor;
     private final OrderedExecutor executor;
+    // Runs the add entry callbacks when set, so that the executor can handle the next entries meanwhile
+    final OrderedExecutor callbackExecutor;
     final ManagedLedgerFactoryImpl factory;
     protected final ManagedLedgerMBeanImpl mbean;
     protected final Clock clock;
@@ -258,6 +260,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         this.digestType = BookKeeper.DigestType.fromApiDigestType(config.getDigestType());
         this.scheduledExecutor = scheduledExecutor;
         this.executor = orderedExecutor;
+        this.callbackExecutor = factory.getCallbackExecutor();
         TOTAL_SIZE_UPDATER.set(this, 0);
         NUMBER_OF_ENTRIES_UPDATER.set(this, 0);
         ENTRIES_ADDED_COUNTER_UPDATER.set(this, 0);
@@ -1483,6 +1486,28 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     }
 
+    /**
+     * Read the contiguous entries [firstEntry, lastEntry] of a ledger with a single read.
+     */
+    void asyncReadEntries(long ledgerId, long firstEntry, long lastEntry, ReadEntriesCallback callback, Object ctx) {
+        LedgerHandle currentLedger = this.currentLedger;
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Reading entries ledger {}: {}-{}", name, ledgerId, firstEntry, lastEntry);
+        }
+        if (ledgerId == currentLedger.getId()) {
+            asyncReadEntry(currentLedger, firstEntry, lastEntry, false, callback, ctx);
+        } else {
+            getLedgerHandle(ledgerId).thenAccept(ledger -> {
+                asyncReadEntry(ledger, firstEntry, lastEntry, false, callback, ctx);
+            }).exceptionally(ex -> {
+                log.error("[{}] Error opening ledger {} for reading entries {}-{} - {}", name, ledgerId, firstEntry,
+                        lastEntry, ex.getMessage());
+                callback.readEntriesFailed(ManagedLedgerException.getManagedLedgerException(ex.getCause()), ctx);
+                return null;
+            });
+        }
+    }
+
     private void internalReadFromLedger(ReadHandle ledger, OpReadEntry opReadEntry) {
 
         // Perform the read
@@ -1528,6 +1553,11 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
             log.debug("[{}] Reading entries from ledger {} - first={} last={}", name, ledger.getId(), firstEntry,
                     lastEntry);
         }
+
+        CursorReadAhead readAhead = cursor.getReadAhead();
+        if (readAhead != null && readAhead.readEntries(ledger, firstEntry, lastEntry, lastEntryInLedger, opReadEntry)) {
+            return;
+        }
         asyncReadEntry(ledger, firstEntry, lastEntry, false, opReadEntry, opReadEntry.ctx);
     }
 
@@ -1546,17 +1576,17 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
     }
 
     protected void asyncReadEntry(ReadHandle ledger, long firstEntry, long lastEntry, boolean isSlowestReader,
-            OpReadEntry opReadEntry, Object ctx) {
+            ReadEntriesCallback callback, Object ctx) {
         if (config.getReadEntryTimeoutSeconds() > 0) {
             // set readOpCount to uniquely validate if ReadEntryCallbackWrapper is already recycled
             long readOpCount = READ_OP_COUNT_UPDATER.incrementAndGet(this);
             long createdTime = System.nanoTime();
             ReadEntryCallbackWrapper readCallback = ReadEntryCallbackWrapper.create(name, ledger.getId(), firstEntry,
-                    opReadEntry, readOpCount, createdTime, ctx);
+                    callback, readOpCount, createdTime, ctx);
             lastReadCallback = readCallback;
             entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, isSlowestReader, readCallback, readOpCount);
         } else {
-            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, isSlowestReader, opReadEntry, ctx);
+            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, isSlowestReader, callback, ctx);
         }
     }
 
@@ -19,6 +19,7 @@
 package org.apache.bookkeeper.mledger.impl;
 
 import java.util.List;
+import java.util.Optional;
 import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
@@ -135,4 +136,16 @@ public interface MetaStore {
      * @throws MetaStoreException
      */
     Iterable<String> getManagedLedgers() throws MetaStoreException;
+
+    /**
+     * Get the managed ledgers whose name starts with the given prefix, if the store can query them by name.
+     *
+     * @param prefix
+     *            the prefix of the names of the managed ledgers
+     * @return the names of the managed ledgers, or empty if the store doesn't support this query
+     * @throws MetaStoreException
+     */
+    default Optional<List<String>> getManagedLedgers(String prefix) throws MetaStoreException {
+        return Optional.empty();
+    }
 }
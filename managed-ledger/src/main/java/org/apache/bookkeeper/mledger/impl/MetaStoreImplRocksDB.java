@@ -0,0 +1,490 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.apache.bookkeeper.mledger.util.SafeRun.safeRun;
+
+import com.google.common.base.Charsets;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.BadVersionException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetadataNotFoundException;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MetaStore} that keeps the managed ledgers and cursors metadata in a local RocksDB database, for the
+ * deployments where a single broker owns all the topics (eg: standalone).
+ *
+ * <p>Each record holds the version, creation and modification timestamps of the node along with its content, and
+ * the versions behave like the ZooKeeper ones: a node is created with version 0 and every update must provide the
+ * current version, otherwise it fails with a {@link BadVersionException}. The failures carry the same
+ * {@link KeeperException} causes as {@link MetaStoreImplZookeeper}.
+ *
+ * <p>Every write is synced to the write-ahead log before its callback runs, so that the metadata survives a crash of
+ * the machine like it does with ZooKeeper. The price is the latency of a disk sync on every update, which is why the
+ * operations run on threads dedicated to the database rather than on the ordered executor of the managed ledgers.
+ * All the operations of a managed ledger, including the ones on its cursors, run in order on the same database
+ * thread, which makes the version check and the write atomic, and their callbacks are run in order on the ordered
+ * executor thread of the managed ledger.
+ */
+public class MetaStoreImplRocksDB implements MetaStore, Closeable {
+
+    // Key of a managed ledger: 'L' + name
+    private static final byte LEDGER_PREFIX = 'L';
+    // Key of a cursor: 'C' + managed ledger name + '\0' + cursor name
+    private static final byte CURSOR_PREFIX = 'C';
+    private static final byte CURSOR_SEPARATOR = 0;
+
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    static final int DEFAULT_NUM_DB_THREADS = 4;
+
+    private final OrderedExecutor executor;
+    private final OrderedExecutor dbExecutor;
+    private final Options options;
+    private final WriteOptions writeOptions;
+    private final RocksDB db;
+
+    // Guards the database against being closed while it's accessed
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed = false;
+
+    @FunctionalInterface
+    private interface Operation<T> {
+        void run(MetaStoreCallback<T> callback)
+                throws MetaStoreException, RocksDBException, InvalidProtocolBufferException;
+    }
+
+    static class RocksDBStat implements Stat {
+        private final int version;
+        private final long creationTimestamp;
+        private final long modificationTimestamp;
+
+        RocksDBStat(int version, long creationTimestamp, long modificationTimestamp) {
+            this.version = version;
+            this.creationTimestamp = creationTimestamp;
+            this.modificationTimestamp = modificationTimestamp;
+        }
+
+        @Override
+        public int getVersion() {
+            return version;
+        }
+
+        @Override
+        public long getCreationTimestamp() {
+            return creationTimestamp;
+        }
+
+        @Override
+        public long getModificationTimestamp() {
+            return modificationTimestamp;
+        }
+    }
+
+    private static class Record {
+        final RocksDBStat stat;
+        final byte[] data;
+
+        Record(RocksDBStat stat, byte[] data) {
+            this.stat = stat;
+            this.data = data;
+        }
+
+        static Record parse(byte[] value) {
+            ByteBuffer buffer = ByteBuffer.wrap(value);
+            RocksDBStat stat = new RocksDBStat(buffer.getInt(), buffer.getLong(), buffer.getLong());
+            return new Record(stat, Arrays.copyOfRange(value, RECORD_HEADER_SIZE, value.length));
+        }
+
+        byte[] serialize() {
+            return ByteBuffer.allocate(RECORD_HEADER_SIZE + data.length)
+                    .putInt(stat.version)
+                    .putLong(stat.creationTimestamp)
+                    .putLong(stat.modificationTimestamp)
+                    .put(data)
+                    .array();
+        }
+    }
+
+    /**
+     * Open the metadata store, creating the database if needed.
+     *
+     * @param path
+     *            the directory of the RocksDB database
+     * @param executor
+     *            the executor on which the callbacks are run
+     */
+    public MetaStoreImplRocksDB(String path, OrderedExecutor executor) throws MetaStoreException {
+        this(path, executor, DEFAULT_NUM_DB_THREADS);
+    }
+
+    /**
+     * Open the metadata store, creating the database if needed.
+     *
+     * @param path
+     *            the directory of the RocksDB database
+     * @param executor
+     *            the executor on which the callbacks are run
+     * @param numDbThreads
+     *            the number of threads accessing the database
+     */
+    public MetaStoreImplRocksDB(String path, OrderedExecutor executor, int numDbThreads) throws MetaStoreException {
+        this.executor = executor;
+        this.options = new Options().setCreateIfMissing(true);
+        // The metadata must survive a crash of the machine, like it does with ZooKeeper
+        this.writeOptions = new WriteOptions().setSync(true);
+        try {
+            this.db = RocksDB.open(options, path);
+        } catch (RocksDBException e) {
+            writeOptions.close();
+            options.close();
+            throw new MetaStoreException(e);
+        }
+        this.dbExecutor = OrderedExecutor.newBuilder()
+                .numThreads(numDbThreads)
+                .name("bookkeeper-ml-metadata-store")
+                .build();
+        log.info("Opened managed ledgers metadata store at {}", path);
+    }
+
+    @Override
+    public void getManagedLedgerInfo(String ledgerName, boolean createIfMissing,
+            MetaStoreCallback<ManagedLedgerInfo> callback) {
+        execute(ledgerName, callback, cb -> {
+            byte[] key = ledgerKey(ledgerName);
+            Record record = get(key);
+            if (record != null) {
+                cb.operationComplete(ManagedLedgerInfo.parseFrom(record.data), record.stat);
+            } else if (createIfMissing) {
+                log.info("Creating managed ledger metadata for {}", ledgerName);
+                long now = System.currentTimeMillis();
+                record = new Record(new RocksDBStat(0, now, now), new byte[0]);
+                db.put(writeOptions, key, record.serialize());
+                cb.operationComplete(ManagedLedgerInfo.getDefaultInstance(), record.stat);
+            } else {
+                // Tried to open a managed ledger but it doesn't exist and we shouldn't creating it at this point
+                cb.operationFailed(
+                        new MetadataNotFoundException(KeeperException.create(Code.NONODE, ledgerName)));
+            }
+        });
+    }
+
+    @Override
+    public void asyncUpdateLedgerIds(String ledgerName, ManagedLedgerInfo mlInfo, Stat stat,
+            MetaStoreCallback<Void> callback) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Updating metadata version={} with content={}", ledgerName, stat.getVersion(), mlInfo);
+        }
+        execute(ledgerName, callback,
+                cb -> update(ledgerName, ledgerKey(ledgerName), mlInfo.toByteArray(), stat, cb));
+    }
+
+    @Override
+    public void getCursors(String ledgerName, MetaStoreCallback<List<String>> callback) {
+        execute(ledgerName, callback, cb -> {
+            Record ledgerRecord = get(ledgerKey(ledgerName));
+            if (ledgerRecord == null) {
+                cb.operationFailed(new MetaStoreException(KeeperException.create(Code.NONODE, ledgerName)));
+                return;
+            }
+
+            byte[] prefix = cursorKey(ledgerName, "");
+            List<String> cursors = new ArrayList<>();
+            try (RocksIterator iterator = db.newIterator()) {
+                for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix);
+                        iterator.next()) {
+                    byte[] key = iterator.key();
+                    cursors.add(new String(key, prefix.length, key.length - prefix.length, Charsets.UTF_8));
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Get cursors completed: {}", ledgerName, cursors);
+            }
+            cb.operationComplete(cursors, ledgerRecord.stat);
+        });
+    }
+
+    @Override
+    public void asyncGetCursorInfo(String ledgerName, String cursorName,
+            MetaStoreCallback<ManagedCursorInfo> callback) {
+        execute(ledgerName, callback, cb -> {
+            Record record = get(cursorKey(ledgerName, cursorName));
+            if (record == null) {
+                cb.operationFailed(new MetaStoreException(
+                        KeeperException.create(Code.NONODE, ledgerName + "/" + cursorName)));
+            } else {
+                cb.operationComplete(ManagedCursorInfo.parseFrom(record.data), record.stat);
+            }
+        });
+    }
+
+    @Override
+    public void asyncUpdateCursorInfo(String ledgerName, String cursorName, ManagedCursorInfo info, Stat stat,
+            MetaStoreCallback<Void> callback) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] [{}] Updating cursor info ledgerId={} mark-delete={}:{}", ledgerName, cursorName,
+                    info.getCursorsLedgerId(), info.getMarkDeleteLedgerId(), info.getMarkDeleteEntryId());
+        }
+        execute(ledgerName, callback, cb -> {
+            byte[] key = cursorKey(ledgerName, cursorName);
+            if (stat != null) {
+                update(ledgerName + "/" + cursorName, key, info.toByteArray(), stat, cb);
+            } else if (get(ledgerKey(ledgerName)) == null) {
+                // Like a ZooKeeper node, the cursor can only be created under an existing managed ledger, and once
+                cb.operationFailed(new MetaStoreException(KeeperException.create(Code.NONODE, ledgerName)));
+            } else if (get(key) != null) {
+                cb.operationFailed(new MetaStoreException(
+                        KeeperException.create(Code.NODEEXISTS, ledgerName + "/" + cursorName)));
+            } else {
+                long now = System.currentTimeMillis();
+                Record record = new Record(new RocksDBStat(0, now, now), info.toByteArray());
+                db.put(writeOptions, key, record.serialize());
+                cb.operationComplete(null, record.stat);
+            }
+        });
+    }
+
+    @Override
+    public void asyncRemoveCursor(String ledgerName, String cursorName, MetaStoreCallback<Void> callback) {
+        log.info("[{}] Remove consumer={}", ledgerName, cursorName);
+        execute(ledgerName, callback, cb -> {
+            byte[] key = cursorKey(ledgerName, cursorName);
+            if (get(key) == null) {
+                cb.operationFailed(new MetaStoreException(
+                        KeeperException.create(Code.NONODE, ledgerName + "/" + cursorName)));
+            } else {
+                db.delete(writeOptions, key);
+                cb.operationComplete(null, null);
+            }
+        });
+    }
+
+    @Override
+    public void removeManagedLedger(String ledgerName, MetaStoreCallback<Void> callback) {
+        log.info("[{}] Remove ManagedLedger", ledgerName);
+        execute(ledgerName, callback, cb -> {
+            byte[] key = ledgerKey(ledgerName);
+            byte[] cursorsPrefix = cursorKey(ledgerName, "");
+            boolean hasCursors;
+            try (RocksIterator iterator = db.newIterator()) {
+                iterator.seek(cursorsPrefix);
+                hasCursors = iterator.isValid() && startsWith(iterator.key(), cursorsPrefix);
+            }
+
+            if (get(key) == null) {
+                cb.operationFailed(new MetaStoreException(KeeperException.create(Code.NONODE, ledgerName)));
+            } else if (hasCursors) {
+                cb.operationFailed(new MetaStoreException(KeeperException.create(Code.NOTEMPTY, ledgerName)));
+            } else {
+                db.delete(writeOptions, key);
+                cb.operationComplete(null, null);
+            }
+        });
+    }
+
+    @Override
+    public Iterable<String> getManagedLedgers() throws MetaStoreException {
+        List<String> ledgers = new ArrayList<>();
+        byte[] prefix = new byte[] { LEDGER_PREFIX };
+        lock.readLock().lock();
+        try {
+            checkNotClosed();
+            try (RocksIterator iterator = db.newIterator()) {
+                for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix);
+                        iterator.next()) {
+                    byte[] key = iterator.key();
+                    ledgers.add(new String(key, 1, key.length - 1, Charsets.UTF_8));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ledgers;
+    }
+
+    @Override
+    public Optional<List<String>> getManagedLedgers(String prefix) throws MetaStoreException {
+        List<String> ledgers = new ArrayList<>();
+        byte[] keyPrefix = ledgerKey(prefix);
+        lock.readLock().lock();
+        try {
+            checkNotClosed();
+            try (RocksIterator iterator = db.newIterator()) {
+                for (iterator.seek(keyPrefix); iterator.isValid() && startsWith(iterator.key(), keyPrefix);
+                        iterator.next()) {
+                    byte[] key = iterator.key();
+                    ledgers.add(new String(key, 1, key.length - 1, Charsets.UTF_8));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Optional.of(ledgers);
+    }
+
+    @Override
+    public void close() {
+        // Let the pending operations complete first
+        dbExecutor.shutdown();
+        try {
+            dbExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            db.close();
+            writeOptions.close();
+            options.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Run an operation on the database thread of the managed ledger, and its callback on the ordered executor thread
+     * of the managed ledger. The database can't be closed while the operation runs, since accessing a closed
+     * database crashes the process.
+     */
+    private <T> void execute(String ledgerName, MetaStoreCallback<T> callback, Operation<T> operation) {
+        MetaStoreCallback<T> executorCallback = new MetaStoreCallback<T>() {
+            @Override
+            public void operationComplete(T result, Stat stat) {
+                executor.executeOrdered(ledgerName, safeRun(() -> callback.operationComplete(result, stat)));
+            }
+
+            @Override
+            public void operationFailed(MetaStoreException e) {
+                executor.executeOrdered(ledgerName, safeRun(() -> callback.operationFailed(e)));
+            }
+        };
+
+        try {
+            dbExecutor.executeOrdered(ledgerName, safeRun(() -> {
+                lock.readLock().lock();
+                try {
+                    checkNotClosed();
+                    operation.run(executorCallback);
+                } catch (MetaStoreException e) {
+                    executorCallback.operationFailed(e);
+                } catch (RocksDBException | InvalidProtocolBufferException e) {
+                    executorCallback.operationFailed(new MetaStoreException(e));
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            executorCallback.operationFailed(
+                    new MetaStoreException(new IllegalStateException("The metadata store is closed")));
+        }
+    }
+
+    private void checkNotClosed() throws MetaStoreException {
+        if (closed) {
+            throw new MetaStoreException(new IllegalStateException("The metadata store is closed"));
+        }
+    }
+
+    private void update(String name, byte[] key, byte[] data, Stat stat, MetaStoreCallback<Void> callback)
+            throws RocksDBException {
+        Record record = get(key);
+        if (record == null) {
+            callback.operationFailed(new MetaStoreException(KeeperException.create(Code.NONODE, name)));
+        } else if (record.stat.version != stat.getVersion()) {
+            // Content has been modified since our last read
+            callback.operationFailed(new BadVersionException(KeeperException.create(Code.BADVERSION, name)));
+        } else {
+            RocksDBStat newStat = new RocksDBStat(record.stat.version + 1, record.stat.creationTimestamp,
+                    System.currentTimeMillis());
+            db.put(writeOptions, key, new Record(newStat, data).serialize());
+            callback.operationComplete(null, newStat);
+        }
+    }
+
+    private Record get(byte[] key) throws RocksDBException {
+        byte[] value = db.get(key);
+        return value != null ? Record.parse(value) : null;
+    }
+
+    private static byte[] ledgerKey(String ledgerName) {
+        byte[] name = ledgerName.getBytes(Charsets.UTF_8);
+        byte[] key = new byte[name.length + 1];
+        key[0] = LEDGER_PREFIX;
+        System.arraycopy(name, 0, key, 1, name.length);
+        return key;
+    }
+
+    private static byte[] cursorKey(String ledgerName, String cursorName) {
+        byte[] ledger = ledgerName.getBytes(Charsets.UTF_8);
+        byte[] cursor = cursorName.getBytes(Charsets.UTF_8);
+        return ByteBuffer.allocate(ledger.length + cursor.length + 2)
+                .put(CURSOR_PREFIX)
+                .put(ledger)
+                .put(CURSOR_SEPARATOR)
+                .put(cursor)
+                .array();
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MetaStoreImplRocksDB.class);
+}
@@ -55,12 +55,12 @@ public class MetaStoreImplZookeeper implements MetaStore {
     private static final List<ACL> Acl = ZooDefs.Ids.OPEN_ACL_UNSAFE;
 
     private static final String prefixName = "/managed-ledgers";
-    private static final String prefix = prefixName + "/";
+    static final String prefix = prefixName + "/";
 
     private final ZooKeeper zk;
     private final OrderedExecutor executor;
 
-    private static class ZKStat implements Stat {
+    static class ZKStat implements Stat {
         private final int version;
         private final long creationTimestamp;
         private final long modificationTimestamp;
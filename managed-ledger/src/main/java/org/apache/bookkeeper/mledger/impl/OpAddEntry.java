@@ -32,7 +32,9 @@ import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.AddEntryCallback;
+import org.apache.bookkeeper.mledger.EntrySummary;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.util.SafeRun;
 import org.apache.bookkeeper.util.SafeRunnable;
 import org.slf4j.Logger;
@@ -59,6 +61,7 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
     @SuppressWarnings("unused")
     ByteBuf data;
     private int dataLength;
+    private EntrySummary summary;
 
     private static final AtomicReferenceFieldUpdater<OpAddEntry, AddEntryCallback> callbackUpdater =
         AtomicReferenceFieldUpdater.newUpdater(OpAddEntry.class, AddEntryCallback.class, "callback");
@@ -69,6 +72,9 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
         op.ledger = null;
         op.data = data.retain();
         op.dataLength = data.readableBytes();
+        // Only entries that are going to be cached are summarized
+        EntrySummary.Generator summaryGenerator = ml.getConfig().getEntrySummaryGenerator();
+        op.summary = summaryGenerator != null && ml.hasActiveCursors() ? summaryGenerator.generate(data) : null;
         op.callback = callback;
         op.ctx = ctx;
         op.addOpCount = ManagedLedgerImpl.ADD_OP_COUNT_UPDATER.incrementAndGet(ml);
@@ -103,7 +109,7 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
         AddEntryCallback cb = callbackUpdater.getAndSet(this, null);
         data.release();
         if (cb != null) {
-            cb.addFailed(e, ctx);
+            invokeAddFailed(cb, e);
             ml.mbean.recordAddEntryError();
         }
     }
@@ -147,6 +153,7 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
         if (ml.hasActiveCursors()) {
             // Avoid caching entries if no cursor has been created
             EntryImpl entry = EntryImpl.create(ledger.getId(), entryId, data);
+            entry.setSummary(summary);
             // EntryCache.insert: duplicates entry by allocating new entry and data. so, recycle entry after calling
             // insert
             ml.entryCache.insert(entry);
@@ -167,7 +174,7 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
             updateLatency();
             AddEntryCallback cb = callbackUpdater.getAndSet(this, null);
             if (cb != null) {
-                cb.addComplete(lastEntry, ctx);
+                invokeAddComplete(cb, lastEntry);
                 ml.notifyCursors();
                 this.recycle();
             }
@@ -190,12 +197,34 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
 
         AddEntryCallback cb = callbackUpdater.getAndSet(this, null);
         if (cb != null) {
-            cb.addComplete(PositionImpl.get(lh.getId(), entryId), ctx);
+            invokeAddComplete(cb, PositionImpl.get(lh.getId(), entryId));
             ml.notifyCursors();
             this.recycle();
         }
     }
 
+    /**
+     * Invokes the callback on the callback executor of the managed ledger, if any. Both the successful and the failed
+     * completions go through the same executor, so they keep the order of the entries.
+     */
+    private void invokeAddComplete(AddEntryCallback cb, Position position) {
+        final Object ctx = this.ctx;
+        if (ml.callbackExecutor == null) {
+            cb.addComplete(position, ctx);
+        } else {
+            ml.callbackExecutor.executeOrdered(ml.getName(), SafeRun.safeRun(() -> cb.addComplete(position, ctx)));
+        }
+    }
+
+    private void invokeAddFailed(AddEntryCallback cb, ManagedLedgerException e) {
+        final Object ctx = this.ctx;
+        if (ml.callbackExecutor == null) {
+            cb.addFailed(e, ctx);
+        } else {
+            ml.callbackExecutor.executeOrdered(ml.getName(), SafeRun.safeRun(() -> cb.addFailed(e, ctx)));
+        }
+    }
+
     private void updateLatency() {
         ml.mbean.addAddEntryLatencySample(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
     }
@@ -255,6 +284,7 @@ class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallback {
         ledger = null;
         data = null;
         dataLength = -1;
+        summary = null;
         callback = null;
         ctx = null;
         addOpCount = -1;
@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import com.google.protobuf.CodedOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerDeletedEntries;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.MessageRange;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.NestedPositionInfo;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet;
+
+/**
+ * Compact encoding of the individually deleted messages of a cursor.
+ *
+ * <p/>The deleted entries of each ledger are stored either as a list of the lengths of the alternating deleted and
+ * not-deleted runs, or as a bitmap, whichever takes less space. With random acknowledgments each hole costs a couple
+ * of bytes, or a few bits when the holes are dense, instead of the two nested positions of a {@link MessageRange}.
+ */
+final class UnackedRangesCodec {
+
+    // Serialized size of a range of deleted messages in the legacy encoding, with typical ledger and entry ids
+    static final int LEGACY_RANGE_SIZE = 26;
+
+    private UnackedRangesCodec() {
+    }
+
+    /**
+     * @return the encoded size allowed for the individually deleted messages, that is the size of maxRanges ranges in
+     *         the legacy encoding
+     */
+    static long maxEncodedSize(int maxRanges) {
+        return (long) maxRanges * LEGACY_RANGE_SIZE;
+    }
+
+    /**
+     * Encode the ranges of deleted messages. Ranges whose endpoints are in different ledgers cannot be described
+     * without knowing the number of entries of each ledger, so they are kept as {@link MessageRange}.
+     *
+     * <p/>The encoding is bounded in bytes rather than in number of ranges: the ranges following the ones that fill
+     * maxSize are not encoded.
+     *
+     * @param deletedMessages
+     *            the individually deleted messages of the cursor
+     * @param maxSize
+     *            the maximum size in bytes of the encoded deleted messages
+     * @param ledgersDeletedEntries
+     *            the list where to add the encoded deleted entries of each ledger
+     * @param crossLedgerRanges
+     *            the list where to add the ranges that span multiple ledgers
+     */
+    static void encode(LongPairRangeSet<PositionImpl> deletedMessages, long maxSize,
+            List<LedgerDeletedEntries> ledgersDeletedEntries, List<MessageRange> crossLedgerRanges) {
+        LedgerRuns runs = new LedgerRuns();
+        // Size of the ledgers already encoded and of the cross-ledger ranges
+        long[] encodedSize = new long[1];
+
+        deletedMessages.forEach(range -> {
+            PositionImpl lower = range.lowerEndpoint();
+            PositionImpl upper = range.upperEndpoint();
+
+            if (lower.getLedgerId() == upper.getLedgerId()) {
+                if (runs.ledgerId != lower.getLedgerId()) {
+                    encodedSize[0] += runs.encodedSize();
+                    runs.encodeTo(ledgersDeletedEntries);
+                    runs.reset(lower.getLedgerId());
+                }
+                // The ranges are open on the lower endpoint
+                if (upper.getEntryId() > lower.getEntryId()) {
+                    if (encodedSize[0] + runs.encodedSizeWith(lower.getEntryId() + 1, upper.getEntryId()) > maxSize) {
+                        return false;
+                    }
+                    runs.add(lower.getEntryId() + 1, upper.getEntryId());
+                }
+            } else {
+                MessageRange messageRange = MessageRange.newBuilder()
+                        .setLowerEndpoint(NestedPositionInfo.newBuilder().setLedgerId(lower.getLedgerId())
+                                .setEntryId(lower.getEntryId()))
+                        .setUpperEndpoint(NestedPositionInfo.newBuilder().setLedgerId(upper.getLedgerId())
+                                .setEntryId(upper.getEntryId()))
+                        .build();
+                long messageRangeSize = CodedOutputStream.computeMessageSize(1, messageRange);
+                if (encodedSize[0] + runs.encodedSize() + messageRangeSize > maxSize) {
+                    return false;
+                }
+                crossLedgerRanges.add(messageRange);
+                encodedSize[0] += messageRangeSize;
+            }
+
+            return true;
+        });
+
+        runs.encodeTo(ledgersDeletedEntries);
+    }
+
+    /**
+     * Add the deleted entries of a ledger to the set of individually deleted messages.
+     */
+    static void decode(LedgerDeletedEntries deletedEntries, LongPairRangeSet<PositionImpl> deletedMessages) {
+        final long ledgerId = deletedEntries.getLedgerId();
+        final long firstEntryId = deletedEntries.getFirstEntryId();
+
+        if (deletedEntries.getRunLengthsCount() > 0) {
+            long entryId = firstEntryId;
+            for (int i = 0; i < deletedEntries.getRunLengthsCount(); i++) {
+                long length = deletedEntries.getRunLengths(i);
+                if (i % 2 == 0) {
+                    deletedMessages.addOpenClosed(ledgerId, entryId - 1, ledgerId, entryId + length - 1);
+                }
+                entryId += length;
+            }
+        } else {
+            long[] words = new long[deletedEntries.getBitmapCount()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = deletedEntries.getBitmap(i);
+            }
+
+            BitSet bitmap = BitSet.valueOf(words);
+            int start = bitmap.nextSetBit(0);
+            while (start >= 0) {
+                int end = bitmap.nextClearBit(start);
+                deletedMessages.addOpenClosed(ledgerId, firstEntryId + start - 1, ledgerId, firstEntryId + end - 1);
+                start = bitmap.nextSetBit(end);
+            }
+        }
+    }
+
+    /**
+     * Runs of deleted entries of a single ledger, sorted by entry id.
+     */
+    private static class LedgerRuns {
+        long ledgerId = -1;
+        long[] starts = new long[16];
+        long[] ends = new long[16];
+        int size = 0;
+        // Size of the run lengths of the runs added so far
+        long runsSize = 0;
+
+        void reset(long ledgerId) {
+            this.ledgerId = ledgerId;
+            this.size = 0;
+            this.runsSize = 0;
+        }
+
+        void add(long start, long end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            runsSize += addedRunsSize(start, end);
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        /**
+         * @return the serialized size of the deleted entries of the ledger, with the smaller of the two encodings
+         */
+        long encodedSize() {
+            return size == 0 ? 0 : encodedSize(starts[0], ends[size - 1], runsSize);
+        }
+
+        /**
+         * @return the serialized size of the deleted entries of the ledger, if the run [start, end] was added
+         */
+        long encodedSizeWith(long start, long end) {
+            long firstEntryId = size == 0 ? start : starts[0];
+            return encodedSize(firstEntryId, end, runsSize + addedRunsSize(start, end));
+        }
+
+        private long addedRunsSize(long start, long end) {
+            long added = CodedOutputStream.computeInt64SizeNoTag(end - start + 1);
+            if (size > 0) {
+                added += CodedOutputStream.computeInt64SizeNoTag(start - ends[size - 1] - 1);
+            }
+            return added;
+        }
+
+        private long encodedSize(long firstEntryId, long lastEntryId, long runsSize) {
+            long span = lastEntryId - firstEntryId + 1;
+            long bitmapSize = (span + 63) / 64 * Long.BYTES;
+            long payloadSize = bitmapSize < runsSize && span < Integer.MAX_VALUE ? bitmapSize : runsSize;
+            // Ledger and first entry ids, packed field with its tag and length, and tag and length of the record
+            return CodedOutputStream.computeInt64Size(1, ledgerId) + CodedOutputStream.computeInt64Size(2, firstEntryId)
+                    + 1 + CodedOutputStream.computeUInt64SizeNoTag(payloadSize) + payloadSize + 4;
+        }
+
+        void encodeTo(List<LedgerDeletedEntries> ledgersDeletedEntries) {
+            if (size == 0) {
+                return;
+            }
+
+            final long firstEntryId = starts[0];
+            LedgerDeletedEntries.Builder builder = LedgerDeletedEntries.newBuilder().setLedgerId(ledgerId)
+                    .setFirstEntryId(firstEntryId);
+
+            long runsSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    runsSize += CodedOutputStream.computeInt64SizeNoTag(starts[i] - ends[i - 1] - 1);
+                }
+                runsSize += CodedOutputStream.computeInt64SizeNoTag(ends[i] - starts[i] + 1);
+            }
+
+            long span = ends[size - 1] - firstEntryId + 1;
+            long bitmapSize = (span + 63) / 64 * Long.BYTES;
+
+            if (bitmapSize < runsSize && span < Integer.MAX_VALUE) {
+                BitSet bitmap = new BitSet((int) span);
+                for (int i = 0; i < size; i++) {
+                    bitmap.set((int) (starts[i] - firstEntryId), (int) (ends[i] - firstEntryId + 1));
+                }
+                for (long word : bitmap.toLongArray()) {
+                    builder.addBitmap(word);
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) {
+                        builder.addRunLengths(starts[i] - ends[i - 1] - 1);
+                    }
+                    builder.addRunLengths(ends[i] - starts[i] + 1);
+                }
+            }
+
+            ledgersDeletedEntries.add(builder.build());
+        }
+    }
+}
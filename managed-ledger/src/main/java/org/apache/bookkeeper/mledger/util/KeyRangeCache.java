@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import io.netty.util.ReferenceCounted;
+import java.util.Collection;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Cache where get() and delete() operations can be done over a range of keys.
+ *
+ * <p>Values are reference counted: the cache takes ownership of the reference passed to {@link #put}, and every value
+ * returned by {@link #get} or {@link #getRange} has been retained and needs to be released by the caller.
+ *
+ * @param <Key>
+ *            Cache key. Needs to be Comparable
+ * @param <Value>
+ *            Cache value
+ */
+public interface KeyRangeCache<Key extends Comparable<Key>, Value extends ReferenceCounted> {
+
+    /**
+     * Insert.
+     *
+     * @param key
+     * @param value
+     *            ref counted value with at least 1 ref to pass on the cache
+     * @return whether the entry was inserted in the cache
+     */
+    boolean put(Key key, Value value);
+
+    Value get(Key key);
+
+    /**
+     *
+     * @param first
+     *            the first key in the range
+     * @param last
+     *            the last key in the range (inclusive)
+     * @return a collections of the value found in cache
+     */
+    Collection<Value> getRange(Key first, Key last);
+
+    /**
+     *
+     * @param first
+     * @param last
+     * @param lastInclusive
+     * @return an pair of ints, containing the number of removed entries and the total size
+     */
+    Pair<Integer, Long> removeRange(Key first, Key last, boolean lastInclusive);
+
+    /**
+     *
+     * @param minSize
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    Pair<Integer, Long> evictLeastAccessedEntries(long minSize);
+
+    /**
+     *
+     * @param maxTimestamp the max timestamp of the entries to be evicted
+     * @return the total size of the evicted entries
+     */
+    long evictLEntriesBeforeTimestamp(long maxTimestamp);
+
+    long getSize();
+
+    /**
+     * Remove all the entries from the cache.
+     *
+     * @return the old size
+     */
+    long clear();
+}
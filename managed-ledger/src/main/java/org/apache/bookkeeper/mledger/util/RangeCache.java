@@ -38,7 +38,8 @@ import org.apache.commons.lang3.tuple.Pair;
  * @param <Value>
  *            Cache value
  */
-public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCounted> {
+public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCounted>
+        implements KeyRangeCache<Key, Value> {
     // Map from key to nodes inside the linked list
     private final ConcurrentNavigableMap<Key, Value> entries;
     private AtomicLong size; // Total size of values stored in cache
@@ -73,6 +74,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
      *            ref counted value with at least 1 ref to pass on the cache
      * @return whether the entry was inserted in the cache
      */
+    @Override
     public boolean put(Key key, Value value) {
         if (entries.putIfAbsent(key, value) == null) {
             size.addAndGet(weighter.getSize(value));
@@ -82,6 +84,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
         }
     }
 
+    @Override
     public Value get(Key key) {
         Value value = entries.get(key);
         if (value == null) {
@@ -105,6 +108,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
      *            the last key in the range (inclusive)
      * @return a collections of the value found in cache
      */
+    @Override
     public Collection<Value> getRange(Key first, Key last) {
         List<Value> values = Lists.newArrayList();
 
@@ -128,6 +132,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
      * @param lastInclusive
      * @return an pair of ints, containing the number of removed entries and the total size
      */
+    @Override
     public Pair<Integer, Long> removeRange(Key first, Key last, boolean lastInclusive) {
         Map<Key, Value> subMap = entries.subMap(first, true, last, lastInclusive);
 
@@ -155,6 +160,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
      * @param minSize
      * @return a pair containing the number of entries evicted and their total size
      */
+    @Override
     public Pair<Integer, Long> evictLeastAccessedEntries(long minSize) {
         checkArgument(minSize > 0);
 
@@ -182,6 +188,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
     * @param maxTimestamp the max timestamp of the entries to be evicted
     * @return the tota
     */
+   @Override
    public long evictLEntriesBeforeTimestamp(long maxTimestamp) {
        long removedSize = 0;
 
@@ -212,6 +219,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
         return entries.size();
     }
 
+    @Override
     public long getSize() {
         return size.get();
     }
@@ -221,6 +229,7 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
      *
      * @return the old size
      */
+    @Override
     public synchronized long clear() {
         long removedSize = 0;
 
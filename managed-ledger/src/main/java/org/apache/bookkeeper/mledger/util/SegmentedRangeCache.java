@@ -0,0 +1,357 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.Lists;
+import io.netty.util.ReferenceCounted;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.bookkeeper.mledger.util.RangeCache.TimestampExtractor;
+import org.apache.bookkeeper.mledger.util.RangeCache.Weighter;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Range cache that stores values in fixed-size array segments instead of one skip-list node per value.
+ *
+ * <p>Keys are grouped in segments through a {@link KeySegmenter}: each segment covers a contiguous range of keys and
+ * each key maps to one slot of its segment. Only the segments are kept in a sorted map, so inserting a value does not
+ * allocate any node as long as its segment already exists, and range reads and evictions are linear scans over the
+ * slot arrays.
+ *
+ * <p>Reads are lock-free. Writes and removals take the monitor of the segment they touch, which is only contended when
+ * the same segment is being written and evicted at the same time.
+ *
+ * @param <Key>
+ *            Cache key. Needs to be Comparable
+ * @param <Value>
+ *            Cache value
+ */
+public class SegmentedRangeCache<Key extends Comparable<Key>, Value extends ReferenceCounted>
+        implements KeyRangeCache<Key, Value> {
+
+    private final ConcurrentNavigableMap<Key, Segment<Value>> segments;
+    private final AtomicLong size; // Total size of values stored in cache
+    private final int segmentSize;
+    private final KeySegmenter<Key> segmenter;
+    private final Weighter<Value> weighter;
+    private final TimestampExtractor<Value> timestampExtractor;
+
+    /**
+     * Construct a new SegmentedRangeCache.
+     *
+     * @param segmentSize
+     *            number of slots in each segment
+     * @param segmenter
+     *            maps each key to its segment and to its slot within the segment
+     * @param weighter
+     *            a custom weighter to compute the size of each stored value
+     * @param timestampExtractor
+     *            extract the timestamp associated with a value
+     */
+    public SegmentedRangeCache(int segmentSize, KeySegmenter<Key> segmenter, Weighter<Value> weighter,
+            TimestampExtractor<Value> timestampExtractor) {
+        checkArgument(segmentSize > 0);
+        this.segments = new ConcurrentSkipListMap<>();
+        this.size = new AtomicLong(0);
+        this.segmentSize = segmentSize;
+        this.segmenter = segmenter;
+        this.weighter = weighter;
+        this.timestampExtractor = timestampExtractor;
+    }
+
+    @Override
+    public boolean put(Key key, Value value) {
+        Key segmentKey = segmenter.getSegmentKey(key);
+        int slot = segmenter.getSlot(key);
+
+        while (true) {
+            Segment<Value> segment = segments.get(segmentKey);
+            if (segment == null) {
+                Segment<Value> newSegment = new Segment<>(segmentSize);
+                segment = segments.putIfAbsent(segmentKey, newSegment);
+                if (segment == null) {
+                    segment = newSegment;
+                }
+            }
+
+            synchronized (segment) {
+                if (segment.closed) {
+                    // The segment was emptied and dropped concurrently, retry with a new one
+                    continue;
+                }
+
+                if (segment.slots.get(slot) != null) {
+                    return false;
+                }
+
+                segment.slots.set(slot, value);
+                ++segment.count;
+            }
+
+            size.addAndGet(weighter.getSize(value));
+            return true;
+        }
+    }
+
+    @Override
+    public Value get(Key key) {
+        Segment<Value> segment = segments.get(segmenter.getSegmentKey(key));
+        if (segment == null) {
+            return null;
+        }
+
+        return retain(segment.slots.get(segmenter.getSlot(key)));
+    }
+
+    @Override
+    public Collection<Value> getRange(Key first, Key last) {
+        List<Value> values = Lists.newArrayList();
+
+        Key firstSegment = segmenter.getSegmentKey(first);
+        Key lastSegment = segmenter.getSegmentKey(last);
+        for (Map.Entry<Key, Segment<Value>> e : segments.subMap(firstSegment, true, lastSegment, true).entrySet()) {
+            Segment<Value> segment = e.getValue();
+            int fromSlot = e.getKey().compareTo(firstSegment) == 0 ? segmenter.getSlot(first) : 0;
+            int toSlot = e.getKey().compareTo(lastSegment) == 0 ? segmenter.getSlot(last) : segmentSize - 1;
+
+            for (int i = fromSlot; i <= toSlot; i++) {
+                Value value = retain(segment.slots.get(i));
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+
+        return values;
+    }
+
+    @Override
+    public Pair<Integer, Long> removeRange(Key first, Key last, boolean lastInclusive) {
+        int removedEntries = 0;
+        long removedSize = 0;
+
+        Key firstSegment = segmenter.getSegmentKey(first);
+        Key lastSegment = segmenter.getSegmentKey(last);
+        for (Map.Entry<Key, Segment<Value>> e : segments.subMap(firstSegment, true, lastSegment, true).entrySet()) {
+            Key segmentKey = e.getKey();
+            Segment<Value> segment = e.getValue();
+            int fromSlot = segmentKey.compareTo(firstSegment) == 0 ? segmenter.getSlot(first) : 0;
+            int toSlot = segmentSize - 1;
+            if (segmentKey.compareTo(lastSegment) == 0) {
+                toSlot = lastInclusive ? segmenter.getSlot(last) : segmenter.getSlot(last) - 1;
+            }
+
+            synchronized (segment) {
+                for (int i = fromSlot; i <= toSlot && segment.count > 0; i++) {
+                    Value value = segment.slots.get(i);
+                    if (value == null) {
+                        continue;
+                    }
+
+                    removedSize += removeSlot(segment, i, value);
+                    ++removedEntries;
+                }
+                dropIfEmpty(segmentKey, segment);
+            }
+        }
+
+        size.addAndGet(-removedSize);
+        return Pair.of(removedEntries, removedSize);
+    }
+
+    @Override
+    public Pair<Integer, Long> evictLeastAccessedEntries(long minSize) {
+        checkArgument(minSize > 0);
+
+        long removedSize = 0;
+        int removedEntries = 0;
+
+        for (Map.Entry<Key, Segment<Value>> e : segments.entrySet()) {
+            if (removedSize >= minSize) {
+                break;
+            }
+
+            Segment<Value> segment = e.getValue();
+            synchronized (segment) {
+                for (int i = 0; i < segmentSize && segment.count > 0 && removedSize < minSize; i++) {
+                    Value value = segment.slots.get(i);
+                    if (value == null) {
+                        continue;
+                    }
+
+                    removedSize += removeSlot(segment, i, value);
+                    ++removedEntries;
+                }
+                dropIfEmpty(e.getKey(), segment);
+            }
+        }
+
+        size.addAndGet(-removedSize);
+        return Pair.of(removedEntries, removedSize);
+    }
+
+    @Override
+    public long evictLEntriesBeforeTimestamp(long maxTimestamp) {
+        long removedSize = 0;
+
+        outer: for (Map.Entry<Key, Segment<Value>> e : segments.entrySet()) {
+            Segment<Value> segment = e.getValue();
+            synchronized (segment) {
+                for (int i = 0; i < segmentSize && segment.count > 0; i++) {
+                    Value value = segment.slots.get(i);
+                    if (value == null) {
+                        continue;
+                    }
+
+                    if (timestampExtractor.getTimestamp(value) > maxTimestamp) {
+                        dropIfEmpty(e.getKey(), segment);
+                        break outer;
+                    }
+
+                    removedSize += removeSlot(segment, i, value);
+                }
+                dropIfEmpty(e.getKey(), segment);
+            }
+        }
+
+        size.addAndGet(-removedSize);
+        return removedSize;
+    }
+
+    /**
+     * Just for testing.
+     */
+    protected long getNumberOfEntries() {
+        long numberOfEntries = 0;
+        for (Segment<Value> segment : segments.values()) {
+            synchronized (segment) {
+                numberOfEntries += segment.count;
+            }
+        }
+        return numberOfEntries;
+    }
+
+    /**
+     * Just for testing.
+     */
+    protected int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    @Override
+    public long getSize() {
+        return size.get();
+    }
+
+    @Override
+    public synchronized long clear() {
+        long removedSize = 0;
+
+        for (Map.Entry<Key, Segment<Value>> e : segments.entrySet()) {
+            Segment<Value> segment = e.getValue();
+            synchronized (segment) {
+                for (int i = 0; i < segmentSize && segment.count > 0; i++) {
+                    Value value = segment.slots.get(i);
+                    if (value != null) {
+                        removedSize += removeSlot(segment, i, value);
+                    }
+                }
+                dropIfEmpty(e.getKey(), segment);
+            }
+        }
+
+        return size.getAndAdd(-removedSize);
+    }
+
+    /**
+     * Must be called while holding the segment monitor.
+     *
+     * @return the size of the removed value
+     */
+    private long removeSlot(Segment<Value> segment, int slot, Value value) {
+        segment.slots.set(slot, null);
+        --segment.count;
+        long valueSize = weighter.getSize(value);
+        value.release();
+        return valueSize;
+    }
+
+    /**
+     * Must be called while holding the segment monitor.
+     */
+    private void dropIfEmpty(Key segmentKey, Segment<Value> segment) {
+        if (segment.count == 0 && !segment.closed) {
+            segment.closed = true;
+            segments.remove(segmentKey, segment);
+        }
+    }
+
+    private Value retain(Value value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            value.retain();
+            return value;
+        } catch (Throwable t) {
+            // Value was already destroyed between get() and retain()
+            return null;
+        }
+    }
+
+    private static final class Segment<Value> {
+        private final AtomicReferenceArray<Value> slots;
+
+        // Both guarded by the segment monitor
+        private int count = 0;
+        private boolean closed = false;
+
+        Segment(int segmentSize) {
+            this.slots = new AtomicReferenceArray<>(segmentSize);
+        }
+    }
+
+    /**
+     * Interface of an object that is able to map keys to the segments holding them.
+     *
+     * <p>All the keys of a segment need to be greater or equal than the segment key and smaller than the key of the
+     * next segment, and slots need to follow the keys order within a segment.
+     *
+     * @param <KeyT>
+     */
+    public interface KeySegmenter<KeyT> {
+        /**
+         * @return the key identifying the segment that contains the given key
+         */
+        KeyT getSegmentKey(KeyT key);
+
+        /**
+         * @return the slot of the given key within its segment, between 0 and the segment size (exclusive)
+         */
+        int getSlot(KeyT key);
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.BadVersionException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
+import org.apache.bookkeeper.mledger.impl.MetaStore.Stat;
+import org.apache.bookkeeper.mledger.impl.MetaStoreImplZookeeper.ZKStat;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.MessageRange;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.NestedPositionInfo;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.ZooDefs;
+import org.testng.annotations.Test;
+
+public class BatchingMetaStoreZookeeperTest extends MockedBookKeeperTestCase {
+
+    private ManagedLedgerFactoryMBeanImpl mbean;
+
+    private BatchingMetaStoreZookeeper createStore(int maxBatchSize, long maxDelayMicros) throws Exception {
+        mbean = new ManagedLedgerFactoryMBeanImpl(factory);
+        return new BatchingMetaStoreZookeeper(new MetaStoreImplZookeeper(zkc, executor), zkc, executor, executor,
+                mbean, maxBatchSize, maxDelayMicros);
+    }
+
+    private void createCursorNodes(String ledgerName, int numCursors) throws Exception {
+        zkc.create("/managed-ledgers/" + ledgerName, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        for (int i = 0; i < numCursors; i++) {
+            zkc.create("/managed-ledgers/" + ledgerName + "/c" + i, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT);
+        }
+    }
+
+    private static CompletableFuture<Stat> updateCursor(MetaStore store, String ledgerName, String cursorName,
+            long markDeleteEntryId, Stat stat) {
+        ManagedCursorInfo info = ManagedCursorInfo.newBuilder().setCursorsLedgerId(-1)
+                .setMarkDeleteLedgerId(1).setMarkDeleteEntryId(markDeleteEntryId).build();
+        return updateCursor(store, ledgerName, cursorName, info, stat);
+    }
+
+    private static CompletableFuture<Stat> updateCursor(MetaStore store, String ledgerName, String cursorName,
+            ManagedCursorInfo info, Stat stat) {
+        CompletableFuture<Stat> future = new CompletableFuture<>();
+        store.asyncUpdateCursorInfo(ledgerName, cursorName, info, stat, new MetaStoreCallback<Void>() {
+            @Override
+            public void operationComplete(Void result, Stat stat) {
+                future.complete(stat);
+            }
+
+            @Override
+            public void operationFailed(MetaStoreException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Test(timeOut = 20000)
+    void updatesAreBatched() throws Exception {
+        BatchingMetaStoreZookeeper store = createStore(3, TimeUnit.MINUTES.toMicros(1));
+        createCursorNodes("my_test", 3);
+
+        // The batch is only sent once it is full
+        CompletableFuture<Stat> f0 = updateCursor(store, "my_test", "c0", 10, new ZKStat());
+        CompletableFuture<Stat> f1 = updateCursor(store, "my_test", "c1", 11, new ZKStat());
+        Thread.sleep(100);
+        assertTrue(!f0.isDone() && !f1.isDone());
+
+        CompletableFuture<Stat> f2 = updateCursor(store, "my_test", "c2", 12, new ZKStat());
+        assertEquals(f0.get().getVersion(), 1);
+        assertEquals(f1.get().getVersion(), 1);
+        assertEquals(f2.get().getVersion(), 1);
+
+        for (int i = 0; i < 3; i++) {
+            ManagedCursorInfo info = ManagedCursorInfo
+                    .parseFrom(zkc.getData("/managed-ledgers/my_test/c" + i, false, null));
+            assertEquals(info.getMarkDeleteEntryId(), 10 + i);
+        }
+
+        mbean.refreshStats(1, TimeUnit.SECONDS);
+        long[] batchSizes = mbean.getMetadataBatchSizeBuckets();
+        // One batch in the (2, 5] bucket
+        assertEquals(batchSizes[2], 1);
+        assertEquals(mbean.getMetadataUpdateLatencyBuckets().length,
+                ManagedLedgerMBeanImpl.ENTRY_LATENCY_BUCKETS_USEC.length + 1);
+    }
+
+    private static ManagedCursorInfo largeCursorInfo(long markDeleteEntryId, int size) {
+        ManagedCursorInfo.Builder builder = ManagedCursorInfo.newBuilder().setCursorsLedgerId(-1)
+                .setMarkDeleteLedgerId(1).setMarkDeleteEntryId(markDeleteEntryId);
+        long entryId = markDeleteEntryId;
+        while (builder.build().getSerializedSize() < size) {
+            for (int i = 0; i < 1000; i++) {
+                entryId += 2;
+                builder.addIndividualDeletedMessages(MessageRange.newBuilder()
+                        .setLowerEndpoint(NestedPositionInfo.newBuilder().setLedgerId(1).setEntryId(entryId))
+                        .setUpperEndpoint(NestedPositionInfo.newBuilder().setLedgerId(1).setEntryId(entryId + 1)));
+            }
+        }
+        return builder.build();
+    }
+
+    @Test(timeOut = 20000)
+    void batchesAreLimitedInBytes() throws Exception {
+        BatchingMetaStoreZookeeper store = createStore(100, TimeUnit.MINUTES.toMicros(1));
+        createCursorNodes("my_test", 5);
+
+        // Two of these cursor infos fit in a batch, but not three
+        int maxBatchBytes = BatchingMetaStoreZookeeper.DEFAULT_MAX_BATCH_BYTES;
+        List<ManagedCursorInfo> infos = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            infos.add(largeCursorInfo(10 + i, maxBatchBytes * 2 / 5));
+        }
+        // This one is larger than a batch by itself
+        infos.add(largeCursorInfo(14, maxBatchBytes + 1));
+
+        List<CompletableFuture<Stat>> futures = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            futures.add(updateCursor(store, "my_test", "c" + i, infos.get(i), new ZKStat()));
+        }
+        for (CompletableFuture<Stat> future : futures) {
+            assertEquals(future.get().getVersion(), 1);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            ManagedCursorInfo info = ManagedCursorInfo
+                    .parseFrom(zkc.getData("/managed-ledgers/my_test/c" + i, false, null));
+            assertEquals(info, infos.get(i));
+        }
+
+        mbean.refreshStats(1, TimeUnit.SECONDS);
+        long[] batchSizes = mbean.getMetadataBatchSizeBuckets();
+        // Two batches of 2 updates, and the largest update sent alone
+        assertEquals(batchSizes[0], 1);
+        assertEquals(batchSizes[1], 2);
+    }
+
+    @Test(timeOut = 20000)
+    void pendingUpdatesAreFlushedAfterDelay() throws Exception {
+        BatchingMetaStoreZookeeper store = createStore(100, 1000);
+        createCursorNodes("my_test", 1);
+
+        Stat stat = updateCursor(store, "my_test", "c0", 1, new ZKStat()).get();
+        assertEquals(stat.getVersion(), 1);
+
+        // Next update uses the new version
+        stat = updateCursor(store, "my_test", "c0", 2, stat).get();
+        assertEquals(stat.getVersion(), 2);
+    }
+
+    @Test(timeOut = 20000)
+    void badVersionInBatch() throws Exception {
+        BatchingMetaStoreZookeeper store = createStore(3, TimeUnit.MINUTES.toMicros(1));
+        createCursorNodes("my_test", 3);
+
+        // The update of c1 is based on an outdated version
+        zkc.setData("/managed-ledgers/my_test/c1", new byte[0], -1);
+
+        CompletableFuture<Stat> f0 = updateCursor(store, "my_test", "c0", 10, new ZKStat());
+        CompletableFuture<Stat> f1 = updateCursor(store, "my_test", "c1", 11, new ZKStat());
+        CompletableFuture<Stat> f2 = updateCursor(store, "my_test", "c2", 12, new ZKStat());
+
+        // The other updates of the batch are not affected
+        assertEquals(f0.get().getVersion(), 1);
+        assertEquals(f2.get().getVersion(), 1);
+        try {
+            f1.get();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertEquals(e.getCause().getClass(), BadVersionException.class);
+        }
+    }
+
+    @Test(timeOut = 20000)
+    void batchFailure() throws Exception {
+        BatchingMetaStoreZookeeper store = createStore(2, TimeUnit.MINUTES.toMicros(1));
+        createCursorNodes("my_test", 2);
+
+        zkc.failNow(Code.CONNECTIONLOSS);
+
+        CompletableFuture<Stat> f0 = updateCursor(store, "my_test", "c0", 10, new ZKStat());
+        CompletableFuture<Stat> f1 = updateCursor(store, "my_test", "c1", 11, new ZKStat());
+        for (CompletableFuture<Stat> f : Lists.newArrayList(f0, f1)) {
+            try {
+                f.get();
+                fail("should have failed");
+            } catch (ExecutionException e) {
+                assertEquals(e.getCause().getClass(), MetaStoreException.class);
+            }
+        }
+    }
+
+    @Test(timeOut = 20000)
+    void callbacksAreOrdered() throws Exception {
+        final int numCursors = 50;
+        BatchingMetaStoreZookeeper store = createStore(7, 100);
+        createCursorNodes("my_test", numCursors);
+
+        List<String> completed = Lists.newArrayList();
+        List<CompletableFuture<Stat>> futures = Lists.newArrayList();
+        CompletableFuture<Void> ledgerUpdate = new CompletableFuture<>();
+        for (int i = 0; i < numCursors; i++) {
+            String cursorName = "c" + i;
+            futures.add(updateCursor(store, "my_test", cursorName, i, new ZKStat()).thenApply(stat -> {
+                completed.add(cursorName);
+                return stat;
+            }));
+
+            if (i == numCursors / 2) {
+                store.asyncUpdateLedgerIds("my_test", ManagedLedgerInfo.newBuilder().build(), new ZKStat(),
+                        new MetaStoreCallback<Void>() {
+                            @Override
+                            public void operationComplete(Void result, Stat stat) {
+                                completed.add("ledger");
+                                ledgerUpdate.complete(null);
+                            }
+
+                            @Override
+                            public void operationFailed(MetaStoreException e) {
+                                ledgerUpdate.completeExceptionally(e);
+                            }
+                        });
+            }
+        }
+
+        for (CompletableFuture<Stat> future : futures) {
+            future.get();
+        }
+        ledgerUpdate.get();
+
+        // The callbacks of a managed ledger run on its ordered executor thread, in the order of submission
+        List<String> expected = Lists.newArrayList();
+        for (int i = 0; i < numCursors; i++) {
+            expected.add("c" + i);
+            if (i == numCursors / 2) {
+                expected.add("ledger");
+            }
+        }
+        assertEquals(completed, expected);
+    }
+}
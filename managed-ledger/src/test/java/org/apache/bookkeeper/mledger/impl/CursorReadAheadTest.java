@@ -0,0 +1,307 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedCursor.IndividualDeletedEntries;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.testng.annotations.Test;
+
+public class CursorReadAheadTest extends MockedBookKeeperTestCase {
+
+    private static final Charset Encoding = Charset.forName("UTF-8");
+
+    private ManagedLedgerImpl openLedger(String name) throws Exception {
+        // Disable the entry cache so that all the reads go to bookkeeper
+        ManagedLedgerFactoryConfig factoryConfig = new ManagedLedgerFactoryConfig();
+        factoryConfig.setMaxCacheSize(0);
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle(), factoryConfig);
+
+        ManagedLedgerConfig config = new ManagedLedgerConfig().setReadAheadEntries(10).setMaxEntriesPerLedger(25);
+        return (ManagedLedgerImpl) factory.open(name, config);
+    }
+
+    private static void addEntries(ManagedLedgerImpl ledger, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(Encoding));
+        }
+    }
+
+    private static void readAndVerify(ManagedCursor cursor, int count, int firstExpected) throws Exception {
+        List<Entry> entries = cursor.readEntries(count);
+        assertEquals(entries.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(new String(entries.get(i).getData(), Encoding), "entry-" + (firstExpected + i));
+        }
+        entries.forEach(Entry::release);
+    }
+
+    private static void waitForStagedEntries(CursorReadAhead readAhead) throws Exception {
+        for (int i = 0; i < 100 && readAhead.getNumberOfStagedEntries() == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeOut = 20000)
+    public void sequentialReads() throws Exception {
+        ManagedLedgerImpl ledger = openLedger("sequential_reads");
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        addEntries(ledger, 60);
+        CursorReadAhead readAhead = cursor.getReadAhead();
+
+        readAndVerify(cursor, 4, 0);
+        assertEquals(readAhead.getNumberOfStagedEntries(), 0);
+
+        // After the second sequential read, the next entries are prefetched
+        readAndVerify(cursor, 4, 4);
+        waitForStagedEntries(readAhead);
+        assertEquals(readAhead.getNumberOfStagedEntries(), 10);
+        assertTrue(readAhead.getStagedSize() > 0);
+
+        // All the remaining entries are read in order, across ledgers
+        for (int i = 8; i < 60; i += 4) {
+            readAndVerify(cursor, 4, i);
+        }
+        assertEquals(cursor.hasMoreEntries(), false);
+
+        ledger.close();
+        assertEquals(readAhead.getNumberOfStagedEntries(), 0);
+        assertEquals(readAhead.getStagedSize(), 0);
+    }
+
+    @Test(timeOut = 20000)
+    public void rewindDiscardsStagedEntries() throws Exception {
+        ManagedLedgerImpl ledger = openLedger("rewind_discards_staged_entries");
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        addEntries(ledger, 60);
+        CursorReadAhead readAhead = cursor.getReadAhead();
+
+        readAndVerify(cursor, 2, 0);
+        readAndVerify(cursor, 2, 2);
+        waitForStagedEntries(readAhead);
+        assertTrue(readAhead.getNumberOfStagedEntries() > 0);
+
+        cursor.rewind();
+        readAndVerify(cursor, 3, 0);
+        assertEquals(readAhead.getNumberOfStagedEntries(), 0);
+
+        ledger.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void releaseReadAheadEntries() throws Exception {
+        ManagedLedgerImpl ledger = openLedger("release_read_ahead_entries");
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        addEntries(ledger, 20);
+        CursorReadAhead readAhead = cursor.getReadAhead();
+
+        readAndVerify(cursor, 2, 0);
+        readAndVerify(cursor, 2, 2);
+        waitForStagedEntries(readAhead);
+        assertTrue(readAhead.getNumberOfStagedEntries() > 0);
+
+        cursor.releaseReadAheadEntries();
+        assertEquals(readAhead.getNumberOfStagedEntries(), 0);
+        assertEquals(readAhead.getStagedSize(), 0);
+
+        // The next reads are served from the ledger
+        readAndVerify(cursor, 4, 4);
+
+        ledger.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void sizeLimit() throws Exception {
+        ManagedLedgerFactoryConfig factoryConfig = new ManagedLedgerFactoryConfig();
+        factoryConfig.setMaxCacheSize(0);
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle(), factoryConfig);
+
+        ManagedLedgerConfig config = new ManagedLedgerConfig().setReadAheadEntries(10)
+                .setReadAheadMaxSizePerCursor(3 * 10);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("size_limit", config);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 30; i++) {
+            ledger.addEntry(new byte[10]);
+        }
+
+        CursorReadAhead readAhead = cursor.getReadAhead();
+
+        cursor.readEntries(1).forEach(Entry::release);
+        cursor.readEntries(1).forEach(Entry::release);
+        waitForStagedEntries(readAhead);
+        assertEquals(readAhead.getNumberOfStagedEntries(), 3);
+        assertEquals(readAhead.getStagedSize(), 30);
+
+        int read = 2;
+        while (cursor.hasMoreEntries()) {
+            List<Entry> entries = cursor.readEntries(2);
+            read += entries.size();
+            entries.forEach(Entry::release);
+        }
+        assertEquals(read, 30);
+
+        ledger.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void totalSizeLimit() throws Exception {
+        ManagedLedgerFactoryConfig factoryConfig = new ManagedLedgerFactoryConfig();
+        factoryConfig.setMaxCacheSize(0);
+        factoryConfig.setMaxReadAheadSize(5 * 10);
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle(), factoryConfig);
+
+        ManagedLedgerConfig config = new ManagedLedgerConfig().setReadAheadEntries(10);
+        ManagedLedgerImpl ledger1 = (ManagedLedgerImpl) factory.open("total_size_limit_1", config);
+        ManagedLedgerImpl ledger2 = (ManagedLedgerImpl) factory.open("total_size_limit_2", config);
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger1.openCursor("c1");
+        ManagedCursorImpl c2 = (ManagedCursorImpl) ledger2.openCursor("c2");
+        for (int i = 0; i < 30; i++) {
+            ledger1.addEntry(new byte[10]);
+            ledger2.addEntry(new byte[10]);
+        }
+
+        // The first cursor fills the budget of the factory, the second one can't prefetch anything
+        c1.readEntries(1).forEach(Entry::release);
+        c1.readEntries(1).forEach(Entry::release);
+        waitForStagedEntries(c1.getReadAhead());
+        assertEquals(c1.getReadAhead().getStagedSize(), 50);
+
+        c2.readEntries(1).forEach(Entry::release);
+        c2.readEntries(1).forEach(Entry::release);
+        Thread.sleep(100);
+        assertEquals(c2.getReadAhead().getNumberOfStagedEntries(), 0);
+        assertEquals(factory.getReadAheadSize(), 50);
+
+        int read = 2;
+        while (c2.hasMoreEntries()) {
+            List<Entry> entries = c2.readEntries(2);
+            read += entries.size();
+            entries.forEach(Entry::release);
+        }
+        assertEquals(read, 30);
+
+        ledger1.close();
+        ledger2.close();
+        assertEquals(factory.getReadAheadSize(), 0);
+    }
+
+    @Test(timeOut = 20000)
+    public void waitingReadSkipsEntriesMovedPast() throws Exception {
+        ManagedLedgerImpl ledger = openLedger("waiting_read_skips_entries_moved_past");
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        addEntries(ledger, 20);
+        CursorReadAhead readAhead = cursor.getReadAhead();
+
+        readAndVerify(cursor, 2, 0);
+        // Hold the prefetch of the entries 4-13, started by the second sequential read
+        CompletableFuture<Void> prefetch = bkc.promiseAfter(0);
+        readAndVerify(cursor, 2, 2);
+
+        // The cursor moves past the entries 4-6 while they are being prefetched, and waits for the next ones
+        cursor.skipEntries(7, IndividualDeletedEntries.Exclude);
+        assertEquals(((PositionImpl) cursor.getReadPosition()).getEntryId(), 7);
+        CompletableFuture<List<Entry>> read = new CompletableFuture<>();
+        cursor.asyncReadEntries(4, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                read.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                read.completeExceptionally(exception);
+            }
+        }, null);
+        assertEquals(read.isDone(), false);
+
+        prefetch.complete(null);
+        List<Entry> entries = read.get(10, TimeUnit.SECONDS);
+        assertEquals(entries.size(), 4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(new String(entries.get(i).getData(), Encoding), "entry-" + (7 + i));
+        }
+        entries.forEach(Entry::release);
+        assertEquals(readAhead.getNumberOfStagedEntries(), 3);
+
+        ledger.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void noPrefetchForSharedReadPosition() throws Exception {
+        ManagedLedgerImpl ledger = openLedger("no_prefetch_for_shared_read_position");
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        ManagedCursorImpl c2 = (ManagedCursorImpl) ledger.openCursor("c2");
+        addEntries(ledger, 60);
+
+        // Both cursors are replaying the same backlog in lockstep
+        for (int i = 0; i < 20; i += 4) {
+            readAndVerify(c1, 4, i);
+            readAndVerify(c2, 4, i);
+        }
+
+        assertEquals(c1.getReadAhead().getNumberOfStagedEntries(), 0);
+        assertEquals(c2.getReadAhead().getNumberOfStagedEntries(), 0);
+
+        ledger.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void prefetchOnceReadPositionIsNotSharedAnymore() throws Exception {
+        ManagedLedgerImpl ledger = openLedger("prefetch_once_read_position_is_not_shared_anymore");
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        ManagedCursorImpl c2 = (ManagedCursorImpl) ledger.openCursor("c2");
+        addEntries(ledger, 60);
+
+        readAndVerify(c1, 5, 0);
+        readAndVerify(c2, 5, 0);
+        readAndVerify(c1, 5, 5);
+        readAndVerify(c2, 5, 5);
+        assertEquals(c1.getReadAhead().getNumberOfStagedEntries(), 0);
+
+        // c2 stops reading, c1 moves on to the next ledger and starts prefetching
+        for (int i = 10; i < 35; i += 5) {
+            readAndVerify(c1, 5, i);
+        }
+        waitForStagedEntries(c1.getReadAhead());
+        assertTrue(c1.getReadAhead().getNumberOfStagedEntries() > 0);
+        assertEquals(c2.getReadAhead().getNumberOfStagedEntries(), 0);
+
+        ledger.close();
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("disabled_by_default");
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertEquals(cursor.getReadAhead(), null);
+        ledger.close();
+    }
+}
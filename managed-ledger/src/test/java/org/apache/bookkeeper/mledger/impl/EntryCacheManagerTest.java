@@ -32,6 +32,7 @@ import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig.EntryCacheType;
 import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -310,4 +311,95 @@ public class EntryCacheManagerTest extends MockedBookKeeperTestCase {
         factory.shutdown();
     }
 
+    @Test
+    void segmentedCache() throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaxCacheSize(100);
+        config.setEntryCacheType(EntryCacheType.Segmented);
+        config.setEntryCacheSegmentSize(2);
+
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle(), config);
+
+        EntryCacheManager cacheManager = factory.getEntryCacheManager();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+
+        cache1.insert(EntryImpl.create(1, 0, new byte[1]));
+        cache1.insert(EntryImpl.create(1, 1, new byte[2]));
+        cache1.insert(EntryImpl.create(1, 2, new byte[3]));
+        cache1.insert(EntryImpl.create(2, 0, new byte[4]));
+        cache1.insert(EntryImpl.create(2, 1, new byte[5]));
+
+        // Inserting the same position again is a no-op
+        assertEquals(cache1.insert(EntryImpl.create(1, 1, new byte[2])), false);
+
+        assertEquals(cache1.getSize(), 15);
+        assertEquals(cacheManager.getSize(), 15);
+
+        // Should remove entries 1:0 and 1:1
+        cache1.invalidateEntries(new PositionImpl(1, 2));
+        assertEquals(cache1.getSize(), 12);
+        assertEquals(cacheManager.getSize(), 12);
+
+        cache1.invalidateAllEntries(1);
+        assertEquals(cache1.getSize(), 9);
+        assertEquals(cacheManager.getSize(), 9);
+
+        cache1.evictEntries(4);
+        assertEquals(cache1.getSize(), 5);
+        assertEquals(cacheManager.getSize(), 5);
+
+        cacheManager.removeEntryCache("cache1");
+        assertEquals(cacheManager.getSize(), 0);
+    }
+
+    @Test
+    void tinyLfuEvictionPolicy() throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaxCacheSize(10);
+        config.setCacheEvictionWatermark(0.8);
+        config.setCacheEvictionPolicyClassName(EntryCacheTinyLfuEvictionPolicy.class.getName());
+
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle(), config);
+
+        EntryCacheManager cacheManager = factory.getEntryCacheManager();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+        EntryCache cache2 = cacheManager.getEntryCache(ml2);
+
+        // cache1 is only written to, while cache2 has tailing readers
+        cache1.insert(EntryImpl.create(1, 0, new byte[1]));
+        cache1.insert(EntryImpl.create(1, 1, new byte[1]));
+        for (int i = 0; i < 5; i++) {
+            cacheManager.recordCacheAccess(cache2);
+        }
+
+        cache2.insert(EntryImpl.create(2, 0, new byte[3]));
+        cache2.insert(EntryImpl.create(2, 1, new byte[3]));
+        cache2.insert(EntryImpl.create(2, 2, new byte[2]));
+        assertEquals(cacheManager.getSize(), 10);
+
+        // Next insert should trigger a cache eviction to force the size below 8. The cold cache1 should be evicted
+        // first, even though it's not the biggest
+        assertEquals(cache2.insert(EntryImpl.create(2, 3, new byte[1])), false);
+
+        // Wait for eviction to be completed in background
+        Thread.sleep(100);
+        assertEquals(cacheManager.getSize(), 8);
+        assertEquals(cache1.getSize(), 0);
+        assertEquals(cache2.getSize(), 8);
+
+        // Above the watermark, entries are only admitted in caches that are at least as frequently read as the
+        // coldest cache retained by the eviction
+        assertEquals(cache1.insert(EntryImpl.create(1, 2, new byte[1])), false);
+        assertEquals(cache2.insert(EntryImpl.create(2, 3, new byte[1])), true);
+        assertEquals(cache1.getSize(), 0);
+        assertEquals(cache2.getSize(), 9);
+
+        cacheManager.mlFactoryMBean.recordCacheHits(3, 3);
+        cacheManager.mlFactoryMBean.recordCacheMiss(1, 1);
+        cacheManager.mlFactoryMBean.refreshStats(1, TimeUnit.SECONDS);
+        assertEquals(cacheManager.mlFactoryMBean.getCacheEvictionPolicy(), "TinyLfu");
+        assertEquals(cacheManager.mlFactoryMBean.getCacheHitsRatio(), 0.75);
+        assertEquals(cacheManager.mlFactoryMBean.getCacheMissesRatio(), 0.25);
+        assertEquals(cacheManager.mlFactoryMBean.getNumberOfCacheEvictions(), 1);
+    }
 }
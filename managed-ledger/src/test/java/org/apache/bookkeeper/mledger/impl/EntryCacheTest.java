@@ -25,9 +25,12 @@ import static org.testng.Assert.assertEquals;
 
 import io.netty.buffer.Unpooled;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import org.apache.bookkeeper.client.BKException.BKNoSuchLedgerExistsException;
 import org.apache.bookkeeper.client.api.BKException;
@@ -236,6 +239,103 @@ public class EntryCacheTest extends MockedBookKeeperTestCase {
         counter.await();
     }
 
+    @Test(timeOut = 5000)
+    void testSharedPendingReads() throws Exception {
+        ReadHandle lh = mock(ReadHandle.class);
+        when(lh.getId()).thenReturn((long) 0);
+        Map<Long, CompletableFuture<LedgerEntries>> reads = new ConcurrentHashMap<>();
+        doAnswer((invocation) -> {
+            CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+            reads.put((Long) invocation.getArguments()[0], future);
+            return future;
+        }).when(lh).readAsync(anyLong(), anyLong());
+
+        EntryCacheManager cacheManager = factory.getEntryCacheManager();
+        EntryCacheImpl entryCache = (EntryCacheImpl) cacheManager.getEntryCache(ml);
+
+        List<List<Entry>> results = new Vector<>();
+        final CountDownLatch counter = new CountDownLatch(3);
+        ReadEntriesCallback callback = new ReadEntriesCallback() {
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                results.add(entries);
+                counter.countDown();
+            }
+
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                Assert.fail("should not have failed");
+            }
+        };
+
+        entryCache.asyncReadEntry(lh, 0, 9, false, callback, null);
+        entryCache.asyncReadEntry(lh, 0, 9, false, callback, null);
+        entryCache.asyncReadEntry(lh, 5, 14, false, callback, null);
+
+        // Only the entries that were not already being read are requested to bookkeeper
+        verify(lh, times(1)).readAsync(0, 9);
+        verify(lh, times(1)).readAsync(10, 14);
+        verify(lh, times(2)).readAsync(anyLong(), anyLong());
+        assertEquals(entryCache.getNumberOfPendingReads(), 2);
+
+        reads.get(10L).complete(getLedgerEntries(10, 14));
+        reads.get(0L).complete(getLedgerEntries(0, 9));
+        counter.await();
+
+        assertEquals(entryCache.getNumberOfPendingReads(), 0);
+        assertEquals(results.stream().mapToLong(entries -> entries.get(0).getEntryId()).sum(), 5);
+        for (List<Entry> entries : results) {
+            long firstEntry = entries.get(0).getEntryId();
+            assertEquals(entries.size(), 10);
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(entries.get(i).getEntryId(), firstEntry + i);
+                assertEquals(entries.get(i).getDataBuffer().readableBytes(), 10);
+            }
+            entries.forEach(Entry::release);
+        }
+    }
+
+    @Test(timeOut = 5000)
+    void testSharedPendingReadFailure() throws Exception {
+        ReadHandle lh = mock(ReadHandle.class);
+        when(lh.getId()).thenReturn((long) 0);
+        CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+        when(lh.readAsync(anyLong(), anyLong())).thenReturn(future);
+
+        EntryCacheManager cacheManager = factory.getEntryCacheManager();
+        EntryCacheImpl entryCache = (EntryCacheImpl) cacheManager.getEntryCache(ml);
+
+        final CountDownLatch counter = new CountDownLatch(2);
+        ReadEntriesCallback callback = new ReadEntriesCallback() {
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                Assert.fail("should not have succeeded");
+            }
+
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                counter.countDown();
+            }
+        };
+
+        entryCache.asyncReadEntry(lh, 0, 9, false, callback, null);
+        entryCache.asyncReadEntry(lh, 2, 5, false, callback, null);
+        verify(lh, times(1)).readAsync(anyLong(), anyLong());
+
+        future.completeExceptionally(new BKNoSuchLedgerExistsException());
+        counter.await();
+        assertEquals(entryCache.getNumberOfPendingReads(), 0);
+    }
+
+    private static LedgerEntries getLedgerEntries(long firstEntry, long lastEntry) {
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+            LedgerEntry ledgerEntry = mock(LedgerEntry.class);
+            when(ledgerEntry.getEntryId()).thenReturn(entryId);
+            when(ledgerEntry.getEntryBuffer()).thenReturn(Unpooled.wrappedBuffer(new byte[10]));
+            entries.add(ledgerEntry);
+        }
+        LedgerEntries ledgerEntries = mock(LedgerEntries.class);
+        doAnswer((invocation) -> entries.iterator()).when(ledgerEntries).iterator();
+        return ledgerEntries;
+    }
+
     private static ReadHandle getLedgerHandle() {
         final ReadHandle lh = mock(ReadHandle.class);
         final LedgerEntry ledgerEntry = mock(LedgerEntry.class, Mockito.CALLS_REAL_METHODS);
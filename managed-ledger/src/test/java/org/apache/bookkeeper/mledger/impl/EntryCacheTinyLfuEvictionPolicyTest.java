@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.testng.annotations.Test;
+
+public class EntryCacheTinyLfuEvictionPolicyTest {
+
+    private static EntryCache mockCache(String name, long size) {
+        EntryCache cache = mock(EntryCache.class);
+        when(cache.getName()).thenReturn(name);
+        when(cache.getSize()).thenReturn(size);
+        when(cache.evictEntries(anyLong())).thenAnswer(invocation -> {
+            long sizeToFree = (long) invocation.getArguments()[0];
+            return Pair.of(1, sizeToFree);
+        });
+        return cache;
+    }
+
+    @Test
+    public void frequencyIsAged() {
+        EntryCacheTinyLfuEvictionPolicy policy = new EntryCacheTinyLfuEvictionPolicy(16);
+        EntryCache cache = mockCache("cache", 0);
+
+        assertEquals(policy.frequency("cache"), 0);
+
+        for (int i = 0; i < 8; i++) {
+            policy.recordAccess(cache);
+        }
+        assertEquals(policy.frequency("cache"), 8);
+        assertTrue(policy.shouldAdmit(cache));
+
+        // Counters are saturated
+        for (int i = 0; i < 7; i++) {
+            policy.recordAccess(cache);
+        }
+        assertEquals(policy.frequency("cache"), 15);
+
+        // The 16th sample halves all the counters
+        policy.recordAccess(cache);
+        assertEquals(policy.frequency("cache"), 7);
+    }
+
+    @Test
+    public void evictLeastFrequentlyUsedFirst() {
+        EntryCacheTinyLfuEvictionPolicy policy = new EntryCacheTinyLfuEvictionPolicy();
+        EntryCache hot = mockCache("hot", 100);
+        EntryCache warm = mockCache("warm", 100);
+        EntryCache cold = mockCache("cold", 50);
+
+        for (int i = 0; i < 10; i++) {
+            policy.recordAccess(hot);
+        }
+        for (int i = 0; i < 3; i++) {
+            policy.recordAccess(warm);
+        }
+
+        policy.doEviction(Lists.newArrayList(hot, warm, cold), 80);
+
+        verify(cold).evictEntries(50);
+        verify(warm).evictEntries(30);
+        verify(hot, never()).evictEntries(anyLong());
+
+        // The last eviction retained entries of a cache with frequency 3
+        EntryCache candidate = mockCache("candidate", 0);
+        policy.recordAccess(candidate);
+        assertFalse(policy.shouldAdmit(candidate));
+        policy.recordAccess(candidate);
+        policy.recordAccess(candidate);
+        assertTrue(policy.shouldAdmit(candidate));
+    }
+
+    @Test
+    public void admitUnreadCachesWhenOnlyUnreadCachesAreRetained() {
+        EntryCacheTinyLfuEvictionPolicy policy = new EntryCacheTinyLfuEvictionPolicy();
+        EntryCache written = mockCache("written", 100);
+        EntryCache unread = mockCache("unread", 0);
+
+        // Nothing has been evicted yet
+        assertTrue(policy.shouldAdmit(unread));
+
+        policy.doEviction(Lists.newArrayList(written), 10);
+        verify(written).evictEntries(10);
+
+        // The retained entries belong to a cache that is not read either
+        assertTrue(policy.shouldAdmit(unread));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedOnSameFrequency() throws Exception {
+        EntryCacheTinyLfuEvictionPolicy policy = new EntryCacheTinyLfuEvictionPolicy();
+        EntryCache first = mockCache("first", 100);
+        EntryCache second = mockCache("second", 100);
+
+        policy.recordAccess(first);
+        Thread.sleep(1);
+        policy.recordAccess(second);
+
+        policy.doEviction(Lists.newArrayList(second, first), 10);
+
+        verify(first).evictEntries(10);
+        verify(second, never()).evictEntries(anyLong());
+    }
+}
@@ -23,6 +23,7 @@ import static org.testng.Assert.*;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -173,6 +174,16 @@ public class ManagedCursorContainerTest {
         public void asyncDelete(Iterable<Position> position, DeleteCallback callback, Object ctx) {
         }
 
+        @Override
+        public void asyncDeleteBatchIndexes(Position position, BitSet deletedIndexes, DeleteCallback callback,
+                Object ctx) {
+        }
+
+        @Override
+        public long[] getDeletedBatchIndexesAsLongArray(Position position) {
+            return null;
+        }
+
         @Override
         public void clearBacklog() throws InterruptedException, ManagedLedgerException {
         }
@@ -226,6 +237,10 @@ public class ManagedCursorContainerTest {
         public void setAlwaysInactive() {
         }
 
+        @Override
+        public void releaseReadAheadEntries() {
+        }
+
         @Override
         public List<Entry> replayEntries(Set<? extends Position> positions)
                 throws InterruptedException, ManagedLedgerException {
@@ -23,9 +23,12 @@ import static org.testng.Assert.assertEquals;
 import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
 import org.apache.bookkeeper.mledger.Position;
@@ -161,4 +164,46 @@ public class ManagedCursorPropertiesTest extends MockedBookKeeperTestCase {
         assertEquals(c1.getProperties(), properties);
     }
 
+    @Test(timeOut = 20000)
+    void testFlushThrottledMarkDelete() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setThrottleMarkDelete(0.001);
+        ManagedLedger ledger = factory.open("my_test_ledger", config);
+        ManagedCursor c1 = ledger.openCursor("c1");
+
+        Position p1 = ledger.addEntry("entry-1".getBytes());
+        Position p2 = ledger.addEntry("entry-2".getBytes());
+
+        c1.markDelete(p1);
+
+        // The mark-delete is throttled, it's only persisted when the cursor is flushed
+        Map<String, Long> properties = new TreeMap<>();
+        properties.put("a", 1L);
+        c1.markDelete(p2, properties);
+        assertEquals(c1.getProperties(), properties);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        c1.asyncFlush(new MarkDeleteCallback() {
+            @Override
+            public void markDeleteComplete(Object ctx) {
+                future.complete(null);
+            }
+
+            @Override
+            public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+        future.get();
+
+        // Create a new factory to force a managed ledger close and recovery
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(bkc, zkc, new ManagedLedgerFactoryConfig());
+        ledger = factory2.open("my_test_ledger", new ManagedLedgerConfig());
+        c1 = ledger.openCursor("c1");
+
+        assertEquals(c1.getMarkDeletedPosition(), p2);
+        assertEquals(c1.getProperties(), properties);
+
+        factory2.shutdown();
+    }
 }
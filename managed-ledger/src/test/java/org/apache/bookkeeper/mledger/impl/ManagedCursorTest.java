@@ -32,10 +32,13 @@ import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
@@ -51,6 +54,7 @@ import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.AddEntryCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.DeleteCallback;
@@ -2216,6 +2220,48 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         }
     }
 
+    @Test(timeOut = 20000)
+    void testReplayContiguousEntries() throws Exception {
+        ManagedLedger ledger = factory.open("testReplayContiguousEntries",
+                new ManagedLedgerConfig().setMaxEntriesPerLedger(5));
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<PositionImpl> added = Lists.newArrayList();
+        for (int i = 0; i < 15; i++) {
+            added.add((PositionImpl) ledger.addEntry(("entry" + i).getBytes(Encoding)));
+        }
+        c1.delete(added.get(2));
+
+        // Runs within and across ledgers, single positions and an acknowledged position in the middle of a run
+        Set<PositionImpl> positions = Sets.newHashSet();
+        for (int i : new int[] { 0, 1, 2, 3, 4, 5, 6, 9, 11, 12, 13 }) {
+            positions.add(added.get(i));
+        }
+
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        Set<? extends Position> skipped = c1.asyncReplayEntries(positions, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                future.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null, true);
+
+        assertEquals(skipped, Sets.newHashSet(added.get(2)));
+        List<Entry> entries = future.get();
+        List<String> data = Lists.newArrayList();
+        entries.forEach(entry -> {
+            data.add(new String(entry.getData(), Encoding));
+            entry.release();
+        });
+        assertEquals(data, Lists.newArrayList("entry0", "entry1", "entry3", "entry4", "entry5", "entry6", "entry9",
+                "entry11", "entry12", "entry13"));
+    }
+
     @Test(timeOut = 20000)
     void outOfOrderAcks() throws Exception {
         ManagedLedger ledger = factory.open("outOfOrderAcks");
@@ -2716,6 +2762,258 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         assertEquals(entries.size(), totalAddEntries / 2);
     }
 
+    /**
+     * Verifies that the individually deleted messages persisted with the compact encoding, both in the cursor-ledger
+     * and in the meta-store, are recovered
+     */
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceWithCompactEncoding() throws Exception {
+        final int totalAddEntries = 100;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setMaxUnackedRangesToPersistInZk(10);
+        managedLedgerConfig.setMaxEntriesPerLedger(30);
+        managedLedgerConfig.setUnackedRangesCompactEncodingEnabled(true);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("my_test_ledger_compact", managedLedgerConfig);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        ManagedCursorImpl c2 = (ManagedCursorImpl) ledger.openCursor("c2");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            Position p = ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding));
+            addedPositions.add(p);
+        }
+
+        for (int i = 0; i < totalAddEntries; i++) {
+            if (i % 2 == 0 || i % 7 == 0) {
+                // Create holes in c1 and in the last ledger of c2
+                c1.delete(addedPositions.get(i));
+            }
+            if (i > 90 && i % 3 == 0) {
+                c2.delete(addedPositions.get(i));
+            }
+        }
+
+        long c1Backlog = c1.getNumberOfEntriesInBacklog();
+        long c2Backlog = c2.getNumberOfEntriesInBacklog();
+        assertEquals(c2Backlog, totalAddEntries - 3);
+
+        // c1 is persisted in the cursor-ledger and c2 in the meta-store
+        ledger.close();
+
+        CompletableFuture<ManagedCursorInfo> c2Info = new CompletableFuture<>();
+        ledger.getStore().asyncGetCursorInfo(ledger.getName(), "c2", new MetaStoreCallback<ManagedCursorInfo>() {
+            @Override
+            public void operationComplete(ManagedCursorInfo result, Stat stat) {
+                c2Info.complete(result);
+            }
+
+            @Override
+            public void operationFailed(MetaStoreException e) {
+                c2Info.completeExceptionally(e);
+            }
+        });
+        assertEquals(c2Info.get().getCursorsLedgerId(), -1L);
+        assertEquals(c2Info.get().getIndividualDeletedMessagesPerLedgerCount(), 1);
+
+        // Re-Open
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle());
+        ledger = (ManagedLedgerImpl) factory.open("my_test_ledger_compact", managedLedgerConfig);
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        c2 = (ManagedCursorImpl) ledger.openCursor("c2");
+
+        // verify cursors have been recovered
+        assertEquals(c1.getNumberOfEntriesInBacklog(), c1Backlog);
+        assertEquals(c2.getNumberOfEntriesInBacklog(), c2Backlog);
+
+        List<Entry> entries = c1.readEntries(totalAddEntries);
+        assertEquals(entries.size(), c1Backlog);
+        for (Entry entry : entries) {
+            int i = addedPositions.indexOf(entry.getPosition());
+            assertTrue(i % 2 != 0 && i % 7 != 0);
+            entry.release();
+        }
+    }
+
+    /**
+     * Verifies that with the compact encoding, more holes than maxUnackedRangesToPersist are persisted and recovered
+     */
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceBeyondMaxRangesWithCompactEncoding() throws Exception {
+        final int totalAddEntries = 200;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setMaxUnackedRangesToPersist(10);
+        managedLedgerConfig.setMaxUnackedRangesToPersistInZk(5);
+        managedLedgerConfig.setUnackedRangesCompactEncodingEnabled(true);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("my_test_ledger_compact_max_ranges",
+                managedLedgerConfig);
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+
+        // 100 holes, 10 times maxUnackedRangesToPersist
+        for (int i = 1; i < totalAddEntries; i += 2) {
+            c1.delete(addedPositions.get(i));
+        }
+        assertEquals(c1.getIndividuallyDeletedMessagesSet().size(), totalAddEntries / 2);
+        assertEquals(c1.getNumberOfEntriesInBacklog(), totalAddEntries / 2);
+
+        ledger.close();
+
+        // Re-Open
+        factory = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle());
+        ledger = (ManagedLedgerImpl) factory.open("my_test_ledger_compact_max_ranges", managedLedgerConfig);
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+
+        assertEquals(c1.getIndividuallyDeletedMessagesSet().size(), totalAddEntries / 2);
+        assertEquals(c1.getNumberOfEntriesInBacklog(), totalAddEntries / 2);
+        List<Entry> entries = c1.readEntries(totalAddEntries);
+        assertEquals(entries.size(), totalAddEntries / 2);
+        for (Entry entry : entries) {
+            assertEquals(addedPositions.indexOf(entry.getPosition()) % 2, 0);
+            entry.release();
+        }
+    }
+
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceWithDeltas() throws Exception {
+        final int totalAddEntries = 40;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setCursorDeltasPerSnapshot(4);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("my_test_ledger_deltas", managedLedgerConfig);
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+
+        // Each delete appends a position to the cursor-ledger
+        for (int i = 1; i < totalAddEntries; i += 2) {
+            c1.delete(addedPositions.get(i));
+        }
+        c1.delete(addedPositions.get(0));
+        assertEquals(c1.getNumberOfEntriesInBacklog(), totalAddEntries / 2 - 1);
+
+        // One full snapshot every 4 deltas, each delta only holds the range deleted since the previous entry. The
+        // first entry is the initial position of the cursor
+        LedgerHandle lh = bkc.openLedgerNoRecovery(c1.getCursorLedger(), DigestType.CRC32C, "".getBytes());
+        long lastEntry = lh.getLastAddConfirmed();
+        assertEquals(lastEntry, totalAddEntries / 2 + 1);
+        Enumeration<LedgerEntry> ledgerEntries = lh.readEntries(0, lastEntry);
+        for (int entryId = 0; entryId <= lastEntry; entryId++) {
+            PositionInfo positionInfo = PositionInfo.parseFrom(ledgerEntries.nextElement().getEntry());
+            assertEquals(positionInfo.getIncremental(), entryId % 5 != 0);
+            if (positionInfo.getIncremental()) {
+                assertEquals(positionInfo.getIndividualDeletedMessagesCount(), 1);
+            }
+        }
+
+        // Re-Open without closing, the last entry in the cursor-ledger is incremental
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle());
+        ledger = (ManagedLedgerImpl) factory2.open("my_test_ledger_deltas", managedLedgerConfig);
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertEquals(c1.getMarkDeletedPosition(), addedPositions.get(1));
+        assertEquals(c1.getNumberOfEntriesInBacklog(), totalAddEntries / 2 - 1);
+
+        List<Entry> entries = c1.readEntries(totalAddEntries);
+        assertEquals(entries.size(), totalAddEntries / 2 - 1);
+        for (Entry entry : entries) {
+            assertEquals(addedPositions.indexOf(entry.getPosition()) % 2, 0);
+            entry.release();
+        }
+        factory2.shutdown();
+    }
+
+    private static BitSet bitSet(int... indexes) {
+        BitSet bitSet = new BitSet();
+        Arrays.stream(indexes).forEach(bitSet::set);
+        return bitSet;
+    }
+
+    private static void deleteBatchIndexes(ManagedCursor cursor, Position position, BitSet deletedIndexes)
+            throws Exception {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        cursor.asyncDeleteBatchIndexes(position, deletedIndexes, new AsyncCallbacks.DeleteCallback() {
+            @Override
+            public void deleteComplete(Object ctx) {
+                future.complete(null);
+            }
+
+            @Override
+            public void deleteFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+        future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test(timeOut = 20000)
+    public void testBatchIndexesDeletion() throws Exception {
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setDeletionAtBatchIndexLevelEnabled(true);
+        ManagedLedger ledger = factory.open("my_test_ledger_batch_indexes", managedLedgerConfig);
+        ManagedCursor c1 = ledger.openCursor("c1");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+
+        deleteBatchIndexes(c1, addedPositions.get(0), bitSet(0, 1));
+        deleteBatchIndexes(c1, addedPositions.get(1), bitSet(2));
+        deleteBatchIndexes(c1, addedPositions.get(1), bitSet(3));
+        assertEquals(BitSet.valueOf(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(0))), bitSet(0, 1));
+        assertEquals(BitSet.valueOf(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(1))), bitSet(2, 3));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(2)));
+
+        // Deleting the entry drops the indexes deleted within it
+        c1.delete(addedPositions.get(0));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(0)));
+        deleteBatchIndexes(c1, addedPositions.get(0), bitSet(4));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(0)));
+
+        // Re-Open without closing, recovering from the cursor-ledger
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle());
+        ledger = factory2.open("my_test_ledger_batch_indexes", managedLedgerConfig);
+        c1 = ledger.openCursor("c1");
+        assertEquals(c1.getMarkDeletedPosition(), addedPositions.get(0));
+        assertEquals(BitSet.valueOf(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(1))), bitSet(2, 3));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(2)));
+
+        deleteBatchIndexes(c1, addedPositions.get(2), bitSet(0));
+        ledger.close();
+
+        // Re-Open after closing, recovering from the meta-store
+        ManagedLedgerFactory factory3 = new ManagedLedgerFactoryImpl(bkc, bkc.getZkHandle());
+        ledger = factory3.open("my_test_ledger_batch_indexes", managedLedgerConfig);
+        c1 = ledger.openCursor("c1");
+        assertEquals(BitSet.valueOf(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(1))), bitSet(2, 3));
+        assertEquals(BitSet.valueOf(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(2))), bitSet(0));
+
+        // The mark-delete position moving past the entries drops their deleted indexes
+        c1.markDelete(addedPositions.get(2));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(1)));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(addedPositions.get(2)));
+
+        factory2.shutdown();
+        factory3.shutdown();
+    }
+
+    @Test
+    public void testBatchIndexesDeletionDisabled() throws Exception {
+        ManagedLedger ledger = factory.open("my_test_ledger_batch_indexes_disabled", new ManagedLedgerConfig());
+        ManagedCursor c1 = ledger.openCursor("c1");
+        Position position = ledger.addEntry("dummy-entry".getBytes(Encoding));
+
+        deleteBatchIndexes(c1, position, bitSet(0));
+        assertNull(c1.getDeletedBatchIndexesAsLongArray(position));
+        assertEquals(c1.getNumberOfEntriesInBacklog(), 1);
+    }
+
     @Test
     public void testInvalidMarkDelete() throws Exception {
         ManagedLedger ledger = factory.open("my_test_ledger", new ManagedLedgerConfig());
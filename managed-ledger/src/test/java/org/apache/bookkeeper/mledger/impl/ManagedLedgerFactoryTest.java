@@ -19,12 +19,27 @@
 package org.apache.bookkeeper.mledger.impl;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
+import com.google.common.collect.Lists;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenLedgerCallback;
 import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.ManagedLedgerNotFoundException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerInfo;
 import org.apache.bookkeeper.mledger.ManagedLedgerInfo.CursorInfo;
 import org.apache.bookkeeper.mledger.ManagedLedgerInfo.MessageRangeInfo;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
 import org.testng.annotations.Test;
 
@@ -71,4 +86,63 @@ public class ManagedLedgerFactoryTest extends MockedBookKeeperTestCase {
         assertEquals(mri.to.entryId, 0);
     }
 
+    @Test(timeOut = 20000)
+    public void testBulkOpen() throws Exception {
+        List<String> names = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            String name = "testBulkOpen-" + i;
+            ManagedLedger ledger = factory.open(name);
+            ManagedCursor cursor = ledger.openCursor("c1");
+            ledger.openCursor("c2");
+            Position position = ledger.addEntry(("entry-" + i).getBytes());
+            cursor.markDelete(position);
+            ledger.close();
+            names.add(name);
+        }
+        names.add("testBulkOpen-missing");
+
+        ManagedLedgerFactoryConfig factoryConf = new ManagedLedgerFactoryConfig();
+        factoryConf.setMaxConcurrentBulkOpens(3);
+        ManagedLedgerFactoryImpl bulkFactory = new ManagedLedgerFactoryImpl(bkc, zkc, factoryConf);
+
+        // Each managed ledger has its own configuration
+        Map<String, ManagedLedgerConfig> configs = new LinkedHashMap<>();
+        names.forEach(name -> configs.put(name, new ManagedLedgerConfig().setCreateIfMissing(false)));
+        Map<String, CompletableFuture<ManagedLedger>> futures = new ConcurrentHashMap<>();
+        names.forEach(name -> futures.put(name, new CompletableFuture<>()));
+        bulkFactory.asyncOpen(configs, new OpenLedgerCallback() {
+            @Override
+            public void openLedgerComplete(ManagedLedger ledger, Object ctx) {
+                futures.get(ctx).complete(ledger);
+            }
+
+            @Override
+            public void openLedgerFailed(ManagedLedgerException exception, Object ctx) {
+                futures.get(ctx).completeExceptionally(exception);
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            String name = "testBulkOpen-" + i;
+            ManagedLedger ledger = futures.get(name).get();
+            assertEquals(ledger.getName(), name);
+            assertTrue(ledger.getConfig() == configs.get(name));
+            assertEquals(ledger.getNumberOfEntries(), 1);
+            assertEquals(Lists.newArrayList(ledger.getCursors()).size(), 2);
+            assertEquals(ledger.openCursor("c1").getNumberOfEntries(), 0);
+            assertEquals(ledger.openCursor("c2").getNumberOfEntries(), 1);
+            // Already opened managed ledgers are handed out by the regular open
+            assertTrue(bulkFactory.open(name) == ledger);
+        }
+
+        try {
+            futures.get("testBulkOpen-missing").get();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ManagedLedgerNotFoundException);
+        }
+
+        bulkFactory.shutdown();
+    }
+
 }
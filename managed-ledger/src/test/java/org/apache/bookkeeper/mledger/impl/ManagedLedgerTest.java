@@ -77,6 +77,7 @@ import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenLedgerCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.EntrySummary;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedCursor.IndividualDeletedEntries;
 import org.apache.bookkeeper.mledger.ManagedLedger;
@@ -2392,6 +2393,79 @@ public class ManagedLedgerTest extends MockedBookKeeperTestCase {
         setFieldValue(ManagedLedgerImpl.class, ledger, "currentLedger", null);
     }
 
+    @Test(timeOut = 20000)
+    public void testAddEntryCallbacksOnCallbackExecutor() throws Exception {
+        ManagedLedgerFactoryConfig conf = new ManagedLedgerFactoryConfig();
+        conf.setNumManagedLedgerCallbackThreads(2);
+        ManagedLedgerFactory factory = new ManagedLedgerFactoryImpl(bkc, zkc, conf);
+        // Roll over the ledger while adding, the callbacks of the closing entries go through the same executor
+        ManagedLedger ledger = factory.open("callback_executor_ledger",
+                new ManagedLedgerConfig().setMaxEntriesPerLedger(10));
+        ManagedCursor cursor = ledger.openCursor("c1");
+
+        final int totalAddEntries = 100;
+        List<PositionImpl> positions = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean allOnCallbackThreads = new AtomicBoolean(true);
+        CountDownLatch latch = new CountDownLatch(totalAddEntries);
+        for (int i = 0; i < totalAddEntries; i++) {
+            ledger.asyncAddEntry(("entry-" + i).getBytes(Encoding), new AddEntryCallback() {
+                @Override
+                public void addComplete(Position position, Object ctx) {
+                    if (!Thread.currentThread().getName().startsWith("bookkeeper-ml-callbacks")) {
+                        allOnCallbackThreads.set(false);
+                    }
+                    positions.add((PositionImpl) position);
+                    latch.countDown();
+                }
+
+                @Override
+                public void addFailed(ManagedLedgerException exception, Object ctx) {
+                    fail("Failed to add entry: " + exception);
+                }
+            }, null);
+        }
+        latch.await();
+
+        assertTrue(allOnCallbackThreads.get());
+        // Completed in the order of the entries
+        List<PositionImpl> sortedPositions = new ArrayList<>(positions);
+        Collections.sort(sortedPositions);
+        assertEquals(positions, sortedPositions);
+        assertEquals(cursor.getNumberOfEntries(), totalAddEntries);
+
+        factory.shutdown();
+    }
+
+    @Test
+    public void testEntrySummaryKeptInCache() throws Exception {
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("entry_summary_ledger", new ManagedLedgerConfig()
+                .setEntrySummaryGenerator(data -> new EntrySummary(data.getByte(data.readerIndex()), 1, 0, -1)));
+        ManagedCursor cursor = ledger.openCursor("c1");
+
+        for (int i = 0; i < 3; i++) {
+            ledger.addEntry(new byte[] { (byte) i, 'x' });
+        }
+
+        List<Entry> entries = cursor.readEntries(3);
+        assertEquals(entries.size(), 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(entries.get(i).getSummary().getKeyHash(), i);
+            assertEquals(entries.get(i).getSummary().getNumMessages(), 1);
+            assertFalse(entries.get(i).getSummary().hasDeliverAtTime());
+        }
+        entries.forEach(Entry::release);
+
+        // Entries read from bookkeeper are not summarized
+        ledger.entryCache.clear();
+        cursor.rewind();
+        entries = cursor.readEntries(3);
+        assertEquals(entries.size(), 3);
+        entries.forEach(entry -> assertNull(entry.getSummary()));
+        entries.forEach(Entry::release);
+
+        ledger.close();
+    }
+
     private void setFieldValue(Class clazz, Object classObj, String fieldName, Object fieldValue) throws Exception {
         Field field = clazz.getDeclaredField(fieldName);
         field.setAccessible(true);
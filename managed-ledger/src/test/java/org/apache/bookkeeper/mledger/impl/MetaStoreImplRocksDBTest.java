@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.BadVersionException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetadataNotFoundException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
+import org.apache.bookkeeper.mledger.impl.MetaStore.Stat;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.testng.annotations.Test;
+
+public class MetaStoreImplRocksDBTest extends MockedBookKeeperTestCase {
+
+    private static class Callback<T> extends CompletableFuture<Pair<T, Stat>> implements MetaStoreCallback<T> {
+        @Override
+        public void operationComplete(T result, Stat stat) {
+            complete(Pair.of(result, stat));
+        }
+
+        @Override
+        public void operationFailed(MetaStoreException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    private static void assertFailure(Callback<?> callback, Class<?> exceptionClass) throws Exception {
+        try {
+            callback.get();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertEquals(e.getCause().getClass(), exceptionClass);
+        }
+    }
+
+    @Test(timeOut = 20000)
+    void managedLedgerInfo() throws Exception {
+        File dir = Files.createTempDirectory("ml-metadata").toFile();
+        try (MetaStoreImplRocksDB store = new MetaStoreImplRocksDB(dir.getAbsolutePath(), executor)) {
+            Callback<ManagedLedgerInfo> notFound = new Callback<>();
+            store.getManagedLedgerInfo("prop/ns/persistent/t1", false, notFound);
+            assertFailure(notFound, MetadataNotFoundException.class);
+
+            Callback<ManagedLedgerInfo> created = new Callback<>();
+            store.getManagedLedgerInfo("prop/ns/persistent/t1", true, created);
+            assertEquals(created.get().getLeft(), ManagedLedgerInfo.getDefaultInstance());
+            Stat stat = created.get().getRight();
+            assertEquals(stat.getVersion(), 0);
+
+            ManagedLedgerInfo info = ManagedLedgerInfo.newBuilder()
+                    .addLedgerInfo(ManagedLedgerInfo.LedgerInfo.newBuilder().setLedgerId(1).build()).build();
+            Callback<Void> updated = new Callback<>();
+            store.asyncUpdateLedgerIds("prop/ns/persistent/t1", info, stat, updated);
+            Stat newStat = updated.get().getRight();
+            assertEquals(newStat.getVersion(), 1);
+            assertEquals(newStat.getCreationTimestamp(), stat.getCreationTimestamp());
+
+            // The update with the old version is rejected
+            Callback<Void> badVersion = new Callback<>();
+            store.asyncUpdateLedgerIds("prop/ns/persistent/t1", ManagedLedgerInfo.getDefaultInstance(), stat,
+                    badVersion);
+            assertFailure(badVersion, BadVersionException.class);
+
+            Callback<ManagedLedgerInfo> read = new Callback<>();
+            store.getManagedLedgerInfo("prop/ns/persistent/t1", false, read);
+            assertEquals(read.get().getLeft(), info);
+            assertEquals(read.get().getRight().getVersion(), 1);
+
+            Callback<ManagedLedgerInfo> t2 = new Callback<>();
+            store.getManagedLedgerInfo("prop/ns/persistent/t2", true, t2);
+            t2.get();
+            Callback<ManagedLedgerInfo> t3 = new Callback<>();
+            store.getManagedLedgerInfo("prop/ns2/persistent/t3", true, t3);
+            t3.get();
+            assertEquals(Sets.newHashSet(store.getManagedLedgers()),
+                    Sets.newHashSet("prop/ns/persistent/t1", "prop/ns/persistent/t2", "prop/ns2/persistent/t3"));
+            assertEquals(store.getManagedLedgers("prop/ns/").get(),
+                    Lists.newArrayList("prop/ns/persistent/t1", "prop/ns/persistent/t2"));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test(timeOut = 20000)
+    void cursors() throws Exception {
+        File dir = Files.createTempDirectory("ml-metadata").toFile();
+        try (MetaStoreImplRocksDB store = new MetaStoreImplRocksDB(dir.getAbsolutePath(), executor)) {
+            ManagedCursorInfo info = ManagedCursorInfo.newBuilder().setCursorsLedgerId(1).build();
+
+            // The managed ledger must exist
+            Callback<Void> noLedger = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test", "c1", info, null, noLedger);
+            assertFailure(noLedger, MetaStoreException.class);
+
+            Callback<ManagedLedgerInfo> created = new Callback<>();
+            store.getManagedLedgerInfo("my_test", true, created);
+            created.get();
+            // A managed ledger whose name starts with the name of the other one
+            Callback<ManagedLedgerInfo> created2 = new Callback<>();
+            store.getManagedLedgerInfo("my_test2", true, created2);
+            created2.get();
+
+            Callback<Void> c1 = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test", "c1", info, null, c1);
+            Stat stat = c1.get().getRight();
+            assertEquals(stat.getVersion(), 0);
+
+            Callback<Void> exists = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test", "c1", info, null, exists);
+            assertFailure(exists, MetaStoreException.class);
+
+            Callback<Void> c2 = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test", "c2", info, null, c2);
+            c2.get();
+            Callback<Void> c3 = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test2", "c3", info, null, c3);
+            c3.get();
+
+            Callback<List<String>> cursors = new Callback<>();
+            store.getCursors("my_test", cursors);
+            assertEquals(cursors.get().getLeft(), Lists.newArrayList("c1", "c2"));
+
+            ManagedCursorInfo newInfo = ManagedCursorInfo.newBuilder().setCursorsLedgerId(2).build();
+            Callback<Void> updated = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test", "c1", newInfo, stat, updated);
+            assertEquals(updated.get().getRight().getVersion(), 1);
+
+            Callback<Void> badVersion = new Callback<>();
+            store.asyncUpdateCursorInfo("my_test", "c1", newInfo, stat, badVersion);
+            assertFailure(badVersion, BadVersionException.class);
+
+            Callback<ManagedCursorInfo> read = new Callback<>();
+            store.asyncGetCursorInfo("my_test", "c1", read);
+            assertEquals(read.get().getLeft(), newInfo);
+            assertEquals(read.get().getRight().getVersion(), 1);
+
+            // A managed ledger can only be removed once its cursors are removed
+            Callback<Void> notEmpty = new Callback<>();
+            store.removeManagedLedger("my_test", notEmpty);
+            assertFailure(notEmpty, MetaStoreException.class);
+
+            Callback<Void> removed = new Callback<>();
+            store.asyncRemoveCursor("my_test", "c1", removed);
+            removed.get();
+            Callback<Void> removed2 = new Callback<>();
+            store.asyncRemoveCursor("my_test", "c2", removed2);
+            removed2.get();
+
+            Callback<Void> notFound = new Callback<>();
+            store.asyncRemoveCursor("my_test", "c1", notFound);
+            assertFailure(notFound, MetaStoreException.class);
+
+            Callback<Void> removedLedger = new Callback<>();
+            store.removeManagedLedger("my_test", removedLedger);
+            removedLedger.get();
+            assertEquals(Lists.newArrayList(store.getManagedLedgers()), Lists.newArrayList("my_test2"));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test(timeOut = 20000)
+    void managedLedgerWithLocalMetadata() throws Exception {
+        File dir = Files.createTempDirectory("ml-metadata").toFile();
+        try {
+            ManagedLedgerFactoryConfig conf = new ManagedLedgerFactoryConfig();
+            conf.setMetadataStoreDirectory(dir.getAbsolutePath());
+            ManagedLedgerFactoryImpl factory1 = new ManagedLedgerFactoryImpl(bkc, zkc, conf);
+
+            ManagedLedger ledger = factory1.open("my_test_ledger", new ManagedLedgerConfig().setMaxEntriesPerLedger(2));
+            ManagedCursor cursor = ledger.openCursor("c1");
+            Position p1 = ledger.addEntry("entry-1".getBytes());
+            ledger.addEntry("entry-2".getBytes());
+            Position p3 = ledger.addEntry("entry-3".getBytes());
+            cursor.markDelete(p1);
+            ledger.close();
+            factory1.shutdown();
+
+            // Nothing was written in ZooKeeper
+            assertTrue(zkc.getChildren("/managed-ledgers", false).isEmpty());
+
+            ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(bkc, zkc, conf);
+            ledger = factory2.open("my_test_ledger", new ManagedLedgerConfig().setMaxEntriesPerLedger(2));
+            cursor = ledger.openCursor("c1");
+            assertEquals(cursor.getMarkDeletedPosition(), p1);
+            assertEquals(ledger.getNumberOfEntries(), 3);
+            assertEquals(ledger.getLastConfirmedEntry(), p3);
+            factory2.shutdown();
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.Random;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerDeletedEntries;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.MessageRange;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.PositionInfo;
+import org.apache.pulsar.common.util.collections.ConcurrentOpenLongPairRangeSet;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPairConsumer;
+import org.testng.annotations.Test;
+
+public class UnackedRangesCodecTest {
+
+    private static final LongPairConsumer<PositionImpl> consumer = PositionImpl::new;
+
+    private static PositionInfo encode(LongPairRangeSet<PositionImpl> set, int maxRanges) {
+        List<LedgerDeletedEntries> deletedEntriesPerLedger = Lists.newArrayList();
+        List<MessageRange> crossLedgerRanges = Lists.newArrayList();
+        UnackedRangesCodec.encode(set, UnackedRangesCodec.maxEncodedSize(maxRanges), deletedEntriesPerLedger,
+                crossLedgerRanges);
+        return PositionInfo.newBuilder().setLedgerId(0).setEntryId(0)
+                .addAllIndividualDeletedMessagesPerLedger(deletedEntriesPerLedger)
+                .addAllIndividualDeletedMessages(crossLedgerRanges).build();
+    }
+
+    private static LongPairRangeSet<PositionImpl> decode(PositionInfo info) {
+        LongPairRangeSet<PositionImpl> set = new ConcurrentOpenLongPairRangeSet<>(4096, consumer);
+        info.getIndividualDeletedMessagesList().forEach(range -> set.addOpenClosed(
+                range.getLowerEndpoint().getLedgerId(), range.getLowerEndpoint().getEntryId(),
+                range.getUpperEndpoint().getLedgerId(), range.getUpperEndpoint().getEntryId()));
+        info.getIndividualDeletedMessagesPerLedgerList()
+                .forEach(deletedEntries -> UnackedRangesCodec.decode(deletedEntries, set));
+        return set;
+    }
+
+    @Test
+    public void testRunLengths() {
+        LongPairRangeSet<PositionImpl> set = new ConcurrentOpenLongPairRangeSet<>(4096, consumer);
+        set.addOpenClosed(1, 0, 1, 10);
+        set.addOpenClosed(1, 5000, 1, 5005);
+        set.addOpenClosed(3, -1, 3, 0);
+        set.addOpenClosed(3, 100000, 3, 100001);
+
+        PositionInfo info = encode(set, 100);
+        assertEquals(info.getIndividualDeletedMessagesCount(), 0);
+        assertEquals(info.getIndividualDeletedMessagesPerLedgerCount(), 2);
+
+        LedgerDeletedEntries ledger1 = info.getIndividualDeletedMessagesPerLedger(0);
+        assertEquals(ledger1.getLedgerId(), 1);
+        assertEquals(ledger1.getFirstEntryId(), 1);
+        assertEquals(ledger1.getRunLengthsList(), Lists.newArrayList(10L, 4990L, 5L));
+        assertEquals(ledger1.getBitmapCount(), 0);
+
+        assertEquals(decode(info).toString(), set.toString());
+    }
+
+    @Test
+    public void testBitmap() {
+        LongPairRangeSet<PositionImpl> set = new ConcurrentOpenLongPairRangeSet<>(4096, consumer);
+        for (int i = 0; i < 1000; i += 2) {
+            set.addOpenClosed(1, i - 1, 1, i);
+        }
+
+        PositionInfo info = encode(set, 1000);
+        assertEquals(info.getIndividualDeletedMessagesPerLedgerCount(), 1);
+        LedgerDeletedEntries ledger1 = info.getIndividualDeletedMessagesPerLedger(0);
+        assertEquals(ledger1.getRunLengthsCount(), 0);
+        assertEquals(ledger1.getBitmapCount(), 16);
+
+        assertEquals(decode(info).toString(), set.toString());
+    }
+
+    @Test
+    public void testCrossLedgerRanges() {
+        LongPairRangeSet<PositionImpl> set = new LongPairRangeSet.DefaultRangeSet<>(consumer);
+        set.addOpenClosed(1, 3, 1, 5);
+        set.addOpenClosed(1, 9, 2, 4);
+        set.addOpenClosed(2, 7, 2, 8);
+
+        PositionInfo info = encode(set, 100);
+        assertEquals(info.getIndividualDeletedMessagesCount(), 1);
+        assertEquals(info.getIndividualDeletedMessagesPerLedgerCount(), 2);
+
+        LongPairRangeSet<PositionImpl> decoded = new LongPairRangeSet.DefaultRangeSet<>(consumer);
+        info.getIndividualDeletedMessagesList().forEach(range -> decoded.addOpenClosed(
+                range.getLowerEndpoint().getLedgerId(), range.getLowerEndpoint().getEntryId(),
+                range.getUpperEndpoint().getLedgerId(), range.getUpperEndpoint().getEntryId()));
+        info.getIndividualDeletedMessagesPerLedgerList()
+                .forEach(deletedEntries -> UnackedRangesCodec.decode(deletedEntries, decoded));
+        assertEquals(decoded.toString(), set.toString());
+    }
+
+    @Test
+    public void testMaxSize() {
+        // Far more holes than ranges allowed, but they fit in the size of the allowed ranges in the legacy encoding
+        LongPairRangeSet<PositionImpl> set = new ConcurrentOpenLongPairRangeSet<>(4096, consumer);
+        for (int i = 0; i < 100; i++) {
+            set.addOpenClosed(1, i * 10, 1, i * 10 + 1);
+        }
+
+        PositionInfo info = encode(set, 10);
+        assertEquals(decode(info).toString(), set.toString());
+        assertTrue(info.getSerializedSize() <= UnackedRangesCodec.maxEncodedSize(10));
+
+        // Once the size is used, the following ranges are not encoded
+        for (int i = 0; i < 10_000; i++) {
+            set.addOpenClosed(2, i * 1000, 2, i * 1000 + 1);
+        }
+        for (long maxSize : new long[] { 100, 1000, 10_000 }) {
+            List<LedgerDeletedEntries> deletedEntriesPerLedger = Lists.newArrayList();
+            List<MessageRange> crossLedgerRanges = Lists.newArrayList();
+            UnackedRangesCodec.encode(set, maxSize, deletedEntriesPerLedger, crossLedgerRanges);
+            info = PositionInfo.newBuilder().setLedgerId(0).setEntryId(0)
+                    .addAllIndividualDeletedMessagesPerLedger(deletedEntriesPerLedger)
+                    .addAllIndividualDeletedMessages(crossLedgerRanges).build();
+            int size = info.getSerializedSize() - PositionInfo.newBuilder().setLedgerId(0).setEntryId(0).build()
+                    .getSerializedSize();
+            assertTrue(size <= maxSize, "Size " + size + " > " + maxSize);
+            assertTrue(size > maxSize * 9 / 10, "Size " + size + " < " + maxSize);
+        }
+    }
+
+    @Test
+    public void testRandomAcks() {
+        // About one million holes left by random acknowledgments over 4 ledgers
+        Random random = new Random(0);
+        LongPairRangeSet<PositionImpl> set = new ConcurrentOpenLongPairRangeSet<>(4096, consumer);
+        for (int ledgerId = 0; ledgerId < 4; ledgerId++) {
+            for (int entryId = 0; entryId < 1_000_000; entryId++) {
+                if (random.nextBoolean()) {
+                    set.addOpenClosed(ledgerId, entryId - 1, ledgerId, entryId);
+                }
+            }
+        }
+
+        PositionInfo info = encode(set, Integer.MAX_VALUE);
+        assertTrue(info.getSerializedSize() < 600 * 1024, "Serialized size: " + info.getSerializedSize());
+        assertEquals(decode(info).toString(), set.toString());
+        assertEquals(info.getIndividualDeletedMessagesPerLedgerCount(), 4);
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import com.google.common.collect.Lists;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.bookkeeper.mledger.util.SegmentedRangeCache.KeySegmenter;
+import org.apache.commons.lang3.tuple.Pair;
+import org.testng.annotations.Test;
+
+@Test
+public class SegmentedRangeCacheTest {
+
+    private static final int SEGMENT_SIZE = 4;
+
+    class RefString extends AbstractReferenceCounted implements ReferenceCounted {
+        final String s;
+
+        RefString(String s) {
+            super();
+            this.s = s;
+            setRefCnt(1);
+        }
+
+        @Override
+        protected void deallocate() {
+            // no-op
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof RefString) {
+                return this.s.equals(((RefString) obj).s);
+            } else if (obj instanceof String) {
+                return this.s.equals((String) obj);
+            }
+
+            return false;
+        }
+    }
+
+    private static final KeySegmenter<Integer> SEGMENTER = new KeySegmenter<Integer>() {
+        @Override
+        public Integer getSegmentKey(Integer key) {
+            return key - Math.floorMod(key, SEGMENT_SIZE);
+        }
+
+        @Override
+        public int getSlot(Integer key) {
+            return Math.floorMod(key, SEGMENT_SIZE);
+        }
+    };
+
+    private SegmentedRangeCache<Integer, RefString> newCache() {
+        return new SegmentedRangeCache<>(SEGMENT_SIZE, SEGMENTER, value -> 1, x -> 0);
+    }
+
+    @Test
+    void simple() {
+        SegmentedRangeCache<Integer, RefString> cache = newCache();
+
+        cache.put(0, new RefString("0"));
+        cache.put(1, new RefString("1"));
+
+        assertEquals(cache.getSize(), 2);
+        assertEquals(cache.getNumberOfEntries(), 2);
+        assertEquals(cache.getNumberOfSegments(), 1);
+
+        RefString s = cache.get(0);
+        assertEquals(s.s, "0");
+        assertEquals(s.refCnt(), 2);
+        s.release();
+
+        assertNull(cache.get(2));
+        assertNull(cache.get(100));
+
+        cache.put(2, new RefString("2"));
+        cache.put(8, new RefString("8"));
+        cache.put(11, new RefString("11"));
+
+        assertEquals(cache.getSize(), 5);
+        assertEquals(cache.getNumberOfEntries(), 5);
+        assertEquals(cache.getNumberOfSegments(), 2);
+
+        cache.removeRange(1, 5, true);
+        assertEquals(cache.getSize(), 3);
+        assertEquals(cache.getNumberOfEntries(), 3);
+
+        cache.removeRange(2, 8, false);
+        assertEquals(cache.getSize(), 3);
+        assertEquals(cache.getNumberOfEntries(), 3);
+
+        cache.removeRange(0, 100, false);
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+        // Empty segments are dropped
+        assertEquals(cache.getNumberOfSegments(), 0);
+
+        cache.removeRange(0, 100, false);
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+    }
+
+    @Test
+    void doubleInsert() {
+        SegmentedRangeCache<Integer, RefString> cache = newCache();
+
+        RefString s0 = new RefString("zero");
+        assertEquals(cache.put(0, s0), true);
+        assertEquals(s0.refCnt(), 1);
+
+        cache.put(1, new RefString("one"));
+
+        RefString s1 = new RefString("uno");
+        assertEquals(cache.put(1, s1), false);
+        assertEquals(s1.refCnt(), 1);
+        s1.release();
+
+        // Should not have been overridden in cache
+        assertEquals(cache.getSize(), 2);
+        assertEquals(cache.getNumberOfEntries(), 2);
+        assertEquals(cache.get(1).s, "one");
+    }
+
+    @Test
+    void getRange() {
+        SegmentedRangeCache<Integer, RefString> cache = newCache();
+
+        cache.put(0, new RefString("0"));
+        cache.put(1, new RefString("1"));
+        cache.put(3, new RefString("3"));
+        cache.put(5, new RefString("5"));
+
+        assertEquals(cache.getRange(1, 8),
+                Lists.newArrayList(new RefString("1"), new RefString("3"), new RefString("5")));
+
+        cache.put(8, new RefString("8"));
+        cache.put(13, new RefString("13"));
+        assertEquals(cache.getRange(1, 8),
+                Lists.newArrayList(new RefString("1"), new RefString("3"), new RefString("5"), new RefString("8")));
+        assertEquals(cache.getRange(4, 4), Lists.newArrayList());
+        assertEquals(cache.getRange(5, 13),
+                Lists.newArrayList(new RefString("5"), new RefString("8"), new RefString("13")));
+
+        cache.clear();
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertEquals(cache.getNumberOfSegments(), 0);
+    }
+
+    @Test
+    void negativeKeys() {
+        SegmentedRangeCache<Integer, RefString> cache = newCache();
+
+        cache.put(-3, new RefString("-3"));
+        cache.put(-1, new RefString("-1"));
+        cache.put(2, new RefString("2"));
+
+        assertEquals(cache.getRange(-10, 10),
+                Lists.newArrayList(new RefString("-3"), new RefString("-1"), new RefString("2")));
+        assertEquals(cache.removeRange(-10, 2, false), Pair.of(2, 2L));
+        assertEquals(cache.getRange(-10, 10), Lists.newArrayList(new RefString("2")));
+    }
+
+    @Test
+    void customTimeExtraction() {
+        SegmentedRangeCache<Integer, RefString> cache = new SegmentedRangeCache<>(SEGMENT_SIZE, SEGMENTER,
+                value -> value.s.length(), x -> x.s.length());
+
+        cache.put(1, new RefString("1"));
+        cache.put(2, new RefString("22"));
+        cache.put(3, new RefString("333"));
+        cache.put(4, new RefString("4444"));
+
+        assertEquals(cache.getSize(), 10);
+        assertEquals(cache.getNumberOfEntries(), 4);
+
+        long evictedSize = cache.evictLEntriesBeforeTimestamp(3);
+        assertEquals(evictedSize, 6);
+
+        assertEquals(cache.getSize(), 4);
+        assertEquals(cache.getNumberOfEntries(), 1);
+        assertEquals(cache.getNumberOfSegments(), 1);
+    }
+
+    @Test
+    void eviction() {
+        SegmentedRangeCache<Integer, RefString> cache = new SegmentedRangeCache<>(SEGMENT_SIZE, SEGMENTER,
+                value -> value.s.length(), x -> 0);
+
+        cache.put(0, new RefString("zero"));
+        cache.put(1, new RefString("one"));
+        cache.put(2, new RefString("two"));
+        cache.put(5, new RefString("three"));
+
+        // This should remove the LRU entries: 0, 1 whose combined size is 7
+        assertEquals(cache.evictLeastAccessedEntries(5), Pair.of(2, (long) 7));
+
+        assertEquals(cache.getNumberOfEntries(), 2);
+        assertEquals(cache.getSize(), 8);
+        assertNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertEquals(cache.get(2).s, "two");
+        assertEquals(cache.get(5).s, "three");
+
+        assertEquals(cache.evictLeastAccessedEntries(100), Pair.of(2, (long) 8));
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertEquals(cache.getNumberOfSegments(), 0);
+        assertEquals(cache.getSize(), 0);
+
+        try {
+            cache.evictLeastAccessedEntries(0);
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    void releaseOnRemoval() {
+        SegmentedRangeCache<Integer, RefString> cache = newCache();
+
+        RefString s = new RefString("0");
+        s.retain();
+        cache.put(0, s);
+        assertEquals(s.refCnt(), 2);
+
+        cache.removeRange(0, 0, true);
+        assertEquals(s.refCnt(), 1);
+    }
+
+    @Test
+    void concurrentInsertAndEviction() throws Exception {
+        SegmentedRangeCache<Integer, RefString> cache = newCache();
+        final int numEntries = 100_000;
+
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean failed = new AtomicBoolean();
+
+        Thread writer = new Thread(() -> {
+            try {
+                barrier.await();
+                for (int i = 0; i < numEntries; i++) {
+                    if (!cache.put(i, new RefString(Integer.toString(i)))) {
+                        failed.set(true);
+                    }
+                }
+            } catch (Exception e) {
+                failed.set(true);
+            } finally {
+                done.countDown();
+            }
+        });
+        writer.start();
+
+        barrier.await();
+        long evicted = 0;
+        while (done.getCount() > 0) {
+            if (cache.getSize() > 100) {
+                evicted += cache.evictLeastAccessedEntries(50).getRight();
+            }
+        }
+        writer.join();
+
+        assertEquals(failed.get(), false);
+        Collection<RefString> remaining = cache.getRange(0, numEntries);
+        remaining.forEach(RefString::release);
+        assertEquals(evicted + remaining.size(), numEntries);
+        assertEquals(cache.getSize(), remaining.size());
+    }
+}
@@ -37,6 +37,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.zookeeper.AsyncCallback.Children2Callback;
 import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.MultiCallback;
 import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.AsyncCallback.VoidCallback;
@@ -44,6 +45,7 @@ import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.proto.SetDataRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -799,6 +801,84 @@ public class MockZooKeeper extends ZooKeeper {
         mutex.unlock();
     }
 
+    /**
+     * Atomically apply a list of {@link Op#setData} operations. Like in ZooKeeper, when an operation fails none is
+     * applied: the failed operation gets its error, the previous ones get OK and the next ones get
+     * RUNTIMEINCONSISTENCY.
+     */
+    @Override
+    public void multi(Iterable<Op> ops, MultiCallback cb, Object ctx) {
+        if (stopped) {
+            cb.processResult(KeeperException.Code.CONNECTIONLOSS.intValue(), null, ctx, null);
+            return;
+        }
+
+        executor.execute(() -> {
+            final Set<Pair<Watcher, String>> toNotify = Sets.newHashSet();
+            List<OpResult> results = Lists.newArrayList();
+            int rc = KeeperException.Code.OK.intValue();
+
+            mutex.lock();
+            if (getProgrammedFailStatus()) {
+                mutex.unlock();
+                cb.processResult(failReturnCode.intValue(), null, ctx, null);
+                return;
+            } else if (stopped) {
+                mutex.unlock();
+                cb.processResult(KeeperException.Code.CONNECTIONLOSS.intValue(), null, ctx, null);
+                return;
+            }
+
+            // Apply the operations in order on a copy of the tree, which replaces the tree only if all succeed
+            TreeMap<String, Pair<byte[], Integer>> newTree = new TreeMap<>(tree);
+            for (Op op : ops) {
+                if (rc != KeeperException.Code.OK.intValue()) {
+                    results.add(new OpResult.ErrorResult(KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()));
+                    continue;
+                }
+
+                int opRc;
+                if (op.getType() != ZooDefs.OpCode.setData) {
+                    opRc = KeeperException.Code.UNIMPLEMENTED.intValue();
+                } else if (!newTree.containsKey(op.getPath())) {
+                    opRc = KeeperException.Code.NONODE.intValue();
+                } else {
+                    SetDataRequest request = (SetDataRequest) op.toRequestRecord();
+                    int currentVersion = newTree.get(op.getPath()).getRight();
+                    if (request.getVersion() != -1 && request.getVersion() != currentVersion) {
+                        opRc = KeeperException.Code.BADVERSION.intValue();
+                    } else {
+                        opRc = KeeperException.Code.OK.intValue();
+                        newTree.put(op.getPath(), Pair.of(request.getData(), currentVersion + 1));
+                        Stat stat = new Stat();
+                        stat.setVersion(currentVersion + 1);
+                        results.add(new OpResult.SetDataResult(stat));
+                    }
+                }
+
+                if (opRc != KeeperException.Code.OK.intValue()) {
+                    rc = opRc;
+                    results.replaceAll(result -> new OpResult.ErrorResult(KeeperException.Code.OK.intValue()));
+                    results.add(new OpResult.ErrorResult(opRc));
+                }
+            }
+
+            if (rc == KeeperException.Code.OK.intValue()) {
+                tree = newTree;
+                for (Op op : ops) {
+                    watchers.get(op.getPath()).forEach(watcher -> toNotify.add(Pair.of(watcher, op.getPath())));
+                    watchers.removeAll(op.getPath());
+                }
+            }
+
+            mutex.unlock();
+            cb.processResult(rc, null, ctx, results);
+
+            toNotify.forEach(watcherAndPath -> watcherAndPath.getLeft().process(new WatchedEvent(
+                    EventType.NodeDataChanged, KeeperState.SyncConnected, watcherAndPath.getRight())));
+        });
+    }
+
     @Override
     public void close() throws InterruptedException {
     }
@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
+import org.apache.bookkeeper.client.AsyncCallback.CreateCallback;
+import org.apache.bookkeeper.client.AsyncCallback.DeleteCallback;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.PulsarMockBookKeeper;
+import org.apache.bookkeeper.client.PulsarMockLedgerHandle;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.AddEntryCallback;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.util.ZkUtils;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.MockZooKeeper;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Publish throughput of a single managed ledger, written to by several producer threads.
+ *
+ * <p>The bookies are replaced by a ledger handle that acknowledges every add right away from one thread, so the
+ * benchmark measures the managed ledger add path: the hop to the managed ledger thread, the ordering of the pending
+ * adds and the completion callbacks. Each callback burns {@code callbackWork} CPU tokens, standing for the work done
+ * by the broker when a message is persisted (deduplication bookkeeping, stats, send receipt).
+ *
+ * <p>With {@code numCallbackThreads} set to 0 the callbacks run on the managed ledger thread, as with
+ * {@code managedLedgerNumCallbackThreads=0} in the broker.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManagedLedgerAddEntryBenchmark {
+
+    private static final int MAX_PENDING_ADDS = 1000;
+
+    @Param({ "0", "4" })
+    public int numCallbackThreads;
+
+    @Param({ "100", "1000" })
+    public int callbackWork;
+
+    @Param({ "1024" })
+    public int entrySize;
+
+    private ExecutorService bookieExecutor;
+    private MockZooKeeper zkc;
+    private FastMockBookKeeper bkc;
+    private ManagedLedgerFactoryImpl factory;
+    private ManagedLedger ledger;
+    private ByteBuf payload;
+    private final Semaphore pendingAdds = new Semaphore(MAX_PENDING_ADDS);
+
+    private final AddEntryCallback addCallback = new AddEntryCallback() {
+        @Override
+        public void addComplete(Position position, Object ctx) {
+            Blackhole.consumeCPU(callbackWork);
+            pendingAdds.release();
+        }
+
+        @Override
+        public void addFailed(ManagedLedgerException exception, Object ctx) {
+            pendingAdds.release();
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        zkc = MockZooKeeper.newInstance();
+        ZkUtils.createFullPathOptimistic(zkc, "/ledgers/available/192.168.1.1:5000", new byte[0], null, null);
+        zkc.create("/ledgers/LAYOUT", "1\nflat:1".getBytes(), null, null);
+        bookieExecutor = Executors.newSingleThreadExecutor();
+        bkc = new FastMockBookKeeper(zkc, bookieExecutor);
+
+        ManagedLedgerFactoryConfig factoryConfig = new ManagedLedgerFactoryConfig();
+        factoryConfig.setNumManagedLedgerCallbackThreads(numCallbackThreads);
+        factory = new ManagedLedgerFactoryImpl(bkc, zkc, factoryConfig);
+        zkc.create("/managed-ledgers", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+
+        // Without cursors, the ledgers are trimmed as soon as they are rolled over
+        ledger = factory.open("my-topic", new ManagedLedgerConfig().setMaxEntriesPerLedger(50000));
+
+        payload = Unpooled.directBuffer(entrySize);
+        payload.writerIndex(entrySize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void waitForPendingAdds() throws InterruptedException {
+        pendingAdds.acquire(MAX_PENDING_ADDS);
+        pendingAdds.release(MAX_PENDING_ADDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        ledger.close();
+        factory.shutdown();
+        bkc.shutdown();
+        zkc.shutdown();
+        bookieExecutor.shutdownNow();
+        payload.release();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addEntry() throws InterruptedException {
+        pendingAdds.acquire();
+        ledger.asyncAddEntry(payload, addCallback, null);
+    }
+
+    /**
+     * Creates {@link FastMockLedgerHandle} ledgers and forgets about them on deletion.
+     */
+    static class FastMockBookKeeper extends PulsarMockBookKeeper {
+        private final ExecutorService executor;
+        private final AtomicLong ledgerIds = new AtomicLong();
+
+        FastMockBookKeeper(ZooKeeper zkc, ExecutorService executor) throws Exception {
+            super(zkc, executor);
+            this.executor = executor;
+        }
+
+        @Override
+        public void asyncCreateLedger(int ensSize, int writeQuorumSize, int ackQuorumSize, DigestType digestType,
+                byte[] passwd, CreateCallback cb, Object ctx, Map<String, byte[]> properties) {
+            executor.execute(() -> {
+                try {
+                    cb.createComplete(BKException.Code.OK,
+                            new FastMockLedgerHandle(this, ledgerIds.getAndIncrement(), digestType, passwd), ctx);
+                } catch (GeneralSecurityException e) {
+                    cb.createComplete(BKException.Code.UnexpectedConditionException, null, ctx);
+                }
+            });
+        }
+
+        @Override
+        public void asyncDeleteLedger(long lId, DeleteCallback cb, Object ctx) {
+            executor.execute(() -> cb.deleteComplete(BKException.Code.OK, ctx));
+        }
+    }
+
+    /**
+     * Acknowledges the adds in order from the bookkeeper executor, without keeping the entries.
+     */
+    static class FastMockLedgerHandle extends PulsarMockLedgerHandle {
+        private final ExecutorService executor;
+        private long nextEntryId = 0;
+        private volatile long lastAddConfirmed = -1;
+
+        FastMockLedgerHandle(FastMockBookKeeper bk, long id, DigestType digest, byte[] passwd)
+                throws GeneralSecurityException {
+            super(bk, id, digest, passwd);
+            this.executor = bk.executor;
+        }
+
+        @Override
+        public void asyncAddEntry(ByteBuf data, AddCallback cb, Object ctx) {
+            // Adds are issued from the managed ledger thread, one at a time
+            long entryId = nextEntryId++;
+            executor.execute(() -> {
+                data.release();
+                lastAddConfirmed = entryId;
+                cb.addComplete(BKException.Code.OK, this, entryId, ctx);
+            });
+        }
+
+        @Override
+        public long getLastAddConfirmed() {
+            return lastAddConfirmed;
+        }
+    }
+}
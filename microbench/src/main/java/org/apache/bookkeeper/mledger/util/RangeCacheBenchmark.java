@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link RangeCache} configured the same way as the managed ledger entry cache.
+ *
+ * <p>The {@code cache} group has one thread appending new entries (evicting the oldest ones once the cache is full)
+ * while the other threads read entries close to the tail, which is the access pattern of a topic with tailing
+ * consumers. The other groups are single threaded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class RangeCacheBenchmark {
+
+    private static final long LEDGER_ID = 1;
+
+    @Param({ "10000", "100000" })
+    public int maxEntries;
+
+    @Param({ "1024" })
+    public int entrySize;
+
+    private RangeCache<PositionImpl, EntryImpl> cache;
+    private ByteBuf payload;
+    private long maxSize;
+    private volatile long lastEntryId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        payload = Unpooled.directBuffer(entrySize);
+        payload.writerIndex(entrySize);
+        maxSize = (long) maxEntries * entrySize;
+
+        lastEntryId = -1;
+        for (int i = 0; i < maxEntries; i++) {
+            insert();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        cache.clear();
+        payload.release();
+    }
+
+    private long insert() {
+        long entryId = lastEntryId + 1;
+        // All the entries share the same payload buffer, each holding one reference on it
+        EntryImpl entry = EntryImpl.create(LEDGER_ID, entryId, payload);
+        if (!cache.put(new PositionImpl(LEDGER_ID, entryId), entry)) {
+            entry.release();
+        }
+        lastEntryId = entryId;
+        return entryId;
+    }
+
+    @Benchmark
+    @Group("cache")
+    @GroupThreads(1)
+    public long insertAndEvict() {
+        long entryId = insert();
+        long excess = cache.getSize() - maxSize;
+        if (excess > 0) {
+            cache.evictLeastAccessedEntries(excess);
+        }
+        return entryId;
+    }
+
+    @Benchmark
+    @Group("cache")
+    @GroupThreads(3)
+    public int getNearTail() {
+        long entryId = lastEntryId - ThreadLocalRandom.current().nextInt(maxEntries / 2);
+        EntryImpl entry = cache.get(new PositionImpl(LEDGER_ID, entryId));
+        if (entry == null) {
+            return 0;
+        }
+        int length = entry.getLength();
+        entry.release();
+        return length;
+    }
+
+    @Benchmark
+    @Group("getRange")
+    public int getRange() {
+        long first = lastEntryId - ThreadLocalRandom.current().nextInt(maxEntries - 100);
+        Collection<EntryImpl> entries = cache.getRange(new PositionImpl(LEDGER_ID, first),
+                new PositionImpl(LEDGER_ID, first + 99));
+        entries.forEach(EntryImpl::release);
+        return entries.size();
+    }
+
+    @Benchmark
+    @Group("removeRange")
+    public long removeRangeAndRefill() {
+        // Simulate a mark-delete moving forward over the first 100 entries, then refill the cache tail
+        long first = lastEntryId - maxEntries + 1;
+        cache.removeRange(new PositionImpl(LEDGER_ID, first), new PositionImpl(LEDGER_ID, first + 100), false);
+        for (int i = 0; i < 100; i++) {
+            insert();
+        }
+        return cache.getSize();
+    }
+
+    @Benchmark
+    @Group("evictBeforeTimestamp")
+    public long evictBeforeTimestampAndRefill() {
+        // Expire the oldest 100 entries, then refill the cache tail
+        EntryImpl threshold = cache.get(new PositionImpl(LEDGER_ID, lastEntryId - maxEntries + 100));
+        if (threshold == null) {
+            return 0;
+        }
+        long removed = cache.evictLEntriesBeforeTimestamp(threshold.getTimestamp());
+        threshold.release();
+        while (cache.getSize() < maxSize) {
+            insert();
+        }
+        return removed;
+    }
+}
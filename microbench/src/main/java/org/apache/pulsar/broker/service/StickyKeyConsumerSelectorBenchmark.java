@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.common.util.Murmur3_32Hash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link StickyKeyConsumerSelector} implementations of Key_Shared subscriptions.
+ *
+ * <p>Besides the cost of {@code select} and of a consumer leaving and joining again, the setup prints the quality of
+ * the key assignment for the configured number of consumers:
+ * <ul>
+ * <li>the number of keys of the most and least loaded consumers, relative to the mean (ideally 1.0)
+ * <li>the fraction of the keys that move to another consumer when a consumer is removed, then when it is added back
+ * (ideally 1/n, then 1/n again for the same keys)
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StickyKeyConsumerSelectorBenchmark {
+
+    private static final int NUM_KEYS = 1 << 16;
+
+    @Param({ "HashRange", "ConsistentHashing" })
+    public String selectorType;
+
+    @Param({ "10", "100" })
+    public int numConsumers;
+
+    private StickyKeyConsumerSelector selector;
+    private List<Consumer> consumers;
+    private int[] keyHashes;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        selector = newSelector();
+        consumers = new ArrayList<>();
+        for (int i = 0; i < numConsumers; i++) {
+            Consumer consumer = mock(Consumer.class);
+            when(consumer.consumerName()).thenReturn("consumer-" + i);
+            when(consumer.consumerId()).thenReturn((long) i);
+            consumers.add(consumer);
+            selector.addConsumer(consumer);
+        }
+
+        Random random = new Random(0);
+        keyHashes = new int[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keyHashes[i] = Murmur3_32Hash.getInstance().makeHash(("key-" + random.nextLong()).getBytes());
+        }
+
+        printKeyAssignment();
+    }
+
+    private StickyKeyConsumerSelector newSelector() {
+        switch (selectorType) {
+        case "HashRange":
+            return new HashRangeStickyKeyConsumerSelector();
+        case "ConsistentHashing":
+            return new ConsistentHashingStickyKeyConsumerSelector();
+        default:
+            throw new IllegalArgumentException("Unknown selector type " + selectorType);
+        }
+    }
+
+    private Consumer[] assignKeys() {
+        Consumer[] assignment = new Consumer[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            assignment[i] = selector.select(keyHashes[i]);
+        }
+        return assignment;
+    }
+
+    private static double movedFraction(Consumer[] before, Consumer[] after) {
+        int moved = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) {
+                moved++;
+            }
+        }
+        return (double) moved / before.length;
+    }
+
+    private void printKeyAssignment() throws Exception {
+        Consumer[] initial = assignKeys();
+        Map<Consumer, Integer> counts = new HashMap<>();
+        for (Consumer consumer : initial) {
+            counts.merge(consumer, 1, Integer::sum);
+        }
+        double mean = (double) NUM_KEYS / numConsumers;
+        int max = counts.values().stream().mapToInt(Integer::intValue).max().getAsInt();
+        int min = counts.size() < numConsumers ? 0 : counts.values().stream().mapToInt(Integer::intValue).min()
+                .getAsInt();
+
+        // Churn a consumer in the middle of the list
+        Consumer churned = consumers.get(numConsumers / 2);
+        selector.removeConsumer(churned);
+        Consumer[] afterRemove = assignKeys();
+        selector.addConsumer(churned);
+        Consumer[] afterAdd = assignKeys();
+
+        System.out.printf("%n%s with %d consumers: max/mean=%.2f min/mean=%.2f, moved keys: remove=%.3f add=%.3f"
+                + " (1/n=%.3f), back to initial assignment: %b%n", selectorType, numConsumers, max / mean, min / mean,
+                movedFraction(initial, afterRemove), movedFraction(afterRemove, afterAdd), 1.0 / numConsumers,
+                movedFraction(initial, afterAdd) == 0);
+    }
+
+    @Benchmark
+    public Consumer select() {
+        return selector.select(keyHashes[index++ & (NUM_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Consumer removeAndAddConsumer() throws Exception {
+        Consumer consumer = consumers.get(index++ % numConsumers);
+        selector.removeConsumer(consumer);
+        selector.addConsumer(consumer);
+        return consumer;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.ProducerImpl.OpSendMsg;
+import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.Commands.ChecksumType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Producer side batching: adding messages to a {@link BatchMessageContainerImpl} and turning the batch into a
+ * compressed, checksummed SEND command.
+ *
+ * <p>The owning producer is stubbed so that only the container and the command serialization are measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchMessageContainerBenchmark {
+
+    @Param({ "100", "1000" })
+    public int messagesPerBatch;
+
+    @Param({ "128" })
+    public int messageSize;
+
+    @Param({ "NONE", "LZ4", "ZSTD" })
+    public CompressionType compressionType;
+
+    private BatchMessageContainerImpl container;
+    private byte[] payload;
+    private long sequenceId;
+
+    private static final SendCallback NOOP_CALLBACK = new SendCallback() {
+        @Override
+        public void sendComplete(Exception e) {
+        }
+
+        @Override
+        public void addCallback(MessageImpl<?> msg, SendCallback scb) {
+        }
+
+        @Override
+        public SendCallback getNextSendCallback() {
+            return null;
+        }
+
+        @Override
+        public MessageImpl<?> getNextMessage() {
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<MessageId> getFuture() {
+            return null;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ProducerConfigurationData conf = new ProducerConfigurationData();
+        conf.setCompressionType(compressionType);
+        conf.setBatchingMaxMessages(messagesPerBatch);
+
+        ProducerImpl<?> producer = mock(ProducerImpl.class);
+        when(producer.getConfiguration()).thenReturn(conf);
+        when(producer.getTopic()).thenReturn("persistent://prop/ns/microbench");
+        when(producer.getProducerName()).thenReturn("microbench-producer");
+        when(producer.encryptMessage(any(), any())).thenAnswer(invocation -> invocation.getArguments()[1]);
+        when(producer.sendMessage(anyLong(), anyLong(), anyInt(), any(), any())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            return Commands.newSend((long) args[0], (long) args[1], (int) args[2], ChecksumType.Crc32c,
+                    (MessageMetadata) args[3], (io.netty.buffer.ByteBuf) args[4]);
+        });
+
+        container = new BatchMessageContainerImpl();
+        container.setProducer(producer);
+        payload = new byte[messageSize];
+    }
+
+    @Benchmark
+    public int addAndCreateOpSendMsg() throws Exception {
+        for (int i = 0; i < messagesPerBatch; i++) {
+            MessageMetadata.Builder metadata = MessageMetadata.newBuilder()
+                    .setProducerName("microbench-producer")
+                    .setSequenceId(sequenceId++)
+                    .setPublishTime(System.currentTimeMillis());
+            container.add(MessageImpl.create(metadata, ByteBuffer.wrap(payload), Schema.BYTES), NOOP_CALLBACK);
+        }
+
+        OpSendMsg op = container.createOpSendMsg();
+        int size = op.cmd.readableBytes();
+        op.cmd.release();
+        op.recycle();
+        container.clear();
+        return size;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.common.api.proto.PulsarApi.CompressionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encode and decode throughput of every {@link CompressionCodec}.
+ *
+ * <p>The payload is made of words drawn from a small dictionary, so that it compresses roughly like a JSON or text
+ * message would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionCodecBenchmark {
+
+    @Param({ "NONE", "LZ4", "ZLIB", "ZSTD", "SNAPPY" })
+    public CompressionType compressionType;
+
+    @Param({ "1024", "131072" })
+    public int payloadSize;
+
+    private static final String[] WORDS = { "pulsar", "topic", "broker", "ledger", "entry", "cursor", "producer",
+            "consumer", "{", "}", "\"key\":", "\"value\":", "1234", "true", "false" };
+
+    private CompressionCodec codec;
+    private ByteBuf raw;
+    private ByteBuf encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+
+        Random random = new Random(0);
+        raw = Unpooled.directBuffer(payloadSize);
+        while (raw.writableBytes() > 0) {
+            byte[] word = WORDS[random.nextInt(WORDS.length)].getBytes();
+            raw.writeBytes(word, 0, Math.min(word.length, raw.writableBytes()));
+        }
+        encoded = codec.encode(raw);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        raw.release();
+        encoded.release();
+    }
+
+    @Benchmark
+    public int encode() {
+        ByteBuf buf = codec.encode(raw);
+        int size = buf.readableBytes();
+        buf.release();
+        return size;
+    }
+
+    @Benchmark
+    public int decode() throws IOException {
+        ByteBuf buf = codec.decode(encoded.duplicate(), payloadSize);
+        int size = buf.readableBytes();
+        buf.release();
+        return size;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageIdData;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands.ChecksumType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of the commands that are created for every published and dispatched message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandsBenchmark {
+
+    @Param({ "100", "1024", "65536" })
+    public int payloadSize;
+
+    @Param({ "Crc32c", "None" })
+    public ChecksumType checksumType;
+
+    private ByteBuf payload;
+    private ByteBuf metadataAndPayload;
+    private MessageMetadata metadata;
+    private MessageIdData messageId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        payload = Unpooled.directBuffer(payloadSize);
+        payload.writerIndex(payloadSize);
+        metadata = MessageMetadata.newBuilder()
+                .setProducerName("microbench-producer")
+                .setSequenceId(1)
+                .setPublishTime(System.currentTimeMillis())
+                .setPartitionKey("key-1")
+                .build();
+        metadataAndPayload = Commands.serializeMetadataAndPayload(checksumType, metadata, payload);
+        messageId = MessageIdData.newBuilder().setLedgerId(1234).setEntryId(5678).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        payload.release();
+        metadataAndPayload.release();
+    }
+
+    @Benchmark
+    public int serializeMetadataAndPayload() {
+        ByteBuf buf = Commands.serializeMetadataAndPayload(checksumType, metadata, payload);
+        int size = buf.readableBytes();
+        buf.release();
+        return size;
+    }
+
+    @Benchmark
+    public int newSend() {
+        ByteBufPair cmd = Commands.newSend(1, 1, 1, checksumType, metadata, payload.retain());
+        int size = cmd.readableBytes();
+        cmd.release();
+        return size;
+    }
+
+    @Benchmark
+    public int newMessage() {
+        ByteBufPair cmd = Commands.newMessage(1, messageId, 0, metadataAndPayload.retain());
+        int size = cmd.readableBytes();
+        cmd.release();
+        return size;
+    }
+}
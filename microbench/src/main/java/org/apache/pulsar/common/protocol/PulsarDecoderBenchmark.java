@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.common.api.proto.PulsarApi.CommandAck;
+import org.apache.pulsar.common.api.proto.PulsarApi.CommandAck.AckType;
+import org.apache.pulsar.common.api.proto.PulsarApi.CommandMessage;
+import org.apache.pulsar.common.api.proto.PulsarApi.CommandSend;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageIdData;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands.ChecksumType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of the frames that dominate the broker and client inbound traffic: SEND, MESSAGE and ACK.
+ *
+ * <p>Frames are handed to the decoder in the same shape as after the length field based frame decoder, i.e. without
+ * the leading total size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PulsarDecoderBenchmark {
+
+    @Param({ "100", "1024" })
+    public int payloadSize;
+
+    private ByteBuf sendFrame;
+    private ByteBuf messageFrame;
+    private ByteBuf ackFrame;
+    private CountingDecoder decoder;
+
+    private static class CountingDecoder extends PulsarDecoder {
+        private Blackhole blackhole;
+
+        @Override
+        protected void messageReceived() {
+        }
+
+        @Override
+        protected void handleSend(CommandSend send, ByteBuf headersAndPayload) {
+            blackhole.consume(send.getSequenceId());
+            blackhole.consume(headersAndPayload.readableBytes());
+        }
+
+        @Override
+        protected void handleMessage(CommandMessage cmdMessage, ByteBuf headersAndPayload) {
+            blackhole.consume(cmdMessage.getMessageId().getEntryId());
+            blackhole.consume(headersAndPayload.readableBytes());
+        }
+
+        @Override
+        protected void handleAck(CommandAck ack) {
+            blackhole.consume(ack.getMessageIdCount());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ByteBuf payload = Unpooled.directBuffer(payloadSize);
+        payload.writerIndex(payloadSize);
+        MessageMetadata metadata = MessageMetadata.newBuilder()
+                .setProducerName("microbench-producer")
+                .setSequenceId(1)
+                .setPublishTime(System.currentTimeMillis())
+                .build();
+        MessageIdData messageId = MessageIdData.newBuilder().setLedgerId(1234).setEntryId(5678).build();
+
+        sendFrame = toFrame(Commands.newSend(1, 1, 1, ChecksumType.Crc32c, metadata, payload.retain()));
+        ByteBuf metadataAndPayload = Commands.serializeMetadataAndPayload(ChecksumType.Crc32c, metadata, payload);
+        messageFrame = toFrame(Commands.newMessage(1, messageId, 0, metadataAndPayload));
+        ackFrame = toFrame(Commands.newAck(1, 1234, 5678, AckType.Individual, null,
+                Collections.emptyMap()));
+        payload.release();
+
+        decoder = new CountingDecoder();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        sendFrame.release();
+        messageFrame.release();
+        ackFrame.release();
+    }
+
+    private static ByteBuf toFrame(ByteBufPair pair) {
+        ByteBuf frame = ByteBufPair.coalesce(pair);
+        pair.release();
+        return toFrame(frame);
+    }
+
+    private static ByteBuf toFrame(ByteBuf serialized) {
+        ByteBuf frame = Unpooled.directBuffer(serialized.readableBytes());
+        frame.writeBytes(serialized);
+        serialized.release();
+        // Skip the total frame size, stripped by the frame decoder
+        frame.readerIndex(4);
+        return frame;
+    }
+
+    private void decode(ByteBuf frame, Blackhole blackhole) throws Exception {
+        decoder.blackhole = blackhole;
+        // The decoder releases the buffer once done
+        decoder.channelRead(null, frame.retainedDuplicate());
+    }
+
+    @Benchmark
+    public void decodeSend(Blackhole blackhole) throws Exception {
+        decode(sendFrame, blackhole);
+    }
+
+    @Benchmark
+    public void decodeMessage(Blackhole blackhole) throws Exception {
+        decode(messageFrame, blackhole);
+    }
+
+    @Benchmark
+    public void decodeAck(Blackhole blackhole) throws Exception {
+        decode(ackFrame, blackhole);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent primitive collections used on the dispatch and acknowledgement paths.
+ *
+ * <p>Each map/set is pre-filled with {@code size} items and shared by all the benchmark threads, mimicking a
+ * subscription that is acked and redelivered from several IO threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentCollectionsBenchmark {
+
+    @Param({ "10000", "1000000" })
+    public int size;
+
+    private ConcurrentOpenHashMap<String, Long> openHashMap;
+    private String[] keys;
+
+    private ConcurrentLongPairSet longPairSet;
+
+    private ConcurrentOpenLongPairRangeSet<LongPair> rangeSet;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        openHashMap = new ConcurrentOpenHashMap<>(size);
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "persistent://prop/ns/topic-" + i;
+            openHashMap.put(keys[i], (long) i);
+        }
+
+        longPairSet = new ConcurrentLongPairSet(size);
+        for (int i = 0; i < size; i++) {
+            longPairSet.add(i / 1000, i % 1000);
+        }
+
+        // Every other entry acked, which is the worst case for the range set
+        rangeSet = new ConcurrentOpenLongPairRangeSet<>(LongPair::new);
+        for (int i = 0; i < size; i += 2) {
+            rangeSet.addOpenClosed(i / 1000, (i % 1000) - 1, i / 1000, i % 1000);
+        }
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Long openHashMapGet() {
+        return openHashMap.get(keys[randomIndex()]);
+    }
+
+    @Benchmark
+    public Long openHashMapPutRemove() {
+        String key = keys[randomIndex()];
+        Long value = openHashMap.remove(key);
+        if (value != null) {
+            openHashMap.put(key, value);
+        }
+        return value;
+    }
+
+    @Benchmark
+    public boolean longPairSetContains() {
+        int i = randomIndex();
+        return longPairSet.contains(i / 1000, i % 1000);
+    }
+
+    @Benchmark
+    public boolean longPairSetAddRemove() {
+        int i = randomIndex();
+        if (longPairSet.remove(i / 1000, i % 1000)) {
+            return longPairSet.add(i / 1000, i % 1000);
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean rangeSetContains() {
+        int i = randomIndex();
+        return rangeSet.contains(i / 1000, i % 1000);
+    }
+
+    @Benchmark
+    public void rangeSetAddOpenClosed() {
+        int i = randomIndex();
+        rangeSet.addOpenClosed(i / 1000, (i % 1000) - 1, i / 1000, i % 1000);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Index of the delayed messages of a subscription, as a priority queue and as a timing wheel.
+ *
+ * <p>Each invocation moves the time forward by 1 millisecond, adds a message with a random delay and removes all the
+ * messages that are due within the tick time. The index holds about {@code size} messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DelayedDeliveryQueueBenchmark {
+
+    @Param({ "10000", "1000000" })
+    public int size;
+
+    @Param({ "1", "1000" })
+    public long tickTimeMillis;
+
+    private long now;
+
+    private TripleLongPriorityQueue priorityQueue;
+
+    private TripleLongTimingWheel timingWheel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        now = 0;
+        priorityQueue = new TripleLongPriorityQueue();
+        timingWheel = new TripleLongTimingWheel(tickTimeMillis, now);
+        for (int i = 0; i < size; i++) {
+            long deliveryAt = randomDeliveryTime();
+            priorityQueue.add(deliveryAt, i, i);
+            timingWheel.add(deliveryAt, i, i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        priorityQueue.close();
+    }
+
+    private long randomDeliveryTime() {
+        // One message per millisecond, so delays up to twice the size keep the index at about the same size
+        return now + ThreadLocalRandom.current().nextLong(2L * size);
+    }
+
+    @Benchmark
+    public long priorityQueue() {
+        ++now;
+        priorityQueue.add(randomDeliveryTime(), now, now);
+
+        long cutoffTime = now + tickTimeMillis;
+        long delivered = 0;
+        while (!priorityQueue.isEmpty() && priorityQueue.peekN1() <= cutoffTime) {
+            delivered += priorityQueue.peekN3();
+            priorityQueue.pop();
+        }
+        return delivered;
+    }
+
+    @Benchmark
+    public long timingWheel() {
+        ++now;
+        timingWheel.add(randomDeliveryTime(), now, now);
+
+        timingWheel.advanceTo(now);
+        long delivered = 0;
+        while (timingWheel.hasExpired()) {
+            delivered += timingWheel.peekExpiredN3();
+            timingWheel.popExpired();
+        }
+        return delivered;
+    }
+}
@@ -159,13 +159,27 @@ public class ServiceConfiguration implements PulsarConfiguration {
     @FieldContext(category = CATEGORY_SERVER, doc = "Whether to enable the delayed delivery for messages.")
     private boolean delayedDeliveryEnabled = true;
 
-    @FieldContext(category = CATEGORY_SERVER, doc = "Class name of the factory that implements the delayed deliver tracker")
+    @FieldContext(category = CATEGORY_SERVER, doc = "Class name of the factory that implements the delayed deliver tracker."
+            + " The default one keeps all the delayed messages in memory in a priority queue."
+            + " org.apache.pulsar.broker.delayed.TimingWheelDelayedDeliveryTrackerFactory keeps them in memory in a"
+            + " timing wheel with a slot per tick time, which is cheaper with many delayed messages, while"
+            + " org.apache.pulsar.broker.delayed.BucketDelayedDeliveryTrackerFactory stores them in BookKeeper"
+            + " snapshots and keeps only the next ones to deliver in memory")
     private String delayedDeliveryTrackerFactoryClassName = "org.apache.pulsar.broker.delayed.InMemoryDelayedDeliveryTrackerFactory";
 
     @FieldContext(category = CATEGORY_SERVER, doc = "Control the tick time for when retrying on delayed delivery, "
             + " affecting the accuracy of the delivery time compared to the scheduled time. Default is 1 second.")
     private long delayedDeliveryTickTimeMillis = 1000;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = "Minimum number of delayed messages tracked in memory before they"
+            + " are stored in a bucket snapshot, with the BucketDelayedDeliveryTrackerFactory")
+    private long delayedDeliveryMinIndexCountPerBucket = 50000;
+
+    @FieldContext(category = CATEGORY_SERVER, doc = "Maximum number of delayed messages in each segment of a bucket"
+            + " snapshot, with the BucketDelayedDeliveryTrackerFactory. Only one segment of each bucket is kept in"
+            + " memory")
+    private int delayedDeliveryMaxIndexesPerBucketSnapshotSegment = 5000;
+
     @FieldContext(
         category = CATEGORY_WEBSOCKET,
         doc = "Enable the WebSocket API service in broker"
@@ -278,6 +292,14 @@ public class ServiceConfiguration implements PulsarConfiguration {
         doc = "How frequently to proactively check and purge expired subscription"
     )
     private long subscriptionExpiryCheckIntervalInMinutes = 5;
+    @FieldContext(
+        category = CATEGORY_POLICIES,
+        doc = "How long a subscription stays without consumers before its in-memory dispatch state (dispatcher,"
+            + " dispatch rate limiter, message expiry monitor and cursor read-ahead entries) is released."
+            + " The state is recreated when a consumer attaches."
+            + " When it is 0, the state of the subscriptions without consumers is kept"
+    )
+    private int subscriptionIdleStateReleaseTimeSeconds = 0;
 
     @FieldContext(
         category = CATEGORY_POLICIES,
@@ -286,6 +308,22 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean subscriptionKeySharedEnable = true;
 
+    @FieldContext(
+        category = CATEGORY_POLICIES,
+        doc = "Assign the keys of Key_Shared subscriptions to the consumers with a consistent hashing ring, instead of"
+            + " splitting the hash range in halves. The keys are spread more evenly and only about 1/n of the keys"
+            + " move when one of n consumers is added or removed."
+    )
+    private boolean subscriptionKeySharedUseConsistentHashing = false;
+
+    @FieldContext(
+        category = CATEGORY_POLICIES,
+        doc = "Number of points (virtual nodes) of each consumer on the consistent hashing ring of Key_Shared"
+            + " subscriptions. More points spread the keys more evenly, at the cost of a slower consumer"
+            + " add/remove."
+    )
+    private int subscriptionKeySharedConsistentHashingNumberOfVirtualNodes = 100;
+
     @FieldContext(
         category = CATEGORY_POLICIES,
         doc = "Set the default behavior for message deduplication in the broker.\n\n"
@@ -450,6 +488,53 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int dispatcherMaxRoundRobinBatchSize = 20;
 
+    @FieldContext(
+        dynamic = true,
+        category = CATEGORY_SERVER,
+        doc = "Whether to size the reads of the Shared and Key_Shared dispatchers adaptively. The reads are then"
+            + " bounded by dispatcherMaxReadSizeBytes, using the average size of the entries read, instead of"
+            + " dispatcherMaxReadBatchSize, and by the number of entries the consumers acknowledge during an ack"
+            + " round trip. Reads are not smaller than what the consumers acknowledge during a read round trip."
+    )
+    private boolean dispatcherAdaptiveReadSizeEnabled = false;
+
+    @FieldContext(
+        dynamic = true,
+        category = CATEGORY_SERVER,
+        doc = "Max size in bytes of a read from bookkeeper, when dispatcherAdaptiveReadSizeEnabled is set."
+            + " By default it is 5MB."
+    )
+    private long dispatcherMaxReadSizeBytes = 5 * 1024 * 1024;
+
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Whether to write the messages dispatched to a consumer in a single composite buffer per batch of"
+            + " entries, with the headers of all the messages in the same buffer, instead of writing them one by one."
+            + " It only applies to the connections without TLS."
+    )
+    private boolean dispatcherCompositeWriteEnabled = false;
+
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Max number of flushes of a client connection to hold and send to the socket at once, to reduce the"
+            + " number of syscalls with small messages. 0 disables the flush coalescing."
+    )
+    private int flushCoalescingMaxPendingFlushes = 0;
+
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Max time in microseconds a flush of a client connection is held for, when flush coalescing is enabled."
+    )
+    private long flushCoalescingMaxDelayMicros = 100;
+
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Whether to hold the send receipts of a producer until the end of the current I/O loop and write them"
+            + " together. The receipts of consecutive messages persisted in consecutive entries are sent as a single"
+            + " range receipt to the clients that support it."
+    )
+    private boolean producerSendReceiptBatchingEnabled = false;
+
     @FieldContext(
         dynamic = true,
         category = CATEGORY_SERVER,
@@ -824,6 +909,23 @@ public class ServiceConfiguration implements PulsarConfiguration {
             (int) (PlatformDependent.maxDirectMemory() / 5 / (1024 * 1024)));
     @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Whether we should make a copy of the entry payloads when inserting in cache")
     private boolean managedLedgerCacheCopyEntries = false;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Data structure used to hold the cached entries of each topic. Possible values are `SkipList`"
+            + " (one sorted map node per entry) and `Segmented` (entries of each ledger stored in array segments"
+            + " indexed by entry id)"
+    )
+    private String managedLedgerCacheType = "SkipList";
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Class name of the policy that picks which topics to evict cached entries from. The default policy"
+            + " evicts from the biggest caches, while"
+            + " `org.apache.bookkeeper.mledger.impl.EntryCacheTinyLfuEvictionPolicy` evicts from the least"
+            + " frequently and least recently read topics and stops caching writes of topics that are not being read"
+            + " when the cache is full"
+    )
+    private String managedLedgerCacheEvictionPolicy =
+            "org.apache.bookkeeper.mledger.impl.EntryCacheDefaultEvictionPolicy";
     @FieldContext(
         category = CATEGORY_STORAGE_ML,
         doc = "Threshold to which bring down the cache level when eviction is triggered"
@@ -844,6 +946,36 @@ public class ServiceConfiguration implements PulsarConfiguration {
         doc = "Rate limit the amount of writes per second generated by consumer acking the messages"
     )
     private double managedLedgerDefaultMarkDeleteRateLimit = 1.0;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Group the updates of the managed ledgers and cursors metadata in ZooKeeper multi operations,"
+            + " instead of one ZooKeeper write per update"
+    )
+    private boolean managedLedgerMetadataBatchingEnabled = false;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Maximum time (in microseconds) a metadata update waits for other updates to be grouped with"
+    )
+    private long managedLedgerMetadataBatchingMaxDelayMicros = 1000;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Maximum number of metadata updates grouped in a single ZooKeeper multi operation"
+    )
+    private int managedLedgerMetadataBatchingMaxSize = 100;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Directory of a local RocksDB database keeping the managed ledgers and cursors metadata, instead of"
+            + " ZooKeeper. Only for deployments where a single broker owns all the topics, eg: standalone."
+            + " The existing metadata is copied from ZooKeeper with `bin/pulsar migrate-managed-ledger-metadata`."
+            + " Every update is synced to disk before it completes, so that the metadata survives a crash of the"
+            + " machine."
+    )
+    private String managedLedgerMetadataStoreDirectory = null;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Maximum number of managed ledgers opened at the same time when loading the topics of a bundle"
+    )
+    private int managedLedgerMaxConcurrentBulkOpens = 64;
     @FieldContext(
         category = CATEGORY_STORAGE_ML,
     	doc = "Allow automated creation of non-partition topics if set to true (default value)."
@@ -859,6 +991,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
         doc = "Number of threads to be used for managed ledger scheduled tasks"
     )
     private int managedLedgerNumSchedulerThreads = Runtime.getRuntime().availableProcessors();
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Number of threads to be used for the completion of the entries added to managed ledgers, in the order"
+            + " of the entries of each managed ledger. With 0, the completions run on the managed ledger worker"
+            + " thread, which then can't handle the next publishes of the topic meanwhile"
+    )
+    private int managedLedgerNumCallbackThreads = 0;
 
     @FieldContext(
         category = CATEGORY_STORAGE_ML,
@@ -909,6 +1048,35 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "If number of unack message range is higher than this limit then broker will persist"
             + " unacked ranges into bookkeeper to avoid additional data overhead into zookeeper.")
     private int managedLedgerMaxUnackedRangesToPersistInZooKeeper = 1000;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Persist the `acknowledgment holes` of each ledger as run lengths or as a bitmap, instead of a list of"
+            + " ranges.\n\n"
+            + "This makes the cursor metadata a lot smaller when messages are acknowledged in random order."
+            + " managedLedgerMaxUnackedRangesToPersist then bounds the size of the persisted holes to the size of"
+            + " that many ranges, rather than their number. Once enabled, the cursors cannot be recovered by a"
+            + " broker version that does not support it.")
+    private boolean managedLedgerUnackedRangesCompactEncodingEnabled = false;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Number of mark-delete positions appended to the cursor ledger with only the `acknowledgment holes`"
+            + " changed since the previous one, between two full snapshots of the `acknowledgment holes`"
+            + " (0 to always write full snapshots).\n\n"
+            + "Once enabled, the cursors cannot be recovered by a broker version that does not support it.")
+    private int managedLedgerCursorDeltasPerSnapshot = 0;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Parse the metadata of the published messages once, when they are added to the entry cache, and keep"
+            + " a summary (key hash, number of messages, delivery time) with the cached entries. The dispatchers"
+            + " then do not parse the metadata of the entries read from the cache again.")
+    private boolean managedLedgerCacheEntrySummaryEnabled = true;
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Track the acknowledgments of individual messages within batches.\n\n"
+            + "When enabled, the messages of a batch that were acknowledged are not delivered again when the rest of"
+            + " the batch is redelivered, as long as the consumer supports it. The acknowledged indexes are persisted"
+            + " with the cursor, which cannot be recovered then by a broker version that does not support it.")
+    private boolean acknowledgmentAtBatchIndexLevelEnabled = false;
     @FieldContext(
             category = CATEGORY_STORAGE_OFFLOADING,
             doc = "Use Open Range-Set to cache unacked messages (it is memory efficient but it can take more cpu)"
@@ -934,6 +1102,26 @@ public class ServiceConfiguration implements PulsarConfiguration {
         )
     private long managedLedgerReadEntryTimeoutSeconds = 0;
 
+    @FieldContext(
+            category = CATEGORY_STORAGE_ML,
+            doc = "Number of entries to prefetch, ahead of the next read, for subscriptions that are sequentially"
+                    + " reading a backlog. Prefetching is skipped for subscriptions reading close to each other,"
+                    + " since they already share the entries through the cache (0 to disable it)"
+        )
+    private int managedLedgerReadAheadEntries = 0;
+
+    @FieldContext(
+            category = CATEGORY_STORAGE_ML,
+            doc = "Max size in KB of the entries prefetched for a single subscription"
+        )
+    private int managedLedgerReadAheadMaxSizeKB = 4096;
+
+    @FieldContext(
+            category = CATEGORY_STORAGE_ML,
+            doc = "Max size in MB of the entries prefetched for all the subscriptions of the broker"
+        )
+    private int managedLedgerReadAheadMaxTotalSizeMB = 128;
+
     @FieldContext(category = CATEGORY_STORAGE_ML,
             doc = "Add entry timeout when broker tries to publish message to bookkeeper.(0 to disable it)")
     private long managedLedgerAddEntryTimeoutSeconds = 0;
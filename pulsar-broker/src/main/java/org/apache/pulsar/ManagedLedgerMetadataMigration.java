@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.impl.MetaStore;
+import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
+import org.apache.bookkeeper.mledger.impl.MetaStore.Stat;
+import org.apache.bookkeeper.mledger.impl.MetaStoreImplRocksDB;
+import org.apache.bookkeeper.mledger.impl.MetaStoreImplZookeeper;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.common.configuration.PulsarConfigurationLoader;
+import org.apache.pulsar.common.naming.TopicDomain;
+import org.apache.pulsar.zookeeper.ZooKeeperClientFactory;
+import org.apache.pulsar.zookeeper.ZookeeperClientFactoryImpl;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copy the managed ledgers and cursors metadata of the persistent topics from ZooKeeper to the local metadata store
+ * configured with {@code managedLedgerMetadataStoreDirectory}.
+ *
+ * <p>The broker must be stopped while the metadata is copied. The tool can be run again, the metadata already present
+ * in the local store is overwritten with the one in ZooKeeper.
+ */
+public class ManagedLedgerMetadataMigration {
+
+    private static final String MANAGED_LEDGERS_ROOT = "/managed-ledgers";
+
+    private static class Arguments {
+        @Parameter(names = { "-c", "--broker-conf" }, description = "Configuration file for Broker")
+        private String brokerConfigFile = Paths.get("").toAbsolutePath().normalize().toString() + "/conf/broker.conf";
+
+        @Parameter(names = { "-d", "--metadata-store-dir" },
+                description = "Directory of the local metadata store, instead of managedLedgerMetadataStoreDirectory")
+        private String metadataStoreDirectory;
+
+        @Parameter(names = { "-h", "--help" }, description = "Show this help message")
+        private boolean help = false;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments();
+        JCommander jcommander = new JCommander(arguments);
+        jcommander.setProgramName("PulsarManagedLedgerMetadataMigration");
+
+        jcommander.parse(args);
+        if (arguments.help) {
+            jcommander.usage();
+            System.exit(-1);
+        }
+
+        ServiceConfiguration brokerConfig = PulsarConfigurationLoader.create(arguments.brokerConfigFile,
+                ServiceConfiguration.class);
+        String metadataStoreDirectory = isBlank(arguments.metadataStoreDirectory)
+                ? brokerConfig.getManagedLedgerMetadataStoreDirectory()
+                : arguments.metadataStoreDirectory;
+        if (isBlank(metadataStoreDirectory)) {
+            jcommander.usage();
+            throw new IllegalArgumentException("Need to specify the directory of the local metadata store");
+        }
+
+        OrderedScheduler executor = OrderedScheduler.newSchedulerBuilder().name("ml-metadata-migration").build();
+        ZooKeeper zk = new ZookeeperClientFactoryImpl().create(brokerConfig.getZookeeperServers(),
+                ZooKeeperClientFactory.SessionType.ReadWrite, (int) brokerConfig.getZooKeeperSessionTimeoutMillis())
+                .get();
+        try (MetaStoreImplRocksDB target = new MetaStoreImplRocksDB(metadataStoreDirectory, executor)) {
+            int migrated = migrate(zk, new MetaStoreImplZookeeper(zk, executor), target);
+            log.info("Copied the metadata of {} managed ledgers to {}", migrated, metadataStoreDirectory);
+        } finally {
+            zk.close();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Copy the metadata of all the managed ledgers of the persistent topics.
+     *
+     * @return the number of managed ledgers copied
+     */
+    public static int migrate(ZooKeeper zk, MetaStore source, MetaStore target) throws Exception {
+        List<String> ledgerNames = new ArrayList<>();
+        if (zk.exists(MANAGED_LEDGERS_ROOT, false) != null) {
+            findManagedLedgers(zk, "", ledgerNames);
+        }
+
+        for (String ledgerName : ledgerNames) {
+            migrateManagedLedger(ledgerName, source, target);
+        }
+        return ledgerNames.size();
+    }
+
+    private static void findManagedLedgers(ZooKeeper zk, String path, List<String> ledgerNames) throws Exception {
+        // Managed ledgers are stored as <tenant>/[<cluster>/]<namespace>/persistent/<topic>, and their children
+        // are the cursors
+        boolean isDomain = path.endsWith("/" + TopicDomain.persistent.value());
+        for (String child : zk.getChildren(MANAGED_LEDGERS_ROOT + path, false)) {
+            if (isDomain) {
+                ledgerNames.add(path.substring(1) + "/" + child);
+            } else {
+                findManagedLedgers(zk, path + "/" + child, ledgerNames);
+            }
+        }
+    }
+
+    private static void migrateManagedLedger(String ledgerName, MetaStore source, MetaStore target)
+            throws Exception {
+        Result<ManagedLedgerInfo> ledgerInfo = new Result<>();
+        source.getManagedLedgerInfo(ledgerName, false, ledgerInfo);
+        Result<List<String>> cursorNames = new Result<>();
+        source.getCursors(ledgerName, cursorNames);
+
+        Result<ManagedLedgerInfo> targetLedgerInfo = new Result<>();
+        target.getManagedLedgerInfo(ledgerName, true, targetLedgerInfo);
+        Result<Void> ledgerUpdate = new Result<>();
+        target.asyncUpdateLedgerIds(ledgerName, ledgerInfo.await().getLeft(), targetLedgerInfo.await().getRight(),
+                ledgerUpdate);
+        ledgerUpdate.await();
+
+        for (String cursorName : cursorNames.await().getLeft()) {
+            Result<ManagedCursorInfo> cursorInfo = new Result<>();
+            source.asyncGetCursorInfo(ledgerName, cursorName, cursorInfo);
+            Result<ManagedCursorInfo> targetCursorInfo = new Result<>();
+            target.asyncGetCursorInfo(ledgerName, cursorName, targetCursorInfo);
+
+            Stat targetCursorStat;
+            try {
+                targetCursorStat = targetCursorInfo.await().getRight();
+            } catch (MetaStoreException e) {
+                if (!(e.getCause() instanceof NoNodeException)) {
+                    throw e;
+                }
+                // The cursor is created
+                targetCursorStat = null;
+            }
+            Result<Void> cursorUpdate = new Result<>();
+            target.asyncUpdateCursorInfo(ledgerName, cursorName, cursorInfo.await().getLeft(), targetCursorStat,
+                    cursorUpdate);
+            cursorUpdate.await();
+        }
+        log.info("[{}] Copied the metadata of the managed ledger and its cursors {}", ledgerName,
+                cursorNames.await().getLeft());
+    }
+
+    private static class Result<T> extends CompletableFuture<Pair<T, Stat>> implements MetaStoreCallback<T> {
+        @Override
+        public void operationComplete(T result, Stat stat) {
+            complete(Pair.of(result, stat));
+        }
+
+        @Override
+        public void operationFailed(MetaStoreException e) {
+            completeExceptionally(e);
+        }
+
+        Pair<T, Stat> await() throws Exception {
+            try {
+                return get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof MetaStoreException ? (MetaStoreException) e.getCause() : e;
+            }
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ManagedLedgerMetadataMigration.class);
+}
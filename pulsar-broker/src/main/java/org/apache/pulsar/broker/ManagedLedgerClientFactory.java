@@ -27,6 +27,7 @@ import java.util.concurrent.RejectedExecutionException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig.EntryCacheType;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl.BookkeeperFactoryForCustomEnsemblePlacementPolicy;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl.EnsemblePlacementPolicyConfig;
@@ -53,10 +54,19 @@ public class ManagedLedgerClientFactory implements Closeable {
         managedLedgerFactoryConfig.setCacheEvictionWatermark(conf.getManagedLedgerCacheEvictionWatermark());
         managedLedgerFactoryConfig.setNumManagedLedgerWorkerThreads(conf.getManagedLedgerNumWorkerThreads());
         managedLedgerFactoryConfig.setNumManagedLedgerSchedulerThreads(conf.getManagedLedgerNumSchedulerThreads());
+        managedLedgerFactoryConfig.setNumManagedLedgerCallbackThreads(conf.getManagedLedgerNumCallbackThreads());
         managedLedgerFactoryConfig.setCacheEvictionFrequency(conf.getManagedLedgerCacheEvictionFrequency());
         managedLedgerFactoryConfig.setCacheEvictionTimeThresholdMillis(conf.getManagedLedgerCacheEvictionTimeThresholdMillis());
         managedLedgerFactoryConfig.setThresholdBackloggedCursor(conf.getManagedLedgerCursorBackloggedThreshold());
         managedLedgerFactoryConfig.setCopyEntriesInCache(conf.isManagedLedgerCacheCopyEntries());
+        managedLedgerFactoryConfig.setEntryCacheType(EntryCacheType.valueOf(conf.getManagedLedgerCacheType()));
+        managedLedgerFactoryConfig.setCacheEvictionPolicyClassName(conf.getManagedLedgerCacheEvictionPolicy());
+        managedLedgerFactoryConfig.setMetadataBatchingEnabled(conf.isManagedLedgerMetadataBatchingEnabled());
+        managedLedgerFactoryConfig.setMetadataBatchingMaxDelayMicros(conf.getManagedLedgerMetadataBatchingMaxDelayMicros());
+        managedLedgerFactoryConfig.setMetadataBatchingMaxSize(conf.getManagedLedgerMetadataBatchingMaxSize());
+        managedLedgerFactoryConfig.setMetadataStoreDirectory(conf.getManagedLedgerMetadataStoreDirectory());
+        managedLedgerFactoryConfig.setMaxConcurrentBulkOpens(conf.getManagedLedgerMaxConcurrentBulkOpens());
+        managedLedgerFactoryConfig.setMaxReadAheadSize(conf.getManagedLedgerReadAheadMaxTotalSizeMB() * 1024L * 1024L);
 
         this.defaultBkClient = bookkeeperProvider.create(conf, zkClient, Optional.empty(), null);
         
@@ -50,8 +50,13 @@ import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
 import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.CloseCallback;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenLedgerCallback;
 import org.apache.bookkeeper.mledger.LedgerOffloader;
 import org.apache.bookkeeper.mledger.LedgerOffloaderFactory;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 import org.apache.bookkeeper.mledger.impl.NullLedgerOffloader;
 import org.apache.bookkeeper.mledger.offload.OffloaderUtils;
@@ -275,6 +280,10 @@ public class PulsarService implements AutoCloseable {
                 compactorExecutor.shutdown();
             }
 
+            if (offloader != null) {
+                offloader.close();
+            }
+
             if (offloaderScheduler != null) {
                 offloaderScheduler.shutdown();
             }
@@ -611,35 +620,125 @@ public class PulsarService implements AutoCloseable {
             LOG.info("Loading all topics on bundle: {}", bundle);
 
             NamespaceName nsName = bundle.getNamespaceObject();
-            List<CompletableFuture<Topic>> persistentTopics = Lists.newArrayList();
+            List<String> bundleTopics = Lists.newArrayList();
             long topicLoadStart = System.nanoTime();
 
             for (String topic : getNamespaceService().getListOfPersistentTopics(nsName)) {
                 try {
                     TopicName topicName = TopicName.get(topic);
                     if (bundle.includes(topicName)) {
-                        CompletableFuture<Topic> future = brokerService.getOrCreateTopic(topic);
-                        if (future != null) {
-                            persistentTopics.add(future);
-                        }
+                        bundleTopics.add(topic);
                     }
                 } catch (Throwable t) {
                     LOG.warn("Failed to preload topic {}", topic, t);
                 }
             }
 
-            if (!persistentTopics.isEmpty()) {
-                FutureUtil.waitForAll(persistentTopics).thenRun(() -> {
-                    double topicLoadTimeSeconds = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - topicLoadStart)
-                            / 1000.0;
-                    LOG.info("Loaded {} topics on {} -- time taken: {} seconds", persistentTopics.size(), bundle,
-                            topicLoadTimeSeconds);
-                });
+            if (bundleTopics.isEmpty()) {
+                return null;
             }
+
+            // Open the managed ledgers of all the topics together, so that their metadata reads are pipelined, and
+            // create each topic on top of its managed ledger once it's opened
+            List<CompletableFuture<Topic>> persistentTopics = Lists.newArrayList();
+            openManagedLedgers(bundle, bundleTopics).forEach((topic, ledgerFuture) -> {
+                // If the managed ledger could not be opened, the topic opens it on its own
+                persistentTopics.add(ledgerFuture.handle((ledger, ex) -> ledger)
+                        .thenCompose(ledger -> loadTopic(topic, ledger)));
+            });
+
+            FutureUtil.waitForAll(persistentTopics).thenRun(() -> {
+                double topicLoadTimeSeconds = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - topicLoadStart)
+                        / 1000.0;
+                LOG.info("Loaded {} topics on {} -- time taken: {} seconds", persistentTopics.size(), bundle,
+                        topicLoadTimeSeconds);
+            });
             return null;
         });
     }
 
+    /**
+     * Open the managed ledgers of the topics of a bundle, each one with the configuration of its topic.
+     *
+     * @return the future of the managed ledger of each topic, completed with null if its configuration can't be
+     *         retrieved
+     */
+    private Map<String, CompletableFuture<ManagedLedger>> openManagedLedgers(NamespaceBundle bundle,
+            List<String> topics) {
+        Map<String, CompletableFuture<ManagedLedger>> ledgerFutures = Maps.newLinkedHashMap();
+        Map<String, CompletableFuture<ManagedLedger>> ledgerFuturesByName = Maps.newHashMap();
+        Map<String, ManagedLedgerConfig> configs = Maps.newConcurrentMap();
+        List<CompletableFuture<Void>> configFutures = Lists.newArrayListWithCapacity(topics.size());
+        for (String topic : topics) {
+            TopicName topicName = TopicName.get(topic);
+            String name = topicName.getPersistenceNamingEncoding();
+            CompletableFuture<ManagedLedger> ledgerFuture = new CompletableFuture<>();
+            ledgerFutures.put(topic, ledgerFuture);
+            ledgerFuturesByName.put(name, ledgerFuture);
+            configFutures.add(brokerService.getManagedLedgerConfig(topicName).thenAccept(managedLedgerConfig -> {
+                managedLedgerConfig.setCreateIfMissing(false);
+                configs.put(name, managedLedgerConfig);
+            }));
+        }
+
+        FutureUtil.waitForAll(configFutures).whenComplete((v, ex) -> {
+            if (ex != null) {
+                LOG.warn("Failed to get the managed ledger configuration of some topics on {}", bundle, ex);
+                ledgerFuturesByName.forEach((name, ledgerFuture) -> {
+                    if (!configs.containsKey(name)) {
+                        ledgerFuture.complete(null);
+                    }
+                });
+            }
+
+            getManagedLedgerFactory().asyncOpen(configs, new OpenLedgerCallback() {
+                @Override
+                public void openLedgerComplete(ManagedLedger ledger, Object name) {
+                    ledgerFuturesByName.get(name).complete(ledger);
+                }
+
+                @Override
+                public void openLedgerFailed(ManagedLedgerException exception, Object name) {
+                    ledgerFuturesByName.get(name).completeExceptionally(exception);
+                }
+            });
+        });
+        return ledgerFutures;
+    }
+
+    /**
+     * Create a topic on top of its already opened managed ledger. The managed ledger is closed if no topic ends up
+     * using it.
+     */
+    private CompletableFuture<Topic> loadTopic(String topic, ManagedLedger ledger) {
+        CompletableFuture<Topic> future;
+        try {
+            future = brokerService.getOrCreateTopic(topic);
+        } catch (Throwable t) {
+            future = FutureUtil.failedFuture(t);
+        }
+
+        return future.whenComplete((persistentTopic, ex) -> {
+            if (ex == null) {
+                return;
+            }
+            LOG.warn("Failed to preload topic {}", topic, ex);
+            if (ledger != null && !brokerService.getTopicReference(topic).isPresent()) {
+                ledger.asyncClose(new CloseCallback() {
+                    @Override
+                    public void closeComplete(Object ctx) {
+                        LOG.info("Closed the managed ledger of topic {} which failed to load", topic);
+                    }
+
+                    @Override
+                    public void closeFailed(ManagedLedgerException exception, Object ctx) {
+                        LOG.warn("Failed to close the managed ledger of topic {}", topic, exception);
+                    }
+                }, null);
+            }
+        });
+    }
+
     // No need to synchronize since config is only init once
     // We only read this from memory later
     public String getStatusFilePath() {
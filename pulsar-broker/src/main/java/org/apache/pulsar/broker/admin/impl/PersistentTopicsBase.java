@@ -20,7 +20,6 @@ package org.apache.pulsar.broker.admin.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.pulsar.broker.cache.ConfigurationCacheService.POLICIES;
-import static org.apache.pulsar.common.util.Codec.decode;
 
 import com.github.zafarkhaja.semver.Version;
 import com.google.common.collect.Lists;
@@ -138,14 +137,10 @@ public class PersistentTopicsBase extends AdminResource {
         List<String> topics = Lists.newArrayList();
 
         try {
-            String path = String.format("/managed-ledgers/%s/%s", namespaceName.toString(), domain());
-            for (String topic : managedLedgerListCache().get(path)) {
-                if (domain().equals(TopicDomain.persistent.toString())) {
-                    topics.add(TopicName.get(domain(), namespaceName, decode(topic)).toString());
-                }
+            // Only the persistent topics have a managed ledger
+            if (domain().equals(TopicDomain.persistent.toString())) {
+                topics.addAll(pulsar().getNamespaceService().getListOfPersistentTopics(namespaceName));
             }
-        } catch (KeeperException.NoNodeException e) {
-            // NoNode means there are no topics in this domain for this namespace
         } catch (Exception e) {
             log.error("[{}] Failed to get topics list for namespace {}", clientAppId(), namespaceName, e);
             throw new RestException(e);
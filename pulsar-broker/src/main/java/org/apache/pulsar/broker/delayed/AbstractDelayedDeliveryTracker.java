@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+
+/**
+ * Base class of the trackers that wake up the dispatcher with a timer when the next delayed message is due.
+ */
+@Slf4j
+public abstract class AbstractDelayedDeliveryTracker implements DelayedDeliveryTracker, TimerTask {
+
+    protected final PersistentDispatcherMultipleConsumers dispatcher;
+
+    // Reference to the shared (per-broker) timer for delayed delivery
+    private final Timer timer;
+
+    // Current timeout or null if not set
+    private Timeout timeout;
+
+    // Timestamp at which the timeout is currently set
+    private long currentTimeoutTarget;
+
+    protected final long tickTimeMillis;
+
+    protected final Clock clock;
+
+    protected AbstractDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+            long tickTimeMillis, Clock clock) {
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.tickTimeMillis = tickTimeMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the delivery time of the next delayed message, or -1 if there are no delayed messages
+     */
+    protected abstract long nextDeliveryTime();
+
+    /**
+     * Pick all the messages that will be ready within the tick time period. This is to avoid keeping rescheduling the
+     * timer for each message at very short delay.
+     */
+    protected long getCutoffTime() {
+        return clock.millis() + tickTimeMillis;
+    }
+
+    protected void updateTimer() {
+        long timestamp = nextDeliveryTime();
+        if (timestamp < 0) {
+            if (timeout != null) {
+                currentTimeoutTarget = -1;
+                timeout.cancel();
+                timeout = null;
+            }
+            return;
+        }
+
+        if (timestamp == currentTimeoutTarget) {
+            // The timer is already set to the correct target time
+            return;
+        }
+
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+            currentTimeoutTarget = -1;
+        }
+
+        long delayMillis = timestamp - clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Start timer in {} millis", dispatcher.getName(), delayMillis);
+        }
+
+        if (delayMillis < 0) {
+            // There are messages that are already ready to be delivered. If
+            // the dispatcher is not getting them is because the consumer is
+            // either not connected or slow.
+            // We don't need to keep retriggering the timer. When the consumer
+            // catches up, the dispatcher will do the readMoreEntries() and
+            // get these messages
+            return;
+        }
+
+        currentTimeoutTarget = timestamp;
+        timeout = timer.newTimeout(this, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Let the dispatcher read the messages that became available without being added to the tracker.
+     */
+    protected void triggerReadMoreEntries() {
+        timer.newTimeout(timeout -> {
+            synchronized (dispatcher) {
+                dispatcher.readMoreEntries();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Timer triggered", dispatcher.getName());
+        }
+        if (timeout.isCancelled()) {
+            return;
+        }
+
+        synchronized (dispatcher) {
+            currentTimeoutTarget = -1;
+            this.timeout = null;
+            dispatcher.readMoreEntries();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static org.apache.pulsar.broker.service.schema.BookkeeperSchemaStorage.bkException;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.impl.LedgerMetadataUtils;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.common.util.FutureUtil;
+
+/**
+ * Store each bucket snapshot in its own BookKeeper ledger. The first entry holds the size of each segment, and is
+ * followed by one entry per segment.
+ */
+@Slf4j
+public class BookkeeperBucketSnapshotStorage implements BucketSnapshotStorage {
+
+    private static final byte[] LedgerPassword = "".getBytes();
+
+    private final BookKeeper bookKeeper;
+    private final ServiceConfiguration config;
+
+    // Handles of the snapshots being read, by snapshot id
+    private final Map<Long, CompletableFuture<LedgerHandle>> readHandles = new ConcurrentHashMap<>();
+
+    public BookkeeperBucketSnapshotStorage(BookKeeper bookKeeper, ServiceConfiguration config) {
+        this.bookKeeper = bookKeeper;
+        this.config = config;
+    }
+
+    @Override
+    public CompletableFuture<Long> createBucketSnapshot(String topicName, String cursorName, List<long[]> segments) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        bookKeeper.asyncCreateLedger(
+            config.getManagedLedgerDefaultEnsembleSize(),
+            config.getManagedLedgerDefaultWriteQuorum(),
+            config.getManagedLedgerDefaultAckQuorum(),
+            BookKeeper.DigestType.fromApiDigestType(config.getManagedLedgerDigestType()),
+            LedgerPassword,
+            (rc, handle, ctx) -> {
+                if (rc != BKException.Code.OK) {
+                    future.completeExceptionally(bkException("Failed to create ledger", rc, -1, -1));
+                    return;
+                }
+
+                List<CompletableFuture<Void>> addFutures = new ArrayList<>(segments.size() + 1);
+                ByteBuffer segmentSizes = ByteBuffer.allocate(segments.size() * Integer.BYTES);
+                segments.forEach(segment -> segmentSizes.putInt(segment.length / 3));
+                addFutures.add(addEntry(handle, segmentSizes.array()));
+                for (long[] segment : segments) {
+                    ByteBuffer buffer = ByteBuffer.allocate(segment.length * Long.BYTES);
+                    buffer.asLongBuffer().put(segment);
+                    addFutures.add(addEntry(handle, buffer.array()));
+                }
+
+                FutureUtil.waitForAll(addFutures).thenCompose(v -> closeLedger(handle)).whenComplete((v, ex) -> {
+                    if (ex != null) {
+                        deleteBucketSnapshot(handle.getId());
+                        future.completeExceptionally(ex);
+                    } else {
+                        future.complete(handle.getId());
+                    }
+                });
+            }, null, LedgerMetadataUtils.buildMetadataForDelayedDeliveryBucket(topicName, cursorName)
+        );
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<int[]> getBucketSnapshotSegmentSizes(long bucketId) {
+        return readEntry(bucketId, 0).thenApply(entry -> {
+            IntBuffer buffer = ByteBuffer.wrap(entry.getEntry()).asIntBuffer();
+            int[] segmentSizes = new int[buffer.remaining()];
+            buffer.get(segmentSizes);
+            return segmentSizes;
+        });
+    }
+
+    @Override
+    public CompletableFuture<long[]> getBucketSnapshotSegment(long bucketId, int segmentIndex) {
+        return readEntry(bucketId, segmentIndex + 1).thenApply(entry -> {
+            LongBuffer buffer = ByteBuffer.wrap(entry.getEntry()).asLongBuffer();
+            long[] segment = new long[buffer.remaining()];
+            buffer.get(segment);
+            return segment;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBucketSnapshot(long bucketId) {
+        releaseBucketSnapshot(bucketId);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        bookKeeper.asyncDeleteLedger(bucketId, (rc, ctx) -> {
+            if (rc != BKException.Code.OK && rc != BKException.Code.NoSuchLedgerExistsException) {
+                future.completeExceptionally(bkException("Failed to delete ledger", rc, bucketId, -1));
+            } else {
+                future.complete(null);
+            }
+        }, null);
+        return future;
+    }
+
+    @Override
+    public void releaseBucketSnapshot(long bucketId) {
+        CompletableFuture<LedgerHandle> handleFuture = readHandles.remove(bucketId);
+        if (handleFuture != null) {
+            handleFuture.thenAccept(this::closeLedger);
+        }
+    }
+
+    private CompletableFuture<Void> addEntry(LedgerHandle handle, byte[] data) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        handle.asyncAddEntry(data, (rc, lh, entryId, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                future.completeExceptionally(bkException("Failed to add entry", rc, handle.getId(), entryId));
+            } else {
+                future.complete(null);
+            }
+        }, null);
+        return future;
+    }
+
+    private CompletableFuture<LedgerEntry> readEntry(long ledgerId, long entryId) {
+        // The segments of a snapshot are read one after the other, keep the ledger open until the snapshot is
+        // released
+        CompletableFuture<LedgerHandle> handleFuture = readHandles.computeIfAbsent(ledgerId, this::openLedger);
+        return handleFuture.thenCompose(handle -> {
+            CompletableFuture<LedgerEntry> future = new CompletableFuture<>();
+            handle.asyncReadEntries(entryId, entryId, (rc, lh, entries, ctx) -> {
+                if (rc != BKException.Code.OK) {
+                    future.completeExceptionally(bkException("Failed to read entry", rc, ledgerId, entryId));
+                } else {
+                    future.complete(entries.nextElement());
+                }
+            }, null);
+            return future;
+        }).whenComplete((entry, ex) -> {
+            if (ex != null && readHandles.remove(ledgerId, handleFuture)) {
+                handleFuture.thenAccept(this::closeLedger);
+            }
+        });
+    }
+
+    private CompletableFuture<LedgerHandle> openLedger(long ledgerId) {
+        CompletableFuture<LedgerHandle> future = new CompletableFuture<>();
+        bookKeeper.asyncOpenLedgerNoRecovery(ledgerId,
+            BookKeeper.DigestType.fromApiDigestType(config.getManagedLedgerDigestType()),
+            LedgerPassword,
+            (rc, handle, ctx) -> {
+                if (rc != BKException.Code.OK) {
+                    future.completeExceptionally(bkException("Failed to open ledger", rc, ledgerId, -1));
+                } else {
+                    future.complete(handle);
+                }
+            }, null
+        );
+        return future;
+    }
+
+    private CompletableFuture<Void> closeLedger(LedgerHandle ledgerHandle) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ledgerHandle.asyncClose((rc, handle, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                log.warn("Failed to close ledger {}: {}", ledgerHandle.getId(), BKException.getMessage(rc));
+                future.completeExceptionally(bkException("Failed to close ledger", rc, ledgerHandle.getId(), -1));
+            } else {
+                future.complete(null);
+            }
+        }, null);
+        return future;
+    }
+}
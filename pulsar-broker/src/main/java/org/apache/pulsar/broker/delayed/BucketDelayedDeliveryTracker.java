@@ -0,0 +1,567 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timer;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
+import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.persistent.PersistentSubscription;
+import org.apache.pulsar.common.util.collections.TripleLongPriorityQueue;
+
+/**
+ * Delayed delivery tracker that splits the index of the delayed messages in buckets of consecutive ledgers.
+ *
+ * <p/>Messages are first added to the last bucket, which is kept in memory. Once it holds enough messages, the bucket
+ * is sealed when a message from a new ledger comes in: its messages are sorted by delivery time, split in segments and
+ * stored as a snapshot with a {@link BucketSnapshotStorage}. Only the segment of each sealed bucket holding its next
+ * messages to deliver is kept in memory. The next segment is loaded once all the messages of the current one have
+ * been scheduled, and the snapshot is deleted after the last one.
+ *
+ * <p/>The sealed buckets are recorded in the properties of the subscription cursor. When the subscription is loaded
+ * again, the messages read from the ledgers of a sealed bucket are not tracked again, and the segments are loaded from
+ * the snapshots instead. Messages that were already acknowledged are skipped when they are replayed.
+ *
+ * <p/>If the snapshot of a bucket cannot be read, the bucket is dropped and the messages of its ledgers that are not
+ * acknowledged yet are replayed, so that the delayed ones are tracked again.
+ */
+@Slf4j
+public class BucketDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker {
+
+    public static final String DELAYED_BUCKET_KEY_PREFIX = "#pulsar.internal.delayed.bucket.";
+
+    private static class ImmutableBucket {
+        final long startLedgerId;
+        final long endLedgerId;
+
+        // Completed with the id of the snapshot once it is stored
+        CompletableFuture<Long> snapshotFuture;
+
+        int numberOfSegments;
+        int currentSegment = -1;
+
+        // Messages of the current segment that were not scheduled yet
+        int remainingInSegment;
+
+        // Messages of the segments that are not loaded yet
+        long unloadedMessages;
+
+        ImmutableBucket(long startLedgerId, long endLedgerId) {
+            this.startLedgerId = startLedgerId;
+            this.endLedgerId = endLedgerId;
+        }
+
+        String key() {
+            return DELAYED_BUCKET_KEY_PREFIX + startLedgerId + "_" + endLedgerId;
+        }
+    }
+
+    private final ManagedCursor cursor;
+
+    private final BucketSnapshotStorage bucketSnapshotStorage;
+
+    private final long minIndexCountPerBucket;
+
+    private final int maxIndexesPerBucketSnapshotSegment;
+
+    // Messages of the last bucket, not sealed yet
+    private final TripleLongPriorityQueue lastMutableBucket = new TripleLongPriorityQueue();
+    private long mutableBucketStartLedgerId = -1;
+    private long mutableBucketEndLedgerId = -1;
+
+    // Messages of the segments loaded from the sealed buckets, and messages read again from ledgers not covered by
+    // any bucket
+    private final TripleLongPriorityQueue sharedBucketPriorityQueue = new TripleLongPriorityQueue();
+
+    // Sealed buckets, by first ledger id
+    private final NavigableMap<Long, ImmutableBucket> immutableBuckets = new TreeMap<>();
+
+    // Last ledger covered by a sealed bucket. A new bucket only covers the following ledgers
+    private long lastSealedLedgerId = -1;
+
+    // Ranges of positions to replay, as (ledgerId, nextEntryId, lastEntryId), from the ledgers of the dropped buckets
+    private final Deque<long[]> readAgainRanges = new ArrayDeque<>();
+
+    private long numberOfDelayedMessages = 0;
+
+    private boolean closed = false;
+
+    BucketDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer, long tickTimeMillis,
+            BucketSnapshotStorage bucketSnapshotStorage, long minIndexCountPerBucket,
+            int maxIndexesPerBucketSnapshotSegment) {
+        this(dispatcher, timer, tickTimeMillis, Clock.systemUTC(), bucketSnapshotStorage, minIndexCountPerBucket,
+                maxIndexesPerBucketSnapshotSegment);
+    }
+
+    BucketDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer, long tickTimeMillis,
+            Clock clock, BucketSnapshotStorage bucketSnapshotStorage, long minIndexCountPerBucket,
+            int maxIndexesPerBucketSnapshotSegment) {
+        super(dispatcher, timer, tickTimeMillis, clock);
+        this.cursor = dispatcher.getCursor();
+        this.bucketSnapshotStorage = bucketSnapshotStorage;
+        this.minIndexCountPerBucket = minIndexCountPerBucket;
+        this.maxIndexesPerBucketSnapshotSegment = maxIndexesPerBucketSnapshotSegment;
+        recoverBuckets();
+    }
+
+    private void recoverBuckets() {
+        Map<String, Long> properties = cursor.getProperties();
+        if (properties == null) {
+            return;
+        }
+
+        properties.forEach((key, bucketId) -> {
+            if (!key.startsWith(DELAYED_BUCKET_KEY_PREFIX)) {
+                return;
+            }
+            String[] ledgerIds = key.substring(DELAYED_BUCKET_KEY_PREFIX.length()).split("_");
+            ImmutableBucket bucket = new ImmutableBucket(Long.parseLong(ledgerIds[0]), Long.parseLong(ledgerIds[1]));
+            bucket.snapshotFuture = CompletableFuture.completedFuture(bucketId);
+            immutableBuckets.put(bucket.startLedgerId, bucket);
+            lastSealedLedgerId = Math.max(lastSealedLedgerId, bucket.endLedgerId);
+        });
+
+        if (!immutableBuckets.isEmpty()) {
+            log.info("[{}] Recovering {} delayed delivery buckets", dispatcher.getName(), immutableBuckets.size());
+            updateSubscriptionBucketProperties(getBucketProperties());
+        }
+
+        for (ImmutableBucket bucket : new ArrayList<>(immutableBuckets.values())) {
+            long bucketId = bucket.snapshotFuture.join();
+            bucketSnapshotStorage.getBucketSnapshotSegmentSizes(bucketId).thenCompose(segmentSizes -> {
+                synchronized (dispatcher) {
+                    bucket.numberOfSegments = segmentSizes.length;
+                    for (int segmentSize : segmentSizes) {
+                        bucket.unloadedMessages += segmentSize;
+                    }
+                    numberOfDelayedMessages += bucket.unloadedMessages;
+                }
+                return bucketSnapshotStorage.getBucketSnapshotSegment(bucketId, 0);
+            }).whenComplete((segment, ex) -> {
+                synchronized (dispatcher) {
+                    if (closed || immutableBuckets.get(bucket.startLedgerId) != bucket) {
+                        return;
+                    }
+                    if (ex != null) {
+                        log.error("[{}] Failed to recover delayed delivery bucket {}, reading the messages again",
+                                dispatcher.getName(), bucket.key(), ex);
+                        removeBucketToReadAgain(bucket);
+                        return;
+                    }
+                    loadSegment(bucket, 0, segment);
+                    updateTimer();
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean addMessage(long ledgerId, long entryId, long deliveryAt) {
+        long now = clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Add message {}:{} -- Delivery in {} ms ", dispatcher.getName(), ledgerId, entryId,
+                    deliveryAt - now);
+        }
+        if (deliveryAt <= getCutoffTime()) {
+            // It's already about time to deliver this message. This also covers the messages that are replayed after
+            // being scheduled, which must not be skipped as part of a sealed bucket
+            return false;
+        }
+
+        if (findImmutableBucket(ledgerId) != null) {
+            // The message is already in the snapshot of a sealed bucket, it's being read again
+            return true;
+        }
+
+        if (ledgerId <= lastSealedLedgerId) {
+            // Read again from a ledger that is not covered by any bucket, it's only tracked in memory
+            sharedBucketPriorityQueue.add(deliveryAt, ledgerId, entryId);
+        } else {
+            if (lastMutableBucket.size() >= minIndexCountPerBucket && ledgerId > mutableBucketEndLedgerId) {
+                sealMutableBucket();
+            }
+
+            if (lastMutableBucket.isEmpty()) {
+                mutableBucketStartLedgerId = ledgerId;
+                mutableBucketEndLedgerId = ledgerId;
+            } else {
+                mutableBucketStartLedgerId = Math.min(mutableBucketStartLedgerId, ledgerId);
+                mutableBucketEndLedgerId = Math.max(mutableBucketEndLedgerId, ledgerId);
+            }
+            lastMutableBucket.add(deliveryAt, ledgerId, entryId);
+        }
+
+        ++numberOfDelayedMessages;
+        updateTimer();
+        return true;
+    }
+
+    private void sealMutableBucket() {
+        List<long[]> segments = new ArrayList<>();
+        while (!lastMutableBucket.isEmpty()) {
+            long[] segment = new long[Math.min(maxIndexesPerBucketSnapshotSegment, lastMutableBucket.size()) * 3];
+            for (int i = 0; i < segment.length; i += 3) {
+                segment[i] = lastMutableBucket.peekN1();
+                segment[i + 1] = lastMutableBucket.peekN2();
+                segment[i + 2] = lastMutableBucket.peekN3();
+                lastMutableBucket.pop();
+            }
+            segments.add(segment);
+        }
+
+        ImmutableBucket bucket = new ImmutableBucket(mutableBucketStartLedgerId, mutableBucketEndLedgerId);
+        bucket.numberOfSegments = segments.size();
+        segments.forEach(segment -> bucket.unloadedMessages += segment.length / 3);
+        immutableBuckets.put(bucket.startLedgerId, bucket);
+        lastSealedLedgerId = bucket.endLedgerId;
+        mutableBucketStartLedgerId = -1;
+        mutableBucketEndLedgerId = -1;
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Sealing delayed delivery bucket {} with {} segments", dispatcher.getName(), bucket.key(),
+                    segments.size());
+        }
+
+        // The first segment is already in memory
+        loadSegment(bucket, 0, segments.get(0));
+
+        bucket.snapshotFuture = bucketSnapshotStorage.createBucketSnapshot(dispatcher.getTopic().getName(),
+                cursor.getName(), segments);
+        bucket.snapshotFuture.whenComplete((bucketId, ex) -> {
+            synchronized (dispatcher) {
+                if (closed) {
+                    return;
+                }
+                if (ex == null) {
+                    persistBucketIndex();
+                    return;
+                }
+
+                log.warn("[{}] Failed to store the snapshot of delayed delivery bucket {}, keeping it in memory",
+                        dispatcher.getName(), bucket.key(), ex);
+                if (immutableBuckets.remove(bucket.startLedgerId, bucket)) {
+                    bucket.unloadedMessages = 0;
+                    for (int i = bucket.currentSegment + 1; i < segments.size(); i++) {
+                        long[] segment = segments.get(i);
+                        for (int j = 0; j < segment.length; j += 3) {
+                            sharedBucketPriorityQueue.add(segment[j], segment[j + 1], segment[j + 2]);
+                        }
+                    }
+                    updateTimer();
+                }
+            }
+        });
+    }
+
+    private void loadSegment(ImmutableBucket bucket, int segmentIndex, long[] segment) {
+        bucket.currentSegment = segmentIndex;
+        bucket.remainingInSegment = segment.length / 3;
+        bucket.unloadedMessages -= bucket.remainingInSegment;
+        for (int i = 0; i < segment.length; i += 3) {
+            sharedBucketPriorityQueue.add(segment[i], segment[i + 1], segment[i + 2]);
+        }
+        if (bucket.remainingInSegment == 0) {
+            onSegmentScheduled(bucket);
+        }
+    }
+
+    private void onSegmentScheduled(ImmutableBucket bucket) {
+        int nextSegment = bucket.currentSegment + 1;
+        if (nextSegment >= bucket.numberOfSegments) {
+            deleteBucket(bucket);
+            return;
+        }
+
+        bucket.snapshotFuture
+                .thenCompose(bucketId -> bucketSnapshotStorage.getBucketSnapshotSegment(bucketId, nextSegment))
+                .whenComplete((segment, ex) -> {
+                    synchronized (dispatcher) {
+                        if (closed || immutableBuckets.get(bucket.startLedgerId) != bucket) {
+                            return;
+                        }
+                        if (ex != null) {
+                            log.error("[{}] Failed to load segment {} of delayed delivery bucket {}, reading the "
+                                    + "messages again", dispatcher.getName(), nextSegment, bucket.key(), ex);
+                            removeBucketToReadAgain(bucket);
+                            return;
+                        }
+
+                        loadSegment(bucket, nextSegment, segment);
+                        updateTimer();
+                        if (hasMessageAvailable()) {
+                            triggerReadMoreEntries();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Drop a bucket whose snapshot cannot be read. Its messages that were not loaded yet are tracked again when they
+     * are replayed.
+     */
+    private void removeBucketToReadAgain(ImmutableBucket bucket) {
+        immutableBuckets.remove(bucket.startLedgerId, bucket);
+        numberOfDelayedMessages -= bucket.unloadedMessages;
+        bucket.unloadedMessages = 0;
+        addReadAgainRanges(bucket);
+        deleteBucketSnapshot(bucket);
+        if (hasMessageAvailable()) {
+            triggerReadMoreEntries();
+        }
+    }
+
+    /**
+     * Schedule the replay of the entries of the ledgers of a bucket, between the mark-delete position and the read
+     * position of the cursor. The entries that are acknowledged individually are skipped by the replay.
+     */
+    private void addReadAgainRanges(ImmutableBucket bucket) {
+        ManagedLedger ledger = dispatcher.getTopic().getManagedLedger();
+        if (!(ledger instanceof ManagedLedgerImpl)) {
+            log.warn("[{}] Cannot list the entries of delayed delivery bucket {} to read them again",
+                    dispatcher.getName(), bucket.key());
+            return;
+        }
+
+        PositionImpl markDeletePosition = (PositionImpl) cursor.getMarkDeletedPosition();
+        PositionImpl readPosition = (PositionImpl) cursor.getReadPosition();
+        for (LedgerInfo ledgerInfo : ((ManagedLedgerImpl) ledger).getLedgersInfo()
+                .subMap(bucket.startLedgerId, true, bucket.endLedgerId, true).values()) {
+            long ledgerId = ledgerInfo.getLedgerId();
+            if (ledgerId < markDeletePosition.getLedgerId() || ledgerId > readPosition.getLedgerId()) {
+                continue;
+            }
+            long firstEntryId = ledgerId == markDeletePosition.getLedgerId() ? markDeletePosition.getEntryId() + 1
+                    : 0;
+            long lastEntryId = ledgerId == readPosition.getLedgerId() ? readPosition.getEntryId() - 1
+                    : ledgerInfo.getEntries() - 1;
+            if (firstEntryId <= lastEntryId) {
+                readAgainRanges.add(new long[] { ledgerId, firstEntryId, lastEntryId });
+            }
+        }
+    }
+
+    private void deleteBucket(ImmutableBucket bucket) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] All the messages of delayed delivery bucket {} are scheduled", dispatcher.getName(),
+                    bucket.key());
+        }
+        immutableBuckets.remove(bucket.startLedgerId, bucket);
+        deleteBucketSnapshot(bucket);
+    }
+
+    private void deleteBucketSnapshot(ImmutableBucket bucket) {
+        // Only delete the snapshot once the cursor no longer refers to it
+        persistBucketIndex()
+                .thenCompose(v -> bucket.snapshotFuture)
+                .thenCompose(bucketSnapshotStorage::deleteBucketSnapshot)
+                .exceptionally(ex -> {
+                    log.warn("[{}] Failed to delete the snapshot of delayed delivery bucket {}", dispatcher.getName(),
+                            bucket.key(), ex);
+                    return null;
+                });
+    }
+
+    /**
+     * Record the sealed buckets in the properties of the cursor, along with its mark-delete position. The cursor is
+     * flushed, since the mark-delete alone might only be applied in memory because of the mark-delete rate limiting.
+     */
+    private CompletableFuture<Void> persistBucketIndex() {
+        Map<String, Long> bucketProperties = getBucketProperties();
+        updateSubscriptionBucketProperties(bucketProperties);
+
+        Map<String, Long> properties = new TreeMap<>(bucketProperties);
+        Map<String, Long> currentProperties = cursor.getProperties();
+        if (currentProperties != null) {
+            currentProperties.forEach((key, value) -> {
+                if (!key.startsWith(DELAYED_BUCKET_KEY_PREFIX)) {
+                    properties.put(key, value);
+                }
+            });
+        }
+
+        CompletableFuture<Void> markDeleteFuture = new CompletableFuture<>();
+        cursor.asyncMarkDelete(cursor.getMarkDeletedPosition(), properties, newMarkDeleteCallback(markDeleteFuture),
+                null);
+        return markDeleteFuture.thenCompose(v -> {
+            CompletableFuture<Void> flushFuture = new CompletableFuture<>();
+            cursor.asyncFlush(newMarkDeleteCallback(flushFuture), null);
+            return flushFuture;
+        });
+    }
+
+    private MarkDeleteCallback newMarkDeleteCallback(CompletableFuture<Void> future) {
+        return new MarkDeleteCallback() {
+            @Override
+            public void markDeleteComplete(Object ctx) {
+                future.complete(null);
+            }
+
+            @Override
+            public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                log.warn("[{}] Failed to record the delayed delivery buckets", dispatcher.getName(), exception);
+                future.completeExceptionally(exception);
+            }
+        };
+    }
+
+    private Map<String, Long> getBucketProperties() {
+        Map<String, Long> bucketProperties = new TreeMap<>();
+        immutableBuckets.values().forEach(bucket -> {
+            if (bucket.snapshotFuture != null && bucket.snapshotFuture.isDone()
+                    && !bucket.snapshotFuture.isCompletedExceptionally()) {
+                bucketProperties.put(bucket.key(), bucket.snapshotFuture.join());
+            }
+        });
+        return bucketProperties.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(bucketProperties);
+    }
+
+    /**
+     * Let the subscription keep the sealed buckets in the cursor properties when it acknowledges messages.
+     */
+    private void updateSubscriptionBucketProperties(Map<String, Long> bucketProperties) {
+        Subscription subscription = dispatcher.getSubscription();
+        if (subscription instanceof PersistentSubscription) {
+            ((PersistentSubscription) subscription).setDelayedBucketProperties(bucketProperties);
+        }
+    }
+
+    private ImmutableBucket findImmutableBucket(long ledgerId) {
+        Map.Entry<Long, ImmutableBucket> entry = immutableBuckets.floorEntry(ledgerId);
+        return entry != null && ledgerId <= entry.getValue().endLedgerId ? entry.getValue() : null;
+    }
+
+    /**
+     * Return true if there's at least a message that is scheduled to be delivered already
+     */
+    @Override
+    public boolean hasMessageAvailable() {
+        if (!readAgainRanges.isEmpty()) {
+            return true;
+        }
+        long timestamp = nextDeliveryTime();
+        return timestamp >= 0 && timestamp <= clock.millis();
+    }
+
+    @Override
+    public Set<PositionImpl> getScheduledMessages(int maxMessages) {
+        int n = maxMessages;
+        Set<PositionImpl> positions = new TreeSet<>();
+        long cutoffTime = getCutoffTime();
+
+        while (n > 0 && !readAgainRanges.isEmpty()) {
+            long[] range = readAgainRanges.peek();
+            positions.add(new PositionImpl(range[0], range[1]));
+            --n;
+            if (++range[1] > range[2]) {
+                readAgainRanges.poll();
+            }
+        }
+
+        while (n > 0) {
+            TripleLongPriorityQueue queue = nextQueue();
+            if (queue == null || queue.peekN1() > cutoffTime) {
+                break;
+            }
+
+            long ledgerId = queue.peekN2();
+            long entryId = queue.peekN3();
+            positions.add(new PositionImpl(ledgerId, entryId));
+
+            queue.pop();
+            --numberOfDelayedMessages;
+            --n;
+
+            if (queue == sharedBucketPriorityQueue) {
+                ImmutableBucket bucket = findImmutableBucket(ledgerId);
+                if (bucket != null && --bucket.remainingInSegment == 0) {
+                    onSegmentScheduled(bucket);
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Get scheduled messags - found {}", dispatcher.getName(), positions.size());
+        }
+        updateTimer();
+        return positions;
+    }
+
+    private TripleLongPriorityQueue nextQueue() {
+        if (lastMutableBucket.isEmpty()) {
+            return sharedBucketPriorityQueue.isEmpty() ? null : sharedBucketPriorityQueue;
+        } else if (sharedBucketPriorityQueue.isEmpty()) {
+            return lastMutableBucket;
+        } else {
+            return lastMutableBucket.peekN1() <= sharedBucketPriorityQueue.peekN1() ? lastMutableBucket
+                    : sharedBucketPriorityQueue;
+        }
+    }
+
+    @Override
+    protected long nextDeliveryTime() {
+        TripleLongPriorityQueue queue = nextQueue();
+        return queue != null ? queue.peekN1() : -1;
+    }
+
+    @Override
+    public long getNumberOfDelayedMessages() {
+        return numberOfDelayedMessages;
+    }
+
+    int getNumberOfImmutableBuckets() {
+        return immutableBuckets.size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (dispatcher) {
+            closed = true;
+            super.close();
+            immutableBuckets.values().forEach(bucket -> {
+                if (bucket.snapshotFuture != null) {
+                    bucket.snapshotFuture.thenAccept(bucketSnapshotStorage::releaseBucketSnapshot);
+                }
+            });
+            lastMutableBucket.close();
+            sharedBucketPriorityQueue.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.common.util.FutureUtil;
+
+public class BucketDelayedDeliveryTrackerFactory implements DelayedDeliveryTrackerFactory {
+
+    private ServiceConfiguration config;
+
+    private Timer timer;
+
+    private long tickTimeMillis;
+
+    private long minIndexCountPerBucket;
+
+    private int maxIndexesPerBucketSnapshotSegment;
+
+    private volatile BucketSnapshotStorage bucketSnapshotStorage;
+
+    @Override
+    public void initialize(ServiceConfiguration config) {
+        this.config = config;
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-delayed-delivery"),
+                config.getDelayedDeliveryTickTimeMillis(), TimeUnit.MILLISECONDS);
+        this.tickTimeMillis = config.getDelayedDeliveryTickTimeMillis();
+        this.minIndexCountPerBucket = config.getDelayedDeliveryMinIndexCountPerBucket();
+        this.maxIndexesPerBucketSnapshotSegment = config.getDelayedDeliveryMaxIndexesPerBucketSnapshotSegment();
+    }
+
+    @Override
+    public DelayedDeliveryTracker newTracker(PersistentDispatcherMultipleConsumers dispatcher) {
+        return new BucketDelayedDeliveryTracker(dispatcher, timer, tickTimeMillis,
+                getBucketSnapshotStorage(dispatcher.getTopic()), minIndexCountPerBucket,
+                maxIndexesPerBucketSnapshotSegment);
+    }
+
+    @Override
+    public CompletableFuture<Void> cleanResidualSnapshots(PersistentTopic topic, ManagedCursor cursor) {
+        Map<String, Long> properties = cursor.getProperties();
+        if (properties == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        BucketSnapshotStorage storage = getBucketSnapshotStorage(topic);
+        List<CompletableFuture<Void>> futures = properties.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(BucketDelayedDeliveryTracker.DELAYED_BUCKET_KEY_PREFIX))
+                .map(entry -> storage.deleteBucketSnapshot(entry.getValue()))
+                .collect(Collectors.toList());
+        return FutureUtil.waitForAll(futures);
+    }
+
+    private BucketSnapshotStorage getBucketSnapshotStorage(PersistentTopic topic) {
+        // The BookKeeper client is not available yet when the factory is initialized
+        if (bucketSnapshotStorage == null) {
+            synchronized (this) {
+                if (bucketSnapshotStorage == null) {
+                    bucketSnapshotStorage = new BookkeeperBucketSnapshotStorage(
+                            topic.getBrokerService().pulsar().getBookKeeperClient(), config);
+                }
+            }
+        }
+        return bucketSnapshotStorage;
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+}
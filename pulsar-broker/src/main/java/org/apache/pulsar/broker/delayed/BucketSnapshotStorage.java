@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import com.google.common.annotations.Beta;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage of the snapshots of the sealed buckets of a {@link BucketDelayedDeliveryTracker}.
+ *
+ * <p/>A snapshot is made of segments, each one holding the <code>(deliverAt, ledgerId, entryId)</code> triples of
+ * consecutive delayed messages of the bucket, ordered by delivery time. Segments are loaded one at a time.
+ *
+ * Note: this interface is still being refined and some breaking changes might be introduced.
+ */
+@Beta
+public interface BucketSnapshotStorage {
+
+    /**
+     * Store the snapshot of a bucket.
+     *
+     * @param topicName
+     *            the topic of the tracker
+     * @param cursorName
+     *            the subscription cursor of the tracker
+     * @param segments
+     *            the segments of the snapshot, as flat arrays of triples
+     * @return a future completed with the id of the snapshot
+     */
+    CompletableFuture<Long> createBucketSnapshot(String topicName, String cursorName, List<long[]> segments);
+
+    /**
+     * @return a future completed with the number of messages of each segment of the snapshot
+     */
+    CompletableFuture<int[]> getBucketSnapshotSegmentSizes(long bucketId);
+
+    /**
+     * @return a future completed with the triples of the given segment of the snapshot
+     */
+    CompletableFuture<long[]> getBucketSnapshotSegment(long bucketId, int segmentIndex);
+
+    /**
+     * Delete the snapshot of a bucket.
+     */
+    CompletableFuture<Void> deleteBucketSnapshot(long bucketId);
+
+    /**
+     * Release the resources held to read the snapshot of a bucket, once the tracker no longer reads it.
+     */
+    default void releaseBucketSnapshot(long bucketId) {
+    }
+}
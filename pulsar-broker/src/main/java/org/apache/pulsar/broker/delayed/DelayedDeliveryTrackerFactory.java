@@ -21,9 +21,12 @@ package org.apache.pulsar.broker.delayed;
 import com.google.common.annotations.Beta;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
+import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 
 /**
  * Factory of InMemoryDelayedDeliveryTracker objects. This is the entry point for implementations.
@@ -48,6 +51,18 @@ public interface DelayedDeliveryTrackerFactory extends AutoCloseable {
      */
     DelayedDeliveryTracker newTracker(PersistentDispatcherMultipleConsumers dispatcher);
 
+    /**
+     * Release the data stored by the trackers of a subscription that is being deleted.
+     *
+     * @param topic
+     *            the topic of the subscription
+     * @param cursor
+     *            the cursor of the subscription
+     */
+    default CompletableFuture<Void> cleanResidualSnapshots(PersistentTopic topic, ManagedCursor cursor) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Close the factory and release all the resources
      */
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timer;
+
+import java.time.Clock;
+import java.util.Set;
+import java.util.TreeSet;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.common.util.collections.TripleLongTimingWheel;
+
+/**
+ * Delayed delivery tracker that keeps the messages in a hierarchical timing wheel, with one tick per tick time.
+ *
+ * <p/>Adding a message and expiring it take constant time, instead of the logarithmic time of the priority queue.
+ * Since the messages of a tick share the same deadline, the timer is only moved when a message is added to an earlier
+ * tick.
+ */
+@Slf4j
+public class TimingWheelDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker {
+
+    private final TripleLongTimingWheel timingWheel;
+
+    TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+            long tickTimeMillis) {
+        this(dispatcher, timer, tickTimeMillis, Clock.systemUTC());
+    }
+
+    TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+            long tickTimeMillis, Clock clock) {
+        super(dispatcher, timer, tickTimeMillis, clock);
+        this.timingWheel = new TripleLongTimingWheel(Math.max(tickTimeMillis, 1), clock.millis());
+    }
+
+    @Override
+    public boolean addMessage(long ledgerId, long entryId, long deliveryAt) {
+        long now = clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Add message {}:{} -- Delivery in {} ms ", dispatcher.getName(), ledgerId, entryId,
+                    deliveryAt - now);
+        }
+        if (deliveryAt < now) {
+            // It's already about time to deliver this message
+            return false;
+        }
+
+        timingWheel.add(deliveryAt, ledgerId, entryId);
+        updateTimer();
+        return true;
+    }
+
+    /**
+     * Return true if there's at least a message that is scheduled to be delivered already
+     */
+    @Override
+    public boolean hasMessageAvailable() {
+        timingWheel.advanceTo(clock.millis());
+        if (timingWheel.hasExpired()) {
+            return true;
+        }
+
+        // The timer might have been triggered to move messages down the wheel
+        updateTimer();
+        return false;
+    }
+
+    @Override
+    public Set<PositionImpl> getScheduledMessages(int maxMessages) {
+        int n = maxMessages;
+        Set<PositionImpl> positions = new TreeSet<>();
+        timingWheel.advanceTo(clock.millis());
+
+        while (n > 0 && timingWheel.hasExpired()) {
+            positions.add(new PositionImpl(timingWheel.peekExpiredN2(), timingWheel.peekExpiredN3()));
+            timingWheel.popExpired();
+            --n;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Get scheduled messags - found {}", dispatcher.getName(), positions.size());
+        }
+        updateTimer();
+        return positions;
+    }
+
+    @Override
+    public long getNumberOfDelayedMessages() {
+        return timingWheel.size();
+    }
+
+    @Override
+    protected long nextDeliveryTime() {
+        return timingWheel.nextTickTime();
+    }
+}
@@ -885,6 +885,21 @@ public class NamespaceService {
     public List<String> getListOfPersistentTopics(NamespaceName namespaceName) throws Exception {
         List<String> topics = Lists.newArrayList();
 
+        // List the managed ledgers directly when their metadata store supports it, eg: when they're only kept in a
+        // local metadata store, and not in ZooKeeper
+        String prefix = String.format("%s/persistent/", namespaceName);
+        Optional<List<String>> managedLedgers = pulsar.getManagedLedgerFactory().listManagedLedgers(prefix);
+        if (managedLedgers.isPresent()) {
+            for (String managedLedger : managedLedgers.get()) {
+                if (managedLedger.indexOf('/', prefix.length()) < 0) {
+                    topics.add(String.format("persistent://%s/%s", namespaceName,
+                            Codec.decode(managedLedger.substring(prefix.length()))));
+                }
+            }
+            topics.sort(null);
+            return topics;
+        }
+
         // For every topic there will be a managed ledger created.
         try {
             String path = String.format("/managed-ledgers/%s/persistent", namespaceName);
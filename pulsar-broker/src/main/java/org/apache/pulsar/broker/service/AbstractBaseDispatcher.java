@@ -27,6 +27,7 @@ import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.EntrySummary;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.protocol.Markers;
@@ -74,6 +75,23 @@ public abstract class AbstractBaseDispatcher implements Dispatcher {
             Entry entry = entries.get(i);
             ByteBuf metadataAndPayload = entry.getDataBuffer();
 
+            EntrySummary summary = entry.getSummary();
+            if (summary != null) {
+                // The entry was summarized when it was published, there is no need to parse it again
+                if (summary.hasDeliverAtTime()
+                        && trackDelayedDelivery(entry.getLedgerId(), entry.getEntryId(), summary.getDeliverAtTime())) {
+                    entries.set(i, null);
+                    entry.release();
+                    continue;
+                }
+
+                int batchSize = summary.getNumMessages();
+                totalMessages += batchSize;
+                totalBytes += metadataAndPayload.readableBytes();
+                batchSizes.setBatchSize(i, batchSize);
+                continue;
+            }
+
             MessageMetadata msgMetadata = Commands.peekMessageMetadata(metadataAndPayload, subscription.toString(), -1);
 
             try {
@@ -91,7 +109,7 @@ public abstract class AbstractBaseDispatcher implements Dispatcher {
                             Collections.emptyMap());
                     continue;
                 } else if (msgMetadata.hasDeliverAtTime()
-                        && trackDelayedDelivery(entry.getLedgerId(), entry.getEntryId(), msgMetadata)) {
+                        && trackDelayedDelivery(entry.getLedgerId(), entry.getEntryId(), msgMetadata.getDeliverAtTime())) {
                     // The message is marked for delayed delivery. Ignore for now.
                     entries.set(i, null);
                     entry.release();
@@ -21,11 +21,14 @@ package org.apache.pulsar.broker.service;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import io.netty.buffer.ByteBuf;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.EntrySummary;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pulsar.broker.service.persistent.PersistentStickyKeyDispatcherMultipleConsumers;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.api.proto.PulsarApi;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandSubscribe.SubType;
+import org.apache.pulsar.common.util.Murmur3_32Hash;
 import org.apache.pulsar.utils.CopyOnWriteArrayList;
 
 import com.carrotsearch.hppc.ObjectHashSet;
@@ -217,6 +220,14 @@ public abstract class AbstractDispatcherMultipleConsumers extends AbstractBaseDi
         metadataAndPayload.markReaderIndex();
         PulsarApi.MessageMetadata metadata = Commands.parseMessageMetadata(metadataAndPayload);
         metadataAndPayload.resetReaderIndex();
+        try {
+            return getStickyKey(metadata);
+        } finally {
+            metadata.recycle();
+        }
+    }
+
+    public static byte[] getStickyKey(PulsarApi.MessageMetadata metadata) {
         String key = metadata.getPartitionKey();
         if (log.isDebugEnabled()) {
             log.debug("Parse message metadata, partition key is {}, ordering key is {}", key, metadata.getOrderingKey());
@@ -224,10 +235,20 @@ public abstract class AbstractDispatcherMultipleConsumers extends AbstractBaseDi
         if (StringUtils.isNotBlank(key) || metadata.hasOrderingKey()) {
             return metadata.hasOrderingKey() ? metadata.getOrderingKey().toByteArray() : key.getBytes();
         }
-        metadata.recycle();
         return NONE_KEY.getBytes();
     }
 
+    /**
+     * Get the hash of the sticky key of an entry, without parsing the entry if it comes with a summary.
+     */
+    protected int getStickyKeyHash(Entry entry) {
+        EntrySummary summary = entry.getSummary();
+        if (summary != null) {
+            return summary.getKeyHash();
+        }
+        return Murmur3_32Hash.getInstance().makeHash(peekStickyKey(entry.getDataBuffer()));
+    }
+
     private static final Logger log = LoggerFactory.getLogger(PersistentStickyKeyDispatcherMultipleConsumers.class);
 
 
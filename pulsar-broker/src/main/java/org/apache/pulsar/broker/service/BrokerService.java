@@ -362,6 +362,13 @@ public class BrokerService implements Closeable, ZooKeeperCacheListener<Policies
             inactivityMonitor.scheduleAtFixedRate(safeRun(this::checkInactiveSubscriptions),
                     subscriptionExpiryCheckIntervalInSeconds, subscriptionExpiryCheckIntervalInSeconds, TimeUnit.SECONDS);
         }
+
+        // Idle subscription state releaser
+        int idleStateReleaseTimeInSeconds = pulsar().getConfiguration().getSubscriptionIdleStateReleaseTimeSeconds();
+        if (idleStateReleaseTimeInSeconds > 0) {
+            inactivityMonitor.scheduleAtFixedRate(safeRun(this::releaseIdleSubscriptionsState),
+                    idleStateReleaseTimeInSeconds, idleStateReleaseTimeInSeconds, TimeUnit.SECONDS);
+        }
     }
 
     void startMessageExpiryMonitor() {
@@ -771,10 +778,20 @@ public class BrokerService implements Closeable, ZooKeeperCacheListener<Policies
             managedLedgerConfig.setMetadataOperationsTimeoutSeconds(
                     serviceConfig.getManagedLedgerMetadataOperationsTimeoutSeconds());
             managedLedgerConfig.setReadEntryTimeoutSeconds(serviceConfig.getManagedLedgerReadEntryTimeoutSeconds());
+            managedLedgerConfig.setReadAheadEntries(serviceConfig.getManagedLedgerReadAheadEntries());
+            managedLedgerConfig.setReadAheadMaxSizePerCursor(serviceConfig.getManagedLedgerReadAheadMaxSizeKB() * 1024L);
             managedLedgerConfig.setAddEntryTimeoutSeconds(serviceConfig.getManagedLedgerAddEntryTimeoutSeconds());
             managedLedgerConfig.setMetadataEnsembleSize(serviceConfig.getManagedLedgerDefaultEnsembleSize());
             managedLedgerConfig.setUnackedRangesOpenCacheSetEnabled(
                     serviceConfig.isManagedLedgerUnackedRangesOpenCacheSetEnabled());
+            managedLedgerConfig.setUnackedRangesCompactEncodingEnabled(
+                    serviceConfig.isManagedLedgerUnackedRangesCompactEncodingEnabled());
+            managedLedgerConfig.setCursorDeltasPerSnapshot(serviceConfig.getManagedLedgerCursorDeltasPerSnapshot());
+            managedLedgerConfig.setDeletionAtBatchIndexLevelEnabled(
+                    serviceConfig.isAcknowledgmentAtBatchIndexLevelEnabled());
+            if (serviceConfig.isManagedLedgerCacheEntrySummaryEnabled()) {
+                managedLedgerConfig.setEntrySummaryGenerator(MessageEntrySummaryGenerator.INSTANCE);
+            }
             managedLedgerConfig.setMetadataWriteQuorumSize(serviceConfig.getManagedLedgerDefaultWriteQuorum());
             managedLedgerConfig.setMetadataAckQuorumSize(serviceConfig.getManagedLedgerDefaultAckQuorum());
             managedLedgerConfig
@@ -916,6 +933,10 @@ public class BrokerService implements Closeable, ZooKeeperCacheListener<Policies
         forEachTopic(Topic::checkInactiveSubscriptions);
     }
 
+    public void releaseIdleSubscriptionsState() {
+        forEachTopic(Topic::releaseIdleSubscriptionsState);
+    }
+
     /**
      * Iterates over all loaded topics in the broker
      */
@@ -1274,7 +1295,7 @@ public class BrokerService implements Closeable, ZooKeeperCacheListener<Policies
             forEachTopic(topic -> {
                 topic.getSubscriptions().forEach((subName, persistentSubscription) -> {
                     Dispatcher dispatcher = persistentSubscription.getDispatcher();
-                    if (dispatcher.getRateLimiter().isPresent()) {
+                    if (dispatcher != null && dispatcher.getRateLimiter().isPresent()) {
                         dispatcher.getRateLimiter().get().updateDispatchRate();
                     }
                 });
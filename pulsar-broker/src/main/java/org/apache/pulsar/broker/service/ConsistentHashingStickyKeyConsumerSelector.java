@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.pulsar.broker.service.BrokerServiceException.ConsumerAssignException;
+import org.apache.pulsar.common.util.Murmur3_32Hash;
+
+/**
+ * This is a consumer selector based on a consistent hashing ring.
+ *
+ * 1.Each consumer is placed on the ring at a number of points (virtual nodes), proportional to its weight.
+ * 2.A key is served by the consumer owning the first point at or after the hash of the key, wrapping around.
+ * 3.When a consumer is added or removed, only the keys falling between its points and the previous points move,
+ *   which is about 1/n of the keys with n consumers, and they move to/from the changed consumer only.
+ *
+ * The points of a consumer are derived from its name and id, so a consumer that reconnects gets back the same keys.
+ *
+ * The ring is kept as two sorted arrays (hashes and owners) that are rebuilt on every membership change, so that
+ * select is a binary search over primitive ints, without locking and without boxing. The points of each consumer are
+ * hashed once when it is added, so a rebuild only sorts the points.
+ */
+public class ConsistentHashingStickyKeyConsumerSelector implements StickyKeyConsumerSelector {
+
+    public static final int DEFAULT_NUMBER_OF_POINTS = 100;
+
+    private static final class Ring {
+        private final int[] hashes;
+        private final Consumer[] consumers;
+
+        Ring(int[] hashes, Consumer[] consumers) {
+            this.hashes = hashes;
+            this.consumers = consumers;
+        }
+    }
+
+    private static final Ring EMPTY_RING = new Ring(new int[0], new Consumer[0]);
+
+    private final int numberOfPoints;
+
+    // Consumer -> weight, in the order the consumers were added
+    private final Map<Consumer, Integer> consumerWeights = new LinkedHashMap<>();
+    // Consumer -> hashes of its points on the ring
+    private final Map<Consumer, int[]> consumerPoints = new LinkedHashMap<>();
+
+    private volatile Ring ring = EMPTY_RING;
+
+    public ConsistentHashingStickyKeyConsumerSelector() {
+        this(DEFAULT_NUMBER_OF_POINTS);
+    }
+
+    /**
+     * @param numberOfPoints the number of points on the ring of a consumer of weight 1
+     */
+    public ConsistentHashingStickyKeyConsumerSelector(int numberOfPoints) {
+        if (numberOfPoints < 1) {
+            throw new IllegalArgumentException("number of points must be at least 1");
+        }
+        this.numberOfPoints = numberOfPoints;
+    }
+
+    @Override
+    public void addConsumer(Consumer consumer) throws ConsumerAssignException {
+        addConsumer(consumer, 1);
+    }
+
+    /**
+     * Add a new consumer, serving a share of the keys proportional to its weight.
+     *
+     * @param consumer new consumer
+     * @param weight weight of the consumer, at least 1
+     */
+    public synchronized void addConsumer(Consumer consumer, int weight) throws ConsumerAssignException {
+        if (weight < 1) {
+            throw new ConsumerAssignException("Invalid weight " + weight + " for consumer " + consumer.consumerName());
+        }
+        int[] points = new int[numberOfPoints * weight];
+        String consumerKey = consumer.consumerName() + "-" + consumer.consumerId() + "-";
+        for (int i = 0; i < points.length; i++) {
+            points[i] = Murmur3_32Hash.getInstance().makeHash((consumerKey + i).getBytes());
+        }
+        consumerWeights.remove(consumer);
+        consumerPoints.remove(consumer);
+        consumerWeights.put(consumer, weight);
+        consumerPoints.put(consumer, points);
+        rebuildRing();
+    }
+
+    @Override
+    public synchronized void removeConsumer(Consumer consumer) {
+        if (consumerWeights.remove(consumer) != null) {
+            consumerPoints.remove(consumer);
+            rebuildRing();
+        }
+    }
+
+    @Override
+    public Consumer select(byte[] stickyKey) {
+        return select(Murmur3_32Hash.getInstance().makeHash(stickyKey));
+    }
+
+    @Override
+    public Consumer select(int hash) {
+        Ring ring = this.ring;
+        int[] hashes = ring.hashes;
+        if (hashes.length == 0) {
+            return null;
+        }
+
+        int idx = Arrays.binarySearch(hashes, hash);
+        if (idx < 0) {
+            // Not an exact match, take the next point on the ring
+            idx = -idx - 1;
+            if (idx == hashes.length) {
+                idx = 0;
+            }
+        }
+        return ring.consumers[idx];
+    }
+
+    private void rebuildRing() {
+        Consumer[] owners = consumerPoints.keySet().toArray(new Consumer[0]);
+        int numberOfPointsOnRing = 0;
+        for (int[] points : consumerPoints.values()) {
+            numberOfPointsOnRing += points.length;
+        }
+
+        // Each point is packed as (hash << 32 | owner index): sorting the longs sorts the points by hash, and
+        // colliding points by the consumers order, which keeps the ring deterministic
+        long[] packedPoints = new long[numberOfPointsOnRing];
+        int p = 0;
+        for (int owner = 0; owner < owners.length; owner++) {
+            for (int hash : consumerPoints.get(owners[owner])) {
+                packedPoints[p++] = ((long) hash << 32) | owner;
+            }
+        }
+        Arrays.sort(packedPoints);
+
+        int[] hashes = new int[numberOfPointsOnRing];
+        Consumer[] consumers = new Consumer[numberOfPointsOnRing];
+        for (int i = 0; i < numberOfPointsOnRing; i++) {
+            hashes[i] = (int) (packedPoints[i] >> 32);
+            consumers[i] = owners[(int) packedPoints[i]];
+        }
+        this.ring = new Ring(hashes, consumers);
+    }
+
+    Map<Consumer, Integer> getConsumerWeights() {
+        return Collections.unmodifiableMap(consumerWeights);
+    }
+
+    int getNumberOfPointsOnRing() {
+        return ring.hashes.length;
+    }
+}
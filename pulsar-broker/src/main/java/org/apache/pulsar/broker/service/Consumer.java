@@ -24,12 +24,14 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -42,9 +44,9 @@ import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.bookkeeper.mledger.util.Rate;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
 import org.apache.pulsar.broker.authentication.AuthenticationDataSource;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandAck;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandAck.AckType;
@@ -91,7 +93,7 @@ public class Consumer {
             AtomicIntegerFieldUpdater.newUpdater(Consumer.class, "permitsReceivedWhileConsumerBlocked");
     private volatile int permitsReceivedWhileConsumerBlocked = 0;
 
-    private final ConcurrentLongLongPairHashMap pendingAcks;
+    private final PendingAcksMap pendingAcks;
 
     private final ConsumerStats stats;
 
@@ -103,6 +105,10 @@ public class Consumer {
 
     private final Map<String, String> metadata;
 
+    // Size of the headers of a MESSAGE command, enough for most of them: size fields, command type, consumer id and
+    // message id. The headers buffer grows when needed
+    private static final int MESSAGE_HEADERS_SIZE_ESTIMATE = 64;
+
     public Consumer(Subscription subscription, SubType subType, String topicName, long consumerId,
                     int priorityLevel, String consumerName,
                     int maxUnackedMessages, ServerCnx cnx, String appId,
@@ -137,7 +143,7 @@ public class Consumer {
         stats.metadata = this.metadata;
 
         if (Subscription.isIndividualAckMode(subType)) {
-            this.pendingAcks = new ConcurrentLongLongPairHashMap(256, 1);
+            this.pendingAcks = new PendingAcksMap();
         } else {
             // We don't need to keep track of pending acks if the subscription is not shared
             this.pendingAcks = null;
@@ -199,12 +205,14 @@ public class Consumer {
         // Note
         // Must ensure that the message is written to the pendingAcks before sent is first , because this consumer
         // is possible to disconnect at this time.
+        // The dispatch time is kept with the pending ack to measure the ack round trip
         if (pendingAcks != null) {
+            long dispatchTimeNanos = System.nanoTime();
             for (int i = 0; i < entries.size(); i++) {
                 Entry entry = entries.get(i);
                 if (entry != null) {
                     int batchSize = batchSizes.getBatchSize(i);
-                    pendingAcks.put(entry.getLedgerId(), entry.getEntryId(), batchSize, 0);
+                    pendingAcks.put(entry.getLedgerId(), entry.getEntryId(), batchSize, dispatchTimeNanos);
                 }
             }
         }
@@ -215,6 +223,14 @@ public class Consumer {
         msgOut.recordMultipleEvents(totalMessages, totalBytes);
 
         ctx.channel().eventLoop().execute(() -> {
+            // When enabled, all the frames are written at once and the headers of all the messages share a buffer
+            CompositeByteBuf frames = null;
+            ByteBuf headers = null;
+            if (cnx.isCompositeDispatchWriteEnabled() && !entries.isEmpty()) {
+                frames = PulsarByteBufAllocator.DEFAULT.compositeDirectBuffer(2 * entries.size());
+                headers = PulsarByteBufAllocator.DEFAULT.directBuffer(MESSAGE_HEADERS_SIZE_ESTIMATE * entries.size());
+            }
+
             for (int i = 0; i < entries.size(); i++) {
                 Entry entry = entries.get(i);
                 if (entry == null) {
@@ -255,14 +271,29 @@ public class Consumer {
 
                 int redeliveryCount = redeliveryTracker
                         .getRedeliveryCount(PositionImpl.get(messageId.getLedgerId(), messageId.getEntryId()));
-                ctx.write(Commands.newMessage(consumerId, messageId, redeliveryCount, metadataAndPayload), ctx.voidPromise());
+                // let the consumer skip the messages of the batch that were already acknowledged
+                long[] ackSet = batchSize > 1 && Commands.peerSupportsBatchIndexAcknowledgment(
+                        cnx.getRemoteEndpointProtocolVersion()) ? subscription.getAckedBatchIndexes(entry.getPosition())
+                        : null;
+                if (frames != null) {
+                    Commands.addMessageFrame(frames, headers, consumerId, messageId, redeliveryCount,
+                            metadataAndPayload, ackSet);
+                } else {
+                    ctx.write(Commands.newMessage(consumerId, messageId, redeliveryCount, metadataAndPayload, ackSet),
+                            ctx.voidPromise());
+                }
                 messageId.recycle();
                 messageIdBuilder.recycle();
                 entry.release();
             }
 
-            // Use an empty write here so that we can just tie the flush with the write promise for last entry
-            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, writePromise);
+            if (frames != null) {
+                headers.release();
+                ctx.writeAndFlush(frames, writePromise);
+            } else {
+                // Use an empty write here so that we can just tie the flush with the write promise for last entry
+                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, writePromise);
+            }
             batchSizes.recyle();
         });
 
@@ -346,6 +377,15 @@ public class Consumer {
             for (int i = 0; i < ack.getMessageIdCount(); i++) {
                 MessageIdData msgId = ack.getMessageId(i);
                 PositionImpl position = PositionImpl.get(msgId.getLedgerId(), msgId.getEntryId());
+                if (msgId.getAckSetCount() > 0) {
+                    // Only some of the messages of the batch are acknowledged, the entry is still pending
+                    long[] ackSet = new long[msgId.getAckSetCount()];
+                    for (int j = 0; j < ackSet.length; j++) {
+                        ackSet[j] = msgId.getAckSet(j);
+                    }
+                    subscription.acknowledgeBatchIndexes(position, BitSet.valueOf(ackSet));
+                    continue;
+                }
                 positionsAcked.add(position);
 
                 if (Subscription.isIndividualAckMode(subType)) {
@@ -517,6 +557,10 @@ public class Consumer {
                 // Message was already removed by the other consumer
                 return;
             }
+            Dispatcher dispatcher = subscription.getDispatcher();
+            if (dispatcher != null) {
+                dispatcher.entryAcknowledged(System.nanoTime() - ackedPosition.second);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("[{}-{}] consumer {} received ack {}", topicName, subscription, consumerId, position);
             }
@@ -531,7 +575,7 @@ public class Consumer {
         }
     }
 
-    public ConcurrentLongLongPairHashMap getPendingAcks() {
+    public PendingAcksMap getPendingAcks() {
         return pendingAcks;
     }
 
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.apache.pulsar.broker.ServiceConfiguration;
+
+/**
+ * Sizes the reads of a dispatcher with multiple consumers.
+ *
+ * <p>By default, the read batch size doubles after each successful read, up to dispatcherMaxReadBatchSize, and drops
+ * to dispatcherMinReadBatchSize after a failed read.
+ *
+ * <p>When dispatcherAdaptiveReadSizeEnabled is set, the read batch size still doubles after each successful read, but
+ * it is kept between:
+ * <ul>
+ * <li>a floor: the number of entries the consumers acknowledge during a read round trip, so that they don't run dry
+ * while the next read is in progress</li>
+ * <li>a ceiling: dispatcherMaxReadSizeBytes divided by the average size of the entries read, so that reads of small
+ * entries are not tiny and reads of large entries don't overshoot the consumer buffers, and the number of entries the
+ * consumers acknowledge during an ack round trip, so that the dispatcher doesn't read far ahead of slow consumers</li>
+ * </ul>
+ * The reads are always bounded by the permits of the consumers.
+ */
+public class DispatchReadSizeController {
+
+    // Weight of a new sample in the moving averages
+    private static final double EWMA_ALPHA = 0.25;
+    private static final long ACK_RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // An ack window longer than this spans an idle period and is not sampled
+    private static final long ACK_RATE_MAX_WINDOW_NANOS = 10 * ACK_RATE_WINDOW_NANOS;
+
+    private final ServiceConfiguration serviceConfig;
+    private final LongSupplier nanoClock;
+
+    private volatile int readBatchSize;
+    private volatile double avgEntrySize = 0;
+    private volatile double avgReadRoundTripNanos = 0;
+    private volatile double avgAckRoundTripNanos = 0;
+    private volatile double ackRate = 0;
+
+    private final LongAdder acks = new LongAdder();
+    private final LongAdder ackRoundTripNanos = new LongAdder();
+    private volatile long ackWindowStartNanos;
+
+    public DispatchReadSizeController(ServiceConfiguration serviceConfig) {
+        this(serviceConfig, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    DispatchReadSizeController(ServiceConfiguration serviceConfig, LongSupplier nanoClock) {
+        this.serviceConfig = serviceConfig;
+        this.nanoClock = nanoClock;
+        this.readBatchSize = serviceConfig.getDispatcherMaxReadBatchSize();
+        this.ackWindowStartNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * @return the max number of entries of the next read
+     */
+    public int getReadBatchSize() {
+        return readBatchSize;
+    }
+
+    /**
+     * Record a successful read and grow the read batch size.
+     *
+     * @param entries number of entries read
+     * @param bytes total size of the entries read
+     * @param roundTripNanos time between the read request and its completion
+     */
+    public void readCompleted(int entries, long bytes, long roundTripNanos) {
+        if (entries > 0) {
+            avgEntrySize = ewma(avgEntrySize, (double) bytes / entries);
+            avgReadRoundTripNanos = ewma(avgReadRoundTripNanos, roundTripNanos);
+        }
+
+        if (!serviceConfig.isDispatcherAdaptiveReadSizeEnabled()) {
+            int maxReadBatchSize = serviceConfig.getDispatcherMaxReadBatchSize();
+            if (readBatchSize < maxReadBatchSize) {
+                readBatchSize = Math.min(readBatchSize * 2, maxReadBatchSize);
+            }
+            return;
+        }
+
+        double ackedPerNano = ackRate / TimeUnit.SECONDS.toNanos(1);
+        long floor = Math.max(serviceConfig.getDispatcherMinReadBatchSize(),
+                (long) (ackedPerNano * avgReadRoundTripNanos));
+        long ceiling = avgEntrySize > 0
+                ? Math.max(1, (long) (serviceConfig.getDispatcherMaxReadSizeBytes() / avgEntrySize))
+                : serviceConfig.getDispatcherMaxReadBatchSize();
+        if (ackedPerNano > 0 && avgAckRoundTripNanos > 0) {
+            ceiling = Math.min(ceiling, Math.max(floor, (long) (ackedPerNano * avgAckRoundTripNanos)));
+        }
+        floor = Math.min(floor, ceiling);
+
+        long newReadBatchSize = Math.max(floor, Math.min(ceiling, readBatchSize * 2L));
+        readBatchSize = (int) Math.min(newReadBatchSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Back off the read batch size after a failed read.
+     */
+    public void readFailed() {
+        readBatchSize = serviceConfig.getDispatcherMinReadBatchSize();
+    }
+
+    /**
+     * Record the acknowledgment of an entry.
+     *
+     * @param roundTripNanos time between the dispatch of the entry and its acknowledgment
+     */
+    public void ackReceived(long roundTripNanos) {
+        acks.increment();
+        ackRoundTripNanos.add(roundTripNanos);
+        long now = nanoClock.getAsLong();
+        if (now - ackWindowStartNanos >= ACK_RATE_WINDOW_NANOS) {
+            rollAckWindow(now);
+        }
+    }
+
+    private synchronized void rollAckWindow(long now) {
+        long window = now - ackWindowStartNanos;
+        if (window < ACK_RATE_WINDOW_NANOS) {
+            // Already rolled by another thread
+            return;
+        }
+        long count = acks.sumThenReset();
+        long totalRoundTripNanos = ackRoundTripNanos.sumThenReset();
+        ackWindowStartNanos = now;
+        if (count == 0 || window > ACK_RATE_MAX_WINDOW_NANOS) {
+            return;
+        }
+        avgAckRoundTripNanos = ewma(avgAckRoundTripNanos, (double) totalRoundTripNanos / count);
+        ackRate = ewma(ackRate, count * (double) TimeUnit.SECONDS.toNanos(1) / window);
+    }
+
+    private static double ewma(double average, double sample) {
+        return average == 0 ? sample : average + EWMA_ALPHA * (sample - average);
+    }
+
+    public double getAvgEntrySize() {
+        return avgEntrySize;
+    }
+
+    public double getAvgReadRoundTripMillis() {
+        return avgReadRoundTripNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getAvgAckRoundTripMillis() {
+        return avgAckRoundTripNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getAckRate() {
+        return ackRate;
+    }
+}
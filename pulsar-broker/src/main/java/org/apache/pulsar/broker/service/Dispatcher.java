@@ -25,7 +25,6 @@ import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.pulsar.broker.service.persistent.DispatchRateLimiter;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandSubscribe.SubType;
-import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
 import org.apache.pulsar.common.policies.data.Policies;
 import org.apache.pulsar.utils.CopyOnWriteArrayList;
 
@@ -88,11 +87,27 @@ public interface Dispatcher {
      * Check with dispatcher if the message should be added to the delayed delivery tracker.
      * Return true if the message should be delayed and ignored at this point.
      */
-    default boolean trackDelayedDelivery(long ledgerId, long entryId, MessageMetadata msgMetadata) {
+    default boolean trackDelayedDelivery(long ledgerId, long entryId, long deliverAtTime) {
         return false;
     }
 
     default long getNumberOfDelayedMessages() {
         return 0;
     }
+
+    /**
+     * Notify the dispatcher that an entry it dispatched was individually acknowledged.
+     *
+     * @param roundTripNanos time between the dispatch of the entry and its acknowledgment
+     */
+    default void entryAcknowledged(long roundTripNanos) {
+    }
+
+    /**
+     * Whether the dispatcher has no consumer and no read in progress, in which case it can be closed and replaced
+     * by a new dispatcher when a consumer attaches.
+     */
+    default boolean isIdle() {
+        return false;
+    }
 }
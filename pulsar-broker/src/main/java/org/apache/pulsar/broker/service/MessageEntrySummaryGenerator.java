@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import io.netty.buffer.ByteBuf;
+
+import org.apache.bookkeeper.mledger.EntrySummary;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.Markers;
+import org.apache.pulsar.common.util.Murmur3_32Hash;
+
+/**
+ * Summarizes the published entries from their message metadata, so that the dispatchers do not need to parse the
+ * metadata again for each subscription and each redelivery of an entry read from the cache.
+ */
+public class MessageEntrySummaryGenerator implements EntrySummary.Generator {
+
+    public static final MessageEntrySummaryGenerator INSTANCE = new MessageEntrySummaryGenerator();
+
+    private MessageEntrySummaryGenerator() {
+    }
+
+    @Override
+    public EntrySummary generate(ByteBuf data) {
+        MessageMetadata msgMetadata;
+        int readerIndex = data.readerIndex();
+        try {
+            msgMetadata = Commands.parseMessageMetadata(data);
+        } catch (Throwable t) {
+            // Corrupted entries are handled by the dispatchers
+            return null;
+        } finally {
+            data.readerIndex(readerIndex);
+        }
+
+        try {
+            if (Markers.isServerOnlyMarker(msgMetadata)) {
+                // Markers are processed by the dispatchers from the full metadata
+                return null;
+            }
+
+            int keyHash = Murmur3_32Hash.getInstance()
+                    .makeHash(AbstractDispatcherMultipleConsumers.getStickyKey(msgMetadata));
+            return new EntrySummary(keyHash, msgMetadata.getNumMessagesInBatch(), msgMetadata.getPublishTime(),
+                    msgMetadata.hasDeliverAtTime() ? msgMetadata.getDeliverAtTime() : -1);
+        } finally {
+            msgMetadata.recycle();
+        }
+    }
+}
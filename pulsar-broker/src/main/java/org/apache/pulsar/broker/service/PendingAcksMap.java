@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.BiConsumerLongPair;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+
+/**
+ * Pending acks of a consumer: the entries dispatched to the consumer and not acknowledged yet, with the number of
+ * messages of each entry and the time it was dispatched.
+ *
+ * <p>The entries dispatched together are contiguous, so they are kept as runs of contiguous entries of a ledger. A run
+ * takes a few dozen bytes whatever its length, instead of a hash map slot per entry. The batch sizes of a run are a
+ * single value when they are all equal, e.g. for non batched messages, and an array otherwise. The entries of a run
+ * share the dispatch time, so only the entries dispatched at the same time are merged.
+ *
+ * <p>A run is only worth it for more than one entry: the entries that are not contiguous with another pending entry,
+ * e.g. the ones left by out of order acks, are kept in a primitive hash map, as if there were no runs.
+ *
+ * <p>The acks of the entries in dispatch order remove the first entry of a run in constant time, an ack in the middle
+ * of a run splits it. The entries are iterated in (ledger id, entry id) order.
+ */
+public class PendingAcksMap {
+
+    private static final int INITIAL_BATCH_SIZES_CAPACITY = 16;
+
+    private static final class Run {
+        long firstEntryId;
+        long lastEntryId;
+        final long dispatchTimeNanos;
+        // Batch size of all the entries, when batchSizes is null
+        int batchSize;
+        // Batch sizes of the entries, from batchSizesOffset for firstEntryId
+        int[] batchSizes;
+        int batchSizesOffset;
+        // Whether batchSizes is shared with another run, after a split, in which case the run can't grow
+        boolean batchSizesShared;
+
+        Run(long entryId, int batchSize, long dispatchTimeNanos) {
+            this.firstEntryId = entryId;
+            this.lastEntryId = entryId;
+            this.batchSize = batchSize;
+            this.dispatchTimeNanos = dispatchTimeNanos;
+        }
+
+        int length() {
+            return (int) (lastEntryId - firstEntryId + 1);
+        }
+
+        int getBatchSize(long entryId) {
+            return batchSizes == null ? batchSize : batchSizes[batchSizesOffset + (int) (entryId - firstEntryId)];
+        }
+
+        boolean tryAppend(long entryId, int batchSize, long dispatchTimeNanos) {
+            if (entryId != lastEntryId + 1 || dispatchTimeNanos != this.dispatchTimeNanos) {
+                return false;
+            }
+            if (batchSizes == null) {
+                if (batchSize == this.batchSize) {
+                    lastEntryId = entryId;
+                    return true;
+                }
+                batchSizes = new int[Math.max(INITIAL_BATCH_SIZES_CAPACITY, 2 * length())];
+                Arrays.fill(batchSizes, 0, length(), this.batchSize);
+                batchSizesOffset = 0;
+            } else if (batchSizesShared) {
+                return false;
+            }
+
+            int index = batchSizesOffset + length();
+            if (index == batchSizes.length) {
+                batchSizes = Arrays.copyOfRange(batchSizes, batchSizesOffset, batchSizesOffset + 2 * length());
+                batchSizesOffset = 0;
+                index = length();
+            }
+            batchSizes[index] = batchSize;
+            lastEntryId = entryId;
+            return true;
+        }
+
+        /**
+         * Split the run around an entry in its middle, keeping the entries before it.
+         *
+         * @return the run of the entries after it
+         */
+        Run splitAt(long entryId) {
+            Run tail = new Run(entryId + 1, batchSize, dispatchTimeNanos);
+            tail.lastEntryId = lastEntryId;
+            if (batchSizes != null) {
+                tail.batchSizes = batchSizes;
+                tail.batchSizesOffset = batchSizesOffset + (int) (entryId + 1 - firstEntryId);
+                tail.batchSizesShared = true;
+                batchSizesShared = true;
+            }
+            lastEntryId = entryId - 1;
+            return tail;
+        }
+    }
+
+    // ledgerId -> (first entry id of the run -> run), for the runs of at least 2 entries
+    private final NavigableMap<Long, NavigableMap<Long, Run>> runs = new TreeMap<>();
+    // (ledgerId, entryId) -> (batch size, dispatch time), for the entries that are not part of a run
+    private final ConcurrentLongLongPairHashMap singles = new ConcurrentLongLongPairHashMap(16, 1);
+    private long size = 0;
+    private long numberOfRuns = 0;
+
+    /**
+     * Add an entry dispatched to the consumer.
+     *
+     * @return true if the entry was not pending yet
+     */
+    public synchronized boolean put(long ledgerId, long entryId, long batchSize, long dispatchTimeNanos) {
+        boolean existed = remove(ledgerId, entryId);
+        size++;
+
+        NavigableMap<Long, Run> ledgerRuns = runs.get(ledgerId);
+        Map.Entry<Long, Run> floor = ledgerRuns != null ? ledgerRuns.floorEntry(entryId) : null;
+        if (floor != null && floor.getValue().tryAppend(entryId, (int) batchSize, dispatchTimeNanos)) {
+            return !existed;
+        }
+
+        // A run is started by the second of two contiguous entries dispatched at the same time
+        LongPair previous = entryId > 0 ? singles.get(ledgerId, entryId - 1) : null;
+        if (previous != null && previous.second == dispatchTimeNanos) {
+            singles.remove(ledgerId, entryId - 1);
+            Run run = new Run(entryId - 1, (int) previous.first, dispatchTimeNanos);
+            run.tryAppend(entryId, (int) batchSize, dispatchTimeNanos);
+            runs.computeIfAbsent(ledgerId, key -> new TreeMap<>()).put(run.firstEntryId, run);
+            numberOfRuns++;
+        } else {
+            singles.put(ledgerId, entryId, batchSize, dispatchTimeNanos);
+        }
+        return !existed;
+    }
+
+    /**
+     * @return the batch size and the dispatch time of a pending entry, or null if the entry is not pending
+     */
+    public synchronized LongPair get(long ledgerId, long entryId) {
+        LongPair single = singles.get(ledgerId, entryId);
+        if (single != null) {
+            return single;
+        }
+        Run run = findRun(ledgerId, entryId);
+        return run != null ? new LongPair(run.getBatchSize(entryId), run.dispatchTimeNanos) : null;
+    }
+
+    public synchronized boolean containsKey(long ledgerId, long entryId) {
+        return singles.containsKey(ledgerId, entryId) || findRun(ledgerId, entryId) != null;
+    }
+
+    /**
+     * Remove a pending entry.
+     *
+     * @return true if the entry was pending
+     */
+    public synchronized boolean remove(long ledgerId, long entryId) {
+        if (singles.remove(ledgerId, entryId)) {
+            size--;
+            return true;
+        }
+
+        NavigableMap<Long, Run> ledgerRuns = runs.get(ledgerId);
+        if (ledgerRuns == null) {
+            return false;
+        }
+        Map.Entry<Long, Run> floor = ledgerRuns.floorEntry(entryId);
+        if (floor == null || floor.getValue().lastEntryId < entryId) {
+            return false;
+        }
+
+        Run run = floor.getValue();
+        ledgerRuns.remove(run.firstEntryId);
+        if (entryId == run.firstEntryId) {
+            run.firstEntryId++;
+            run.batchSizesOffset++;
+        } else if (entryId == run.lastEntryId) {
+            run.lastEntryId--;
+        } else {
+            Run tail = run.splitAt(entryId);
+            numberOfRuns++;
+            putRun(ledgerId, ledgerRuns, tail);
+        }
+        putRun(ledgerId, ledgerRuns, run);
+
+        if (ledgerRuns.isEmpty()) {
+            runs.remove(ledgerId);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Iterate over the pending entries, in (ledger id, entry id) order, with their batch size and dispatch time.
+     */
+    public synchronized void forEach(BiConsumerLongPair processor) {
+        // The single entries are sorted, to be interleaved with the runs
+        List<Map.Entry<LongPair, LongPair>> sortedSingles = Lists.newArrayList(singles.asMap().entrySet());
+        sortedSingles.sort(Comparator.<Map.Entry<LongPair, LongPair>> comparingLong(single -> single.getKey().first)
+                .thenComparingLong(single -> single.getKey().second));
+        PeekingIterator<Map.Entry<LongPair, LongPair>> singlesIterator = Iterators.peekingIterator(
+                sortedSingles.iterator());
+
+        runs.forEach((ledgerId, ledgerRuns) -> ledgerRuns.values().forEach(run -> {
+            forEachSingleBefore(singlesIterator, ledgerId, run.firstEntryId, processor);
+            for (long entryId = run.firstEntryId; entryId <= run.lastEntryId; entryId++) {
+                processor.accept(ledgerId, entryId, run.getBatchSize(entryId), run.dispatchTimeNanos);
+            }
+        }));
+        forEachSingleBefore(singlesIterator, Long.MAX_VALUE, Long.MAX_VALUE, processor);
+    }
+
+    public synchronized void clear() {
+        runs.clear();
+        singles.clear();
+        size = 0;
+        numberOfRuns = 0;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    @VisibleForTesting
+    synchronized long getNumberOfRuns() {
+        return numberOfRuns;
+    }
+
+    /**
+     * Keep a run in the runs of its ledger, or its entry in the single entries once it is the only one left.
+     */
+    private void putRun(long ledgerId, NavigableMap<Long, Run> ledgerRuns, Run run) {
+        if (run.length() > 1) {
+            ledgerRuns.put(run.firstEntryId, run);
+        } else {
+            singles.put(ledgerId, run.firstEntryId, run.getBatchSize(run.firstEntryId), run.dispatchTimeNanos);
+            numberOfRuns--;
+        }
+    }
+
+    private static void forEachSingleBefore(PeekingIterator<Map.Entry<LongPair, LongPair>> singlesIterator,
+                                            long ledgerId, long entryId, BiConsumerLongPair processor) {
+        while (singlesIterator.hasNext()) {
+            LongPair key = singlesIterator.peek().getKey();
+            if (key.first > ledgerId || (key.first == ledgerId && key.second >= entryId)) {
+                return;
+            }
+            LongPair value = singlesIterator.next().getValue();
+            processor.accept(key.first, key.second, value.first, value.second);
+        }
+    }
+
+    private Run findRun(long ledgerId, long entryId) {
+        NavigableMap<Long, Run> ledgerRuns = runs.get(ledgerId);
+        if (ledgerRuns == null) {
+            return null;
+        }
+        Map.Entry<Long, Run> floor = ledgerRuns.floorEntry(entryId);
+        return floor != null && floor.getValue().lastEntryId >= entryId ? floor.getValue() : null;
+    }
+}
@@ -85,6 +85,18 @@ public class Producer {
 
     private final SchemaVersion schemaVersion;
 
+    // Send receipts held until the end of the current event loop tick, so that they are written together. The
+    // receipts of consecutive sequence ids persisted in consecutive entries are merged into a range receipt
+    private final boolean sendReceiptBatchingEnabled;
+    private boolean hasPendingReceipt = false;
+    private long pendingReceiptFirstSequenceId;
+    private long pendingReceiptLastSequenceId;
+    private long pendingReceiptLedgerId;
+    private long pendingReceiptFirstEntryId;
+    private long pendingReceiptLastEntryId;
+    private boolean receiptsFlushScheduled = false;
+    private final Runnable flushReceiptsTask = this::flushReceipts;
+
     public Producer(Topic topic, ServerCnx cnx, long producerId, String producerName, String appId,
         boolean isEncrypted, Map<String, String> metadata, SchemaVersion schemaVersion) {
         this.topic = topic;
@@ -114,6 +126,8 @@ public class Producer {
 
         this.isEncrypted = isEncrypted;
         this.schemaVersion = schemaVersion;
+        this.sendReceiptBatchingEnabled = cnx.getBrokerService().pulsar().getConfiguration()
+                .isProducerSendReceiptBatchingEnabled();
     }
 
     @Override
@@ -134,6 +148,7 @@ public class Producer {
     public void publishMessage(long producerId, long sequenceId, ByteBuf headersAndPayload, long batchSize) {
         if (isClosed) {
             cnx.ctx().channel().eventLoop().execute(() -> {
+                writePendingReceipt();
                 cnx.ctx().writeAndFlush(Commands.newSendError(producerId, sequenceId, ServerError.PersistenceError,
                         "Producer is closed"));
                 cnx.completedSendOperation(isNonPersistentTopic);
@@ -144,6 +159,7 @@ public class Producer {
 
         if (!verifyChecksum(headersAndPayload)) {
             cnx.ctx().channel().eventLoop().execute(() -> {
+                writePendingReceipt();
                 cnx.ctx().writeAndFlush(
                         Commands.newSendError(producerId, sequenceId, ServerError.ChecksumError, "Checksum failed on the broker"));
                 cnx.completedSendOperation(isNonPersistentTopic);
@@ -161,6 +177,7 @@ public class Producer {
             if (msgMetadata.getEncryptionKeysCount() < 1) {
                 log.warn("[{}] Messages must be encrypted", getTopic().getName());
                 cnx.ctx().channel().eventLoop().execute(() -> {
+                    writePendingReceipt();
                     cnx.ctx().writeAndFlush(Commands.newSendError(producerId, sequenceId, ServerError.MetadataError,
                             "Messages must be encrypted"));
                     cnx.completedSendOperation(isNonPersistentTopic);
@@ -292,6 +309,7 @@ public class Producer {
                     if (!(exception instanceof TopicClosedException)) {
                         // For TopicClosed exception there's no need to send explicit error, since the client was
                         // already notified
+                        producer.writePendingReceipt();
                         producer.cnx.ctx().writeAndFlush(Commands.newSendError(producer.producerId, sequenceId,
                                 serverError, exception.getMessage()));
                     }
@@ -324,9 +342,7 @@ public class Producer {
 
             // stats
             rateIn.recordMultipleEvents(batchSize, msgSize);
-            producer.cnx.ctx().writeAndFlush(
-                    Commands.newSendReceipt(producer.producerId, sequenceId, ledgerId, entryId),
-                    producer.cnx.ctx().voidPromise());
+            producer.sendReceipt(sequenceId, ledgerId, entryId);
             producer.cnx.completedSendOperation(producer.isNonPersistentTopic);
             producer.publishOperationCompleted();
             recycle();
@@ -371,6 +387,57 @@ public class Producer {
         }
     }
 
+    /**
+     * Sends the receipt of a persisted message. Must be called from the connection event loop.
+     */
+    private void sendReceipt(long sequenceId, long ledgerId, long entryId) {
+        if (!sendReceiptBatchingEnabled) {
+            cnx.ctx().writeAndFlush(Commands.newSendReceipt(producerId, sequenceId, ledgerId, entryId),
+                    cnx.ctx().voidPromise());
+            return;
+        }
+
+        if (hasPendingReceipt && sequenceId == pendingReceiptLastSequenceId + 1
+                && ledgerId == pendingReceiptLedgerId && entryId == pendingReceiptLastEntryId + 1
+                && Commands.peerSupportsSendReceiptRange(cnx.getRemoteEndpointProtocolVersion())) {
+            pendingReceiptLastSequenceId = sequenceId;
+            pendingReceiptLastEntryId = entryId;
+        } else {
+            writePendingReceipt();
+            hasPendingReceipt = true;
+            pendingReceiptFirstSequenceId = sequenceId;
+            pendingReceiptLastSequenceId = sequenceId;
+            pendingReceiptLedgerId = ledgerId;
+            pendingReceiptFirstEntryId = entryId;
+            pendingReceiptLastEntryId = entryId;
+        }
+
+        if (!receiptsFlushScheduled) {
+            // Runs after the tasks already queued in the event loop, which may complete more sends
+            receiptsFlushScheduled = true;
+            cnx.ctx().channel().eventLoop().execute(flushReceiptsTask);
+        }
+    }
+
+    /**
+     * Writes the pending receipt, if any, without flushing it. Called before writing any other response to this
+     * producer to keep the order of the responses.
+     */
+    private void writePendingReceipt() {
+        if (hasPendingReceipt) {
+            hasPendingReceipt = false;
+            cnx.ctx().write(Commands.newSendReceipt(producerId, pendingReceiptFirstSequenceId,
+                    pendingReceiptLastSequenceId, pendingReceiptLedgerId, pendingReceiptFirstEntryId,
+                    pendingReceiptLastEntryId), cnx.ctx().voidPromise());
+        }
+    }
+
+    private void flushReceipts() {
+        receiptsFlushScheduled = false;
+        writePendingReceipt();
+        cnx.ctx().flush();
+    }
+
     public Topic getTopic() {
         return topic;
     }
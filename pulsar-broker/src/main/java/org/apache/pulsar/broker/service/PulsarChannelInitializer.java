@@ -23,15 +23,24 @@ import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.common.protocol.ByteBufPair;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.NettySslContextBuilder;
+import org.apache.pulsar.common.util.netty.FlushCoalescingHandler;
 
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.prometheus.client.Counter;
 
 public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel> {
 
     public static final String TLS_HANDLER = "tls";
 
+    // The ratio between the two gives how many flushes are coalesced in one flush to the socket
+    private static final Counter flushRequests = Counter.build("pulsar_connection_flush_requests",
+            "Number of flushes requested on the client connections, when flush coalescing is enabled").register();
+    private static final Counter coalescedFlushes = Counter.build("pulsar_connection_coalesced_flushes",
+            "Number of flushes sent to the socket of the client connections, when flush coalescing is enabled")
+            .register();
+
     private final PulsarService pulsar;
     private final boolean enableTls;
     private final NettySslContextBuilder sslCtxRefresher;
@@ -67,6 +76,15 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
             ch.pipeline().addLast("ByteBufPairEncoder", ByteBufPair.ENCODER);
         }
 
+        if (brokerConf.getFlushCoalescingMaxPendingFlushes() > 0) {
+            ch.pipeline().addLast("flushCoalescing", new FlushCoalescingHandler(
+                    brokerConf.getFlushCoalescingMaxPendingFlushes(), brokerConf.getFlushCoalescingMaxDelayMicros(),
+                    flushes -> {
+                        flushRequests.inc(flushes);
+                        coalescedFlushes.inc();
+                    }));
+        }
+
         ch.pipeline().addLast("frameDecoder", new LengthFieldBasedFrameDecoder(
             brokerConf.getMaxMessageSize() + Commands.MESSAGE_SIZE_FRAME_PADDING, 0, 4, 0, 4));
         ch.pipeline().addLast("handler", new ServerCnx(pulsar));
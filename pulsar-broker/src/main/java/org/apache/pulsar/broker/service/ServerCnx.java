@@ -136,6 +136,8 @@ public class ServerCnx extends PulsarHandler {
     private final boolean schemaValidationEnforced;
     private String authMethod = "none";
     private final int maxMessageSize;
+    private final boolean dispatcherCompositeWriteEnabled;
+    private boolean compositeDispatchWriteEnabled = false;
 
     enum State {
         Start, Connected, Failed, Connecting
@@ -157,6 +159,7 @@ public class ServerCnx extends PulsarHandler {
         this.authenticateOriginalAuthData = service.pulsar().getConfiguration().isAuthenticateOriginalAuthData();
         this.schemaValidationEnforced = pulsar.getConfiguration().isSchemaValidationEnforced();
         this.maxMessageSize = pulsar.getConfiguration().getMaxMessageSize();
+        this.dispatcherCompositeWriteEnabled = pulsar.getConfiguration().isDispatcherCompositeWriteEnabled();
     }
 
     @Override
@@ -164,6 +167,9 @@ public class ServerCnx extends PulsarHandler {
         super.channelActive(ctx);
         log.info("New connection from {}", remoteAddress);
         this.ctx = ctx;
+        // The TLS handler might modify the buffers written on the channel, so the cached entries are copied instead
+        this.compositeDispatchWriteEnabled = dispatcherCompositeWriteEnabled
+                && ctx.channel().pipeline().get(PulsarChannelInitializer.TLS_HANDLER) == null;
     }
 
     @Override
@@ -1525,6 +1531,13 @@ public class ServerCnx extends PulsarHandler {
         return consumers.containsKey(consumerId);
     }
 
+    /**
+     * @return true if the messages dispatched to the consumers can be written in a single composite buffer
+     */
+    public boolean isCompositeDispatchWriteEnabled() {
+        return compositeDispatchWriteEnabled;
+    }
+
     public boolean isBatchMessageCompatibleVersion() {
         return remoteEndpointProtocolVersion >= ProtocolVersion.v4.getNumber();
     }
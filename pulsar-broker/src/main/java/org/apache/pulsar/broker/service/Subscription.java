@@ -18,6 +18,7 @@
  */
 package org.apache.pulsar.broker.service;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -43,6 +44,20 @@ public interface Subscription {
 
     void acknowledgeMessage(List<Position> positions, AckType ackType, Map<String,Long> properties);
 
+    /**
+     * Acknowledge some of the messages of a batch entry, the entry itself stays unacknowledged.
+     */
+    default void acknowledgeBatchIndexes(Position position, BitSet ackedIndexes) {
+        // Default is no-op, the entry is acknowledged once all its messages are
+    }
+
+    /**
+     * @return the indexes of the messages acknowledged within a batch entry, or null if there are none
+     */
+    default long[] getAckedBatchIndexes(Position position) {
+        return null;
+    }
+
     String getTopicName();
 
     boolean isReplicated();
@@ -116,6 +116,12 @@ public interface Topic {
 
     void checkInactiveSubscriptions();
 
+    /**
+     * Release the in-memory dispatch state of the subscriptions that have been without consumers for longer than
+     * the configured time. It's recreated when a consumer attaches.
+     */
+    void releaseIdleSubscriptionsState();
+
     void checkMessageExpiry();
 
     void checkMessageDeduplicationInfo();
@@ -866,6 +866,11 @@ public class NonPersistentTopic extends AbstractTopic implements Topic {
         // no-op
     }
 
+    @Override
+    public void releaseIdleSubscriptionsState() {
+        // no-op
+    }
+
     @Override
     public CompletableFuture<Void> onPoliciesUpdate(Policies data) {
         if (log.isDebugEnabled()) {
@@ -82,6 +82,11 @@ public class MessageDeduplication {
     // the messages are persisted
     private final ConcurrentOpenHashMap<String, Long> highestSequencedPushed = new ConcurrentOpenHashMap<>(16, 1);
 
+    // Locks guarding the updates of highestSequencedPushed, striped by producer name so that the producers of a topic,
+    // publishing from different connection threads, don't wait for each other
+    private static final int PUSH_LOCK_STRIPES = 16;
+    private final Object[] pushLocks = new Object[PUSH_LOCK_STRIPES];
+
     // Map that contains the highest sequenceId that have been persistent by each producers. The map will be updated
     // after the messages are persisted
     private final ConcurrentOpenHashMap<String, Long> highestSequencedPersisted = new ConcurrentOpenHashMap<>(16, 1);
@@ -109,6 +114,9 @@ public class MessageDeduplication {
         this.maxNumberOfProducers = pulsar.getConfiguration().getBrokerDeduplicationMaxNumberOfProducers();
         this.snapshotCounter = 0;
         this.replicatorPrefix = pulsar.getConfiguration().getReplicatorPrefix();
+        for (int i = 0; i < PUSH_LOCK_STRIPES; i++) {
+            pushLocks[i] = new Object();
+        }
     }
 
     private CompletableFuture<Void> recoverSequenceIdsMap() {
@@ -280,7 +288,7 @@ public class MessageDeduplication {
 
         // Synchronize the get() and subsequent put() on the map. This would only be relevant if the producer
         // disconnects and re-connects very quickly. At that point the call can be coming from a different thread
-        synchronized (highestSequencedPushed) {
+        synchronized (pushLocks[(producerName.hashCode() & Integer.MAX_VALUE) % PUSH_LOCK_STRIPES]) {
             Long lastSequenceIdPushed = highestSequencedPushed.get(producerName);
             if (lastSequenceIdPushed != null && sequenceId <= lastSequenceIdPushed) {
                 if (log.isDebugEnabled()) {
@@ -46,6 +46,7 @@ import org.apache.pulsar.broker.service.AbstractDispatcherMultipleConsumers;
 import org.apache.pulsar.broker.service.BrokerServiceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.ConsumerBusyException;
 import org.apache.pulsar.broker.service.Consumer;
+import org.apache.pulsar.broker.service.DispatchReadSizeController;
 import org.apache.pulsar.broker.service.Dispatcher;
 import org.apache.pulsar.broker.service.EntryBatchSizes;
 import org.apache.pulsar.broker.service.InMemoryRedeliveryTracker;
@@ -56,11 +57,10 @@ import org.apache.pulsar.broker.service.Subscription;
 import org.apache.pulsar.broker.service.persistent.DispatchRateLimiter.Type;
 import org.apache.pulsar.client.impl.Backoff;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandSubscribe.SubType;
-import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
 import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.common.policies.data.Policies;
 import org.apache.pulsar.common.util.Codec;
-import org.apache.pulsar.common.util.collections.ConcurrentSortedLongPairSet;
+import org.apache.pulsar.common.util.collections.ConcurrentBitSetSortedLongPairSet;
 import org.apache.pulsar.common.util.collections.LongPairSet;
 import org.apache.pulsar.utils.CopyOnWriteArrayList;
 import org.slf4j.Logger;
@@ -74,7 +74,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
     protected final ManagedCursor cursor;
 
     private CompletableFuture<Void> closeFuture = null;
-    LongPairSet messagesToRedeliver = new ConcurrentSortedLongPairSet(128, 2);
+    LongPairSet messagesToRedeliver = new ConcurrentBitSetSortedLongPairSet();
     protected final RedeliveryTracker redeliveryTracker;
 
     private Optional<DelayedDeliveryTracker> delayedDeliveryTracker = Optional.empty();
@@ -86,7 +86,9 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
     protected final String name;
 
     protected int totalAvailablePermits = 0;
-    private int readBatchSize;
+    protected final DispatchReadSizeController readSizeController;
+    private long readStartNanos;
+    private long replayStartNanos;
     private final Backoff readFailureBackoff = new Backoff(15, TimeUnit.SECONDS, 1, TimeUnit.MINUTES, 0, TimeUnit.MILLISECONDS);
     private static final AtomicIntegerFieldUpdater<PersistentDispatcherMultipleConsumers> TOTAL_UNACKED_MESSAGES_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(PersistentDispatcherMultipleConsumers.class, "totalUnackedMessages");
@@ -111,7 +113,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
         this.redeliveryTracker = this.serviceConfig.isSubscriptionRedeliveryTrackerEnabled()
                 ? new InMemoryRedeliveryTracker()
                 : RedeliveryTrackerDisabled.REDELIVERY_TRACKER_DISABLED;
-        this.readBatchSize = serviceConfig.getDispatcherMaxReadBatchSize();
+        this.readSizeController = new DispatchReadSizeController(serviceConfig);
         this.maxUnackedMessages = topic.getBrokerService().pulsar().getConfiguration()
                 .getMaxUnackedMessagesPerSubscription();
         this.isDelayedDeliveryEnabled = topic.getBrokerService().pulsar().getConfiguration()
@@ -242,7 +244,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
 
     public void readMoreEntries() {
         if (totalAvailablePermits > 0 && isAtleastOneConsumerAvailable()) {
-            int messagesToRead = Math.min(totalAvailablePermits, readBatchSize);
+            int messagesToRead = Math.min(totalAvailablePermits, readSizeController.getReadBatchSize());
 
             // throttle only if: (1) cursor is not active (or flag for throttle-nonBacklogConsumer is enabled) bcz
             // active-cursor reads message from cache rather from bookkeeper (2) if topic has reached message-rate
@@ -303,6 +305,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
                 }
 
                 havePendingReplayRead = true;
+                replayStartNanos = System.nanoTime();
                 Set<? extends Position> deletedMessages = asyncReplayEntries(messagesToReplayNow);
                 // clear already acked positions from replay bucket
 
@@ -323,6 +326,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
                             consumerList.size());
                 }
                 havePendingRead = true;
+                readStartNanos = System.nanoTime();
                 cursor.asyncReadEntriesOrWait(messagesToRead, this, ReadType.Normal);
             } else {
                 log.debug("[{}] Cannot schedule next read until previous one is done", name);
@@ -354,6 +358,11 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
         return consumerList.size() == 1 && consumerSet.contains(consumer);
     }
 
+    @Override
+    public synchronized boolean isIdle() {
+        return consumerList.isEmpty() && !havePendingRead && !havePendingReplayRead;
+    }
+
     @Override
     public CompletableFuture<Void> close() {
         IS_CLOSED_UPDATER.set(this, TRUE);
@@ -397,19 +406,24 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
     @Override
     public synchronized void readEntriesComplete(List<Entry> entries, Object ctx) {
         ReadType readType = (ReadType) ctx;
+        long readStartNanos;
         if (readType == ReadType.Normal) {
             havePendingRead = false;
+            readStartNanos = this.readStartNanos;
         } else {
             havePendingReplayRead = false;
+            readStartNanos = this.replayStartNanos;
         }
 
-        if (readBatchSize < serviceConfig.getDispatcherMaxReadBatchSize()) {
-            int newReadBatchSize = Math.min(readBatchSize * 2, serviceConfig.getDispatcherMaxReadBatchSize());
-            if (log.isDebugEnabled()) {
-                log.debug("[{}] Increasing read batch size from {} to {}", name, readBatchSize, newReadBatchSize);
-            }
-
-            readBatchSize = newReadBatchSize;
+        long totalBytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            totalBytes += entries.get(i).getLength();
+        }
+        int readBatchSize = readSizeController.getReadBatchSize();
+        readSizeController.readCompleted(entries.size(), totalBytes, System.nanoTime() - readStartNanos);
+        if (log.isDebugEnabled() && readBatchSize != readSizeController.getReadBatchSize()) {
+            log.debug("[{}] Changing read batch size from {} to {}", name, readBatchSize,
+                    readSizeController.getReadBatchSize());
         }
 
         readFailureBackoff.reduceToHalf();
@@ -543,7 +557,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
             }
         }
 
-        readBatchSize = serviceConfig.getDispatcherMinReadBatchSize();
+        readSizeController.readFailed();
 
         topic.getBrokerService().executor().schedule(() -> {
             synchronized (PersistentDispatcherMultipleConsumers.this) {
@@ -678,7 +692,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
     }
 
     @Override
-    public synchronized boolean trackDelayedDelivery(long ledgerId, long entryId, MessageMetadata msgMetadata) {
+    public synchronized boolean trackDelayedDelivery(long ledgerId, long entryId, long deliverAtTime) {
         if (!isDelayedDeliveryEnabled) {
             // If broker has the feature disabled, always deliver messages immediately
             return false;
@@ -689,7 +703,7 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
             delayedDeliveryTracker = Optional.of(topic.getBrokerService().getDelayedDeliveryTrackerFactory().newTracker(this));
         }
 
-        return delayedDeliveryTracker.get().addMessage(ledgerId, entryId, msgMetadata.getDeliverAtTime());
+        return delayedDeliveryTracker.get().addMessage(ledgerId, entryId, deliverAtTime);
     }
 
     /**
@@ -718,6 +732,15 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
         }
     }
 
+    @Override
+    public void entryAcknowledged(long roundTripNanos) {
+        readSizeController.ackReceived(roundTripNanos);
+    }
+
+    public DispatchReadSizeController getReadSizeController() {
+        return readSizeController;
+    }
+
     public synchronized long getNumberOfDelayedMessages() {
         if (delayedDeliveryTracker.isPresent()) {
             return delayedDeliveryTracker.get().getNumberOfDelayedMessages();
@@ -730,5 +753,13 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
         return topic;
     }
 
+    public ManagedCursor getCursor() {
+        return cursor;
+    }
+
+    public Subscription getSubscription() {
+        return subscription;
+    }
+
     private static final Logger log = LoggerFactory.getLogger(PersistentDispatcherMultipleConsumers.class);
 }
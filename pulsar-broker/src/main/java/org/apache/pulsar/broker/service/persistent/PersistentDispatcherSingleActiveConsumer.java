@@ -506,6 +506,11 @@ public final class PersistentDispatcherSingleActiveConsumer extends AbstractDisp
         return dispatchRateLimiter;
     }
 
+    @Override
+    public synchronized boolean isIdle() {
+        return consumers.isEmpty() && !havePendingRead && readOnActiveConsumerTask == null;
+    }
+
     @Override
     public void initializeDispatchRateLimiterIfNeeded(Optional<Policies> policies) {
         if (!dispatchRateLimiter.isPresent() && DispatchRateLimiter
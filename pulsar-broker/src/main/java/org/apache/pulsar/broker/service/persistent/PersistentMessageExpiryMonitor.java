@@ -18,7 +18,10 @@
  */
 package org.apache.pulsar.broker.service.persistent;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
 
 import org.apache.bookkeeper.mledger.AsyncCallbacks.FindEntryCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
@@ -37,6 +40,7 @@ public class PersistentMessageExpiryMonitor implements FindEntryCallback {
     private final String subName;
     private final String topicName;
     private final Rate msgExpired;
+    private final Supplier<Map<String, Long>> markDeleteProperties;
 
     private static final int FALSE = 0;
     private static final int TRUE = 1;
@@ -46,10 +50,20 @@ public class PersistentMessageExpiryMonitor implements FindEntryCallback {
             .newUpdater(PersistentMessageExpiryMonitor.class, "expirationCheckInProgress");
 
     public PersistentMessageExpiryMonitor(String topicName, String subscriptionName, ManagedCursor cursor) {
+        this(topicName, subscriptionName, cursor, Collections::emptyMap);
+    }
+
+    /**
+     * @param markDeleteProperties
+     *            supplies the cursor properties to keep when the expired messages are mark-deleted
+     */
+    public PersistentMessageExpiryMonitor(String topicName, String subscriptionName, ManagedCursor cursor,
+            Supplier<Map<String, Long>> markDeleteProperties) {
         this.topicName = topicName;
         this.cursor = cursor;
         this.subName = subscriptionName;
         this.msgExpired = new Rate();
+        this.markDeleteProperties = markDeleteProperties;
     }
 
     public void expireMessages(int messageTTLInSeconds) {
@@ -113,7 +127,8 @@ public class PersistentMessageExpiryMonitor implements FindEntryCallback {
     public void findEntryComplete(Position position, Object ctx) {
         if (position != null) {
             log.info("[{}][{}] Expiring all messages until position {}", topicName, subName, position);
-            cursor.asyncMarkDelete(position, markDeleteCallback, cursor.getNumberOfEntriesInBacklog());
+            cursor.asyncMarkDelete(position, markDeleteProperties.get(), markDeleteCallback,
+                    cursor.getNumberOfEntriesInBacklog());
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("[{}][{}] No messages to expire", topicName, subName);
@@ -30,6 +30,7 @@ import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.pulsar.broker.service.BrokerServiceException;
+import org.apache.pulsar.broker.service.ConsistentHashingStickyKeyConsumerSelector;
 import org.apache.pulsar.broker.service.Consumer;
 import org.apache.pulsar.broker.service.EntryBatchSizes;
 import org.apache.pulsar.broker.service.HashRangeStickyKeyConsumerSelector;
@@ -37,7 +38,6 @@ import org.apache.pulsar.broker.service.SendMessageInfo;
 import org.apache.pulsar.broker.service.StickyKeyConsumerSelector;
 import org.apache.pulsar.broker.service.Subscription;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandSubscribe.SubType;
-import org.apache.pulsar.common.util.Murmur3_32Hash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,8 +47,12 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
 
     PersistentStickyKeyDispatcherMultipleConsumers(PersistentTopic topic, ManagedCursor cursor, Subscription subscription) {
         super(topic, cursor, subscription);
-        //TODO: Consumer selector Pluggable
-        selector = new HashRangeStickyKeyConsumerSelector();
+        if (serviceConfig.isSubscriptionKeySharedUseConsistentHashing()) {
+            selector = new ConsistentHashingStickyKeyConsumerSelector(
+                    serviceConfig.getSubscriptionKeySharedConsistentHashingNumberOfVirtualNodes());
+        } else {
+            selector = new HashRangeStickyKeyConsumerSelector();
+        }
     }
 
     @Override
@@ -70,7 +74,7 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
         if (entries.size() > 0) {
             final Map<Integer, List<Entry>> groupedEntries = new HashMap<>();
             for (Entry entry : entries) {
-                int key = Murmur3_32Hash.getInstance().makeHash(peekStickyKey(entry.getDataBuffer()));
+                int key = getStickyKeyHash(entry);
                 groupedEntries.putIfAbsent(key, new ArrayList<>());
                 groupedEntries.get(key).add(entry);
             }
@@ -79,10 +83,7 @@ public class PersistentStickyKeyDispatcherMultipleConsumers extends PersistentDi
             while (iterator.hasNext() && totalAvailablePermits > 0 && isAtleastOneConsumerAvailable()) {
                 final Map.Entry<Integer, List<Entry>> entriesWithSameKey = iterator.next();
                 //TODO: None key policy
-                Consumer consumer = null;
-                if (selector instanceof HashRangeStickyKeyConsumerSelector) {
-                    consumer = ((HashRangeStickyKeyConsumerSelector)selector).select(entriesWithSameKey.getKey());
-                }
+                Consumer consumer = selector.select(entriesWithSameKey.getKey());
                 if (consumer == null) {
                     // Do nothing, cursor will be rewind at reconnection
                     log.info("[{}] rewind because no available consumer found for key {} from total {}", name,
@@ -21,6 +21,7 @@ package org.apache.pulsar.broker.service.persistent;
 import com.google.common.base.MoreObjects;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -49,7 +50,7 @@ import org.apache.bookkeeper.mledger.ManagedLedgerException.InvalidCursorPositio
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorImpl;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.pulsar.broker.delayed.DelayedDeliveryTrackerFactory;
 import org.apache.pulsar.broker.service.BrokerServiceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.ServerMetadataException;
 import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionBusyException;
@@ -57,6 +58,7 @@ import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionFence
 import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionInvalidCursorPosition;
 import org.apache.pulsar.broker.service.Consumer;
 import org.apache.pulsar.broker.service.Dispatcher;
+import org.apache.pulsar.broker.service.PendingAcksMap;
 import org.apache.pulsar.broker.service.Subscription;
 import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandAck.AckType;
@@ -88,7 +90,8 @@ public class PersistentSubscription implements Subscription {
     private static final AtomicIntegerFieldUpdater<PersistentSubscription> IS_FENCED_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(PersistentSubscription.class, "isFenced");
     private volatile int isFenced = FALSE;
-    private PersistentMessageExpiryMonitor expiryMonitor;
+    // Created on the first expiry check, and released with the dispatcher when the subscription is idle
+    private volatile PersistentMessageExpiryMonitor expiryMonitor;
 
     // for connected subscriptions, message expiry will be checked if the backlog is greater than this threshold
     private static final int MINIMUM_BACKLOG_FOR_EXPIRY_CHECK = 1000;
@@ -126,6 +129,10 @@ public class PersistentSubscription implements Subscription {
 
     private volatile ReplicatedSubscriptionSnapshotCache replicatedSubscriptionSnapshotCache;
 
+    // Sealed buckets of the delayed delivery tracker, which are recorded in the cursor properties along with the
+    // mark-delete position. Empty unless the subscription has a bucket based tracker.
+    private volatile Map<String, Long> delayedBucketProperties = Collections.emptyMap();
+
     static {
         REPLICATED_SUBSCRIPTION_CURSOR_PROPERTIES.put(REPLICATED_SUBSCRIPTION_PROPERTY, 1L);
     }
@@ -144,7 +151,6 @@ public class PersistentSubscription implements Subscription {
         this.cursor = cursor;
         this.topicName = topic.getName();
         this.subName = subscriptionName;
-        this.expiryMonitor = new PersistentMessageExpiryMonitor(topicName, subscriptionName, cursor);
         this.setReplicated(replicated);
         IS_FENCED_UPDATER.set(this, FALSE);
     }
@@ -314,7 +320,10 @@ public class PersistentSubscription implements Subscription {
                 cursor.asyncDelete(positions, deleteCallback, positions);
             }
 
-            dispatcher.getRedeliveryTracker().removeBatch(positions);
+            Dispatcher dispatcher = this.dispatcher;
+            if (dispatcher != null) {
+                dispatcher.getRedeliveryTracker().removeBatch(positions);
+            }
         }
 
         if (!cursor.getMarkDeletedPosition().equals(previousMarkDeletePosition)) {
@@ -332,8 +341,24 @@ public class PersistentSubscription implements Subscription {
 
         if (topic.getManagedLedger().isTerminated() && cursor.getNumberOfEntriesInBacklog() == 0) {
             // Notify all consumer that the end of topic was reached
-            dispatcher.getConsumers().forEach(Consumer::reachedEndOfTopic);
+            Dispatcher dispatcher = this.dispatcher;
+            if (dispatcher != null) {
+                dispatcher.getConsumers().forEach(Consumer::reachedEndOfTopic);
+            }
+        }
+    }
+
+    @Override
+    public void acknowledgeBatchIndexes(Position position, BitSet ackedIndexes) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}] Batch index acks {} on {}", topicName, subName, ackedIndexes, position);
         }
+        cursor.asyncDeleteBatchIndexes(position, ackedIndexes, deleteCallback, position);
+    }
+
+    @Override
+    public long[] getAckedBatchIndexes(Position position) {
+        return cursor.getDeletedBatchIndexesAsLongArray(position);
     }
 
     /**
@@ -551,7 +576,26 @@ public class PersistentSubscription implements Subscription {
                             log.debug("[{}][{}] Skipped {} messages, new backlog {}", topicName, subName,
                                     numMessagesToSkip, cursor.getNumberOfEntriesInBacklog());
                         }
-                        future.complete(null);
+                        if (delayedBucketProperties.isEmpty()) {
+                            future.complete(null);
+                            return;
+                        }
+
+                        // The skip doesn't carry the cursor properties, record the delayed delivery buckets again
+                        cursor.asyncMarkDelete(cursor.getMarkDeletedPosition(),
+                                mergeCursorProperties(Collections.emptyMap()), new MarkDeleteCallback() {
+                                    @Override
+                                    public void markDeleteComplete(Object ctx) {
+                                        future.complete(null);
+                                    }
+
+                                    @Override
+                                    public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                                        log.warn("[{}][{}] Failed to keep the cursor properties after skipping {} "
+                                                + "messages", topicName, subName, numMessagesToSkip, exception);
+                                        future.complete(null);
+                                    }
+                                }, null);
                     }
 
                     @Override
@@ -781,7 +825,8 @@ public class PersistentSubscription implements Subscription {
         log.info("[{}][{}] Unsubscribing", topicName, subName);
 
         // cursor close handles pending delete (ack) operations
-        this.close().thenCompose(v -> topic.unsubscribe(subName)).thenAccept(v -> deleteFuture.complete(null))
+        this.close().thenCompose(v -> cleanDelayedDeliverySnapshots()).thenCompose(v -> topic.unsubscribe(subName))
+                .thenAccept(v -> deleteFuture.complete(null))
                 .exceptionally(exception -> {
                     IS_FENCED_UPDATER.set(this, FALSE);
                     log.error("[{}][{}] Error deleting subscription", topicName, subName, exception);
@@ -792,6 +837,18 @@ public class PersistentSubscription implements Subscription {
         return deleteFuture;
     }
 
+    private CompletableFuture<Void> cleanDelayedDeliverySnapshots() {
+        DelayedDeliveryTrackerFactory factory = topic.getBrokerService().getDelayedDeliveryTrackerFactory();
+        if (factory == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // The subscription is deleted even if some snapshots are left behind
+        return factory.cleanResidualSnapshots(topic, cursor).exceptionally(ex -> {
+            log.warn("[{}][{}] Failed to delete the delayed delivery snapshots", topicName, subName, ex);
+            return null;
+        });
+    }
+
     /**
      * Handle unsubscribe command from the client API Check with the dispatcher is this consumer can proceed with
      * unsubscribe
@@ -835,11 +892,53 @@ public class PersistentSubscription implements Subscription {
             // don't do anything for almost caught-up connected subscriptions
             return;
         }
-        expiryMonitor.expireMessages(messageTTLInSeconds);
+        getExpiryMonitor().expireMessages(messageTTLInSeconds);
     }
 
     public double getExpiredMessageRate() {
-        return expiryMonitor.getMessageExpiryRate();
+        PersistentMessageExpiryMonitor expiryMonitor = this.expiryMonitor;
+        return expiryMonitor != null ? expiryMonitor.getMessageExpiryRate() : 0;
+    }
+
+    private PersistentMessageExpiryMonitor getExpiryMonitor() {
+        PersistentMessageExpiryMonitor expiryMonitor = this.expiryMonitor;
+        if (expiryMonitor == null) {
+            synchronized (this) {
+                expiryMonitor = this.expiryMonitor;
+                if (expiryMonitor == null) {
+                    expiryMonitor = new PersistentMessageExpiryMonitor(topicName, subName, cursor,
+                            () -> delayedBucketProperties);
+                    this.expiryMonitor = expiryMonitor;
+                }
+            }
+        }
+        return expiryMonitor;
+    }
+
+    /**
+     * Release the in-memory dispatch state of the subscription if it has been without consumers for longer than the
+     * idle time: the dispatcher with its rate limiter and redelivery state, the message expiry monitor and the
+     * entries prefetched by the cursor. A new dispatcher is created when a consumer attaches, and it rewinds the
+     * cursor like after a reconnection.
+     *
+     * @return true if the state was released
+     */
+    public synchronized boolean releaseStateIfIdle(long idleTimeMillis) {
+        Dispatcher dispatcher = this.dispatcher;
+        if (dispatcher == null || IS_FENCED_UPDATER.get(this) == TRUE || !dispatcher.isIdle()
+                || System.currentTimeMillis() - cursor.getLastActive() <= idleTimeMillis) {
+            return false;
+        }
+
+        this.dispatcher = null;
+        dispatcher.close();
+        dispatcher.getRateLimiter().ifPresent(DispatchRateLimiter::close);
+        expiryMonitor = null;
+        cursor.releaseReadAheadEntries();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}] Released the state of the idle subscription", topicName, subName);
+        }
+        return true;
     }
 
     public long estimateBacklogSize() {
@@ -874,17 +973,21 @@ public class PersistentSubscription implements Subscription {
                 subStats.unackedMessages = d.getTotalUnackedMessages();
                 subStats.blockedSubscriptionOnUnackedMsgs = d.isBlockedDispatcherOnUnackedMsgs();
                 subStats.msgDelayed = d.getNumberOfDelayedMessages();
+                subStats.dispatchReadBatchSize = d.getReadSizeController().getReadBatchSize();
+                subStats.dispatchAvgEntrySize = d.getReadSizeController().getAvgEntrySize();
+                subStats.dispatchReadRoundTripMs = d.getReadSizeController().getAvgReadRoundTripMillis();
+                subStats.ackRoundTripMs = d.getReadSizeController().getAvgAckRoundTripMillis();
             }
         }
         subStats.msgBacklog = getNumberOfEntriesInBacklog();
-        subStats.msgRateExpired = expiryMonitor.getMessageExpiryRate();
+        subStats.msgRateExpired = getExpiredMessageRate();
         subStats.isReplicated = isReplicated();
         return subStats;
     }
 
     @Override
     public synchronized void redeliverUnacknowledgedMessages(Consumer consumer) {
-        ConcurrentLongLongPairHashMap positionMap = consumer.getPendingAcks();
+        PendingAcksMap positionMap = consumer.getPendingAcks();
         // Only check if message is in pending_ack status when there's ongoing transaction.
         if (null != positionMap && ((pendingAckMessages != null && pendingAckMessages.size() != 0)
                                                                             || pendingCumulativeAckMessage != null)) {
@@ -892,8 +995,8 @@ public class PersistentSubscription implements Subscription {
             PositionImpl cumulativeAckPosition = (null == this.pendingCumulativeAckMessage) ? null :
                     (PositionImpl) this.pendingCumulativeAckMessage;
 
-            positionMap.asMap().entrySet().forEach(entry -> {
-                PositionImpl position = new PositionImpl(entry.getKey().first, entry.getKey().second);
+            positionMap.forEach((ledgerId, entryId, batchSize, dispatchTimeNanos) -> {
+                PositionImpl position = new PositionImpl(ledgerId, entryId);
                 if ((pendingAckMessages == null || (pendingAckMessages != null &&
                         !this.pendingAckMessages.contains(position))) &&
                         (null == cumulativeAckPosition ||
@@ -1027,8 +1130,8 @@ public class PersistentSubscription implements Subscription {
         }
 
         // Materialize cumulative ack.
-        cursor.asyncMarkDelete(this.pendingCumulativeAckMessage, (null == properties)?
-                Collections.emptyMap() : properties, markDeleteCallback, this.pendingCumulativeAckMessage);
+        cursor.asyncMarkDelete(this.pendingCumulativeAckMessage, mergeCursorProperties((null == properties)?
+                Collections.emptyMap() : properties), markDeleteCallback, this.pendingCumulativeAckMessage);
 
         // Reset txdID and position for cumulative ack.
         PENDING_CUMULATIVE_ACK_TXNID_UPDATER.set(this, null);
@@ -1075,17 +1178,20 @@ public class PersistentSubscription implements Subscription {
 
     /**
      * Return a merged map that contains the cursor properties specified by used
-     * (eg. when using compaction subscription) and the subscription properties.
+     * (eg. when using compaction subscription) and the subscription properties. The sealed delayed delivery
+     * buckets recorded in the cursor properties are kept.
      */
     protected Map<String, Long> mergeCursorProperties(Map<String, Long> userProperties) {
         Map<String, Long> baseProperties = isReplicated() ? REPLICATED_SUBSCRIPTION_CURSOR_PROPERTIES
                 : NON_REPLICATED_SUBSCRIPTION_CURSOR_PROPERTIES;
+        Map<String, Long> bucketProperties = delayedBucketProperties;
 
-        if (userProperties.isEmpty()) {
+        if (userProperties.isEmpty() && bucketProperties.isEmpty()) {
             // Use only the static instance in the common case
             return baseProperties;
         } else {
             Map<String, Long> merged = new TreeMap<>();
+            merged.putAll(bucketProperties);
             merged.putAll(userProperties);
             merged.putAll(baseProperties);
             return merged;
@@ -1093,6 +1199,14 @@ public class PersistentSubscription implements Subscription {
 
     }
 
+    /**
+     * Set the cursor properties recording the sealed buckets of the delayed delivery tracker, to keep them when the
+     * subscription updates the mark-delete position.
+     */
+    public void setDelayedBucketProperties(Map<String, Long> delayedBucketProperties) {
+        this.delayedBucketProperties = delayedBucketProperties;
+    }
+
     @Override
     public void processReplicatedSubscriptionSnapshot(ReplicatedSubscriptionsSnapshot snapshot) {
         ReplicatedSubscriptionSnapshotCache snapshotCache = this.replicatedSubscriptionSnapshotCache;
@@ -19,13 +19,16 @@
 package org.apache.pulsar.broker.stats.metrics;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryMXBean;
+import org.apache.bookkeeper.mledger.impl.BatchingMetaStoreZookeeper;
 import org.apache.bookkeeper.mledger.impl.EntryCacheImpl;
 import org.apache.pulsar.broker.PulsarService;
 import org.apache.pulsar.common.stats.Metrics;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import io.netty.buffer.PoolArenaMetric;
 import io.netty.buffer.PoolChunkListMetric;
@@ -34,6 +37,15 @@ import io.netty.buffer.PooledByteBufAllocator;
 
 public class ManagedLedgerCacheMetrics extends AbstractMetrics {
 
+    private static final double[] METADATA_BATCH_SIZE_BUCKETS =
+            new double[BatchingMetaStoreZookeeper.BATCH_SIZE_BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BatchingMetaStoreZookeeper.BATCH_SIZE_BUCKETS.length; i++) {
+            METADATA_BATCH_SIZE_BUCKETS[i] = BatchingMetaStoreZookeeper.BATCH_SIZE_BUCKETS[i];
+        }
+    }
+
     private List<Metrics> metrics;
     public ManagedLedgerCacheMetrics(PulsarService pulsar) {
         super(pulsar);
@@ -92,8 +104,23 @@ public class ManagedLedgerCacheMetrics extends AbstractMetrics {
         m.put("brk_ml_cache_pool_active_allocations_normal", activeAllocationsNormal);
         m.put("brk_ml_cache_pool_active_allocations_huge", activeAllocationsHuge);
 
+        Map<String, Double> metadataBuckets = Maps.newHashMap();
+        populateBucketEntries(metadataBuckets, "brk_ml_MetadataBatchSizeBuckets", METADATA_BATCH_SIZE_BUCKETS,
+                mlCacheStats.getMetadataBatchSizeBuckets());
+        populateBucketEntries(metadataBuckets, "brk_ml_MetadataUpdateLatencyBuckets", ENTRY_LATENCY_BUCKETS_MS,
+                mlCacheStats.getMetadataUpdateLatencyBuckets());
+        metadataBuckets.forEach(m::put);
+
+        // Hit and miss ratios are reported under the eviction policy that produced them
+        Map<String, String> dimensionMap = Maps.newHashMap();
+        dimensionMap.put("cache_eviction_policy", mlCacheStats.getCacheEvictionPolicy());
+        Metrics policyMetrics = createMetrics(dimensionMap);
+        policyMetrics.put("brk_ml_cache_hits_ratio", mlCacheStats.getCacheHitsRatio());
+        policyMetrics.put("brk_ml_cache_misses_ratio", mlCacheStats.getCacheMissesRatio());
+
         metrics.clear();
         metrics.add(m);
+        metrics.add(policyMetrics);
         return metrics;
 
     }
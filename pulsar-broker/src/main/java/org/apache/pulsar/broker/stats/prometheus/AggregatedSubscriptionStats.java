@@ -39,5 +39,13 @@ public class AggregatedSubscriptionStats {
 
     public long msgDelayed;
 
+    public int dispatchReadBatchSize;
+
+    public double dispatchAvgEntrySize;
+
+    public double dispatchReadRoundTripMs;
+
+    public double ackRoundTripMs;
+
     public Map<Consumer, AggregatedConsumerStats> consumerStat = new HashMap<>();
 }
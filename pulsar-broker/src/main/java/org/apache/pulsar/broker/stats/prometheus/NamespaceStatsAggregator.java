@@ -25,7 +25,9 @@ import java.util.concurrent.atomic.LongAdder;
 import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerMBeanImpl;
 import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.service.DispatchReadSizeController;
 import org.apache.pulsar.broker.service.Topic;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 import org.apache.pulsar.common.policies.data.ReplicatorStats;
 import org.apache.pulsar.common.util.SimpleTextOutputStream;
@@ -126,6 +128,14 @@ public class NamespaceStatsAggregator {
                     .computeIfAbsent(name, k -> new AggregatedSubscriptionStats());
             subsStats.msgBacklog = subscription.getNumberOfEntriesInBacklog();
             subsStats.msgDelayed = subscription.getNumberOfEntriesDelayed();
+            if (subscription.getDispatcher() instanceof PersistentDispatcherMultipleConsumers) {
+                DispatchReadSizeController readSizeController =
+                        ((PersistentDispatcherMultipleConsumers) subscription.getDispatcher()).getReadSizeController();
+                subsStats.dispatchReadBatchSize = readSizeController.getReadBatchSize();
+                subsStats.dispatchAvgEntrySize = readSizeController.getAvgEntrySize();
+                subsStats.dispatchReadRoundTripMs = readSizeController.getAvgReadRoundTripMillis();
+                subsStats.ackRoundTripMs = readSizeController.getAvgAckRoundTripMillis();
+            }
 
             subscription.getConsumers().forEach(consumer -> {
 
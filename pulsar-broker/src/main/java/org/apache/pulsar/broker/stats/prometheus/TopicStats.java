@@ -128,6 +128,10 @@ class TopicStats {
             metric(stream, cluster, namespace, topic, n, "pulsar_subscription_blocked_on_unacked_messages", subsStats.blockedSubscriptionOnUnackedMsgs ? 1 : 0);
             metric(stream, cluster, namespace, topic, n, "pulsar_subscription_msg_rate_out", subsStats.msgRateOut);
             metric(stream, cluster, namespace, topic, n, "pulsar_subscription_msg_throughput_out", subsStats.msgThroughputOut);
+            metric(stream, cluster, namespace, topic, n, "pulsar_subscription_dispatch_read_batch_size", subsStats.dispatchReadBatchSize);
+            metric(stream, cluster, namespace, topic, n, "pulsar_subscription_dispatch_avg_entry_size", subsStats.dispatchAvgEntrySize);
+            metric(stream, cluster, namespace, topic, n, "pulsar_subscription_dispatch_read_round_trip_ms", subsStats.dispatchReadRoundTripMs);
+            metric(stream, cluster, namespace, topic, n, "pulsar_subscription_ack_round_trip_ms", subsStats.ackRoundTripMs);
             subsStats.consumerStat.forEach((c, consumerStats) -> {
                 metric(stream, cluster, namespace, topic, n, c.consumerName(), c.consumerId(), "pulsar_consumer_msg_rate_redeliver", consumerStats.msgRateRedeliver);
                 metric(stream, cluster, namespace, topic, n, c.consumerName(), c.consumerId(), "pulsar_consumer_unacked_massages", consumerStats.unackedMessages);
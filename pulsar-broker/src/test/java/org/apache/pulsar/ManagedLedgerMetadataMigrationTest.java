@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar;
+
+import static org.testng.Assert.assertEquals;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.impl.MetaStore;
+import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
+import org.apache.bookkeeper.mledger.impl.MetaStore.Stat;
+import org.apache.bookkeeper.mledger.impl.MetaStoreImplRocksDB;
+import org.apache.bookkeeper.mledger.impl.MetaStoreImplZookeeper;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.MockZooKeeper;
+import org.apache.zookeeper.ZooDefs;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ManagedLedgerMetadataMigrationTest {
+
+    private OrderedScheduler executor;
+    private MockZooKeeper zk;
+    private File metadataStoreDir;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        executor = OrderedScheduler.newSchedulerBuilder().numThreads(2).name("test").build();
+        zk = MockZooKeeper.newInstance();
+        zk.create("/managed-ledgers", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        metadataStoreDir = Files.createTempDirectory("ml-metadata").toFile();
+    }
+
+    @AfterMethod
+    public void cleanup() throws Exception {
+        zk.shutdown();
+        executor.shutdown();
+        FileUtils.deleteDirectory(metadataStoreDir);
+    }
+
+    private static class Result<T> extends CompletableFuture<Pair<T, Stat>> implements MetaStoreCallback<T> {
+        @Override
+        public void operationComplete(T result, Stat stat) {
+            complete(Pair.of(result, stat));
+        }
+
+        @Override
+        public void operationFailed(MetaStoreException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    private static ManagedLedgerInfo ledgerInfo(long... ledgerIds) {
+        ManagedLedgerInfo.Builder builder = ManagedLedgerInfo.newBuilder();
+        for (long ledgerId : ledgerIds) {
+            builder.addLedgerInfo(LedgerInfo.newBuilder().setLedgerId(ledgerId).setTimestamp(1));
+        }
+        return builder.build();
+    }
+
+    private static ManagedCursorInfo cursorInfo(long markDeleteEntryId) {
+        return ManagedCursorInfo.newBuilder().setCursorsLedgerId(-1).setMarkDeleteLedgerId(1)
+                .setMarkDeleteEntryId(markDeleteEntryId).build();
+    }
+
+    private static void createManagedLedger(MetaStore store, String name, ManagedLedgerInfo info,
+            List<String> cursors) throws Exception {
+        Result<ManagedLedgerInfo> created = new Result<>();
+        store.getManagedLedgerInfo(name, true, created);
+        Result<Void> updated = new Result<>();
+        store.asyncUpdateLedgerIds(name, info, created.get().getRight(), updated);
+        updated.get();
+        for (int i = 0; i < cursors.size(); i++) {
+            Result<Void> cursorCreated = new Result<>();
+            store.asyncUpdateCursorInfo(name, cursors.get(i), cursorInfo(i), null, cursorCreated);
+            cursorCreated.get();
+        }
+    }
+
+    private static ManagedLedgerInfo getLedgerInfo(MetaStore store, String name) throws Exception {
+        Result<ManagedLedgerInfo> result = new Result<>();
+        store.getManagedLedgerInfo(name, false, result);
+        return result.get().getLeft();
+    }
+
+    private static List<String> getCursors(MetaStore store, String name) throws Exception {
+        Result<List<String>> result = new Result<>();
+        store.getCursors(name, result);
+        return result.get().getLeft();
+    }
+
+    private static ManagedCursorInfo getCursorInfo(MetaStore store, String name, String cursor) throws Exception {
+        Result<ManagedCursorInfo> result = new Result<>();
+        store.asyncGetCursorInfo(name, cursor, result);
+        return result.get().getLeft();
+    }
+
+    @Test
+    public void testMigration() throws Exception {
+        MetaStore source = new MetaStoreImplZookeeper(zk, executor);
+        createManagedLedger(source, "tenant/ns/persistent/t1", ledgerInfo(1, 2), Lists.newArrayList("c1", "c2"));
+        createManagedLedger(source, "tenant/ns/persistent/t2", ledgerInfo(3), Lists.newArrayList());
+        createManagedLedger(source, "prop/cluster/ns/persistent/t3", ledgerInfo(4), Lists.newArrayList("c3"));
+
+        try (MetaStoreImplRocksDB target = new MetaStoreImplRocksDB(metadataStoreDir.getAbsolutePath(), executor)) {
+            // A cursor of t1 was already copied by a previous run
+            createManagedLedger(target, "tenant/ns/persistent/t1", ledgerInfo(1), Lists.newArrayList("c1"));
+
+            assertEquals(ManagedLedgerMetadataMigration.migrate(zk, source, target), 3);
+
+            assertEquals(Sets.newHashSet(target.getManagedLedgers()), Sets.newHashSet("tenant/ns/persistent/t1",
+                    "tenant/ns/persistent/t2", "prop/cluster/ns/persistent/t3"));
+            assertEquals(getLedgerInfo(target, "tenant/ns/persistent/t1"), ledgerInfo(1, 2));
+            assertEquals(getLedgerInfo(target, "prop/cluster/ns/persistent/t3"), ledgerInfo(4));
+
+            assertEquals(getCursors(target, "tenant/ns/persistent/t1"), Lists.newArrayList("c1", "c2"));
+            assertEquals(getCursors(target, "tenant/ns/persistent/t2"), Lists.newArrayList());
+            assertEquals(getCursorInfo(target, "tenant/ns/persistent/t1", "c2"), cursorInfo(1));
+            assertEquals(getCursorInfo(target, "prop/cluster/ns/persistent/t3", "c3"), cursorInfo(0));
+        }
+    }
+}
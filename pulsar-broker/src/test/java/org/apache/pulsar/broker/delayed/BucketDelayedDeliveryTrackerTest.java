@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static org.apache.pulsar.broker.delayed.BucketDelayedDeliveryTracker.DELAYED_BUCKET_KEY_PREFIX;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.netty.util.Timer;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Cleanup;
+
+import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.broker.service.persistent.PersistentSubscription;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BucketDelayedDeliveryTrackerTest {
+
+    private static class MockBucketSnapshotStorage implements BucketSnapshotStorage {
+        private final AtomicLong nextBucketId = new AtomicLong();
+        private final Map<Long, List<long[]>> snapshots = new ConcurrentHashMap<>();
+        private volatile boolean failReads = false;
+
+        @Override
+        public CompletableFuture<Long> createBucketSnapshot(String topicName, String cursorName,
+                List<long[]> segments) {
+            long bucketId = nextBucketId.incrementAndGet();
+            snapshots.put(bucketId, Lists.newArrayList(segments));
+            return CompletableFuture.completedFuture(bucketId);
+        }
+
+        @Override
+        public CompletableFuture<int[]> getBucketSnapshotSegmentSizes(long bucketId) {
+            if (failReads || !snapshots.containsKey(bucketId)) {
+                return failedFuture();
+            }
+            return CompletableFuture.completedFuture(
+                    snapshots.get(bucketId).stream().mapToInt(segment -> segment.length / 3).toArray());
+        }
+
+        @Override
+        public CompletableFuture<long[]> getBucketSnapshotSegment(long bucketId, int segmentIndex) {
+            if (failReads || !snapshots.containsKey(bucketId)) {
+                return failedFuture();
+            }
+            return CompletableFuture.completedFuture(snapshots.get(bucketId).get(segmentIndex));
+        }
+
+        @Override
+        public CompletableFuture<Void> deleteBucketSnapshot(long bucketId) {
+            snapshots.remove(bucketId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        private static <T> CompletableFuture<T> failedFuture() {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new Exception("Failed to read the snapshot"));
+            return future;
+        }
+    }
+
+    private PersistentDispatcherMultipleConsumers dispatcher;
+    private ManagedCursor cursor;
+    private ManagedLedgerImpl ledger;
+    private PersistentSubscription subscription;
+    private Map<String, Long> cursorProperties;
+    private Timer timer;
+    private AtomicLong clockTime;
+    private Clock clock;
+    private MockBucketSnapshotStorage storage;
+
+    @BeforeMethod
+    public void setup() {
+        cursorProperties = new TreeMap<>();
+        cursor = mock(ManagedCursor.class);
+        when(cursor.getName()).thenReturn("sub");
+        when(cursor.getMarkDeletedPosition()).thenReturn(PositionImpl.earliest);
+        when(cursor.getProperties()).then(invocation -> Collections.unmodifiableMap(cursorProperties));
+        doAnswer(invocation -> {
+            cursorProperties = new TreeMap<>(invocation.getArgumentAt(1, Map.class));
+            invocation.getArgumentAt(2, MarkDeleteCallback.class).markDeleteComplete(null);
+            return null;
+        }).when(cursor).asyncMarkDelete(any(), any(), any(), any());
+        doAnswer(invocation -> {
+            invocation.getArgumentAt(0, MarkDeleteCallback.class).markDeleteComplete(null);
+            return null;
+        }).when(cursor).asyncFlush(any(), any());
+
+        ledger = mock(ManagedLedgerImpl.class);
+        when(ledger.getLedgersInfo()).thenReturn(new TreeMap<>());
+
+        PersistentTopic topic = mock(PersistentTopic.class);
+        when(topic.getName()).thenReturn("persistent://public/default/topic");
+        when(topic.getManagedLedger()).thenReturn(ledger);
+
+        subscription = mock(PersistentSubscription.class);
+
+        dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        when(dispatcher.getName()).thenReturn("persistent://public/default/topic / sub");
+        when(dispatcher.getCursor()).thenReturn(cursor);
+        when(dispatcher.getTopic()).thenReturn(topic);
+        when(dispatcher.getSubscription()).thenReturn(subscription);
+
+        timer = mock(Timer.class);
+        clockTime = new AtomicLong();
+        clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        storage = new MockBucketSnapshotStorage();
+    }
+
+    private BucketDelayedDeliveryTracker newTracker() {
+        return new BucketDelayedDeliveryTracker(dispatcher, timer, 1, clock, storage, 3, 2);
+    }
+
+    @Test
+    public void testSealBucket() throws Exception {
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker = newTracker();
+
+        assertTrue(tracker.addMessage(1, 0, 100));
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(1, 2, 50));
+        assertEquals(tracker.getNumberOfImmutableBuckets(), 0);
+
+        // The bucket is sealed when a message from the next ledger comes in
+        assertTrue(tracker.addMessage(2, 0, 30));
+        assertEquals(tracker.getNumberOfImmutableBuckets(), 1);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 4);
+        assertEquals(storage.snapshots.size(), 1);
+        long bucketId = storage.snapshots.keySet().iterator().next();
+        assertEquals(cursorProperties.get(DELAYED_BUCKET_KEY_PREFIX + "1_1").longValue(), bucketId);
+        verify(cursor).asyncFlush(any(), any());
+        // The subscription keeps the bucket in the cursor properties when messages are acknowledged
+        verify(subscription).setDelayedBucketProperties(
+                Collections.singletonMap(DELAYED_BUCKET_KEY_PREFIX + "1_1", bucketId));
+
+        assertEquals(tracker.hasMessageAvailable(), false);
+        clockTime.set(60);
+        assertEquals(tracker.hasMessageAvailable(), true);
+        assertEquals(tracker.getScheduledMessages(10),
+                Sets.newHashSet(new PositionImpl(1, 1), new PositionImpl(2, 0), new PositionImpl(1, 2)));
+
+        // The last segment was loaded
+        assertEquals(tracker.getNumberOfDelayedMessages(), 1);
+        assertEquals(tracker.hasMessageAvailable(), false);
+
+        clockTime.set(200);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(new PositionImpl(1, 0)));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+
+        // The snapshot is deleted after its last segment
+        assertEquals(tracker.getNumberOfImmutableBuckets(), 0);
+        assertFalse(cursorProperties.containsKey(DELAYED_BUCKET_KEY_PREFIX + "1_1"));
+        assertTrue(storage.snapshots.isEmpty());
+    }
+
+    @Test
+    public void testRecoverBuckets() throws Exception {
+        long bucketId = storage.createBucketSnapshot("topic", "sub", Lists.newArrayList(
+                new long[] { 10, 1, 1, 20, 2, 0 }, new long[] { 40, 1, 0 })).get();
+        cursorProperties.put(DELAYED_BUCKET_KEY_PREFIX + "1_2", bucketId);
+
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker = newTracker();
+        assertEquals(tracker.getNumberOfImmutableBuckets(), 1);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 3);
+
+        // Messages read again from the ledgers of the bucket are not tracked twice
+        assertTrue(tracker.addMessage(1, 0, 40));
+        assertTrue(tracker.addMessage(2, 0, 20));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 3);
+
+        assertTrue(tracker.addMessage(3, 0, 30));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 4);
+
+        clockTime.set(30);
+        assertEquals(tracker.getScheduledMessages(10),
+                Sets.newHashSet(new PositionImpl(1, 1), new PositionImpl(2, 0), new PositionImpl(3, 0)));
+        clockTime.set(40);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(new PositionImpl(1, 0)));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertTrue(cursorProperties.isEmpty());
+        assertTrue(storage.snapshots.isEmpty());
+    }
+
+    @Test
+    public void testReadAgainOnSnapshotFailure() throws Exception {
+        long bucketId = storage.createBucketSnapshot("topic", "sub", Lists.newArrayList(
+                new long[] { 10, 1, 1, 20, 2, 0 })).get();
+        cursorProperties.put(DELAYED_BUCKET_KEY_PREFIX + "1_2", bucketId);
+        storage.failReads = true;
+
+        ledger.getLedgersInfo().put(1L, LedgerInfo.newBuilder().setLedgerId(1).setEntries(3).build());
+        ledger.getLedgersInfo().put(2L, LedgerInfo.newBuilder().setLedgerId(2).setEntries(2).build());
+        ledger.getLedgersInfo().put(3L, LedgerInfo.newBuilder().setLedgerId(3).build());
+        when(cursor.getMarkDeletedPosition()).thenReturn(new PositionImpl(1, 0));
+        when(cursor.getReadPosition()).thenReturn(new PositionImpl(3, 0));
+
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker = newTracker();
+
+        // The bucket is dropped and the messages of its ledgers are replayed, to be tracked again
+        assertEquals(tracker.getNumberOfImmutableBuckets(), 0);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertTrue(cursorProperties.isEmpty());
+        assertTrue(storage.snapshots.isEmpty());
+        verify(cursor, never()).rewind();
+
+        assertTrue(tracker.hasMessageAvailable());
+        assertEquals(tracker.getScheduledMessages(3),
+                Sets.newHashSet(new PositionImpl(1, 1), new PositionImpl(1, 2), new PositionImpl(2, 0)));
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(new PositionImpl(2, 1)));
+        assertFalse(tracker.hasMessageAvailable());
+
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(2, 0, 20));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 2);
+    }
+}
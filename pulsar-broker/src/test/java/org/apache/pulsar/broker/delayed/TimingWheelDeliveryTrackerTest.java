@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Cleanup;
+
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.testng.annotations.Test;
+
+public class TimingWheelDeliveryTrackerTest {
+
+    @Test
+    public void test() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+
+        Timer timer = mock(Timer.class);
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        @Cleanup
+        TimingWheelDelayedDeliveryTracker tracker = new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 10,
+                clock);
+
+        assertEquals(tracker.hasMessageAvailable(), false);
+
+        assertTrue(tracker.addMessage(2, 2, 20));
+        assertTrue(tracker.addMessage(1, 1, 10));
+        assertTrue(tracker.addMessage(3, 3, 30));
+        assertTrue(tracker.addMessage(5, 5, 5000));
+        assertTrue(tracker.addMessage(4, 4, 40));
+
+        assertEquals(tracker.hasMessageAvailable(), false);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 5);
+        assertEquals(tracker.getScheduledMessages(10), Collections.emptySet());
+
+        // Move time forward
+        clockTime.set(15);
+
+        // Message is rejected by tracker since it's already ready to send
+        assertFalse(tracker.addMessage(6, 6, 10));
+
+        assertEquals(tracker.getNumberOfDelayedMessages(), 5);
+        assertEquals(tracker.hasMessageAvailable(), true);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(new PositionImpl(1, 1)));
+
+        // Move time forward
+        clockTime.set(60);
+
+        assertEquals(tracker.getNumberOfDelayedMessages(), 4);
+        assertEquals(tracker.hasMessageAvailable(), true);
+        assertEquals(tracker.getScheduledMessages(1).size(), 1);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 3);
+        assertEquals(tracker.getScheduledMessages(3).size(), 2);
+        assertEquals(tracker.hasMessageAvailable(), false);
+
+        clockTime.set(5000);
+        assertEquals(tracker.hasMessageAvailable(), true);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(new PositionImpl(5, 5)));
+
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertEquals(tracker.hasMessageAvailable(), false);
+        assertEquals(tracker.getScheduledMessages(10), Collections.emptySet());
+    }
+
+    @Test
+    public void testWithTimer() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        NavigableMap<Long, TimerTask> tasks = new TreeMap<>();
+
+        when(timer.newTimeout(any(), anyLong(), any())).then(invocation -> {
+            TimerTask task = invocation.getArgumentAt(0, TimerTask.class);
+            long timeout = invocation.getArgumentAt(1, Long.class);
+            TimeUnit unit = invocation.getArgumentAt(2, TimeUnit.class);
+            long scheduleAt = clockTime.get() + unit.toMillis(timeout);
+            tasks.put(scheduleAt, task);
+
+            Timeout t = mock(Timeout.class);
+            when(t.cancel()).then(i -> {
+                tasks.remove(scheduleAt, task);
+                return null;
+            });
+            return t;
+        });
+
+        @Cleanup
+        TimingWheelDelayedDeliveryTracker tracker = new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 10,
+                clock);
+
+        assertTrue(tasks.isEmpty());
+        assertTrue(tracker.addMessage(2, 2, 25));
+        assertEquals(tasks.size(), 1);
+        assertEquals(tasks.firstKey().longValue(), 20);
+
+        // Messages of the same tick don't move the timer
+        assertTrue(tracker.addMessage(1, 1, 21));
+        assertTrue(tracker.addMessage(3, 3, 29));
+        assertEquals(tasks.size(), 1);
+        verify(timer, times(1)).newTimeout(any(), anyLong(), any());
+
+        assertTrue(tracker.addMessage(4, 4, 12));
+        assertEquals(tasks.size(), 1);
+        assertEquals(tasks.firstKey().longValue(), 10);
+
+        clockTime.set(15);
+
+        TimerTask task = tasks.pollFirstEntry().getValue();
+        Timeout cancelledTimeout = mock(Timeout.class);
+        when(cancelledTimeout.isCancelled()).thenReturn(true);
+        task.run(cancelledTimeout);
+        verifyZeroInteractions(dispatcher);
+
+        task.run(mock(Timeout.class));
+        verify(dispatcher).readMoreEntries();
+    }
+}
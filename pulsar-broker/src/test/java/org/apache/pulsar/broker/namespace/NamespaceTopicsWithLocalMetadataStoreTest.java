@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.namespace;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.pulsar.broker.service.BrokerTestBase;
+import org.apache.pulsar.client.admin.PulsarAdminException.ConflictException;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.common.naming.NamespaceName;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Topics of a namespace when the managed ledgers metadata is kept in the local metadata store instead of ZooKeeper.
+ */
+public class NamespaceTopicsWithLocalMetadataStoreTest extends BrokerTestBase {
+
+    private File metadataStoreDir;
+
+    @BeforeMethod
+    @Override
+    protected void setup() throws Exception {
+        metadataStoreDir = Files.createTempDirectory("ml-metadata").toFile();
+        conf.setManagedLedgerMetadataStoreDirectory(metadataStoreDir.getAbsolutePath());
+        super.baseSetup();
+    }
+
+    @AfterMethod
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+        FileUtils.deleteDirectory(metadataStoreDir);
+    }
+
+    @Test
+    public void testListTopics() throws Exception {
+        List<String> topics = Lists.newArrayList("persistent://prop/ns-abc/topic-2",
+                "persistent://prop/ns-abc/topic-1");
+        List<Producer<byte[]>> producers = Lists.newArrayList();
+        for (String topic : topics) {
+            producers.add(pulsarClient.newProducer().topic(topic).create());
+        }
+        // A topic of another namespace that shares the same prefix
+        admin.namespaces().createNamespace("prop/ns-abc-2");
+        producers.add(pulsarClient.newProducer().topic("persistent://prop/ns-abc-2/topic-3").create());
+
+        // The managed ledgers are not in ZooKeeper
+        assertNull(mockZookKeeper.exists("/managed-ledgers/prop/ns-abc", false));
+
+        topics.sort(null);
+        assertEquals(pulsar.getNamespaceService().getListOfPersistentTopics(NamespaceName.get("prop/ns-abc")),
+                topics);
+        assertEquals(admin.topics().getList("prop/ns-abc"), topics);
+        assertEquals(admin.namespaces().getTopics("prop/ns-abc"), topics);
+
+        try {
+            admin.namespaces().deleteNamespace("prop/ns-abc");
+            fail("should have failed");
+        } catch (ConflictException e) {
+            // Expected: the namespace still has topics
+        }
+
+        for (Producer<byte[]> producer : producers) {
+            producer.close();
+        }
+    }
+}
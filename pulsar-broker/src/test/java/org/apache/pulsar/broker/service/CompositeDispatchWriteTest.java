@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CompositeDispatchWriteTest extends BrokerTestBase {
+
+    @BeforeMethod
+    @Override
+    protected void setup() throws Exception {
+        conf.setDispatcherCompositeWriteEnabled(true);
+        super.baseSetup();
+    }
+
+    @AfterMethod
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider(name = "subscriptionTypes")
+    public Object[][] subscriptionTypes() {
+        return new Object[][] { { SubscriptionType.Exclusive }, { SubscriptionType.Shared } };
+    }
+
+    @Test(dataProvider = "subscriptionTypes", timeOut = 30000)
+    public void testCompositeDispatchWrite(SubscriptionType subscriptionType) throws Exception {
+        final String topic = "persistent://prop/ns-abc/testCompositeDispatchWrite-" + subscriptionType;
+        final int messages = 100;
+
+        Consumer<Integer> consumer = pulsarClient.newConsumer(Schema.INT32)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscriptionType(subscriptionType)
+                .subscribe();
+
+        Producer<Integer> batchingProducer = pulsarClient.newProducer(Schema.INT32)
+                .topic(topic)
+                .batchingMaxPublishDelay(1, TimeUnit.SECONDS)
+                .batchingMaxMessages(10)
+                .create();
+        Producer<Integer> producer = pulsarClient.newProducer(Schema.INT32)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+
+        List<CompletableFuture<MessageId>> futures = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            futures.add(batchingProducer.sendAsync(i));
+        }
+        FutureUtil.waitForAll(futures).get();
+        for (int i = messages; i < 2 * messages; i++) {
+            producer.send(i);
+        }
+
+        for (int i = 0; i < 2 * messages; i++) {
+            Message<Integer> message = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(message.getValue().intValue(), i);
+            consumer.acknowledge(message);
+        }
+        assertNull(consumer.receive(500, TimeUnit.MILLISECONDS));
+
+        consumer.close();
+        batchingProducer.close();
+        producer.close();
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pulsar.broker.service.BrokerServiceException.ConsumerAssignException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ConsistentHashingStickyKeyConsumerSelectorTest {
+
+    private static final int NUM_KEYS = 100000;
+
+    private static Consumer newConsumer(String name, long id) {
+        Consumer consumer = mock(Consumer.class);
+        when(consumer.consumerName()).thenReturn(name);
+        when(consumer.consumerId()).thenReturn(id);
+        return consumer;
+    }
+
+    private static Map<Consumer, Integer> countKeys(StickyKeyConsumerSelector selector) {
+        Map<Consumer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            counts.merge(selector.select(("key-" + i).getBytes()), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void testConsumerSelect() throws ConsumerAssignException {
+        ConsistentHashingStickyKeyConsumerSelector selector = new ConsistentHashingStickyKeyConsumerSelector(100);
+        Assert.assertNull(selector.select("anyKey".getBytes()));
+
+        Consumer consumer1 = newConsumer("c1", 0);
+        selector.addConsumer(consumer1);
+        Assert.assertEquals(selector.getNumberOfPointsOnRing(), 100);
+        Assert.assertEquals(selector.select("anyKey".getBytes()), consumer1);
+        Assert.assertEquals(selector.select(0), consumer1);
+        Assert.assertEquals(selector.select(Integer.MAX_VALUE), consumer1);
+
+        selector.removeConsumer(consumer1);
+        Assert.assertEquals(selector.getNumberOfPointsOnRing(), 0);
+        Assert.assertNull(selector.select("anyKey".getBytes()));
+    }
+
+    @Test
+    public void testKeyDistribution() throws ConsumerAssignException {
+        ConsistentHashingStickyKeyConsumerSelector selector = new ConsistentHashingStickyKeyConsumerSelector(100);
+        for (int i = 0; i < 10; i++) {
+            selector.addConsumer(newConsumer("c" + i, i));
+        }
+
+        Map<Consumer, Integer> counts = countKeys(selector);
+        Assert.assertEquals(counts.size(), 10);
+        int mean = NUM_KEYS / 10;
+        counts.values().forEach(count -> Assert.assertTrue(count > mean / 2 && count < mean * 3 / 2,
+                "Unbalanced consumer: " + count + " keys, expected about " + mean));
+    }
+
+    @Test
+    public void testMinimalRemapOnChurn() throws ConsumerAssignException {
+        ConsistentHashingStickyKeyConsumerSelector selector = new ConsistentHashingStickyKeyConsumerSelector(100);
+        List<Consumer> consumers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            consumers.add(newConsumer("c" + i, i));
+            selector.addConsumer(consumers.get(i));
+        }
+        List<Consumer> before = new ArrayList<>();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            before.add(selector.select(("key-" + i).getBytes()));
+        }
+
+        // The keys that move all go to the new consumer
+        Consumer newConsumer = newConsumer("c10", 10);
+        selector.addConsumer(newConsumer);
+        int moved = 0;
+        for (int i = 0; i < NUM_KEYS; i++) {
+            Consumer consumer = selector.select(("key-" + i).getBytes());
+            if (consumer != before.get(i)) {
+                Assert.assertEquals(consumer, newConsumer);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > 0 && moved < NUM_KEYS * 2 / 11, "Moved keys: " + moved);
+
+        // Removing it gives back the same assignment
+        selector.removeConsumer(newConsumer);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            Assert.assertEquals(selector.select(("key-" + i).getBytes()), before.get(i));
+        }
+
+        // The keys of a removed consumer are spread over the others, the other keys do not move
+        Consumer removed = consumers.get(3);
+        selector.removeConsumer(removed);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            Consumer consumer = selector.select(("key-" + i).getBytes());
+            if (before.get(i) != removed) {
+                Assert.assertEquals(consumer, before.get(i));
+            } else {
+                Assert.assertNotEquals(consumer, removed);
+            }
+        }
+    }
+
+    @Test
+    public void testWeights() throws ConsumerAssignException {
+        ConsistentHashingStickyKeyConsumerSelector selector = new ConsistentHashingStickyKeyConsumerSelector(100);
+        Consumer light = newConsumer("light", 0);
+        Consumer heavy = newConsumer("heavy", 1);
+        selector.addConsumer(light, 1);
+        selector.addConsumer(heavy, 3);
+        Assert.assertEquals(selector.getNumberOfPointsOnRing(), 400);
+
+        Map<Consumer, Integer> counts = countKeys(selector);
+        double ratio = (double) counts.get(heavy) / counts.get(light);
+        Assert.assertTrue(ratio > 2 && ratio < 4.5, "Heavy/light keys ratio: " + ratio);
+    }
+
+    @Test(expectedExceptions = ConsumerAssignException.class)
+    public void testInvalidWeight() throws ConsumerAssignException {
+        new ConsistentHashingStickyKeyConsumerSelector().addConsumer(newConsumer("c1", 0), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidNumberOfPoints() {
+        new ConsistentHashingStickyKeyConsumerSelector(0);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.testng.annotations.Test;
+
+public class DispatchReadSizeControllerTest {
+
+    @Test
+    public void testDefaultReadBatchSize() {
+        ServiceConfiguration conf = new ServiceConfiguration();
+        conf.setDispatcherMaxReadBatchSize(100);
+        conf.setDispatcherMinReadBatchSize(1);
+        DispatchReadSizeController controller = new DispatchReadSizeController(conf);
+        assertEquals(controller.getReadBatchSize(), 100);
+
+        controller.readFailed();
+        assertEquals(controller.getReadBatchSize(), 1);
+        for (int expected : new int[] { 2, 4, 8, 16, 32, 64, 100, 100 }) {
+            controller.readCompleted(10, 10 * 1024 * 1024, TimeUnit.MILLISECONDS.toNanos(1));
+            assertEquals(controller.getReadBatchSize(), expected);
+        }
+        assertEquals(controller.getAvgEntrySize(), 1024 * 1024.0);
+    }
+
+    @Test
+    public void testReadBatchSizeBoundedByBytes() {
+        ServiceConfiguration conf = new ServiceConfiguration();
+        conf.setDispatcherAdaptiveReadSizeEnabled(true);
+        conf.setDispatcherMaxReadBatchSize(100);
+        conf.setDispatcherMaxReadSizeBytes(1024 * 1024);
+        DispatchReadSizeController controller = new DispatchReadSizeController(conf);
+
+        // Large entries: 10 entries of 100KB fit in a read
+        controller.readCompleted(100, 100 * 100 * 1024, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(controller.getReadBatchSize(), 10);
+
+        // Small entries: the read batch size grows past dispatcherMaxReadBatchSize, up to 1MB of 100 bytes entries
+        controller = new DispatchReadSizeController(conf);
+        int readBatchSize = controller.getReadBatchSize();
+        for (int i = 0; i < 20; i++) {
+            controller.readCompleted(readBatchSize, readBatchSize * 100L, TimeUnit.MILLISECONDS.toNanos(1));
+            readBatchSize = controller.getReadBatchSize();
+        }
+        assertEquals(readBatchSize, 1024 * 1024 / 100);
+    }
+
+    @Test
+    public void testReadBatchSizeBoundedByAcks() {
+        ServiceConfiguration conf = new ServiceConfiguration();
+        conf.setDispatcherAdaptiveReadSizeEnabled(true);
+        conf.setDispatcherMinReadBatchSize(1);
+        conf.setDispatcherMaxReadSizeBytes(1024 * 1024 * 1024);
+        AtomicLong clock = new AtomicLong();
+        DispatchReadSizeController controller = new DispatchReadSizeController(conf, clock::get);
+
+        // 1000 acks/s, each 100ms after its dispatch
+        for (int i = 0; i < 1001; i++) {
+            controller.ackReceived(TimeUnit.MILLISECONDS.toNanos(100));
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(controller.getAckRate(), 1000.0, 1.0);
+        assertEquals(controller.getAvgAckRoundTripMillis(), 100.0, 0.01);
+
+        // The consumers acknowledge 100 entries during an ack round trip
+        for (int i = 0; i < 10; i++) {
+            controller.readCompleted(10, 10 * 100, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(controller.getReadBatchSize(), 100, 1);
+
+        // Reads taking 500ms: the consumers acknowledge 500 entries in the meantime
+        controller.readFailed();
+        for (int i = 0; i < 30; i++) {
+            controller.readCompleted(10, 10 * 100, TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        assertEquals(controller.getAvgReadRoundTripMillis(), 500.0, 1.0);
+        assertEquals(controller.getReadBatchSize(), 500, 5);
+
+        // An idle period is not sampled in the ack rate
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        controller.ackReceived(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(controller.getAckRate(), 1000.0, 1.0);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Maps;
+
+import io.prometheus.client.CollectorRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FlushCoalescingTest extends BrokerTestBase {
+
+    @BeforeMethod
+    @Override
+    protected void setup() throws Exception {
+        conf.setFlushCoalescingMaxPendingFlushes(16);
+        conf.setFlushCoalescingMaxDelayMicros(200);
+        super.baseSetup();
+    }
+
+    @AfterMethod
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Override
+    protected PulsarClient newPulsarClient(String url, int intervalInSecs) throws PulsarClientException {
+        Map<String, Object> config = Maps.newHashMap();
+        config.put("flushCoalescingMaxPendingFlushes", 16);
+        config.put("flushCoalescingMaxDelayMicros", 200L);
+        return PulsarClient.builder().serviceUrl(url).loadConf(config).build();
+    }
+
+    private static double getMetric(String name) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name, new String[0], new String[0]);
+        return value == null ? 0 : value;
+    }
+
+    @Test(timeOut = 30000)
+    public void testPublishAndConsumeWithFlushCoalescing() throws Exception {
+        final String topic = "persistent://prop/ns-abc/testPublishAndConsumeWithFlushCoalescing";
+        final int messages = 1000;
+
+        double flushRequestsBefore = getMetric("pulsar_connection_flush_requests");
+        double flushesBefore = getMetric("pulsar_connection_coalesced_flushes");
+
+        Consumer<Integer> consumer = pulsarClient.newConsumer(Schema.INT32)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscribe();
+        Producer<Integer> producer = pulsarClient.newProducer(Schema.INT32)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+
+        List<CompletableFuture<MessageId>> futures = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            futures.add(producer.sendAsync(i));
+        }
+        FutureUtil.waitForAll(futures).get();
+
+        for (int i = 0; i < messages; i++) {
+            Message<Integer> message = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(message.getValue().intValue(), i);
+            consumer.acknowledge(message);
+        }
+
+        double flushRequests = getMetric("pulsar_connection_flush_requests") - flushRequestsBefore;
+        double flushes = getMetric("pulsar_connection_coalesced_flushes") - flushesBefore;
+        assertTrue(flushes > 0);
+        assertTrue(flushRequests > flushes, "Flush requests: " + flushRequests + ", flushes: " + flushes);
+
+        consumer.close();
+        producer.close();
+    }
+}
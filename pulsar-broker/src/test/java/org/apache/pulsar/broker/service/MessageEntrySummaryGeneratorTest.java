@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.apache.bookkeeper.mledger.EntrySummary;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.Commands.ChecksumType;
+import org.apache.pulsar.common.protocol.Markers;
+import org.apache.pulsar.common.util.Murmur3_32Hash;
+import org.testng.annotations.Test;
+
+public class MessageEntrySummaryGeneratorTest {
+
+    private static ByteBuf newEntry(MessageMetadata.Builder builder) {
+        MessageMetadata msgMetadata = builder.setProducerName("producer").setSequenceId(1).setPublishTime(1000)
+                .build();
+        ByteBuf entry = Commands.serializeMetadataAndPayload(ChecksumType.Crc32c, msgMetadata,
+                Unpooled.wrappedBuffer("payload".getBytes()));
+        msgMetadata.recycle();
+        return entry;
+    }
+
+    @Test
+    public void testSummary() {
+        ByteBuf entry = newEntry(MessageMetadata.newBuilder().setPartitionKey("key-1").setNumMessagesInBatch(5));
+        int readerIndex = entry.readerIndex();
+
+        EntrySummary summary = MessageEntrySummaryGenerator.INSTANCE.generate(entry);
+        assertEquals(entry.readerIndex(), readerIndex);
+        assertEquals(summary.getKeyHash(), Murmur3_32Hash.getInstance().makeHash("key-1".getBytes()));
+        assertEquals(summary.getNumMessages(), 5);
+        assertEquals(summary.getPublishTime(), 1000);
+        assertFalse(summary.hasDeliverAtTime());
+        entry.release();
+
+        entry = newEntry(MessageMetadata.newBuilder().setDeliverAtTime(2000));
+        summary = MessageEntrySummaryGenerator.INSTANCE.generate(entry);
+        assertEquals(summary.getKeyHash(), Murmur3_32Hash.getInstance()
+                .makeHash(AbstractDispatcherMultipleConsumers.NONE_KEY.getBytes()));
+        assertEquals(summary.getNumMessages(), 1);
+        assertTrue(summary.hasDeliverAtTime());
+        assertEquals(summary.getDeliverAtTime(), 2000);
+        entry.release();
+    }
+
+    @Test
+    public void testNoSummary() {
+        // Markers and corrupted entries are left to the dispatchers
+        ByteBuf marker = Markers.newReplicatedSubscriptionsSnapshotRequest("snapshot-1", "us-west");
+        assertNull(MessageEntrySummaryGenerator.INSTANCE.generate(marker));
+        marker.release();
+
+        ByteBuf corrupted = Unpooled.wrappedBuffer(new byte[] { 0, 0, 0, 100, 1, 2, 3 });
+        assertNull(MessageEntrySummaryGenerator.INSTANCE.generate(corrupted));
+        assertEquals(corrupted.readerIndex(), 0);
+    }
+}
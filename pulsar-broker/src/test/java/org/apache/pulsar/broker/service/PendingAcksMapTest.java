@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.testng.annotations.Test;
+
+public class PendingAcksMapTest {
+
+    @Test
+    public void testContiguousEntriesAreMerged() {
+        PendingAcksMap map = new PendingAcksMap();
+        for (long entryId = 0; entryId < 100; entryId++) {
+            assertTrue(map.put(1, entryId, 1, 10));
+        }
+        for (long entryId = 0; entryId < 100; entryId++) {
+            map.put(2, entryId, entryId % 3 + 1, 10);
+        }
+        assertEquals(map.size(), 200);
+        assertEquals(map.getNumberOfRuns(), 2);
+
+        LongPair pair = map.get(2, 50);
+        assertEquals(pair.first, 50 % 3 + 1);
+        assertEquals(pair.second, 10);
+        assertNull(map.get(2, 100));
+        assertNull(map.get(3, 0));
+
+        // Entries dispatched at another time start a new run, once there is a second one
+        map.put(1, 100, 1, 20);
+        assertEquals(map.getNumberOfRuns(), 2);
+        assertEquals(map.get(1, 100).second, 20);
+        map.put(1, 101, 1, 20);
+        assertEquals(map.getNumberOfRuns(), 3);
+        assertEquals(map.get(1, 101).second, 20);
+    }
+
+    @Test
+    public void testSingleEntriesAreNotRuns() {
+        PendingAcksMap map = new PendingAcksMap();
+        for (long entryId = 0; entryId < 10; entryId++) {
+            map.put(1, entryId, 1, entryId);
+        }
+        assertEquals(map.size(), 10);
+        assertEquals(map.getNumberOfRuns(), 0);
+        assertEquals(map.get(1, 5).second, 5);
+
+        // Out of order acks leave single entries, which are not kept as runs
+        for (long entryId = 10; entryId < 20; entryId++) {
+            map.put(1, entryId, 1, 10);
+        }
+        assertEquals(map.getNumberOfRuns(), 1);
+        for (long entryId = 11; entryId < 20; entryId += 2) {
+            assertTrue(map.remove(1, entryId));
+        }
+        assertEquals(map.getNumberOfRuns(), 0);
+        assertEquals(map.size(), 15);
+        assertTrue(map.containsKey(1, 18));
+        assertFalse(map.containsKey(1, 19));
+
+        List<Long> entryIds = new ArrayList<>();
+        map.forEach((ledgerId, entryId, batchSize, dispatchTimeNanos) -> entryIds.add(entryId));
+        assertEquals(entryIds.size(), 15);
+        for (int i = 0; i < entryIds.size(); i++) {
+            assertEquals((long) entryIds.get(i), i < 10 ? i : 10 + 2 * (i - 10));
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        PendingAcksMap map = new PendingAcksMap();
+        for (long entryId = 0; entryId < 10; entryId++) {
+            map.put(1, entryId, entryId + 1, 10);
+        }
+
+        // First and last entries shrink the run
+        assertTrue(map.remove(1, 0));
+        assertTrue(map.remove(1, 9));
+        assertFalse(map.remove(1, 9));
+        assertEquals(map.getNumberOfRuns(), 1);
+
+        // Entry in the middle splits it
+        assertTrue(map.remove(1, 5));
+        assertEquals(map.getNumberOfRuns(), 2);
+        assertFalse(map.containsKey(1, 5));
+        assertEquals(map.get(1, 4).first, 5);
+        assertEquals(map.get(1, 6).first, 7);
+        assertEquals(map.get(1, 8).first, 9);
+        assertEquals(map.size(), 7);
+
+        // A split run doesn't grow over the entries of the other part
+        map.put(1, 5, 100, 10);
+        assertEquals(map.getNumberOfRuns(), 2);
+        assertEquals(map.get(1, 5).first, 100);
+        assertEquals(map.get(1, 6).first, 7);
+
+        List<Long> entryIds = new ArrayList<>();
+        map.forEach((ledgerId, entryId, batchSize, dispatchTimeNanos) -> entryIds.add(entryId));
+        assertEquals(entryIds.size(), 8);
+        for (int i = 0; i < entryIds.size(); i++) {
+            assertEquals((long) entryIds.get(i), i + 1);
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(map.getNumberOfRuns(), 0);
+    }
+
+    @Test
+    public void testPutExistingEntry() {
+        PendingAcksMap map = new PendingAcksMap();
+        map.put(1, 0, 1, 10);
+        map.put(1, 1, 1, 10);
+        assertFalse(map.put(1, 1, 2, 20));
+        assertEquals(map.size(), 2);
+        assertEquals(map.get(1, 1).first, 2);
+        assertEquals(map.get(1, 1).second, 20);
+    }
+
+    @Test
+    public void testRandomOperations() {
+        PendingAcksMap map = new PendingAcksMap();
+        TreeMap<String, long[]> expected = new TreeMap<>();
+        Random random = new Random(1);
+        long dispatchTime = 0;
+        for (int i = 0; i < 10000; i++) {
+            long ledgerId = random.nextInt(3);
+            long entryId = random.nextInt(200);
+            String key = ledgerId + ":" + entryId;
+            if (random.nextInt(3) > 0) {
+                long batchSize = random.nextInt(3) + 1;
+                if (random.nextInt(10) == 0) {
+                    dispatchTime++;
+                }
+                assertEquals(map.put(ledgerId, entryId, batchSize, dispatchTime), !expected.containsKey(key));
+                expected.put(key, new long[] { batchSize, dispatchTime });
+            } else {
+                assertEquals(map.remove(ledgerId, entryId), expected.remove(key) != null);
+            }
+            assertEquals(map.size(), expected.size());
+        }
+
+        for (long ledgerId = 0; ledgerId < 3; ledgerId++) {
+            for (long entryId = 0; entryId < 200; entryId++) {
+                long[] value = expected.get(ledgerId + ":" + entryId);
+                LongPair pair = map.get(ledgerId, entryId);
+                if (value == null) {
+                    assertNull(pair);
+                } else {
+                    assertEquals(pair.first, value[0]);
+                    assertEquals(pair.second, value[1]);
+                }
+            }
+        }
+
+        long[] previous = { -1, -1 };
+        List<String> keys = new ArrayList<>();
+        map.forEach((ledgerId, entryId, batchSize, dispatchTimeNanos) -> {
+            assertTrue(ledgerId > previous[0] || (ledgerId == previous[0] && entryId > previous[1]));
+            previous[0] = ledgerId;
+            previous[1] = entryId;
+            keys.add(ledgerId + ":" + entryId);
+        });
+        assertEquals(keys.size(), expected.size());
+        assertTrue(expected.keySet().containsAll(keys));
+    }
+}
@@ -944,6 +944,71 @@ public class PersistentTopicE2ETest extends BrokerTestBase {
         admin.topics().delete(topicName);
     }
 
+    @Test
+    public void testReleaseIdleSubscriptionState() throws Exception {
+        final String topicName = "persistent://prop/ns-abc/idle-state-topic";
+        final String subName = "sub1";
+        final int numMsgs = 10;
+
+        Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .subscriptionType(SubscriptionType.Shared).subscribe();
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topicName).enableBatching(false).create();
+        for (int i = 0; i < numMsgs; i++) {
+            producer.send(("my-message-" + i).getBytes());
+        }
+
+        // Ack half of the messages and leave the others pending
+        for (int i = 0; i < numMsgs; i++) {
+            Message<byte[]> msg = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            if (i % 2 == 0) {
+                consumer.acknowledge(msg);
+            }
+        }
+
+        PersistentTopic topicRef = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topicName).get();
+        PersistentSubscription subRef = topicRef.getSubscription(subName);
+
+        // 1. state of a subscription with consumers is kept
+        Thread.sleep(10);
+        assertFalse(subRef.releaseStateIfIdle(0));
+        assertNotNull(subRef.getDispatcher());
+
+        // 2. state of a subscription without consumers is kept until the idle time
+        consumer.close();
+        assertFalse(subRef.releaseStateIfIdle(TimeUnit.MINUTES.toMillis(1)));
+        Thread.sleep(10);
+        assertTrue(subRef.releaseStateIfIdle(0));
+        assertNull(subRef.getDispatcher());
+        assertEquals(subRef.getStats().msgBacklog, numMsgs / 2);
+
+        // 3. a new consumer gets the messages that were not acked
+        consumer = pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .subscriptionType(SubscriptionType.Shared).subscribe();
+        assertNotNull(subRef.getDispatcher());
+        for (int i = 0; i < numMsgs / 2; i++) {
+            Message<byte[]> msg = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            assertEquals(new String(msg.getData()), "my-message-" + (2 * i + 1));
+            consumer.acknowledge(msg);
+        }
+        assertNull(consumer.receive(100, TimeUnit.MILLISECONDS));
+
+        // 4. the subscription type can change after the state is released
+        consumer.close();
+        Thread.sleep(10);
+        assertTrue(subRef.releaseStateIfIdle(0));
+        consumer = pulsarClient.newConsumer().topic(topicName).subscriptionName(subName)
+                .subscriptionType(SubscriptionType.Failover).subscribe();
+        assertEquals(subRef.getDispatcher().getType(), SubType.Failover);
+        producer.send("my-message-last".getBytes());
+        Message<byte[]> msg = consumer.receive(5, TimeUnit.SECONDS);
+        assertEquals(new String(msg.getData()), "my-message-last");
+
+        consumer.close();
+        producer.close();
+    }
+
     @Test
     public void testReceiveWithTimeout() throws Exception {
         final String topicName = "persistent://prop/ns-abc/topic-receive-timeout";
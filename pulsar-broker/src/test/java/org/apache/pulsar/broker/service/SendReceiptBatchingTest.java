@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SendReceiptBatchingTest extends BrokerTestBase {
+
+    @BeforeMethod
+    @Override
+    protected void setup() throws Exception {
+        conf.setProducerSendReceiptBatchingEnabled(true);
+        super.baseSetup();
+    }
+
+    @AfterMethod
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test(timeOut = 30000)
+    public void testMessageIdsWithBatchedReceipts() throws Exception {
+        final String topic = "persistent://prop/ns-abc/testMessageIdsWithBatchedReceipts";
+        final int messages = 1000;
+
+        Consumer<Integer> consumer = pulsarClient.newConsumer(Schema.INT32)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscribe();
+
+        // Two producers, so that the entries of each one are not always consecutive
+        Producer<Integer> producer1 = pulsarClient.newProducer(Schema.INT32)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+        Producer<Integer> producer2 = pulsarClient.newProducer(Schema.INT32)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+
+        List<CompletableFuture<MessageId>> futures1 = new ArrayList<>();
+        List<CompletableFuture<MessageId>> futures2 = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            futures1.add(producer1.sendAsync(i));
+            if (i % 10 == 0) {
+                futures2.add(producer2.sendAsync(messages + i));
+            }
+        }
+        FutureUtil.waitForAll(futures1).get();
+        FutureUtil.waitForAll(futures2).get();
+
+        for (int i = 0; i < futures1.size() + futures2.size(); i++) {
+            Message<Integer> message = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            int value = message.getValue();
+            MessageId expected = value < messages ? futures1.get(value).get()
+                    : futures2.get((value - messages) / 10).get();
+            assertEquals(message.getMessageId(), expected);
+            consumer.acknowledge(message);
+        }
+        assertNull(consumer.receive(500, TimeUnit.MILLISECONDS));
+
+        consumer.close();
+        producer1.close();
+        producer2.close();
+    }
+}
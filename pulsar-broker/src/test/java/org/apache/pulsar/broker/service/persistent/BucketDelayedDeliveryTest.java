@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import org.apache.pulsar.broker.delayed.BucketDelayedDeliveryTrackerFactory;
+import org.testng.annotations.BeforeClass;
+
+public class BucketDelayedDeliveryTest extends DelayedDeliveryTest {
+
+    @Override
+    @BeforeClass
+    public void setup() throws Exception {
+        conf.setDelayedDeliveryTrackerFactoryClassName(BucketDelayedDeliveryTrackerFactory.class.getName());
+        conf.setDelayedDeliveryMinIndexCountPerBucket(3);
+        conf.setDelayedDeliveryMaxIndexesPerBucketSnapshotSegment(2);
+        // Roll the ledgers over quickly, so that the messages are split in several buckets
+        conf.setManagedLedgerMaxEntriesPerLedger(4);
+        conf.setManagedLedgerMinLedgerRolloverTimeMinutes(0);
+        super.setup();
+    }
+}
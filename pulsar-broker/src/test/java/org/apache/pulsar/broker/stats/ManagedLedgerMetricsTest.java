@@ -26,6 +26,7 @@ import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerMBeanImpl;
 import org.apache.pulsar.broker.service.BrokerTestBase;
+import org.apache.pulsar.broker.stats.metrics.ManagedLedgerCacheMetrics;
 import org.apache.pulsar.broker.stats.metrics.ManagedLedgerMetrics;
 import org.apache.pulsar.client.api.Producer;
 import org.apache.pulsar.common.stats.Metrics;
@@ -88,4 +89,19 @@ public class ManagedLedgerMetricsTest extends BrokerTestBase {
 
     }
 
+    @Test
+    public void testMetadataUpdateMetrics() throws Exception {
+        ManagedLedgerCacheMetrics metrics = new ManagedLedgerCacheMetrics(pulsar);
+
+        Producer<byte[]> producer = pulsarClient.newProducer().topic("persistent://my-property/use/my-ns/my-topic2")
+                .create();
+        producer.send("my-message".getBytes());
+        producer.close();
+
+        Metrics m = metrics.generate().get(0);
+        Assert.assertTrue(m.getMetrics().containsKey("brk_ml_MetadataBatchSizeBuckets_0.0_1.0"));
+        Assert.assertTrue(m.getMetrics().containsKey("brk_ml_MetadataBatchSizeBuckets_OVERFLOW"));
+        Assert.assertTrue(m.getMetrics().containsKey("brk_ml_MetadataUpdateLatencyBuckets_OVERFLOW"));
+    }
+
 }
@@ -67,6 +67,7 @@ public class KeySharedSubscriptionTest extends ProducerConsumerBase {
     @Override
     protected void cleanup() throws Exception {
         super.internalCleanup();
+        this.conf.setSubscriptionKeySharedUseConsistentHashing(false);
     }
 
     @Test(dataProvider = "batch")
@@ -283,6 +284,52 @@ public class KeySharedSubscriptionTest extends ProducerConsumerBase {
         receiveAndCheck(checkList);
     }
 
+    @Test(dataProvider = "batch")
+    public void testSendAndReceiveWithConsistentHashingStickyKeyConsumerSelector(boolean enableBatch)
+            throws PulsarClientException {
+        this.conf.setSubscriptionKeySharedEnable(true);
+        this.conf.setSubscriptionKeySharedUseConsistentHashing(true);
+        String topic = "persistent://public/default/key_shared_consistent_hashing-" + UUID.randomUUID();
+
+        @Cleanup
+        Consumer<Integer> consumer1 = createConsumer(topic);
+
+        @Cleanup
+        Consumer<Integer> consumer2 = createConsumer(topic);
+
+        @Cleanup
+        Consumer<Integer> consumer3 = createConsumer(topic);
+
+        @Cleanup
+        Producer<Integer> producer = createProducer(topic, enableBatch);
+
+        for (int i = 0; i < 10; i++) {
+            for (String key : keys) {
+                producer.newMessage()
+                    .key(key)
+                    .value(i)
+                    .send();
+            }
+        }
+
+        Map<String, Consumer<Integer>> keyConsumers = new HashMap<>();
+        int received = 0;
+        for (Consumer<Integer> consumer : Arrays.asList(consumer1, consumer2, consumer3)) {
+            Map<String, Integer> lastValueForKey = new HashMap<>();
+            Message<Integer> message;
+            while ((message = consumer.receive(1, TimeUnit.SECONDS)) != null) {
+                consumer.acknowledge(message);
+                received++;
+                // All the messages of a key go to the same consumer, in order
+                Assert.assertEquals(keyConsumers.computeIfAbsent(message.getKey(), k -> consumer), consumer);
+                Integer lastValue = lastValueForKey.put(message.getKey(), message.getValue());
+                Assert.assertTrue(lastValue == null || message.getValue() > lastValue);
+            }
+        }
+        Assert.assertEquals(received, 100);
+        Assert.assertEquals(keyConsumers.size(), keys.size());
+    }
+
     @Test(expectedExceptions = PulsarClientException.class)
     public void testDisableKeySharedSubscription() throws PulsarClientException {
         this.conf.setSubscriptionKeySharedEnable(false);
@@ -501,4 +501,20 @@ public interface ConsumerBuilder<T> extends Cloneable {
      *            whether to auto update partition increasement
      */
     ConsumerBuilder<T> autoUpdatePartitions(boolean autoUpdate);
+
+    /**
+     * Enable or disable the acknowledgment of single messages within a batch.
+     *
+     * <p>By default, a batch is acknowledged to the broker only once all its messages have been acknowledged, and all
+     * the messages of the batch are redelivered when only some of them were acknowledged. When enabled, the indexes of
+     * the acknowledged messages are sent to the broker, which persists them with the subscription, and the messages
+     * that were already acknowledged are skipped on redelivery.
+     *
+     * <p>This requires a broker supporting it, with <code>acknowledgmentAtBatchIndexLevelEnabled</code> set.
+     *
+     * @param batchIndexAcknowledgmentEnabled
+     *            whether to acknowledge single messages within a batch
+     * @return the consumer builder instance
+     */
+    ConsumerBuilder<T> enableBatchIndexAcknowledgment(boolean batchIndexAcknowledgmentEnabled);
 }
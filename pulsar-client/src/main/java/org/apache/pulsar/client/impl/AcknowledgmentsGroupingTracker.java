@@ -31,6 +31,11 @@ public interface AcknowledgmentsGroupingTracker extends AutoCloseable {
 
     void addAcknowledgment(MessageIdImpl msgId, AckType ackType, Map<String, Long> properties);
 
+    /**
+     * Individual acknowledgment of a message within a batch, while other messages of the batch are still pending.
+     */
+    void addBatchIndexAcknowledgment(BatchMessageIdImpl msgId);
+
     void flush();
 
     @Override
@@ -359,7 +359,16 @@ public class ClientCnx extends PulsarHandler {
                     ledgerId, entryId);
         }
 
-        producers.get(producerId).ackReceived(this, sequenceId, ledgerId, entryId);
+        ProducerImpl<?> producer = producers.get(producerId);
+        if (sendReceipt.hasLastEntryId()) {
+            // Range receipt: one entry per message, for consecutive sequence ids
+            long lastEntryId = sendReceipt.getLastEntryId();
+            for (long i = 0; i <= lastEntryId - entryId; i++) {
+                producer.ackReceived(this, sequenceId + i, ledgerId, entryId + i);
+            }
+        } else {
+            producer.ackReceived(this, sequenceId, ledgerId, entryId);
+        }
     }
 
     @Override
@@ -371,7 +380,8 @@ public class ClientCnx extends PulsarHandler {
         }
         ConsumerImpl<?> consumer = consumers.get(cmdMessage.getConsumerId());
         if (consumer != null) {
-            consumer.messageReceived(cmdMessage.getMessageId(), cmdMessage.getRedeliveryCount(), headersAndPayload, this);
+            consumer.messageReceived(cmdMessage.getMessageId(), cmdMessage.getRedeliveryCount(),
+                    cmdMessage.getAckSetList(), headersAndPayload, this);
         }
     }
 
@@ -31,6 +31,7 @@ import io.netty.util.Timeout;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -399,6 +400,9 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
                 sendAcknowledge(batchMessageId.prevBatchMessageId(), AckType.Cumulative, properties);
                 batchMessageId.getAcker().setPrevBatchCumulativelyAcked(true);
             } else {
+                if (AckType.Individual == ackType && conf.isBatchIndexAckEnabled()) {
+                    acknowledgmentsGroupingTracker.addBatchIndexAcknowledgment(batchMessageId);
+                }
                 onAcknowledge(batchMessageId, null);
             }
             if (log.isDebugEnabled()) {
@@ -740,7 +744,8 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
         });
     }
 
-    void messageReceived(MessageIdData messageId, int redeliveryCount, ByteBuf headersAndPayload, ClientCnx cnx) {
+    void messageReceived(MessageIdData messageId, int redeliveryCount, List<Long> ackSet, ByteBuf headersAndPayload,
+            ClientCnx cnx) {
         if (log.isDebugEnabled()) {
             log.debug("[{}][{}] Received message: {}/{}", topic, subscription, messageId.getLedgerId(),
                     messageId.getEntryId());
@@ -831,7 +836,12 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
             }
         } else {
             // handle batch message enqueuing; uncompressed payload has all messages in batch
-            receiveIndividualMessagesFromBatch(msgMetadata, redeliveryCount, uncompressedPayload, messageId, cnx);
+            BitSet ackedIndexes = null;
+            if (!ackSet.isEmpty() && conf.isBatchIndexAckEnabled()) {
+                ackedIndexes = BitSet.valueOf(ackSet.stream().mapToLong(Long::longValue).toArray());
+            }
+            receiveIndividualMessagesFromBatch(msgMetadata, redeliveryCount, ackedIndexes, uncompressedPayload,
+                    messageId, cnx);
 
             uncompressedPayload.release();
             msgMetadata.recycle();
@@ -928,6 +938,11 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
     void receiveIndividualMessagesFromBatch(MessageMetadata msgMetadata, int redeliveryCount, ByteBuf uncompressedPayload,
             MessageIdData messageId, ClientCnx cnx) {
+        receiveIndividualMessagesFromBatch(msgMetadata, redeliveryCount, null, uncompressedPayload, messageId, cnx);
+    }
+
+    void receiveIndividualMessagesFromBatch(MessageMetadata msgMetadata, int redeliveryCount, BitSet ackedIndexes,
+            ByteBuf uncompressedPayload, MessageIdData messageId, ClientCnx cnx) {
         int batchSize = msgMetadata.getNumMessagesInBatch();
 
         // create ack tracker for entry aka batch
@@ -972,6 +987,16 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
                     continue;
                 }
 
+                if (ackedIndexes != null && ackedIndexes.get(i)) {
+                    // message was acknowledged before the batch got redelivered
+                    acker.ackIndividual(i);
+                    singleMessagePayload.release();
+                    singleMessageMetadataBuilder.recycle();
+
+                    ++skippedMessages;
+                    continue;
+                }
+
                 BatchMessageIdImpl batchMessageIdImpl = new BatchMessageIdImpl(messageId.getLedgerId(),
                         messageId.getEntryId(), getPartitionIndex(), i, acker);
                 final MessageImpl<T> message = new MessageImpl<>(topicName.toString(), batchMessageIdImpl,
@@ -45,6 +45,11 @@ public class NonPersistentAcknowledgmentGroupingTracker implements Acknowledgmen
         // no-op
     }
 
+    @Override
+    public void addBatchIndexAcknowledgment(BatchMessageIdImpl msgId) {
+        // no-op
+    }
+
     @Override
     public void flush() {
         // no-op
@@ -22,9 +22,11 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.EventLoopGroup;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +35,7 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.impl.conf.ConsumerConfigurationData;
 import org.apache.pulsar.common.protocol.Commands;
@@ -68,12 +71,19 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
      */
     private final ConcurrentSkipListSet<MessageIdImpl> pendingIndividualAcks;
 
+    /**
+     * Indexes of the messages acknowledged by the application in the batches that are not fully acknowledged yet, and
+     * that were not already sent to broker.
+     */
+    private final ConcurrentHashMap<MessageIdImpl, BitSet> pendingIndividualBatchIndexAcks;
+
     private final ScheduledFuture<?> scheduledTask;
 
     public PersistentAcknowledgmentsGroupingTracker(ConsumerImpl<?> consumer, ConsumerConfigurationData<?> conf,
                                                     EventLoopGroup eventLoopGroup) {
         this.consumer = consumer;
         this.pendingIndividualAcks = new ConcurrentSkipListSet<>();
+        this.pendingIndividualBatchIndexAcks = new ConcurrentHashMap<>();
         this.acknowledgementGroupTimeMicros = conf.getAcknowledgementsGroupTimeMicros();
 
         if (acknowledgementGroupTimeMicros > 0) {
@@ -113,6 +123,21 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
         }
     }
 
+    public void addBatchIndexAcknowledgment(BatchMessageIdImpl msgId) {
+        MessageIdImpl entryId = new MessageIdImpl(msgId.getLedgerId(), msgId.getEntryId(), msgId.getPartitionIndex());
+        pendingIndividualBatchIndexAcks.compute(entryId, (key, ackedIndexes) -> {
+            if (ackedIndexes == null) {
+                ackedIndexes = new BitSet(msgId.getBatchSize());
+            }
+            ackedIndexes.set(msgId.getBatchIndex());
+            return ackedIndexes;
+        });
+
+        if (acknowledgementGroupTimeMicros == 0 || pendingIndividualBatchIndexAcks.size() >= MAX_ACK_GROUP_SIZE) {
+            flush();
+        }
+    }
+
     private void doCumulativeAck(MessageIdImpl msgId) {
         // Handle concurrent updates from different threads
         while (true) {
@@ -166,6 +191,27 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
             cumulativeAckFlushRequired = false;
         }
 
+        // Flush the acknowledged indexes of the batches before the individual acks, since the broker ignores the
+        // indexes of the batches that are already acknowledged. Older brokers would take them as acknowledgments of
+        // the whole batch, so they are dropped, and the batches are redelivered in full like before
+        if (!pendingIndividualBatchIndexAcks.isEmpty()) {
+            List<Triple<Long, Long, long[]>> batchIndexesToAck = new ArrayList<>();
+            for (MessageIdImpl msgId : pendingIndividualBatchIndexAcks.keySet()) {
+                BitSet ackedIndexes = pendingIndividualBatchIndexAcks.remove(msgId);
+                if (ackedIndexes != null) {
+                    batchIndexesToAck.add(Triple.of(msgId.getLedgerId(), msgId.getEntryId(),
+                            ackedIndexes.toLongArray()));
+                }
+            }
+
+            if (!batchIndexesToAck.isEmpty()
+                    && Commands.peerSupportsBatchIndexAcknowledgment(cnx.getRemoteEndpointProtocolVersion())) {
+                cnx.ctx().write(Commands.newMultiMessageAck(consumer.consumerId, Collections.emptyList(),
+                        batchIndexesToAck), cnx.ctx().voidPromise());
+                shouldFlush = true;
+            }
+        }
+
         // Flush all individual acks
         if (!pendingIndividualAcks.isEmpty()) {
             if (Commands.peerSupportsMultiMessageAcknowledgment(cnx.getRemoteEndpointProtocolVersion())) {
@@ -212,6 +258,7 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
         flush();
         lastCumulativeAck = (MessageIdImpl) MessageId.earliest;
         pendingIndividualAcks.clear();
+        pendingIndividualBatchIndexAcks.clear();
     }
 
     @Override
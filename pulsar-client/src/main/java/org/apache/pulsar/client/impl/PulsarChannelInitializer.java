@@ -33,6 +33,7 @@ import org.apache.pulsar.client.util.ObjectCache;
 import org.apache.pulsar.common.protocol.ByteBufPair;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.SecurityUtility;
+import org.apache.pulsar.common.util.netty.FlushCoalescingHandler;
 
 public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel> {
 
@@ -40,6 +41,8 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
 
     private final Supplier<ClientCnx> clientCnxSupplier;
     private final boolean tlsEnabled;
+    private final int flushCoalescingMaxPendingFlushes;
+    private final long flushCoalescingMaxDelayMicros;
 
     private final Supplier<SslContext> sslContextSupplier;
 
@@ -50,6 +53,8 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
         super();
         this.clientCnxSupplier = clientCnxSupplier;
         this.tlsEnabled = conf.isUseTls();
+        this.flushCoalescingMaxPendingFlushes = conf.getFlushCoalescingMaxPendingFlushes();
+        this.flushCoalescingMaxDelayMicros = conf.getFlushCoalescingMaxDelayMicros();
 
         if (conf.isUseTls()) {
             sslContextSupplier = new ObjectCache<SslContext>(() -> {
@@ -82,6 +87,11 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
             ch.pipeline().addLast("ByteBufPairEncoder", ByteBufPair.ENCODER);
         }
 
+        if (flushCoalescingMaxPendingFlushes > 0) {
+            ch.pipeline().addLast("flushCoalescing", new FlushCoalescingHandler(flushCoalescingMaxPendingFlushes,
+                    flushCoalescingMaxDelayMicros, null));
+        }
+
         ch.pipeline()
                 .addLast("frameDecoder",
                         new LengthFieldBasedFrameDecoder(
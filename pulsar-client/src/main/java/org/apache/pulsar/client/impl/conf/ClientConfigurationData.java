@@ -56,6 +56,8 @@ public class ClientConfigurationData implements Serializable, Cloneable {
     private int connectionsPerBroker = 1;
 
     private boolean useTcpNoDelay = true;
+    private int flushCoalescingMaxPendingFlushes = 0;
+    private long flushCoalescingMaxDelayMicros = 100;
 
     private boolean useTls = false;
     private String tlsTrustCertsFilePath = "";
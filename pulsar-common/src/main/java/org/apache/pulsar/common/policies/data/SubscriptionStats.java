@@ -29,6 +29,8 @@ import com.google.common.collect.Lists;
 /**
  */
 public class SubscriptionStats {
+    private int count;
+
     /** Total rate of messages delivered on this subscription. msg/s */
     public double msgRateOut;
 
@@ -50,6 +52,18 @@ public class SubscriptionStats {
     /** Number of unacknowledged messages for the subscription */
     public long unackedMessages;
 
+    /** Max number of entries of the next read of the dispatcher */
+    public int dispatchReadBatchSize;
+
+    /** Average size of the entries read by the dispatcher. bytes */
+    public double dispatchAvgEntrySize;
+
+    /** Average time between a read request of the dispatcher and its completion. ms */
+    public double dispatchReadRoundTripMs;
+
+    /** Average time between the dispatch of an entry and its acknowledgment. ms */
+    public double ackRoundTripMs;
+
     /** Whether this subscription is Exclusive or Shared or Failover */
     public SubType type;
 
@@ -70,12 +84,17 @@ public class SubscriptionStats {
     }
 
     public void reset() {
+        count = 0;
         msgRateOut = 0;
         msgThroughputOut = 0;
         msgRateRedeliver = 0;
         msgBacklog = 0;
         unackedMessages = 0;
         msgRateExpired = 0;
+        dispatchReadBatchSize = 0;
+        dispatchAvgEntrySize = 0;
+        dispatchReadRoundTripMs = 0;
+        ackRoundTripMs = 0;
         consumers.clear();
     }
 
@@ -83,12 +102,19 @@ public class SubscriptionStats {
     // stats
     public SubscriptionStats add(SubscriptionStats stats) {
         checkNotNull(stats);
+        this.count++;
         this.msgRateOut += stats.msgRateOut;
         this.msgThroughputOut += stats.msgThroughputOut;
         this.msgRateRedeliver += stats.msgRateRedeliver;
         this.msgBacklog += stats.msgBacklog;
         this.unackedMessages += stats.unackedMessages;
         this.msgRateExpired += stats.msgRateExpired;
+        this.dispatchReadBatchSize = Math.max(this.dispatchReadBatchSize, stats.dispatchReadBatchSize);
+        this.dispatchAvgEntrySize = (this.dispatchAvgEntrySize * (this.count - 1) + stats.dispatchAvgEntrySize)
+                / this.count;
+        this.dispatchReadRoundTripMs = (this.dispatchReadRoundTripMs * (this.count - 1)
+                + stats.dispatchReadRoundTripMs) / this.count;
+        this.ackRoundTripMs = (this.ackRoundTripMs * (this.count - 1) + stats.ackRoundTripMs) / this.count;
         this.isReplicated |= stats.isReplicated;
         if (this.consumers.size() != stats.consumers.size()) {
             for (int i = 0; i < stats.consumers.size(); i++) {
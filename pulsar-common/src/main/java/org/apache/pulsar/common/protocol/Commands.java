@@ -27,6 +27,7 @@ import static org.apache.pulsar.shaded.com.google.protobuf.v241.ByteString.copyF
 import com.google.common.annotations.VisibleForTesting;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
@@ -40,6 +41,7 @@ import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.AuthData;
 import org.apache.pulsar.common.api.proto.PulsarApi;
@@ -312,12 +314,25 @@ public class Commands {
     }
 
     public static ByteBuf newSendReceipt(long producerId, long sequenceId, long ledgerId, long entryId) {
+        return newSendReceipt(producerId, sequenceId, sequenceId, ledgerId, entryId, entryId);
+    }
+
+    /**
+     * Receipt for the messages persisted in the entries {@code firstEntryId} to {@code lastEntryId} of a ledger, one
+     * entry per pending send from {@code firstSequenceId} to {@code lastSequenceId}.
+     */
+    public static ByteBuf newSendReceipt(long producerId, long firstSequenceId, long lastSequenceId, long ledgerId,
+            long firstEntryId, long lastEntryId) {
         CommandSendReceipt.Builder sendReceiptBuilder = CommandSendReceipt.newBuilder();
         sendReceiptBuilder.setProducerId(producerId);
-        sendReceiptBuilder.setSequenceId(sequenceId);
+        sendReceiptBuilder.setSequenceId(firstSequenceId);
+        if (lastEntryId != firstEntryId) {
+            sendReceiptBuilder.setLastSequenceId(lastSequenceId);
+            sendReceiptBuilder.setLastEntryId(lastEntryId);
+        }
         MessageIdData.Builder messageIdBuilder = MessageIdData.newBuilder();
         messageIdBuilder.setLedgerId(ledgerId);
-        messageIdBuilder.setEntryId(entryId);
+        messageIdBuilder.setEntryId(firstEntryId);
         MessageIdData messageId = messageIdBuilder.build();
         sendReceiptBuilder.setMessageId(messageId);
         CommandSendReceipt sendReceipt = sendReceiptBuilder.build();
@@ -394,12 +409,22 @@ public class Commands {
     }
 
     public static ByteBufPair newMessage(long consumerId, MessageIdData messageId, int redeliveryCount, ByteBuf metadataAndPayload) {
+        return newMessage(consumerId, messageId, redeliveryCount, metadataAndPayload, null);
+    }
+
+    public static ByteBufPair newMessage(long consumerId, MessageIdData messageId, int redeliveryCount,
+            ByteBuf metadataAndPayload, long[] ackSet) {
         CommandMessage.Builder msgBuilder = CommandMessage.newBuilder();
         msgBuilder.setConsumerId(consumerId);
         msgBuilder.setMessageId(messageId);
         if (redeliveryCount > 0) {
             msgBuilder.setRedeliveryCount(redeliveryCount);
         }
+        if (ackSet != null) {
+            for (long word : ackSet) {
+                msgBuilder.addAckSet(word);
+            }
+        }
         CommandMessage msg = msgBuilder.build();
         BaseCommand.Builder cmdBuilder = BaseCommand.newBuilder();
         BaseCommand cmd = cmdBuilder.setType(Type.MESSAGE).setMessage(msg).build();
@@ -412,6 +437,55 @@ public class Commands {
         return res;
     }
 
+    /**
+     * Add the frame of a MESSAGE command to a composite buffer that holds the frames of several messages, so that they
+     * are written on the channel at once.
+     *
+     * <p/>The command is serialized in the headers buffer, which can be shared by all the frames of the composite
+     * buffer, and sliced from it. The metadata and payload, including the checksum computed when the message was
+     * published, are added without copy and are released with the composite buffer.
+     */
+    public static void addMessageFrame(CompositeByteBuf frames, ByteBuf headers, long consumerId,
+            MessageIdData messageId, int redeliveryCount, ByteBuf metadataAndPayload, long[] ackSet) {
+        CommandMessage.Builder msgBuilder = CommandMessage.newBuilder();
+        msgBuilder.setConsumerId(consumerId);
+        msgBuilder.setMessageId(messageId);
+        if (redeliveryCount > 0) {
+            msgBuilder.setRedeliveryCount(redeliveryCount);
+        }
+        if (ackSet != null) {
+            for (long word : ackSet) {
+                msgBuilder.addAckSet(word);
+            }
+        }
+        CommandMessage msg = msgBuilder.build();
+        BaseCommand.Builder cmdBuilder = BaseCommand.newBuilder();
+        BaseCommand cmd = cmdBuilder.setType(Type.MESSAGE).setMessage(msg).build();
+
+        // Same wire format as serializeCommandMessageWithSize()
+        int cmdSize = cmd.getSerializedSize();
+        int headersSize = 4 + 4 + cmdSize;
+        int headersIndex = headers.writerIndex();
+        headers.writeInt(4 + cmdSize + metadataAndPayload.readableBytes());
+        headers.writeInt(cmdSize);
+        try {
+            ByteBufCodedOutputStream outStream = ByteBufCodedOutputStream.get(headers);
+            cmd.writeTo(outStream);
+            outStream.recycle();
+        } catch (IOException e) {
+            // This is in-memory serialization, should not fail
+            throw new RuntimeException(e);
+        }
+
+        frames.addComponent(true, headers.retainedSlice(headersIndex, headersSize));
+        frames.addComponent(true, metadataAndPayload);
+
+        cmd.recycle();
+        cmdBuilder.recycle();
+        msg.recycle();
+        msgBuilder.recycle();
+    }
+
     public static ByteBufPair newSend(long producerId, long sequenceId, int numMessages, ChecksumType checksumType,
             MessageMetadata messageData, ByteBuf payload) {
         CommandSend.Builder sendBuilder = CommandSend.newBuilder();
@@ -731,6 +805,17 @@ public class Commands {
     }
 
     public static ByteBuf newMultiMessageAck(long consumerId, List<Pair<Long, Long>> entries) {
+        return newMultiMessageAck(consumerId, entries, Collections.emptyList());
+    }
+
+    /**
+     * Individual acknowledgment of a list of entries, and of a part of the messages of a list of batch entries.
+     *
+     * @param batchIndexes
+     *            the ledger id, entry id and bitset of the acknowledged batch indexes, of each batch entry
+     */
+    public static ByteBuf newMultiMessageAck(long consumerId, List<Pair<Long, Long>> entries,
+            List<Triple<Long, Long, long[]>> batchIndexes) {
         CommandAck.Builder ackBuilder = CommandAck.newBuilder();
         ackBuilder.setConsumerId(consumerId);
         ackBuilder.setAckType(AckType.Individual);
@@ -749,11 +834,24 @@ public class Commands {
             messageIdDataBuilder.recycle();
         }
 
+        for (Triple<Long, Long, long[]> batchIndex : batchIndexes) {
+            MessageIdData.Builder messageIdDataBuilder = MessageIdData.newBuilder();
+            messageIdDataBuilder.setLedgerId(batchIndex.getLeft());
+            messageIdDataBuilder.setEntryId(batchIndex.getMiddle());
+            for (long word : batchIndex.getRight()) {
+                messageIdDataBuilder.addAckSet(word);
+            }
+            MessageIdData messageIdData = messageIdDataBuilder.build();
+            ackBuilder.addMessageId(messageIdData);
+
+            messageIdDataBuilder.recycle();
+        }
+
         CommandAck ack = ackBuilder.build();
 
         ByteBuf res = serializeWithSize(BaseCommand.newBuilder().setType(Type.ACK).setAck(ack));
 
-        for (int i = 0; i < entriesCount; i++) {
+        for (int i = 0; i < ack.getMessageIdCount(); i++) {
             ack.getMessageId(i).recycle();
         }
         ack.recycle();
@@ -1283,4 +1381,12 @@ public class Commands {
     public static boolean peerSupportJsonSchemaAvroFormat(int peerVersion) {
         return peerVersion >= ProtocolVersion.v13.getNumber();
     }
+
+    public static boolean peerSupportsBatchIndexAcknowledgment(int peerVersion) {
+        return peerVersion >= ProtocolVersion.v15.getNumber();
+    }
+
+    public static boolean peerSupportsSendReceiptRange(int peerVersion) {
+        return peerVersion >= ProtocolVersion.v16.getNumber();
+    }
 }
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPairConsumer;
+
+/**
+ * Sorted concurrent {@link LongPairSet} which keeps the second items of each first item in a {@link BitSet}.
+ *
+ * <pre>
+ *  insert: (1,2), (1,4), (2,1), (1,3), (2,6)
+ *  while iterating set will read all the items sorted on the first key, then on the second key.
+ *  output: (1,2), (1,3), (1,4), (2,1), (2,6)
+ * </pre>
+ *
+ * Adjacent second items share the same bits, so runs of consecutive items, like the positions of the entries of a
+ * ledger to redeliver, take a bit per item and are iterated in order without sorting. The second items must be in the
+ * range [0, {@link Integer#MAX_VALUE}].
+ *
+ * This set is not suitable for sparse second items with large values, because each bit set is as large as its
+ * largest item.
+ */
+public class ConcurrentBitSetSortedLongPairSet implements LongPairSet {
+
+    private final NavigableMap<Long, BitSet> bitSets = new TreeMap<>();
+    private long size = 0;
+
+    @Override
+    public synchronized boolean add(long item1, long item2) {
+        int index = toIndex(item2);
+        BitSet bitSet = bitSets.computeIfAbsent(item1, key -> new BitSet());
+        if (bitSet.get(index)) {
+            return false;
+        }
+        bitSet.set(index);
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(long item1, long item2) {
+        BitSet bitSet = bitSets.get(item1);
+        if (bitSet == null || item2 < 0 || item2 > Integer.MAX_VALUE || !bitSet.get((int) item2)) {
+            return false;
+        }
+        bitSet.clear((int) item2);
+        size--;
+        if (bitSet.isEmpty()) {
+            bitSets.remove(item1);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int removeIf(LongPairPredicate filter) {
+        int removedValues = 0;
+        Iterator<Map.Entry<Long, BitSet>> iterator = bitSets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, BitSet> entry = iterator.next();
+            long item1 = entry.getKey();
+            BitSet bitSet = entry.getValue();
+            for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+                if (filter.test(item1, i)) {
+                    bitSet.clear(i);
+                    removedValues++;
+                }
+            }
+            if (bitSet.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        size -= removedValues;
+        return removedValues;
+    }
+
+    @Override
+    public synchronized void forEach(LongPairConsumer processor) {
+        bitSets.forEach((item1, bitSet) -> {
+            for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+                processor.accept(item1, i);
+            }
+        });
+    }
+
+    @Override
+    public Set<LongPair> items() {
+        return items(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Set<LongPair> items(int numberOfItems) {
+        return items(numberOfItems, (item1, item2) -> new LongPair(item1, item2));
+    }
+
+    /**
+     * @return a new set, iterating in sorted order, of at most numberOfItems items
+     */
+    @Override
+    public synchronized <T> Set<T> items(int numberOfItems, LongPairFunction<T> longPairConverter) {
+        Set<T> items = new LinkedHashSet<>((int) Math.min(numberOfItems, size) * 4 / 3 + 1);
+        for (Map.Entry<Long, BitSet> entry : bitSets.entrySet()) {
+            long item1 = entry.getKey();
+            BitSet bitSet = entry.getValue();
+            for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+                if (items.size() >= numberOfItems) {
+                    return items;
+                }
+                items.add(longPairConverter.apply(item1, i));
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public synchronized void clear() {
+        bitSets.clear();
+        size = 0;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean contains(long item1, long item2) {
+        BitSet bitSet = bitSets.get(item1);
+        return bitSet != null && item2 >= 0 && item2 <= Integer.MAX_VALUE && bitSet.get((int) item2);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<Long, BitSet> entry : bitSets.entrySet()) {
+            BitSet bitSet = entry.getValue();
+            for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                sb.append('[');
+                sb.append(entry.getKey());
+                sb.append(':');
+                sb.append(i);
+                sb.append(']');
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static int toIndex(long item2) {
+        if (item2 < 0 || item2 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Item " + item2 + " out of range [0, " + Integer.MAX_VALUE + "]");
+        }
+        return (int) item2;
+    }
+}
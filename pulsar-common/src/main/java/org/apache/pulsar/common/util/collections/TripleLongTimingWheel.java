@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * Provides a hierarchical timing wheel specialized on items composed by 3 longs, where the first one is the time at
+ * which the item expires.
+ *
+ * <p/>Time is split in ticks of a fixed duration. Each level of the wheel has 64 slots, and each slot of a level spans
+ * 64 times the ticks of a slot of the level below. An item is added in constant time to the lowest level slot that
+ * does not cover the current tick, and is moved down one or more levels when the wheel reaches its slot. The items of
+ * a lowest level slot expire together, in insertion order, when the wheel reaches their tick. Therefore items can
+ * expire up to one tick before their time.
+ *
+ * This class is not thread safe.
+ */
+public class TripleLongTimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    // Enough levels to cover any positive tick
+    private static final int LEVELS = (Long.SIZE + WHEEL_BITS - 1) / WHEEL_BITS;
+
+    // Each item is composed of 3 longs
+    private static final int ITEMS_COUNT = 3;
+    private static final int DEFAULT_SLOT_CAPACITY = 4;
+
+    private final long tickDuration;
+    private long currentTick;
+
+    // Bitmap of the non empty slots, for each level
+    private final long[] occupiedSlots = new long[LEVELS];
+
+    private final long[][] slots = new long[LEVELS * WHEEL_SIZE][];
+    private final int[] slotSizes = new int[LEVELS * WHEEL_SIZE];
+
+    private long[] expired = new long[DEFAULT_SLOT_CAPACITY * ITEMS_COUNT];
+    private int expiredHead;
+    private int expiredTail;
+
+    private int size;
+
+    /**
+     * Create a new timing wheel
+     *
+     * @param tickDuration
+     *            the duration of a tick, in the unit of the item times
+     * @param startTime
+     *            the current time
+     */
+    public TripleLongTimingWheel(long tickDuration, long startTime) {
+        checkArgument(tickDuration > 0);
+        this.tickDuration = tickDuration;
+        this.currentTick = toTick(startTime);
+    }
+
+    /**
+     * Add a tuple of 3 long items to the wheel
+     *
+     * @param n1
+     *            the time at which the item expires
+     * @param n2
+     * @param n3
+     */
+    public void add(long n1, long n2, long n3) {
+        ++size;
+        place(n1, n2, n3);
+    }
+
+    /**
+     * Move the wheel to the given time, expiring all the items whose tick is reached
+     *
+     * @param time
+     */
+    public void advanceTo(long time) {
+        long targetTick = toTick(time);
+        while (size > expiredCount()) {
+            long tick = nextEventTick();
+            if (tick > targetTick) {
+                break;
+            }
+
+            currentTick = tick;
+            // Move down the items of the upper levels first, since they might expire at this very tick
+            for (int level = LEVELS - 1; level >= 0; level--) {
+                int shift = level * WHEEL_BITS;
+                if ((tick & ((1L << shift) - 1)) == 0) {
+                    drainSlot(level, (int) ((tick >>> shift) & WHEEL_MASK));
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+    }
+
+    /**
+     * Return the time of the next tick at which the wheel has some work to do, either expiring items or moving them
+     * down, or -1 if the wheel is empty. If there are expired items, the time of the current tick is returned.
+     */
+    public long nextTickTime() {
+        if (hasExpired()) {
+            return currentTick * tickDuration;
+        } else if (size == 0) {
+            return -1;
+        } else {
+            return nextEventTick() * tickDuration;
+        }
+    }
+
+    /**
+     * Return true if there are expired items
+     */
+    public boolean hasExpired() {
+        return expiredTail > expiredHead;
+    }
+
+    /**
+     * Read the 1st long item of the first expired tuple
+     */
+    public long peekExpiredN1() {
+        checkArgument(hasExpired());
+        return expired[expiredHead];
+    }
+
+    /**
+     * Read the 2nd long item of the first expired tuple
+     */
+    public long peekExpiredN2() {
+        checkArgument(hasExpired());
+        return expired[expiredHead + 1];
+    }
+
+    /**
+     * Read the 3rd long item of the first expired tuple
+     */
+    public long peekExpiredN3() {
+        checkArgument(hasExpired());
+        return expired[expiredHead + 2];
+    }
+
+    /**
+     * Remove the first expired tuple
+     */
+    public void popExpired() {
+        checkArgument(hasExpired());
+        expiredHead += ITEMS_COUNT;
+        if (expiredHead == expiredTail) {
+            expiredHead = 0;
+            expiredTail = 0;
+        }
+        --size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of tuples in the wheel, whether they are expired or not
+     */
+    public int size() {
+        return size;
+    }
+
+    private long toTick(long time) {
+        return Math.max(time, 0) / tickDuration;
+    }
+
+    private int expiredCount() {
+        return (expiredTail - expiredHead) / ITEMS_COUNT;
+    }
+
+    private void place(long n1, long n2, long n3) {
+        long tick = toTick(n1);
+        if (tick <= currentTick) {
+            if (expiredTail == expired.length) {
+                expired = Arrays.copyOf(expired, expired.length * 2);
+            }
+            expired[expiredTail] = n1;
+            expired[expiredTail + 1] = n2;
+            expired[expiredTail + 2] = n3;
+            expiredTail += ITEMS_COUNT;
+            return;
+        }
+
+        // The lowest level where the tick and the current tick share all the upper digits
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ currentTick)) / WHEEL_BITS;
+        int slot = (int) ((tick >>> (level * WHEEL_BITS)) & WHEEL_MASK);
+        int index = level * WHEEL_SIZE + slot;
+
+        long[] items = slots[index];
+        int offset = slotSizes[index] * ITEMS_COUNT;
+        if (items == null) {
+            items = new long[DEFAULT_SLOT_CAPACITY * ITEMS_COUNT];
+            slots[index] = items;
+        } else if (offset == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            slots[index] = items;
+        }
+        items[offset] = n1;
+        items[offset + 1] = n2;
+        items[offset + 2] = n3;
+        ++slotSizes[index];
+        occupiedSlots[level] |= 1L << slot;
+    }
+
+    private void drainSlot(int level, int slot) {
+        if ((occupiedSlots[level] & (1L << slot)) == 0) {
+            return;
+        }
+
+        int index = level * WHEEL_SIZE + slot;
+        long[] items = slots[index];
+        int count = slotSizes[index];
+        slotSizes[index] = 0;
+        occupiedSlots[level] &= ~(1L << slot);
+
+        // Items go to a lower level, or expire, so the slot is not modified while it's drained
+        for (int i = 0; i < count * ITEMS_COUNT; i += ITEMS_COUNT) {
+            place(items[i], items[i + 1], items[i + 2]);
+        }
+    }
+
+    /**
+     * Find the first tick, after the current one, at which a slot is reached.
+     */
+    private long nextEventTick() {
+        long nextTick = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            long occupied = occupiedSlots[level];
+            if (occupied == 0) {
+                continue;
+            }
+
+            int shift = level * WHEEL_BITS;
+            int digit = (int) ((currentTick >>> shift) & WHEEL_MASK);
+            // Slots are always ahead of the current tick digit
+            long ahead = digit == WHEEL_MASK ? 0 : occupied & (-1L << (digit + 1));
+            if (ahead == 0) {
+                continue;
+            }
+
+            int upperShift = shift + WHEEL_BITS;
+            long upperTicks = upperShift >= Long.SIZE ? 0 : (currentTick >>> upperShift) << upperShift;
+            long tick = upperTicks | ((long) Long.numberOfTrailingZeros(ahead) << shift);
+            nextTick = Math.min(nextTick, tick);
+        }
+        return nextTick;
+    }
+}
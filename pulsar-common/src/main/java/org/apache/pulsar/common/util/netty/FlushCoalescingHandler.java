@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Outbound handler that holds the flushes of a channel, so that the writes of several flushes reach the socket with a
+ * single syscall.
+ *
+ * <p>The pending flushes are forwarded when either:
+ * <ul>
+ * <li>{@code maxPendingFlushes} flushes have been requested</li>
+ * <li>{@code maxDelayMicros} microseconds have passed since the first pending flush</li>
+ * <li>the current read loop completes, since the replies to the read commands are then all written</li>
+ * <li>the channel becomes non-writable, closes or the handler is removed</li>
+ * </ul>
+ *
+ * <p>Unlike {@link io.netty.handler.flush.FlushConsolidationHandler}, the flushes issued outside of a read loop (eg.
+ * the dispatch of messages) are consolidated as well, bounded by the max delay.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    private final int maxPendingFlushes;
+    private final long maxDelayMicros;
+    private final IntConsumer flushListener;
+
+    private ChannelHandlerContext ctx;
+    private int pendingFlushes = 0;
+    private boolean readInProgress = false;
+    private Future<?> scheduledFlush = null;
+    private final Runnable flushTask = () -> {
+        scheduledFlush = null;
+        flushNow();
+    };
+
+    /**
+     * @param maxPendingFlushes
+     *            max number of flushes to hold before forwarding them
+     * @param maxDelayMicros
+     *            max time a flush is held for
+     * @param flushListener
+     *            invoked for each flush forwarded to the channel with the number of flushes it coalesces
+     */
+    public FlushCoalescingHandler(int maxPendingFlushes, long maxDelayMicros, IntConsumer flushListener) {
+        if (maxPendingFlushes <= 0) {
+            throw new IllegalArgumentException("maxPendingFlushes: " + maxPendingFlushes + " (expected: > 0)");
+        }
+        if (maxDelayMicros < 0) {
+            throw new IllegalArgumentException("maxDelayMicros: " + maxDelayMicros + " (expected: >= 0)");
+        }
+        this.maxPendingFlushes = maxPendingFlushes;
+        this.maxDelayMicros = maxDelayMicros;
+        this.flushListener = flushListener;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (++pendingFlushes >= maxPendingFlushes) {
+            flushNow();
+        } else if (!readInProgress && scheduledFlush == null) {
+            if (maxDelayMicros == 0) {
+                flushNow();
+            } else {
+                scheduledFlush = ctx.executor().schedule(flushTask, maxDelayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        readInProgress = false;
+        flushIfPending();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // Let the outbound buffer drain instead of holding more data in it
+            flushIfPending();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfPending();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending();
+    }
+
+    private void flushIfPending() {
+        if (pendingFlushes > 0) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        int flushes = pendingFlushes;
+        pendingFlushes = 0;
+        if (flushes > 0 && flushListener != null) {
+            flushListener.accept(flushes);
+        }
+        ctx.flush();
+    }
+}
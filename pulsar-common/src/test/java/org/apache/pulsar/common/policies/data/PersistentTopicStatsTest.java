@@ -73,7 +73,13 @@ public class PersistentTopicStatsTest {
         topicStats1.averageMsgSize = 1;
         topicStats1.storageSize = 1;
         topicStats1.publishers.add(new PublisherStats());
-        topicStats1.subscriptions.put("test_ns", new SubscriptionStats());
+        SubscriptionStats subscriptionStats1 = new SubscriptionStats();
+        subscriptionStats1.msgRateOut = 1;
+        subscriptionStats1.dispatchReadBatchSize = 100;
+        subscriptionStats1.dispatchAvgEntrySize = 1;
+        subscriptionStats1.dispatchReadRoundTripMs = 2;
+        subscriptionStats1.ackRoundTripMs = 3;
+        topicStats1.subscriptions.put("test_ns", subscriptionStats1);
         topicStats1.replication.put("test_ns", new ReplicatorStats());
 
         TopicStats topicStats2 = new TopicStats();
@@ -84,7 +90,13 @@ public class PersistentTopicStatsTest {
         topicStats2.averageMsgSize = 5;
         topicStats2.storageSize = 6;
         topicStats2.publishers.add(new PublisherStats());
-        topicStats2.subscriptions.put("test_ns", new SubscriptionStats());
+        SubscriptionStats subscriptionStats2 = new SubscriptionStats();
+        subscriptionStats2.msgRateOut = 2;
+        subscriptionStats2.dispatchReadBatchSize = 50;
+        subscriptionStats2.dispatchAvgEntrySize = 3;
+        subscriptionStats2.dispatchReadRoundTripMs = 4;
+        subscriptionStats2.ackRoundTripMs = 5;
+        topicStats2.subscriptions.put("test_ns", subscriptionStats2);
         topicStats2.replication.put("test_ns", new ReplicatorStats());
 
         TopicStats target = new TopicStats();
@@ -100,6 +112,20 @@ public class PersistentTopicStatsTest {
         assertEquals(target.publishers.size(), 1);
         assertEquals(target.subscriptions.size(), 1);
         assertEquals(target.replication.size(), 1);
+
+        SubscriptionStats subscriptionStats = target.subscriptions.get("test_ns");
+        assertEquals(subscriptionStats.msgRateOut, 3.0);
+        assertEquals(subscriptionStats.dispatchReadBatchSize, 100);
+        assertEquals(subscriptionStats.dispatchAvgEntrySize, 2.0);
+        assertEquals(subscriptionStats.dispatchReadRoundTripMs, 3.0);
+        assertEquals(subscriptionStats.ackRoundTripMs, 4.0);
+
+        subscriptionStats.reset();
+        assertEquals(subscriptionStats.msgRateOut, 0.0);
+        assertEquals(subscriptionStats.dispatchReadBatchSize, 0);
+        assertEquals(subscriptionStats.dispatchAvgEntrySize, 0.0);
+        assertEquals(subscriptionStats.dispatchReadRoundTripMs, 0.0);
+        assertEquals(subscriptionStats.ackRoundTripMs, 0.0);
     }
 
 }
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.protocol;
+
+import static org.testng.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+import org.apache.pulsar.common.api.proto.PulsarApi.MessageIdData;
+import org.testng.annotations.Test;
+
+public class CommandsTest {
+
+    private static MessageIdData messageId(long ledgerId, long entryId) {
+        return MessageIdData.newBuilder().setLedgerId(ledgerId).setEntryId(entryId).setPartition(-1).build();
+    }
+
+    @Test
+    public void testAddMessageFrame() {
+        ByteBuf payload1 = PulsarByteBufAllocator.DEFAULT.directBuffer();
+        payload1.writeBytes("first-payload".getBytes());
+        ByteBuf payload2 = PulsarByteBufAllocator.DEFAULT.directBuffer();
+        payload2.writeBytes("second-payload".getBytes());
+
+        ByteBuf expected = Unpooled.buffer();
+        ByteBufPair pair = Commands.newMessage(1, messageId(10, 1), 0, payload1.retainedDuplicate());
+        expected.writeBytes(ByteBufPair.coalesce(pair));
+        pair.release();
+        pair = Commands.newMessage(1, messageId(10, 2), 3, payload2.retainedDuplicate(), new long[] { 5L });
+        expected.writeBytes(ByteBufPair.coalesce(pair));
+        pair.release();
+
+        // Headers buffer too small for both messages, it has to grow
+        CompositeByteBuf frames = PulsarByteBufAllocator.DEFAULT.compositeDirectBuffer(4);
+        ByteBuf headers = PulsarByteBufAllocator.DEFAULT.directBuffer(16);
+        Commands.addMessageFrame(frames, headers, 1, messageId(10, 1), 0, payload1, null);
+        Commands.addMessageFrame(frames, headers, 1, messageId(10, 2), 3, payload2, new long[] { 5L });
+        headers.release();
+
+        assertEquals(frames.numComponents(), 4);
+        assertEquals(ByteBufUtil.getBytes(frames), ByteBufUtil.getBytes(expected));
+
+        frames.release();
+        assertEquals(headers.refCnt(), 0);
+        assertEquals(payload1.refCnt(), 0);
+        assertEquals(payload2.refCnt(), 0);
+    }
+}
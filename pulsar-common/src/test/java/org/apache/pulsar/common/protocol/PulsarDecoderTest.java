@@ -20,14 +20,19 @@ package org.apache.pulsar.common.protocol;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.pulsar.common.api.proto.PulsarApi.CommandActiveConsumerChange;
+import org.apache.pulsar.common.api.proto.PulsarApi.CommandSendReceipt;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -56,5 +61,26 @@ public class PulsarDecoderTest {
             .handleActiveConsumerChange(any(CommandActiveConsumerChange.class));
     }
 
+    @Test
+    public void testSendReceiptRange() throws Exception {
+        List<long[]> receipts = new ArrayList<>();
+        doAnswer(invocation -> {
+            CommandSendReceipt receipt = invocation.getArgumentAt(0, CommandSendReceipt.class);
+            assertEquals(receipt.getProducerId(), 1L);
+            assertEquals(receipt.getMessageId().getLedgerId(), 3L);
+            receipts.add(new long[] { receipt.getSequenceId(), receipt.getMessageId().getEntryId(),
+                    receipt.hasLastSequenceId() ? receipt.getLastSequenceId() : -1,
+                    receipt.hasLastEntryId() ? receipt.getLastEntryId() : -1 });
+            return null;
+        }).when(decoder).handleSendReceipt(any(CommandSendReceipt.class));
+
+        ByteBuf receiptBuf = Commands.newSendReceipt(1, 10, 3, 5);
+        decoder.channelRead(mock(ChannelHandlerContext.class), receiptBuf.slice(4, receiptBuf.writerIndex() - 4));
+        receiptBuf = Commands.newSendReceipt(1, 11, 20, 3, 6, 15);
+        decoder.channelRead(mock(ChannelHandlerContext.class), receiptBuf.slice(4, receiptBuf.writerIndex() - 4));
 
+        assertEquals(receipts.size(), 2);
+        assertEquals(receipts.get(0), new long[] { 10, 5, -1, -1 });
+        assertEquals(receipts.get(1), new long[] { 11, 6, 20, 15 });
+    }
 }
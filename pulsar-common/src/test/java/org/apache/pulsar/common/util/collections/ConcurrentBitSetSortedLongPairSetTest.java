@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
+import org.testng.annotations.Test;
+
+public class ConcurrentBitSetSortedLongPairSetTest {
+
+    @Test
+    public void simpleInsertions() {
+        LongPairSet set = new ConcurrentBitSetSortedLongPairSet();
+
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(1, 1));
+        assertFalse(set.isEmpty());
+
+        assertTrue(set.add(2, 2));
+        assertTrue(set.add(3, 3));
+        assertEquals(set.size(), 3);
+
+        assertTrue(set.contains(1, 1));
+        assertTrue(set.remove(1, 1));
+        assertEquals(set.size(), 2);
+        assertFalse(set.contains(1, 1));
+        assertFalse(set.contains(5, 5));
+        assertFalse(set.remove(5, 5));
+
+        assertTrue(set.add(1, 1));
+        assertFalse(set.add(1, 1));
+        assertEquals(set.size(), 3);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(set.size(), 0);
+    }
+
+    @Test
+    public void testSortedItems() {
+        LongPairSet set = new ConcurrentBitSetSortedLongPairSet();
+        set.add(2, 6);
+        set.add(1, 4);
+        set.add(2, 1);
+        set.add(1, 3);
+        set.add(1, 2);
+
+        assertEquals(set.toString(), "{[1:2], [1:3], [1:4], [2:1], [2:6]}");
+        assertEquals(new ArrayList<>(set.items()), Lists.newArrayList(new LongPair(1, 2), new LongPair(1, 3),
+                new LongPair(1, 4), new LongPair(2, 1), new LongPair(2, 6)));
+        assertEquals(new ArrayList<>(set.items(4)), Lists.newArrayList(new LongPair(1, 2), new LongPair(1, 3),
+                new LongPair(1, 4), new LongPair(2, 1)));
+
+        List<LongPair> visited = new ArrayList<>();
+        set.forEach((item1, item2) -> visited.add(new LongPair(item1, item2)));
+        assertEquals(visited, new ArrayList<>(set.items()));
+    }
+
+    @Test
+    public void testRemoveIf() {
+        LongPairSet set = new ConcurrentBitSetSortedLongPairSet();
+        for (int item1 = 0; item1 < 5; item1++) {
+            for (int item2 = 0; item2 < 100; item2++) {
+                set.add(item1, item2);
+            }
+        }
+
+        assertEquals(set.removeIf((item1, item2) -> item1 < 2 || (item1 == 2 && item2 < 50)), 250);
+        assertEquals(set.size(), 250);
+        assertFalse(set.contains(2, 49));
+        assertTrue(set.contains(2, 50));
+        Set<LongPair> items = set.items(1);
+        assertEquals(items.iterator().next(), new LongPair(2, 50));
+    }
+
+    @Test
+    public void testInvalidItem() {
+        LongPairSet set = new ConcurrentBitSetSortedLongPairSet();
+        try {
+            set.add(1, -1);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+        try {
+            set.add(1, Integer.MAX_VALUE + 1L);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+        assertFalse(set.contains(1, -1));
+        assertFalse(set.remove(1, Integer.MAX_VALUE + 1L));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void concurrentInsertions() throws Throwable {
+        LongPairSet set = new ConcurrentBitSetSortedLongPairSet();
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        final int nThreads = 8;
+        final int N = 1000;
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final int threadIdx = i;
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < N; j++) {
+                    set.add(j % 10, j * nThreads + threadIdx);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(set.size(), N * nThreads);
+        executor.shutdown();
+    }
+}
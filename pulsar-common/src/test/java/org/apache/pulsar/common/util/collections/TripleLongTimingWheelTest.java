@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class TripleLongTimingWheelTest {
+
+    @Test
+    public void testWheel() {
+        TripleLongTimingWheel wheel = new TripleLongTimingWheel(10, 1000);
+        assertTrue(wheel.isEmpty());
+        assertEquals(wheel.nextTickTime(), -1);
+
+        wheel.add(1205, 1, 1);
+        wheel.add(1015, 2, 2);
+        wheel.add(1019, 3, 3);
+        wheel.add(900, 4, 4);
+        wheel.add(1_000_000, 5, 5);
+        assertEquals(wheel.size(), 5);
+
+        // Already expired
+        assertTrue(wheel.hasExpired());
+        assertEquals(wheel.peekExpiredN1(), 900);
+        assertEquals(wheel.peekExpiredN2(), 4);
+        assertEquals(wheel.peekExpiredN3(), 4);
+        assertEquals(wheel.nextTickTime(), 1000);
+        wheel.popExpired();
+        assertFalse(wheel.hasExpired());
+        assertEquals(wheel.nextTickTime(), 1010);
+
+        wheel.advanceTo(1009);
+        assertFalse(wheel.hasExpired());
+
+        // Items of the same tick expire together
+        wheel.advanceTo(1010);
+        assertTrue(wheel.hasExpired());
+        assertEquals(wheel.peekExpiredN2(), 2);
+        wheel.popExpired();
+        assertEquals(wheel.peekExpiredN2(), 3);
+        wheel.popExpired();
+        assertFalse(wheel.hasExpired());
+
+        wheel.advanceTo(100_000);
+        assertEquals(wheel.peekExpiredN2(), 1);
+        wheel.popExpired();
+        assertFalse(wheel.hasExpired());
+        assertEquals(wheel.size(), 1);
+
+        wheel.advanceTo(Long.MAX_VALUE);
+        assertEquals(wheel.peekExpiredN2(), 5);
+        wheel.popExpired();
+        assertTrue(wheel.isEmpty());
+        assertEquals(wheel.nextTickTime(), -1);
+    }
+
+    @Test
+    public void testCheckForEmpty() {
+        TripleLongTimingWheel wheel = new TripleLongTimingWheel(1, 0);
+        try {
+            wheel.peekExpiredN1();
+            fail("Should fail");
+        } catch (IllegalArgumentException e) {
+            // Ok
+        }
+
+        try {
+            wheel.popExpired();
+            fail("Should fail");
+        } catch (IllegalArgumentException e) {
+            // Ok
+        }
+    }
+
+    @Test
+    public void testRandomTimes() {
+        Random random = new Random(0);
+        long now = 1_555_000_000_000L;
+        TripleLongTimingWheel wheel = new TripleLongTimingWheel(1, now);
+
+        final int N = 100_000;
+        for (int i = 0; i < N; i++) {
+            // Delays from a few milliseconds up to a few days
+            long delay = (long) Math.pow(10, random.nextDouble() * 9);
+            wheel.add(now + delay, i, delay);
+        }
+
+        int expired = 0;
+        while (expired < N) {
+            // Jump to the next tick with some work, or move forward by a random step
+            long next = wheel.nextTickTime();
+            assertTrue(next >= now);
+            now = random.nextBoolean() ? next : now + random.nextInt(100_000);
+            wheel.advanceTo(now);
+
+            while (wheel.hasExpired()) {
+                long time = wheel.peekExpiredN1();
+                assertTrue(time <= now, "Expired at " + now + " instead of " + time);
+                assertTrue(time > now - 100_000 - 1, "Expired late at " + now + " instead of " + time);
+                wheel.popExpired();
+                ++expired;
+            }
+            assertEquals(wheel.size(), N - expired);
+        }
+        assertEquals(wheel.nextTickTime(), -1);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.netty;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class FlushCoalescingHandlerTest {
+
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        int flushes = 0;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes++;
+            super.flush(ctx);
+        }
+    }
+
+    private static ByteBuf data(int value) {
+        return Unpooled.buffer(4).writeInt(value);
+    }
+
+    @Test
+    public void testMaxPendingFlushes() {
+        FlushCounter counter = new FlushCounter();
+        AtomicInteger coalesced = new AtomicInteger();
+        EmbeddedChannel channel = new EmbeddedChannel(counter,
+                new FlushCoalescingHandler(3, TimeUnit.SECONDS.toMicros(10), coalesced::addAndGet));
+
+        channel.writeAndFlush(data(1));
+        channel.writeAndFlush(data(2));
+        assertNull(channel.readOutbound());
+        assertEquals(counter.flushes, 0);
+
+        channel.writeAndFlush(data(3));
+        assertEquals(counter.flushes, 1);
+        assertEquals(coalesced.get(), 3);
+        for (int i = 1; i <= 3; i++) {
+            ByteBuf buf = channel.readOutbound();
+            assertEquals(buf.readInt(), i);
+            buf.release();
+        }
+
+        assertEquals(channel.runScheduledPendingTasks(), -1);
+        channel.finish();
+    }
+
+    @Test
+    public void testMaxDelay() throws Exception {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushCoalescingHandler(100, 1000, null));
+
+        channel.writeAndFlush(data(1));
+        channel.writeAndFlush(data(2));
+        assertNull(channel.readOutbound());
+
+        Thread.sleep(10);
+        channel.runScheduledPendingTasks();
+        assertEquals(counter.flushes, 1);
+        assertEquals(((ByteBuf) channel.readOutbound()).release(), true);
+        assertEquals(((ByteBuf) channel.readOutbound()).release(), true);
+        channel.finish();
+    }
+
+    @Test
+    public void testFlushOnReadComplete() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter,
+                new FlushCoalescingHandler(100, TimeUnit.SECONDS.toMicros(10), null));
+
+        // The replies to the commands read in the same loop are flushed together when the read completes
+        channel.pipeline().fireChannelRead(data(1));
+        channel.writeAndFlush(data(1));
+        channel.pipeline().fireChannelRead(data(2));
+        channel.writeAndFlush(data(2));
+        assertEquals(counter.flushes, 0);
+
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(counter.flushes, 1);
+        assertEquals(channel.outboundMessages().size(), 2);
+
+        // Nothing scheduled since the flushes were issued while reading
+        assertEquals(channel.runScheduledPendingTasks(), -1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testFlushOnClose() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter,
+                new FlushCoalescingHandler(100, TimeUnit.SECONDS.toMicros(10), null));
+
+        channel.writeAndFlush(data(1));
+        assertEquals(counter.flushes, 0);
+        channel.close();
+        assertEquals(counter.flushes, 1);
+        channel.finishAndReleaseAll();
+    }
+}
@@ -43,6 +43,24 @@ public class TieredStorageConfigurationData implements Serializable, Cloneable {
     // Maximum number of thread pool threads for ledger offloading
     private int managedLedgerOffloadMaxThreads = 2;
 
+    // Number of data blocks of a ledger uploaded at the same time. When greater than 1, the next data blocks are built
+    // with entries read ahead from the bookies while the previous ones are uploaded
+    private int managedLedgerOffloadParallelUploads = 1;
+
+    // Number of entry read requests sent ahead to the bookies, when uploading data blocks in parallel
+    private int managedLedgerOffloadReadAheadRequests = 4;
+
+    // Maximum size in bytes of the data blocks held in memory by the parallel uploads of all the ledgers
+    private long managedLedgerOffloadMaxBufferedBytes = 512 * 1024 * 1024; // 512MB
+
+    // Maximum size in bytes of the cache of blocks read from offloaded ledgers, shared by all the ledgers.
+    // 0 disables the cache
+    private long managedLedgerOffloadReadCacheSizeInBytes = 0;
+
+    // Maximum number of blocks prefetched ahead of a sequential reader of an offloaded ledger, when the read cache
+    // is enabled
+    private int managedLedgerOffloadReadPrefetchBlocks = 4;
+
     // For Amazon S3 ledger offload, AWS region
     private String s3ManagedLedgerOffloadRegion = null;
 
@@ -18,6 +18,7 @@
  */
 package org.apache.bookkeeper.mledger.offload.jcloud.impl;
 
+import com.google.common.io.ByteStreams;
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.io.InputStream;
@@ -40,21 +41,35 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
     private final ByteBuf buffer;
     private final long objectLen;
     private final int bufferSize;
+    private final OffloadReadCache readCache;
 
     private long cursor;
     private long bufferOffsetStart;
     private long bufferOffsetEnd;
 
+    // Last block read through the cache, and number of blocks read in sequence up to it
+    private long lastBlockIndex = -1;
+    private int sequentialBlocks = 0;
+    private long prefetchedUpTo = -1;
+
     public BlobStoreBackedInputStreamImpl(BlobStore blobStore, String bucket, String key,
                                           VersionCheck versionCheck,
                                           long objectLen, int bufferSize) {
+        this(blobStore, bucket, key, versionCheck, objectLen, bufferSize, null);
+    }
+
+    public BlobStoreBackedInputStreamImpl(BlobStore blobStore, String bucket, String key,
+                                          VersionCheck versionCheck,
+                                          long objectLen, int bufferSize,
+                                          OffloadReadCache readCache) {
         this.blobStore = blobStore;
         this.bucket = bucket;
         this.key = key;
         this.versionCheck = versionCheck;
-        this.buffer = PulsarByteBufAllocator.DEFAULT.buffer(bufferSize, bufferSize);
+        this.readCache = readCache;
+        this.bufferSize = readCache != null ? readCache.getBlockSize() : bufferSize;
+        this.buffer = PulsarByteBufAllocator.DEFAULT.buffer(this.bufferSize, this.bufferSize);
         this.objectLen = objectLen;
-        this.bufferSize = bufferSize;
         this.cursor = 0;
         this.bufferOffsetStart = this.bufferOffsetEnd = -1;
     }
@@ -68,6 +83,10 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
             if (cursor >= objectLen) {
                 return false;
             }
+            if (readCache != null) {
+                refillBufferFromCache();
+                return true;
+            }
             long startRange = cursor;
             long endRange = Math.min(cursor + bufferSize - 1,
                                      objectLen - 1);
@@ -94,6 +113,56 @@ public class BlobStoreBackedInputStreamImpl extends BackedInputStream {
         return true;
     }
 
+    /**
+     * Refill the buffered input with the cached block containing the cursor, and prefetch the following blocks
+     * when the blocks are read in sequence. The further the sequence goes, the more blocks are prefetched.
+     */
+    private void refillBufferFromCache() throws IOException {
+        long blockIndex = cursor / bufferSize;
+        long blockStart = blockIndex * bufferSize;
+        long blockEnd = Math.min(blockStart + bufferSize, objectLen) - 1;
+
+        byte[] block;
+        try {
+            block = readCache.getBlock(key, blockIndex, objectLen, this::fetch);
+        } catch (Throwable e) {
+            throw new IOException("Error reading from BlobStore", e);
+        }
+        buffer.clear();
+        buffer.writeBytes(block);
+        buffer.readerIndex((int) (cursor - blockStart));
+        bufferOffsetStart = blockStart;
+        bufferOffsetEnd = blockEnd;
+        cursor = blockEnd + 1;
+
+        if (blockIndex == lastBlockIndex + 1) {
+            sequentialBlocks++;
+        } else {
+            sequentialBlocks = 0;
+            prefetchedUpTo = blockIndex;
+        }
+        lastBlockIndex = blockIndex;
+
+        long lastObjectBlockIndex = (objectLen - 1) / bufferSize;
+        long prefetchUpTo = Math.min(blockIndex + Math.min(sequentialBlocks, readCache.getMaxPrefetchBlocks()),
+                                     lastObjectBlockIndex);
+        if (prefetchUpTo > prefetchedUpTo) {
+            readCache.prefetch(key, Math.max(prefetchedUpTo, blockIndex) + 1, prefetchUpTo, objectLen, this::fetch);
+            prefetchedUpTo = prefetchUpTo;
+        }
+    }
+
+    private byte[] fetch(long startRange, long endRange) throws IOException {
+        Blob blob = blobStore.getBlob(bucket, key, new GetOptions().range(startRange, endRange));
+        versionCheck.check(key, blob);
+
+        byte[] bytes = new byte[(int) (endRange - startRange + 1)];
+        try (InputStream stream = blob.getPayload().openStream()) {
+            ByteStreams.readFully(stream, bytes);
+        }
+        return bytes;
+    }
+
     @Override
     public int read() throws IOException {
         if (refillBufferIfNeeded()) {
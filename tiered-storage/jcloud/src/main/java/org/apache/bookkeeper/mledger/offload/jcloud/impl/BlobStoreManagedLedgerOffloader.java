@@ -27,9 +27,16 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.base.Throwables;
 import com.google.common.io.Files;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Summary;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
@@ -39,6 +46,11 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import lombok.Data;
 import org.apache.bookkeeper.client.api.ReadHandle;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
@@ -48,6 +60,7 @@ import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexBlock;
 import org.apache.bookkeeper.mledger.offload.jcloud.TieredStorageConfigurationData;
 import org.apache.bookkeeper.mledger.offload.jcloud.OffloadIndexBlockBuilder;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.jcloud.shade.com.google.common.base.Supplier;
 import org.jclouds.Constants;
 import org.jclouds.ContextBuilder;
@@ -88,6 +101,13 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
     static final String METADATA_FORMAT_VERSION_KEY = "S3ManagedLedgerOffloaderFormatVersion";
     static final String CURRENT_VERSION = String.valueOf(1);
 
+    private static final Counter offloadedBytes = Counter.build("pulsar_ledger_offload_bytes",
+            "Size of the ledgers data offloaded to the blob store, per namespace")
+            .labelNames("namespace").register();
+    private static final Summary offloadTime = Summary.build("pulsar_ledger_offload_time_ms",
+            "Time taken to offload a ledger to the blob store, per namespace")
+            .labelNames("namespace").register();
+
     public static boolean driverSupported(String driver) {
         return Arrays.stream(DRIVER_NAMES).anyMatch(d -> d.equalsIgnoreCase(driver));
     }
@@ -176,6 +196,18 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
 
     private final ConcurrentMap<BlobStoreLocation, BlobStore> readBlobStores = new ConcurrentHashMap<>();
 
+    // number of data blocks of a ledger being uploaded at the same time, 1 to upload them one after the other
+    private int parallelUploads = 1;
+    // number of entry read requests sent ahead to the bookies, when uploading the data blocks in parallel
+    private int readAheadRequests = 1;
+    // memory budget of the data blocks built and being uploaded, shared by all the ledgers being offloaded
+    private int maxBufferedBytes;
+    private Semaphore bufferedBytesPermits;
+    private ExecutorService uploadExecutor;
+
+    // cache of the data blocks read from the blob store, shared by all the offloaded ledgers being read
+    private OffloadReadCache readCache;
+
     // metadata to be stored as part of the offloaded ledger metadata
     private final Map<String, String> userMetadata;
     // offload driver metadata to be stored as part of the original ledger metadata
@@ -228,8 +260,17 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
 
         Supplier<Credentials> credentials = getCredentials(driver, conf);
 
-        return new BlobStoreManagedLedgerOffloader(driver, bucket, scheduler,
+        BlobStoreManagedLedgerOffloader offloader = new BlobStoreManagedLedgerOffloader(driver, bucket, scheduler,
             maxBlockSize, readBufferSize, endpoint, region, credentials, userMetadata);
+        if (conf.getManagedLedgerOffloadParallelUploads() > 1) {
+            offloader.enableParallelUploads(conf.getManagedLedgerOffloadParallelUploads(),
+                conf.getManagedLedgerOffloadReadAheadRequests(), conf.getManagedLedgerOffloadMaxBufferedBytes());
+        }
+        if (conf.getManagedLedgerOffloadReadCacheSizeInBytes() > 0) {
+            offloader.enableReadCache(conf.getManagedLedgerOffloadReadCacheSizeInBytes(),
+                conf.getManagedLedgerOffloadReadPrefetchBlocks());
+        }
+        return offloader;
     }
 
     public static Supplier<Credentials> getCredentials(String driver, TieredStorageConfigurationData conf) throws IOException {
@@ -357,6 +398,44 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
         );
     }
 
+    /**
+     * Upload the data blocks of a ledger as the parts of a parallel multipart upload: the next blocks are built, with
+     * the entries read ahead from the bookies, while the previous ones are being uploaded.
+     *
+     * @param parallelUploads number of data blocks of a ledger being uploaded at the same time
+     * @param readAheadRequests number of entry read requests sent ahead to the bookies
+     * @param maxBufferedBytes memory budget of the data blocks built and being uploaded, for all the ledgers
+     */
+    void enableParallelUploads(int parallelUploads, int readAheadRequests, long maxBufferedBytes) {
+        this.parallelUploads = parallelUploads;
+        this.readAheadRequests = readAheadRequests;
+        this.maxBufferedBytes = (int) Math.min(maxBufferedBytes, Integer.MAX_VALUE);
+        this.bufferedBytesPermits = new Semaphore(this.maxBufferedBytes);
+        this.uploadExecutor = Executors.newFixedThreadPool(parallelUploads,
+            new DefaultThreadFactory("offloader-upload", true));
+    }
+
+    /**
+     * Read the offloaded ledgers through a cache of blocks of readBufferSize bytes, prefetching the next blocks of
+     * the ledgers read sequentially.
+     *
+     * @param cacheSizeInBytes maximum size of the cached blocks, for all the ledgers
+     * @param prefetchBlocks maximum number of blocks prefetched ahead of a sequential reader
+     */
+    void enableReadCache(long cacheSizeInBytes, int prefetchBlocks) {
+        this.readCache = new OffloadReadCache(cacheSizeInBytes, readBufferSize, prefetchBlocks);
+    }
+
+    @Override
+    public void close() {
+        if (uploadExecutor != null) {
+            uploadExecutor.shutdownNow();
+        }
+        if (readCache != null) {
+            readCache.close();
+        }
+    }
+
     static String dataBlockOffloadKey(long ledgerId, UUID uuid) {
         return String.format("%s-ledger-%d", uuid.toString(), ledgerId);
     }
@@ -394,6 +473,7 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                                            Map<String, String> extraMetadata) {
         CompletableFuture<Void> promise = new CompletableFuture<>();
         scheduler.chooseThread(readHandle.getId()).submit(() -> {
+            long startTime = System.nanoTime();
             if (readHandle.getLength() == 0 || !readHandle.isClosed() || readHandle.getLastAddConfirmed() < 0) {
                 promise.completeExceptionally(
                         new IllegalArgumentException("An empty or open ledger should never be offloaded"));
@@ -422,36 +502,10 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
             long dataObjectLength = 0;
             // start multi part upload for data block.
             try {
-                long startEntry = 0;
-                int partId = 1;
-                long entryBytesWritten = 0;
-                while (startEntry <= readHandle.getLastAddConfirmed()) {
-                    int blockSize = BlockAwareSegmentInputStreamImpl
-                        .calculateBlockSize(maxBlockSize, readHandle, startEntry, entryBytesWritten);
-
-                    try (BlockAwareSegmentInputStream blockStream = new BlockAwareSegmentInputStreamImpl(
-                        readHandle, startEntry, blockSize)) {
-
-                        Payload partPayload = Payloads.newInputStreamPayload(blockStream);
-                        partPayload.getContentMetadata().setContentLength((long)blockSize);
-                        partPayload.getContentMetadata().setContentType("application/octet-stream");
-                        parts.add(writeBlobStore.uploadMultipartPart(mpu, partId, partPayload));
-                        log.debug("UploadMultipartPart. container: {}, blobName: {}, partId: {}, mpu: {}",
-                            writeBucket, dataBlockKey, partId, mpu.id());
-
-                        indexBuilder.addBlock(startEntry, partId, blockSize);
-
-                        if (blockStream.getEndEntryId() != -1) {
-                            startEntry = blockStream.getEndEntryId() + 1;
-                        } else {
-                            // could not read entry from ledger.
-                            break;
-                        }
-                        entryBytesWritten += blockStream.getBlockEntryBytesCount();
-                        partId++;
-                    }
-
-                    dataObjectLength += blockSize;
+                if (parallelUploads > 1) {
+                    dataObjectLength = uploadDataBlocksInParallel(readHandle, mpu, dataBlockKey, indexBuilder, parts);
+                } else {
+                    dataObjectLength = uploadDataBlocks(readHandle, mpu, dataBlockKey, indexBuilder, parts);
                 }
 
                 writeBlobStore.completeMultipartUpload(mpu, parts);
@@ -485,6 +539,11 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                     .build();
 
                 writeBlobStore.putBlob(writeBucket, blob);
+
+                String namespace = getNamespace(extraMetadata);
+                offloadedBytes.labels(namespace).inc(dataObjectLength);
+                offloadTime.labels(namespace).observe(
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
                 promise.complete(null);
             } catch (Throwable t) {
                 try {
@@ -500,6 +559,156 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
         return promise;
     }
 
+    // upload the data blocks one after the other, each block being read from the ledger while it is uploaded
+    private long uploadDataBlocks(ReadHandle readHandle, MultipartUpload mpu, String dataBlockKey,
+                                  OffloadIndexBlockBuilder indexBuilder, List<MultipartPart> parts)
+            throws IOException {
+        long dataObjectLength = 0;
+        long startEntry = 0;
+        int partId = 1;
+        long entryBytesWritten = 0;
+        while (startEntry <= readHandle.getLastAddConfirmed()) {
+            int blockSize = BlockAwareSegmentInputStreamImpl
+                .calculateBlockSize(maxBlockSize, readHandle, startEntry, entryBytesWritten);
+
+            try (BlockAwareSegmentInputStream blockStream = new BlockAwareSegmentInputStreamImpl(
+                readHandle, startEntry, blockSize)) {
+
+                Payload partPayload = Payloads.newInputStreamPayload(blockStream);
+                partPayload.getContentMetadata().setContentLength((long)blockSize);
+                partPayload.getContentMetadata().setContentType("application/octet-stream");
+                parts.add(writeBlobStore.uploadMultipartPart(mpu, partId, partPayload));
+                log.debug("UploadMultipartPart. container: {}, blobName: {}, partId: {}, mpu: {}",
+                    writeBucket, dataBlockKey, partId, mpu.id());
+
+                indexBuilder.addBlock(startEntry, partId, blockSize);
+
+                if (blockStream.getEndEntryId() != -1) {
+                    startEntry = blockStream.getEndEntryId() + 1;
+                } else {
+                    // could not read entry from ledger.
+                    break;
+                }
+                entryBytesWritten += blockStream.getBlockEntryBytesCount();
+                partId++;
+            }
+
+            dataObjectLength += blockSize;
+        }
+        return dataObjectLength;
+    }
+
+    // build the next data blocks in memory, with the entries read ahead from the bookies, while the previous blocks
+    // are being uploaded, up to parallelUploads parts at the same time
+    private long uploadDataBlocksInParallel(ReadHandle readHandle, MultipartUpload mpu, String dataBlockKey,
+                                            OffloadIndexBlockBuilder indexBuilder, List<MultipartPart> parts)
+            throws Exception {
+        Semaphore uploadPermits = new Semaphore(parallelUploads);
+        List<CompletableFuture<MultipartPart>> uploads = Lists.newArrayList();
+        long dataObjectLength = 0;
+        try (EntryReadAhead readAhead = new EntryReadAhead(readHandle, 0, readAheadRequests)) {
+            long startEntry = 0;
+            int partId = 1;
+            long entryBytesWritten = 0;
+            while (startEntry <= readHandle.getLastAddConfirmed()
+                   && uploads.stream().noneMatch(CompletableFuture::isCompletedExceptionally)) {
+                int blockSize = BlockAwareSegmentInputStreamImpl
+                    .calculateBlockSize(maxBlockSize, readHandle, startEntry, entryBytesWritten);
+                int bufferedBytes = Math.min(blockSize, maxBufferedBytes);
+
+                // the block and the permits are owned by the upload task once it is submitted, and released here
+                // on any failure before that
+                boolean uploadPermitAcquired = false;
+                boolean bufferedBytesAcquired = false;
+                ByteBuf block = null;
+                try {
+                    uploadPermits.acquire();
+                    uploadPermitAcquired = true;
+                    bufferedBytesPermits.acquire(bufferedBytes);
+                    bufferedBytesAcquired = true;
+                    try (BlockAwareSegmentInputStream blockStream = new BlockAwareSegmentInputStreamImpl(
+                        readHandle, startEntry, blockSize, readAhead)) {
+                        block = PulsarByteBufAllocator.DEFAULT.buffer(blockSize, blockSize);
+                        while (block.isWritable() && block.writeBytes(blockStream, block.writableBytes()) > 0) {
+                            // the block stream always gives blockSize bytes
+                        }
+                        uploads.add(uploadPart(mpu, dataBlockKey, partId, block, uploadPermits, bufferedBytes));
+                        block = null;
+                        uploadPermitAcquired = false;
+                        bufferedBytesAcquired = false;
+
+                        indexBuilder.addBlock(startEntry, partId, blockSize);
+
+                        if (blockStream.getEndEntryId() != -1) {
+                            startEntry = blockStream.getEndEntryId() + 1;
+                        } else {
+                            // could not read entry from ledger.
+                            break;
+                        }
+                        entryBytesWritten += blockStream.getBlockEntryBytesCount();
+                        partId++;
+                    }
+                } finally {
+                    if (block != null) {
+                        block.release();
+                    }
+                    if (bufferedBytesAcquired) {
+                        bufferedBytesPermits.release(bufferedBytes);
+                    }
+                    if (uploadPermitAcquired) {
+                        uploadPermits.release();
+                    }
+                }
+
+                dataObjectLength += blockSize;
+            }
+        } finally {
+            // the multipart upload can only be completed or aborted once all its parts are done
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).handle((v, t) -> null).get();
+        }
+
+        for (CompletableFuture<MultipartPart> upload : uploads) {
+            try {
+                parts.add(upload.get());
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), Exception.class);
+                throw e;
+            }
+        }
+        return dataObjectLength;
+    }
+
+    private CompletableFuture<MultipartPart> uploadPart(MultipartUpload mpu, String dataBlockKey, int partId,
+                                                        ByteBuf block, Semaphore uploadPermits, int bufferedBytes) {
+        CompletableFuture<MultipartPart> future = new CompletableFuture<>();
+        long blockSize = block.readableBytes();
+        uploadExecutor.execute(() -> {
+            // the input stream releases the block when closed
+            try (InputStream partStream = new ByteBufInputStream(block, true)) {
+                Payload partPayload = Payloads.newInputStreamPayload(partStream);
+                partPayload.getContentMetadata().setContentLength(blockSize);
+                partPayload.getContentMetadata().setContentType("application/octet-stream");
+                MultipartPart part = writeBlobStore.uploadMultipartPart(mpu, partId, partPayload);
+                log.debug("UploadMultipartPart. container: {}, blobName: {}, partId: {}, mpu: {}",
+                    writeBucket, dataBlockKey, partId, mpu.id());
+                future.complete(part);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                bufferedBytesPermits.release(bufferedBytes);
+                uploadPermits.release();
+            }
+        });
+        return future;
+    }
+
+    // managed ledgers of persistent topics are named <namespace>/persistent/<topic>
+    private static String getNamespace(Map<String, String> extraMetadata) {
+        String managedLedgerName = extraMetadata.get("ManagedLedgerName");
+        int index = managedLedgerName != null ? managedLedgerName.indexOf("/persistent/") : -1;
+        return index > 0 ? managedLedgerName.substring(0, index) : "unknown";
+    }
+
     String getReadRegion(Map<String, String> offloadDriverMetadata) {
         return offloadDriverMetadata.getOrDefault(METADATA_FIELD_REGION, writeRegion);
     }
@@ -552,7 +761,7 @@ public class BlobStoreManagedLedgerOffloader implements LedgerOffloader {
                                                                  readBlobstore,
                                                                  readBucket, key, indexKey,
                                                                  VERSION_CHECK,
-                                                                 ledgerId, readBufferSize));
+                                                                 ledgerId, readBufferSize, readCache));
                 } catch (Throwable t) {
                     log.error("Failed readOffloaded: ", t);
                     promise.completeExceptionally(t);
@@ -18,6 +18,7 @@
  */
 package org.apache.bookkeeper.mledger.offload.jcloud.impl;
 
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.collect.Lists;
@@ -52,6 +53,8 @@ public class BlockAwareSegmentInputStreamImpl extends BlockAwareSegmentInputStre
     private final ReadHandle ledger;
     private final long startEntryId;
     private final int blockSize;
+    // when set, the entries are taken from the read-ahead instead of being read from the ledger
+    private final EntryReadAhead readAhead;
 
     // Number of Message entries that read from ledger and been readout from this InputStream.
     private int blockEntryCount;
@@ -71,17 +74,22 @@ public class BlockAwareSegmentInputStreamImpl extends BlockAwareSegmentInputStre
     private List<ByteBuf> entriesByteBuf = null;
 
     public BlockAwareSegmentInputStreamImpl(ReadHandle ledger, long startEntryId, int blockSize) {
+        this(ledger, startEntryId, blockSize, null);
+    }
+
+    BlockAwareSegmentInputStreamImpl(ReadHandle ledger, long startEntryId, int blockSize, EntryReadAhead readAhead) {
         this.ledger = ledger;
         this.startEntryId = startEntryId;
         this.blockSize = blockSize;
+        this.readAhead = readAhead;
         this.dataBlockHeaderStream = DataBlockHeaderImpl.of(blockSize, startEntryId).toStream();
         this.blockEntryCount = 0;
         this.dataBlockFullOffset = blockSize;
         this.entriesByteBuf = Lists.newLinkedList();
     }
 
-    // read ledger entries.
-    private int readEntries() throws IOException {
+    // read ledger entries, up to len bytes, without crossing an entry boundary.
+    private int readEntries(byte[] b, int off, int len) throws IOException {
         checkState(bytesReadOffset >= DataBlockHeaderImpl.getDataStartOffset());
         checkState(bytesReadOffset < blockSize);
 
@@ -95,8 +103,9 @@ public class BlockAwareSegmentInputStreamImpl extends BlockAwareSegmentInputStre
         if (!entriesByteBuf.isEmpty() && bytesReadOffset + entriesByteBuf.get(0).readableBytes() <= blockSize) {
             // always read from the first ByteBuf in the list, once read all of its content remove it.
             ByteBuf entryByteBuf = entriesByteBuf.get(0);
-            int ret = entryByteBuf.readUnsignedByte();
-            bytesReadOffset++;
+            int bytesToRead = Math.min(len, entryByteBuf.readableBytes());
+            entryByteBuf.readBytes(b, off, bytesToRead);
+            bytesReadOffset += bytesToRead;
 
             if (entryByteBuf.readableBytes() == 0) {
                 entryByteBuf.release();
@@ -104,40 +113,31 @@ public class BlockAwareSegmentInputStreamImpl extends BlockAwareSegmentInputStre
                 blockEntryCount++;
             }
 
-            return ret;
+            return bytesToRead;
         } else {
             // no space for a new entry or there are no more entries
             // set data block full, return end padding
             if (dataBlockFullOffset == blockSize) {
                 dataBlockFullOffset = bytesReadOffset;
             }
-            return BLOCK_END_PADDING[(bytesReadOffset++ - dataBlockFullOffset) % BLOCK_END_PADDING.length];
+            int bytesToRead = Math.min(len, blockSize - bytesReadOffset);
+            for (int i = 0; i < bytesToRead; i++) {
+                b[off + i] = (byte) BLOCK_END_PADDING[(bytesReadOffset++ - dataBlockFullOffset)
+                    % BLOCK_END_PADDING.length];
+            }
+            return bytesToRead;
         }
     }
 
     private List<ByteBuf> readNextEntriesFromLedger(long start, long maxNumberEntries) throws IOException {
+        if (readAhead != null) {
+            return readAhead.readEntries(start, (int) maxNumberEntries);
+        }
+
         long end = Math.min(start + maxNumberEntries - 1, ledger.getLastAddConfirmed());
         try (LedgerEntries ledgerEntriesOnce = ledger.readAsync(start, end).get()) {
             log.debug("read ledger entries. start: {}, end: {}", start, end);
-
-            List<ByteBuf> entries = Lists.newLinkedList();
-
-            Iterator<LedgerEntry> iterator = ledgerEntriesOnce.iterator();
-            while (iterator.hasNext()) {
-                LedgerEntry entry = iterator.next();
-                ByteBuf buf = entry.getEntryBuffer().retain();
-                int entryLength = buf.readableBytes();
-                long entryId = entry.getEntryId();
-
-                CompositeByteBuf entryBuf = PulsarByteBufAllocator.DEFAULT.compositeBuffer(2);
-                ByteBuf entryHeaderBuf = PulsarByteBufAllocator.DEFAULT.buffer(ENTRY_HEADER_SIZE, ENTRY_HEADER_SIZE);
-
-                entryHeaderBuf.writeInt(entryLength).writeLong(entryId);
-                entryBuf.addComponents(true, entryHeaderBuf, buf);
-
-                entries.add(entryBuf);
-            }
-            return entries;
+            return toEntriesByteBuf(ledgerEntriesOnce);
         } catch (InterruptedException | ExecutionException e) {
             log.error("Exception when get CompletableFuture<LedgerEntries>. ", e);
             if (e instanceof InterruptedException) {
@@ -147,21 +147,59 @@ public class BlockAwareSegmentInputStreamImpl extends BlockAwareSegmentInputStre
         }
     }
 
+    // Each entry ByteBuf contains the entry header (entry size and entry id) and the entry content.
+    static List<ByteBuf> toEntriesByteBuf(LedgerEntries ledgerEntries) {
+        List<ByteBuf> entries = Lists.newLinkedList();
+
+        Iterator<LedgerEntry> iterator = ledgerEntries.iterator();
+        while (iterator.hasNext()) {
+            LedgerEntry entry = iterator.next();
+            ByteBuf buf = entry.getEntryBuffer().retain();
+            int entryLength = buf.readableBytes();
+            long entryId = entry.getEntryId();
+
+            CompositeByteBuf entryBuf = PulsarByteBufAllocator.DEFAULT.compositeBuffer(2);
+            ByteBuf entryHeaderBuf = PulsarByteBufAllocator.DEFAULT.buffer(ENTRY_HEADER_SIZE, ENTRY_HEADER_SIZE);
+
+            entryHeaderBuf.writeInt(entryLength).writeLong(entryId);
+            entryBuf.addComponents(true, entryHeaderBuf, buf);
+
+            entries.add(entryBuf);
+        }
+        return entries;
+    }
+
     @Override
     public int read() throws IOException {
-        // reading header
-        if (dataBlockHeaderStream.available() > 0) {
-            bytesReadOffset++;
-            return dataBlockHeaderStream.read();
-        }
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
 
-        // reading Ledger entries.
-        if (bytesReadOffset < blockSize) {
-            return readEntries();
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkPositionIndexes(off, off + len, b.length);
+        if (len == 0) {
+            return 0;
         }
 
         // reached end
-        return -1;
+        if (bytesReadOffset >= blockSize) {
+            return -1;
+        }
+
+        int bytesRead = 0;
+        while (bytesRead < len && bytesReadOffset < blockSize) {
+            if (dataBlockHeaderStream.available() > 0) {
+                // reading header
+                int headerBytesRead = dataBlockHeaderStream.read(b, off + bytesRead, len - bytesRead);
+                bytesReadOffset += headerBytesRead;
+                bytesRead += headerBytesRead;
+            } else {
+                // reading Ledger entries.
+                bytesRead += readEntries(b, off + bytesRead, len - bytesRead);
+            }
+        }
+        return bytesRead;
     }
 
     @Override
@@ -169,7 +207,12 @@ public class BlockAwareSegmentInputStreamImpl extends BlockAwareSegmentInputStre
         super.close();
         dataBlockHeaderStream.close();
         if (!entriesByteBuf.isEmpty()) {
-            entriesByteBuf.forEach(buf -> buf.release());
+            if (readAhead != null && entriesByteBuf.get(0).readerIndex() == 0) {
+                // the entries that didn't fit in this block go to the next one
+                readAhead.pushBack(entriesByteBuf);
+            } else {
+                entriesByteBuf.forEach(buf -> buf.release());
+            }
             entriesByteBuf.clear();
         }
     }
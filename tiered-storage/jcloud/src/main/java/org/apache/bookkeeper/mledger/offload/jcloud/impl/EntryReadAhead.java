@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the entries of a ledger in order for the data blocks of an offload, keeping a number of read requests
+ * outstanding ahead of the block being built, so that the bookies are read in parallel with the block uploads.
+ * The entries read but not fitting in a block are pushed back, to start the next block.
+ */
+class EntryReadAhead implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(EntryReadAhead.class);
+
+    private final ReadHandle ledger;
+    private final int maxOutstandingReads;
+    private final Deque<CompletableFuture<LedgerEntries>> outstandingReads = new ArrayDeque<>();
+    // entries returned to the read-ahead by the previous block, in order
+    private final Deque<ByteBuf> pushedBackEntries = new ArrayDeque<>();
+    private long nextEntryToRead;
+    private long nextEntryToReturn;
+    private boolean closed = false;
+
+    EntryReadAhead(ReadHandle ledger, long firstEntryId, int maxOutstandingReads) {
+        this.ledger = ledger;
+        this.maxOutstandingReads = Math.max(maxOutstandingReads, 1);
+        this.nextEntryToRead = firstEntryId;
+        this.nextEntryToReturn = firstEntryId;
+    }
+
+    /**
+     * Get the next entries of the ledger, in the format of {@link BlockAwareSegmentInputStreamImpl}.
+     *
+     * @param startEntryId the first entry to return, following the entries already returned
+     * @param entriesPerRead the number of entries of each read request sent to the bookies
+     */
+    synchronized List<ByteBuf> readEntries(long startEntryId, int entriesPerRead) throws IOException {
+        checkState(!closed);
+        if (!pushedBackEntries.isEmpty()) {
+            checkState(entryId(pushedBackEntries.peekFirst()) == startEntryId);
+            List<ByteBuf> entries = Lists.newLinkedList(pushedBackEntries);
+            pushedBackEntries.clear();
+            return entries;
+        }
+
+        checkState(startEntryId == nextEntryToReturn);
+        sendReads(entriesPerRead);
+        CompletableFuture<LedgerEntries> read = outstandingReads.poll();
+        checkState(read != null);
+        try (LedgerEntries ledgerEntries = read.get()) {
+            List<ByteBuf> entries = BlockAwareSegmentInputStreamImpl.toEntriesByteBuf(ledgerEntries);
+            nextEntryToReturn += entries.size();
+            // keep the read requests flowing while the entries are copied in the block
+            sendReads(entriesPerRead);
+            return entries;
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Exception when get CompletableFuture<LedgerEntries>. ", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Give back entries that were not consumed, they are returned first by the next {@link #readEntries}.
+     */
+    synchronized void pushBack(List<ByteBuf> entries) {
+        if (closed) {
+            entries.forEach(ByteBuf::release);
+            return;
+        }
+        ListIterator<ByteBuf> iterator = entries.listIterator(entries.size());
+        while (iterator.hasPrevious()) {
+            pushedBackEntries.addFirst(iterator.previous());
+        }
+    }
+
+    private void sendReads(int entriesPerRead) {
+        long lastAddConfirmed = ledger.getLastAddConfirmed();
+        while (outstandingReads.size() < maxOutstandingReads && nextEntryToRead <= lastAddConfirmed) {
+            long end = Math.min(nextEntryToRead + entriesPerRead - 1, lastAddConfirmed);
+            log.debug("read ledger entries ahead. start: {}, end: {}", nextEntryToRead, end);
+            outstandingReads.add(ledger.readAsync(nextEntryToRead, end));
+            nextEntryToRead = end + 1;
+        }
+    }
+
+    private static long entryId(ByteBuf entry) {
+        return entry.getLong(entry.readerIndex() + 4 /* entry size */);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        pushedBackEntries.forEach(ByteBuf::release);
+        pushedBackEntries.clear();
+        outstandingReads.forEach(read -> read.thenAccept(LedgerEntries::close));
+        outstandingReads.clear();
+    }
+}
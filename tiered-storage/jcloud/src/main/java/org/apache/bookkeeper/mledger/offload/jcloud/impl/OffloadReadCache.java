@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.offload.jcloud.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Throwables;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Summary;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded cache of the data objects of offloaded ledgers, shared by all the read handles of an offloader.
+ * The data objects are split in blocks of a fixed size, each fetched with one ranged read and keyed by (data object
+ * key, block index). The data object key identifies the offloaded ledger.
+ * The blocks following a sequential reader are prefetched in the background.
+ *
+ * <p>The blocks are cached as futures, so that the blob store is never read while holding a lock of the cache, and a
+ * reader of a block being fetched waits for it instead of fetching it again. A block only weighs on the cache size
+ * once it is fetched. A failed fetch is removed from the cache, and a reader that was waiting for it fetches the block
+ * again. The prefetches are dropped when too many of them are waiting to be run.
+ */
+public class OffloadReadCache implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(OffloadReadCache.class);
+
+    private static final int PREFETCH_THREADS = 4;
+    private static final int MAX_PENDING_PREFETCHES = 64;
+
+    // The ratio between the hits and all the reads gives the cache hit ratio
+    private static final Counter cacheHits = Counter.build("pulsar_ledger_offload_read_cache_hits",
+            "Number of reads of offloaded ledgers served from the read cache").register();
+    private static final Counter cacheMisses = Counter.build("pulsar_ledger_offload_read_cache_misses",
+            "Number of reads of offloaded ledgers waiting for a block of the blob store").register();
+    private static final Summary fetchLatency = Summary.build("pulsar_ledger_offload_read_fetch_latency_ms",
+            "Time taken to fetch a block of an offloaded ledger from the blob store").register();
+    private static final Counter prefetchesDropped = Counter.build("pulsar_ledger_offload_read_prefetches_dropped",
+            "Number of prefetches of offloaded ledger blocks dropped because too many were pending").register();
+
+    @Data(staticConstructor = "of")
+    private static class BlockKey {
+        private final String key;
+        private final long blockIndex;
+    }
+
+    /**
+     * Fetches a range of a data object from the blob store.
+     */
+    public interface BlockFetcher {
+        byte[] fetch(long startRange, long endRange) throws IOException;
+    }
+
+    private final Cache<BlockKey, CompletableFuture<byte[]>> cache;
+    private final int blockSize;
+    private final int maxPrefetchBlocks;
+    private final ExecutorService prefetchExecutor;
+
+    /**
+     * @param maxSizeInBytes maximum size of the cached blocks
+     * @param blockSize size of the blocks of the data objects
+     * @param maxPrefetchBlocks maximum number of blocks prefetched ahead of a sequential reader
+     */
+    public OffloadReadCache(long maxSizeInBytes, int blockSize, int maxPrefetchBlocks) {
+        // the blocks being fetched weigh nothing, they are weighed again once fetched
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxSizeInBytes)
+            .weigher((BlockKey key, CompletableFuture<byte[]> block) ->
+                block.isDone() && !block.isCompletedExceptionally() ? block.join().length : 0)
+            .build();
+        this.blockSize = blockSize;
+        this.maxPrefetchBlocks = maxPrefetchBlocks;
+        this.prefetchExecutor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_PREFETCHES), new DefaultThreadFactory("offloader-prefetch", true));
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getMaxPrefetchBlocks() {
+        return maxPrefetchBlocks;
+    }
+
+    /**
+     * Get a block of a data object, fetching it if it is not cached. A block being prefetched is waited for instead
+     * of being fetched again, unless the prefetch fails.
+     */
+    public byte[] getBlock(String key, long blockIndex, long objectLen, BlockFetcher fetcher) throws IOException {
+        BlockKey blockKey = BlockKey.of(key, blockIndex);
+        CompletableFuture<byte[]> future = cache.getIfPresent(blockKey);
+        if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+            cacheHits.inc();
+            return future.join();
+        }
+
+        cacheMisses.inc();
+        if (future != null) {
+            try {
+                return waitForBlock(future);
+            } catch (IOException e) {
+                if (!future.isCompletedExceptionally()) {
+                    throw e;
+                }
+                // the block was being fetched by a prefetch or another reader that failed, fetch it again
+                cache.asMap().remove(blockKey, future);
+            }
+        }
+        return waitForBlock(loadBlock(blockKey, objectLen, fetcher));
+    }
+
+    private static byte[] waitForBlock(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Fetch in the background the blocks of a data object that are not cached yet.
+     */
+    public void prefetch(String key, long firstBlockIndex, long lastBlockIndex, long objectLen, BlockFetcher fetcher) {
+        for (long blockIndex = firstBlockIndex; blockIndex <= lastBlockIndex; blockIndex++) {
+            BlockKey blockKey = BlockKey.of(key, blockIndex);
+            if (cache.getIfPresent(blockKey) != null) {
+                continue;
+            }
+
+            try {
+                prefetchExecutor.execute(() -> loadBlock(blockKey, objectLen, fetcher).exceptionally(t -> {
+                    log.warn("Failed to prefetch block {} of {}", blockKey.getBlockIndex(), blockKey.getKey(), t);
+                    return null;
+                }));
+            } catch (RejectedExecutionException e) {
+                // the reader fetches the blocks itself when the prefetches can't keep up
+                prefetchesDropped.inc(lastBlockIndex - blockIndex + 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fetch a block in the calling thread, unless it is already being fetched.
+     *
+     * @return the future of the block, completed once it is fetched
+     */
+    private CompletableFuture<byte[]> loadBlock(BlockKey blockKey, long objectLen, BlockFetcher fetcher) {
+        CompletableFuture<byte[]> newFuture = new CompletableFuture<>();
+        CompletableFuture<byte[]> future = cache.get(blockKey, k -> newFuture);
+        if (future != newFuture) {
+            return future;
+        }
+
+        long startRange = blockKey.getBlockIndex() * blockSize;
+        long endRange = Math.min(startRange + blockSize, objectLen) - 1;
+        long startTime = System.nanoTime();
+        try {
+            byte[] block = fetcher.fetch(startRange, endRange);
+            fetchLatency.observe(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            newFuture.complete(block);
+            // replacing the future by itself weighs the fetched block
+            cache.asMap().replace(blockKey, newFuture, newFuture);
+        } catch (Throwable t) {
+            newFuture.completeExceptionally(t);
+            cache.asMap().remove(blockKey, newFuture);
+        }
+        return newFuture;
+    }
+
+    @Override
+    public void close() {
+        prefetchExecutor.shutdownNow();
+        cache.invalidateAll();
+    }
+}
@@ -29,8 +29,14 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
+import io.prometheus.client.CollectorRegistry;
 import org.apache.bookkeeper.mledger.offload.jcloud.impl.BlobStoreBackedInputStreamImpl;
+import org.apache.bookkeeper.mledger.offload.jcloud.impl.OffloadReadCache;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.domain.Blob;
 import org.jclouds.blobstore.options.GetOptions;
@@ -263,4 +269,222 @@ class BlobStoreBackedInputStreamTest extends BlobStoreTestBase {
         toTest.seekForward(after);
         assertStreamsMatch(toTest, toCompare);
     }
+
+    @Test
+    public void testReadingThroughCache() throws Exception {
+        String objectKey = "testReadingThroughCache";
+        int objectSize = 12345;
+        RandomInputStream toWrite = new RandomInputStream(0, objectSize);
+
+        Payload payload = Payloads.newInputStreamPayload(toWrite);
+        payload.getContentMetadata().setContentLength((long)objectSize);
+        Blob blob = blobStore.blobBuilder(objectKey)
+            .payload(payload)
+            .contentLength((long)objectSize)
+            .build();
+        String ret = blobStore.putBlob(BUCKET, blob);
+        log.debug("put blob: {} in Bucket: {}, in blobStore, result: {}", objectKey, BUCKET, ret);
+
+        BlobStore spiedBlobStore = mock(BlobStore.class, delegatesTo(blobStore));
+        try (OffloadReadCache cache = new OffloadReadCache(1024 * 1024, 1000, 4)) {
+            BackedInputStream toTest = new BlobStoreBackedInputStreamImpl(spiedBlobStore, BUCKET, objectKey,
+                                                                     (key, md) -> {},
+                                                                     objectSize, 1000, cache);
+            assertStreamsMatchByBytes(toTest, new RandomInputStream(0, objectSize));
+            toTest.close();
+
+            // each of the 13 blocks fetched once, either by the reader or prefetched ahead of it
+            verify(spiedBlobStore, times(13))
+                .getBlob(Mockito.eq(BUCKET), Mockito.eq(objectKey), Matchers.<GetOptions>anyObject());
+
+            // a second reader is served from the cache
+            double hits = getSampleValue("pulsar_ledger_offload_read_cache_hits");
+            toTest = new BlobStoreBackedInputStreamImpl(spiedBlobStore, BUCKET, objectKey,
+                                                        (key, md) -> {},
+                                                        objectSize, 1000, cache);
+            assertStreamsMatch(toTest, new RandomInputStream(0, objectSize));
+            toTest.close();
+
+            verify(spiedBlobStore, times(13))
+                .getBlob(Mockito.eq(BUCKET), Mockito.eq(objectKey), Matchers.<GetOptions>anyObject());
+            Assert.assertEquals(getSampleValue("pulsar_ledger_offload_read_cache_hits"), hits + 13);
+        }
+    }
+
+    @Test
+    public void testSeekThroughCache() throws Exception {
+        String objectKey = "testSeekThroughCache";
+        int objectSize = 12345;
+        RandomInputStream toWrite = new RandomInputStream(0, objectSize);
+
+        Map<Integer, InputStream> seeks = new HashMap<>();
+        Random r = new Random(12345);
+        for (int i = 0; i < 20; i++) {
+            int seek = r.nextInt(objectSize+1);
+            RandomInputStream stream = new RandomInputStream(0, objectSize);
+            stream.skip(seek);
+            seeks.put(seek, stream);
+        }
+
+        Payload payload = Payloads.newInputStreamPayload(toWrite);
+        payload.getContentMetadata().setContentLength((long)objectSize);
+        Blob blob = blobStore.blobBuilder(objectKey)
+            .payload(payload)
+            .contentLength((long)objectSize)
+            .build();
+        String ret = blobStore.putBlob(BUCKET, blob);
+        log.debug("put blob: {} in Bucket: {}, in blobStore, result: {}", objectKey, BUCKET, ret);
+
+        try (OffloadReadCache cache = new OffloadReadCache(1024 * 1024, 1000, 4)) {
+            BackedInputStream toTest = new BlobStoreBackedInputStreamImpl(blobStore, BUCKET, objectKey,
+                                                                     (key, md) -> {},
+                                                                     objectSize, 1000, cache);
+            for (Map.Entry<Integer, InputStream> e : seeks.entrySet()) {
+                toTest.seek(e.getKey());
+                assertStreamsMatch(toTest, e.getValue());
+            }
+            toTest.close();
+        }
+    }
+
+    @Test
+    public void testPrefetchOnSequentialReads() throws Exception {
+        String objectKey = "testPrefetchOnSequentialReads";
+        int objectSize = 12345;
+        RandomInputStream toWrite = new RandomInputStream(0, objectSize);
+
+        Payload payload = Payloads.newInputStreamPayload(toWrite);
+        payload.getContentMetadata().setContentLength((long)objectSize);
+        Blob blob = blobStore.blobBuilder(objectKey)
+            .payload(payload)
+            .contentLength((long)objectSize)
+            .build();
+        String ret = blobStore.putBlob(BUCKET, blob);
+        log.debug("put blob: {} in Bucket: {}, in blobStore, result: {}", objectKey, BUCKET, ret);
+
+        // the version of each fetched block is checked
+        AtomicInteger fetches = new AtomicInteger();
+        try (OffloadReadCache cache = new OffloadReadCache(1024 * 1024, 1000, 4)) {
+            BackedInputStream toTest = new BlobStoreBackedInputStreamImpl(blobStore, BUCKET, objectKey,
+                                                                     (key, md) -> fetches.incrementAndGet(),
+                                                                     objectSize, 1000, cache);
+            // a random read does not prefetch
+            toTest.seek(5500);
+            toTest.read();
+            Thread.sleep(100);
+            Assert.assertEquals(fetches.get(), 1);
+
+            // each block read in sequence prefetches one more block ahead of the reader: blocks 7 to 11
+            toTest.seek(6000);
+            toTest.read();
+            toTest.seek(7000);
+            toTest.read();
+            toTest.seek(8000);
+            toTest.read();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fetches.get() < 7 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            Assert.assertEquals(fetches.get(), 7);
+            toTest.close();
+        }
+    }
+
+    @Test
+    public void testCacheWithSlowFetches() throws Exception {
+        CountDownLatch fetchesReleased = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        OffloadReadCache.BlockFetcher slowFetcher = (startRange, endRange) -> {
+            fetches.incrementAndGet();
+            try {
+                fetchesReleased.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new byte[(int) (endRange - startRange + 1)];
+        };
+
+        try (OffloadReadCache cache = new OffloadReadCache(1024 * 1024, 10, 4)) {
+            // 4 prefetches are running and 64 are pending, the others are dropped
+            double dropped = getSampleValue("pulsar_ledger_offload_read_prefetches_dropped");
+            cache.prefetch("testCacheWithSlowFetches", 0, 99, 1000, slowFetcher);
+            Assert.assertEquals(getSampleValue("pulsar_ledger_offload_read_prefetches_dropped"), dropped + 32);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fetches.get() < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(fetches.get(), 4);
+
+            // a block being prefetched is waited for, and the other blocks can still be read meanwhile
+            CompletableFuture<byte[]> read = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cache.getBlock("testCacheWithSlowFetches", 0, 1000, slowFetcher);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(100);
+            Assert.assertFalse(read.isDone());
+            Assert.assertEquals(cache.getBlock("testCacheWithSlowFetches", 99, 1000, (startRange, endRange) -> {
+                fetches.incrementAndGet();
+                return new byte[(int) (endRange - startRange + 1)];
+            }).length, 10);
+            Assert.assertEquals(fetches.get(), 5);
+
+            fetchesReleased.countDown();
+            Assert.assertEquals(read.get().length, 10);
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fetches.get() < 69 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            Assert.assertEquals(fetches.get(), 69);
+        }
+    }
+
+    @Test
+    public void testFetchAgainAfterFailedPrefetch() throws Exception {
+        CountDownLatch prefetchStarted = new CountDownLatch(1);
+        CountDownLatch prefetchReleased = new CountDownLatch(1);
+        OffloadReadCache.BlockFetcher failingFetcher = (startRange, endRange) -> {
+            prefetchStarted.countDown();
+            try {
+                prefetchReleased.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            throw new IOException("prefetch failed");
+        };
+
+        try (OffloadReadCache cache = new OffloadReadCache(1024 * 1024, 10, 4)) {
+            cache.prefetch("testFetchAgainAfterFailedPrefetch", 0, 0, 1000, failingFetcher);
+            Assert.assertTrue(prefetchStarted.await(5, TimeUnit.SECONDS));
+
+            // the reader waits for the prefetch, then fetches the block itself when the prefetch fails
+            AtomicInteger fetches = new AtomicInteger();
+            CompletableFuture<byte[]> read = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cache.getBlock("testFetchAgainAfterFailedPrefetch", 0, 1000, (startRange, endRange) -> {
+                        fetches.incrementAndGet();
+                        return new byte[(int) (endRange - startRange + 1)];
+                    });
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(100);
+            Assert.assertFalse(read.isDone());
+
+            prefetchReleased.countDown();
+            Assert.assertEquals(read.get(5, TimeUnit.SECONDS).length, 10);
+            Assert.assertEquals(fetches.get(), 1);
+        }
+    }
+
+    private static double getSampleValue(String name) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name);
+        return value != null ? value : 0;
+    }
 }
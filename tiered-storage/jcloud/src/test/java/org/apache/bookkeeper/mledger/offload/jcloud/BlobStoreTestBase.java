@@ -18,9 +18,12 @@
  */
 package org.apache.bookkeeper.mledger.offload.jcloud;
 
+import java.nio.file.Files;
+import java.util.Properties;
 import org.jclouds.ContextBuilder;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.filesystem.reference.FilesystemConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.AfterMethod;
@@ -58,6 +61,14 @@ public class BlobStoreTestBase {
                 .credentials(System.getProperty("GCSID"), System.getProperty("GCSKey"))
                 .build(BlobStoreContext.class);
             blobStore = context.getBlobStore();
+        } else if (Boolean.parseBoolean(System.getProperty("testFilesystem", "false"))) {
+            // Blobs stored as files in a local directory, for ranged reads from a real storage without a cloud account
+            Properties overrides = new Properties();
+            overrides.setProperty(FilesystemConstants.PROPERTY_BASEDIR,
+                Files.createTempDirectory("blobstore-unittest").toString());
+            context = ContextBuilder.newBuilder("filesystem").overrides(overrides).build(BlobStoreContext.class);
+            blobStore = context.getBlobStore();
+            blobStore.createContainerInLocation(null, BUCKET);
         } else {
             context = ContextBuilder.newBuilder("transient").build(BlobStoreContext.class);
             blobStore = context.getBlobStore();
@@ -29,6 +29,7 @@ import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSSessionCredentials;
 import com.google.common.util.concurrent.MoreExecutors;
+import io.prometheus.client.CollectorRegistry;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
@@ -316,6 +317,75 @@ class BlobStoreManagedLedgerOffloaderTest extends BlobStoreTestBase {
         }
     }
 
+    @Test
+    public void testOffloadAndReadWithParallelUploads() throws Exception {
+        ReadHandle toWrite = buildReadHandle(DEFAULT_BLOCK_SIZE, 4);
+        BlobStoreManagedLedgerOffloader offloader = new BlobStoreManagedLedgerOffloader(blobStore, BUCKET, scheduler,
+                                                                 DEFAULT_BLOCK_SIZE, DEFAULT_READ_BUFFER_SIZE);
+        // the memory budget only allows 2 of the 3 parallel uploads
+        offloader.enableParallelUploads(3, 2, 2 * DEFAULT_BLOCK_SIZE);
+
+        String namespace = "tenant/ns-" + UUID.randomUUID();
+        UUID uuid = UUID.randomUUID();
+        offloader.offload(toWrite, uuid,
+            Collections.singletonMap("ManagedLedgerName", namespace + "/persistent/topic")).get();
+
+        Double offloadedBytes = CollectorRegistry.defaultRegistry.getSampleValue("pulsar_ledger_offload_bytes",
+            new String[] { "namespace" }, new String[] { namespace });
+        Assert.assertNotNull(offloadedBytes);
+        Assert.assertTrue(offloadedBytes > 3 * DEFAULT_BLOCK_SIZE);
+
+        ReadHandle toTest = offloader.readOffloaded(toWrite.getId(), uuid, Collections.emptyMap()).get();
+        Assert.assertEquals(toTest.getLastAddConfirmed(), toWrite.getLastAddConfirmed());
+
+        try (LedgerEntries toWriteEntries = toWrite.read(0, toWrite.getLastAddConfirmed());
+             LedgerEntries toTestEntries = toTest.read(0, toTest.getLastAddConfirmed())) {
+            Iterator<LedgerEntry> toWriteIter = toWriteEntries.iterator();
+            Iterator<LedgerEntry> toTestIter = toTestEntries.iterator();
+
+            while (toWriteIter.hasNext() && toTestIter.hasNext()) {
+                LedgerEntry toWriteEntry = toWriteIter.next();
+                LedgerEntry toTestEntry = toTestIter.next();
+
+                Assert.assertEquals(toWriteEntry.getLedgerId(), toTestEntry.getLedgerId());
+                Assert.assertEquals(toWriteEntry.getEntryId(), toTestEntry.getEntryId());
+                Assert.assertEquals(toWriteEntry.getLength(), toTestEntry.getLength());
+                Assert.assertEquals(toWriteEntry.getEntryBuffer(), toTestEntry.getEntryBuffer());
+            }
+            Assert.assertFalse(toWriteIter.hasNext());
+            Assert.assertFalse(toTestIter.hasNext());
+        } finally {
+            offloader.close();
+        }
+    }
+
+    @Test
+    public void testOffloadFailDataBlockPartUploadWithParallelUploads() throws Exception {
+        ReadHandle readHandle = buildReadHandle(DEFAULT_BLOCK_SIZE, 3);
+        UUID uuid = UUID.randomUUID();
+        String failureString = "fail DataBlockPartUpload";
+
+        // mock throw exception when uploading the second part
+        try {
+            BlobStore spiedBlobStore = mock(BlobStore.class, delegatesTo(blobStore));
+            Mockito
+                .doThrow(new RuntimeException(failureString))
+                .when(spiedBlobStore).uploadMultipartPart(any(), Mockito.eq(2), any());
+
+            BlobStoreManagedLedgerOffloader offloader = new BlobStoreManagedLedgerOffloader(spiedBlobStore, BUCKET,
+                scheduler, DEFAULT_BLOCK_SIZE, DEFAULT_READ_BUFFER_SIZE);
+            offloader.enableParallelUploads(2, 2, 4 * DEFAULT_BLOCK_SIZE);
+            offloader.offload(readHandle, uuid, new HashMap<>()).get();
+            Assert.fail("Should throw exception for when uploadPart");
+        } catch (Exception e) {
+            // excepted
+            Assert.assertTrue(e.getCause() instanceof RuntimeException);
+            Assert.assertTrue(e.getCause().getMessage().contains(failureString));
+            Assert.assertFalse(blobStore.blobExists(BUCKET, BlobStoreManagedLedgerOffloader.dataBlockOffloadKey(readHandle.getId(), uuid)));
+            Assert.assertFalse(blobStore.blobExists(BUCKET, BlobStoreManagedLedgerOffloader.indexBlockOffloadKey(readHandle.getId(), uuid)));
+        }
+    }
+
     @Test
     public void testOffloadFailInitDataBlockUpload() throws Exception {
         ReadHandle readHandle = buildReadHandle();
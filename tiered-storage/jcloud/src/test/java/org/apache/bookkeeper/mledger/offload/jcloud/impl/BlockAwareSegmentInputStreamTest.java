@@ -530,4 +530,43 @@ public class BlockAwareSegmentInputStreamTest {
         }
     }
 
+    @Test
+    public void testReadAheadAcrossBlocks() throws Exception {
+        int ledgerId = 1;
+        int entrySize = 8;
+        int lac = 300;
+        ReadHandle readHandle = new MockReadHandle(ledgerId, entrySize, lac);
+
+        // 70 entries and some padding per block, so that the entries of a read request span 2 blocks
+        int blockSize = DataBlockHeaderImpl.getDataStartOffset()
+            + (entrySize + BlockAwareSegmentInputStreamImpl.ENTRY_HEADER_SIZE) * 70 + 7;
+
+        try (EntryReadAhead readAhead = new EntryReadAhead(readHandle, 0, 3)) {
+            long startEntry = 0;
+            int blocks = 0;
+            while (startEntry <= lac) {
+                byte[] expected = new byte[blockSize];
+                long expectedEndEntryId;
+                try (BlockAwareSegmentInputStreamImpl inputStream =
+                         new BlockAwareSegmentInputStreamImpl(readHandle, startEntry, blockSize)) {
+                    ByteStreams.readFully(inputStream, expected);
+                    expectedEndEntryId = inputStream.getEndEntryId();
+                }
+
+                byte[] actual = new byte[blockSize];
+                try (BlockAwareSegmentInputStreamImpl inputStream =
+                         new BlockAwareSegmentInputStreamImpl(readHandle, startEntry, blockSize, readAhead)) {
+                    ByteStreams.readFully(inputStream, actual);
+                    assertEquals(inputStream.read(), -1);
+                    assertEquals(inputStream.getEndEntryId(), expectedEndEntryId);
+                }
+
+                assertArrayEquals(actual, expected);
+                startEntry = expectedEndEntryId + 1;
+                blocks++;
+            }
+            assertEquals(blocks, 5);
+        }
+    }
+
 }